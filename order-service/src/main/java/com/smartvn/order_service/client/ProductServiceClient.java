@@ -1,10 +1,17 @@
 package com.smartvn.order_service.client;
 
 import com.smartvn.order_service.config.FeignClientConfig;
+import com.smartvn.order_service.dto.product.BatchOperationResultDTO;
+import com.smartvn.order_service.dto.product.InventoryAvailabilityDTO;
+import com.smartvn.order_service.dto.product.InventoryBatchOperationRequest;
 import com.smartvn.order_service.dto.product.InventoryCheckRequest;
 import com.smartvn.order_service.dto.product.InventoryDTO;
 import com.smartvn.order_service.dto.product.InventoryItemDTO;
+import com.smartvn.order_service.dto.product.InventoryQuoteDTO;
+import com.smartvn.order_service.dto.product.ProductChangeFeedDTO;
 import com.smartvn.order_service.dto.product.ProductDTO;
+import com.smartvn.order_service.dto.product.StockReservationDTO;
+import com.smartvn.order_service.dto.product.StockReservationRequest;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.*;
 
@@ -16,7 +23,7 @@ import java.util.Map;
  */
 @FeignClient(
         name = "product-service",
-        fallback = ProductServiceFallback.class,
+        fallbackFactory = ProductServiceFallbackFactory.class,
         configuration = FeignClientConfig.class
 )
 public interface ProductServiceClient {
@@ -27,6 +34,12 @@ public interface ProductServiceClient {
     @GetMapping("${api.prefix}/internal/products/{productId}")
     ProductDTO getProductById(@PathVariable("productId") Long productId);
 
+    /**
+     * Lấy nhiều sản phẩm trong 1 request (tối đa 200 id, giữ thứ tự, id không tồn tại bị bỏ qua)
+     */
+    @PostMapping("${api.prefix}/internal/products/batch")
+    List<ProductDTO> getProductsByIds(@RequestBody List<Long> productIds);
+
     /**
      * Lấy danh sách inventory của một sản phẩm
      */
@@ -54,9 +67,57 @@ public interface ProductServiceClient {
     @PostMapping("${api.prefix}/internal/inventory/batch-check")
     Map<String, Boolean> batchCheckInventory(@RequestBody List<InventoryCheckRequest> requests);
 
+    /**
+     * Kiểm tra tồn kho nhiều dòng trong 1 lần gọi, kèm số lượng còn bán được và giá hiện tại
+     */
+    @PostMapping("${api.prefix}/internal/inventory/availability")
+    List<InventoryAvailabilityDTO> checkAvailability(@RequestBody List<InventoryCheckRequest> requests);
+
+    /**
+     * Báo giá 1 variant: trạng thái product, giá, tồn kho còn bán được, title/ảnh (dùng cho thêm / sửa giỏ hàng)
+     */
+    @PostMapping("${api.prefix}/internal/inventory/quote")
+    InventoryQuoteDTO quoteInventory(@RequestBody InventoryCheckRequest request);
+
     @PostMapping("${api.prefix}/internal/inventory/batch-reduce")
     void batchReduceInventory(@RequestBody List<InventoryCheckRequest> requests);
 
-    @PostMapping("${api.prefix}/internal/products/{productId}/increase-sold")
-    void increaseQuantitySold(@RequestBody InventoryCheckRequest request);
+    /**
+     * Giữ hàng có thời hạn cho đơn chưa thanh toán (409 nếu không đủ hàng)
+     */
+    @PostMapping("${api.prefix}/internal/inventory/reservations")
+    StockReservationDTO reserveInventory(@RequestBody StockReservationRequest request);
+
+    /**
+     * Thanh toán thành công → chuyển phần đang giữ thành đã bán
+     */
+    @PostMapping("${api.prefix}/internal/inventory/reservations/{reference}/commit")
+    StockReservationDTO commitReservation(@PathVariable("reference") String reference);
+
+    /**
+     * Huỷ đơn → trả hàng (fallbackItems dùng cho đơn cũ chưa có reservation)
+     */
+    @PostMapping("${api.prefix}/internal/inventory/reservations/{reference}/release")
+    StockReservationDTO releaseReservation(@PathVariable("reference") String reference,
+                                           @RequestBody List<InventoryCheckRequest> fallbackItems);
+
+    /**
+     * Change feed của product-service: các product thay đổi sau offset "after"
+     */
+    @GetMapping("${api.prefix}/internal/products/changes")
+    ProductChangeFeedDTO getProductChanges(@RequestParam("after") long after,
+                                           @RequestParam("limit") int limit,
+                                           @RequestParam("waitMs") long waitMs);
+
+    /**
+     * Hoàn kho nhiều dòng trong 1 lần gọi; retry với cùng operationKey không hoàn thêm
+     */
+    @PostMapping("${api.prefix}/internal/inventory/batch-restore")
+    BatchOperationResultDTO batchRestoreInventory(@RequestBody InventoryBatchOperationRequest request);
+
+    /**
+     * Cộng số lượng đã bán cho cả đơn trong 1 lần gọi; retry với cùng operationKey không cộng thêm
+     */
+    @PostMapping("${api.prefix}/internal/products/batch-increase-sold")
+    BatchOperationResultDTO batchIncreaseQuantitySold(@RequestBody InventoryBatchOperationRequest request);
 }
\ No newline at end of file
@@ -1,11 +1,18 @@
 package com.smartvn.order_service.client;
 
+import com.smartvn.order_service.dto.product.BatchOperationResultDTO;
+import com.smartvn.order_service.dto.product.InventoryAvailabilityDTO;
+import com.smartvn.order_service.dto.product.InventoryBatchOperationRequest;
 import com.smartvn.order_service.dto.product.InventoryCheckRequest;
 import com.smartvn.order_service.dto.product.InventoryDTO;
 import com.smartvn.order_service.dto.product.InventoryItemDTO;
+import com.smartvn.order_service.dto.product.InventoryQuoteDTO;
+import com.smartvn.order_service.dto.product.ProductChangeFeedDTO;
 import com.smartvn.order_service.dto.product.ProductDTO;
+import com.smartvn.order_service.dto.product.StockReservationDTO;
+import com.smartvn.order_service.dto.product.StockReservationRequest;
+import com.smartvn.order_service.exceptions.AppException;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
@@ -14,12 +21,30 @@ import java.util.List;
 import java.util.Map;
 
 /**
- * Fallback khi Product Service không khả dụng
+ * Fallback khi Product Service không khả dụng (tạo qua ProductServiceFallbackFactory).
+ * Lỗi 4xx (product-service đã trả lời và từ chối, VD 409 hết hàng) không phải "không khả dụng":
+ * các thao tác ghi ném lại nguyên lỗi đó để caller xử lý như bị từ chối, không thử lại.
  */
-@Component
 @Slf4j
 public class ProductServiceFallback implements ProductServiceClient {
 
+    private final Throwable cause;
+
+    public ProductServiceFallback(Throwable cause) {
+        this.cause = cause;
+    }
+
+    /**
+     * Ném lại lỗi 4xx gốc (có thể bị circuit breaker bọc ngoài)
+     */
+    private void rethrowRejection() {
+        for (Throwable t = cause; t != null; t = t.getCause()) {
+            if (t instanceof AppException app && app.getStatus().is4xxClientError()) {
+                throw app;
+            }
+        }
+    }
+
     @Override
     public ProductDTO getProductById(Long productId) {
         log.error("Product Service unavailable. Returning fallback for productId: {}", productId);
@@ -36,11 +61,18 @@ public class ProductServiceFallback implements ProductServiceClient {
     }
 
     @Override
-    public List<InventoryItemDTO> getProductInventory(Long productId) {
-        log.error("Product Service unavailable. Returning empty inventory for productId: {}", productId);
+    public List<ProductDTO> getProductsByIds(List<Long> productIds) {
+        log.error("Product Service unavailable. Returning empty product batch for {} ids",
+                productIds != null ? productIds.size() : 0);
         return new ArrayList<>();
     }
 
+    @Override
+    public List<InventoryItemDTO> getProductInventory(Long productId) {
+        log.error("Product Service unavailable. Cannot load inventory for productId: {}", productId);
+        return null; // Khác danh sách rỗng (product không còn variant): caller phải thử lại
+    }
+
     @Override
     public Boolean checkInventoryAvailability(InventoryCheckRequest request) {
         log.error("Product Service unavailable. Cannot check inventory: {}", request);
@@ -50,6 +82,7 @@ public class ProductServiceFallback implements ProductServiceClient {
 
     @Override
     public void reduceInventory(InventoryCheckRequest request) {
+        rethrowRejection();
         log.error("Product Service unavailable. Cannot reduce inventory: {}", request);
         throw new RuntimeException("Product Service is currently unavailable. Please try again later.");
     }
@@ -67,15 +100,63 @@ public class ProductServiceFallback implements ProductServiceClient {
         return new HashMap<>(); // Trả về Map rỗng để an toàn
     }
 
+    @Override
+    public List<InventoryAvailabilityDTO> checkAvailability(List<InventoryCheckRequest> requests) {
+        log.error("Product Service unavailable. Cannot check inventory availability");
+        return new ArrayList<>(); // Không có dòng nào → coi như không đủ hàng
+    }
+
+    @Override
+    public InventoryQuoteDTO quoteInventory(InventoryCheckRequest request) {
+        log.error("Product Service unavailable. Cannot quote inventory: {}", request);
+        return null; // Caller trả 503, không thêm vào giỏ với giá không xác định
+    }
+
     // Thiếu method này
     @Override
     public void batchReduceInventory(List<InventoryCheckRequest> requests) {
+        rethrowRejection();
         log.error("Product Service unavailable. Cannot batch reduce inventory");
         throw new RuntimeException("Product Service is currently unavailable");
     }
 
     @Override
-    public void increaseQuantitySold(InventoryCheckRequest request) {
-        log.error("Product Service unavailable. Cannot increase quantity sold");
+    public StockReservationDTO reserveInventory(StockReservationRequest request) {
+        rethrowRejection();
+        log.error("Product Service unavailable. Cannot reserve inventory for {}", request.getReference());
+        throw new RuntimeException("Product Service is currently unavailable");
+    }
+
+    @Override
+    public StockReservationDTO commitReservation(String reference) {
+        rethrowRejection();
+        log.error("Product Service unavailable. Cannot commit reservation {}", reference);
+        throw new RuntimeException("Product Service is currently unavailable");
+    }
+
+    @Override
+    public StockReservationDTO releaseReservation(String reference, List<InventoryCheckRequest> fallbackItems) {
+        log.error("Product Service unavailable. Cannot release reservation {}", reference);
+        // null = chưa trả: hàng đã commit không tự hết hạn → caller giữ nguyên đơn và gọi lại sau
+        return null;
+    }
+
+    @Override
+    public ProductChangeFeedDTO getProductChanges(long after, int limit, long waitMs) {
+        log.error("Product Service unavailable. Cannot read product change feed after {}", after);
+        return null; // Lượt sau đọc lại từ offset cũ
+    }
+
+    @Override
+    public BatchOperationResultDTO batchRestoreInventory(InventoryBatchOperationRequest request) {
+        log.error("Product Service unavailable. Cannot restore inventory for {}", request.getOperationKey());
+        // Không throw: đây là rollback, có thể gọi lại với cùng operationKey
+        return null;
+    }
+
+    @Override
+    public BatchOperationResultDTO batchIncreaseQuantitySold(InventoryBatchOperationRequest request) {
+        log.error("Product Service unavailable. Cannot increase quantity sold for {}", request.getOperationKey());
+        return null; // OrderService đánh dấu đơn để thử lại với cùng operationKey
     }
 }
\ No newline at end of file
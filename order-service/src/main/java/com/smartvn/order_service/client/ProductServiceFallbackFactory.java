@@ -0,0 +1,17 @@
+package com.smartvn.order_service.client;
+
+import org.springframework.cloud.openfeign.FallbackFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tạo fallback cho Product Service kèm lỗi gốc: fallback cần phân biệt
+ * "product-service từ chối" (4xx, VD hết hàng) với "product-service không trả lời"
+ */
+@Component
+public class ProductServiceFallbackFactory implements FallbackFactory<ProductServiceClient> {
+
+    @Override
+    public ProductServiceClient create(Throwable cause) {
+        return new ProductServiceFallback(cause);
+    }
+}
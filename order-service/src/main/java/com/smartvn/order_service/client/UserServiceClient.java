@@ -6,6 +6,10 @@ import com.smartvn.order_service.dto.user.UserDTO;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+
+import java.util.List;
 
 /**
  * Feign Client để giao tiếp với User Service
@@ -29,6 +33,18 @@ public interface UserServiceClient {
     @GetMapping("/api/v1/internal/users/addresses/{addressId}")
     AddressDTO getAddressById(@PathVariable("addressId") Long addressId);
 
+    /**
+     * Lấy nhiều user trong 1 request (id không tồn tại bị bỏ qua)
+     */
+    @PostMapping("/api/v1/internal/users/batch")
+    List<UserDTO> getUsersByIds(@RequestBody List<Long> userIds);
+
+    /**
+     * Lấy nhiều địa chỉ trong 1 request (id không tồn tại bị bỏ qua)
+     */
+    @PostMapping("/api/v1/internal/users/addresses/batch")
+    List<AddressDTO> getAddressesByIds(@RequestBody List<Long> addressIds);
+
     /**
      * Validate địa chỉ có thuộc về user không
      */
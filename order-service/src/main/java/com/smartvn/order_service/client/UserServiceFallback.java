@@ -5,6 +5,9 @@ import com.smartvn.order_service.dto.user.UserDTO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Fallback khi User Service không khả dụng
  */
@@ -40,6 +43,18 @@ public class UserServiceFallback implements UserServiceClient {
         return fallback;
     }
 
+    @Override
+    public List<UserDTO> getUsersByIds(List<Long> userIds) {
+        log.error("User Service unavailable. Cannot fetch {} users", userIds.size());
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<AddressDTO> getAddressesByIds(List<Long> addressIds) {
+        log.error("User Service unavailable. Cannot fetch {} addresses", addressIds.size());
+        return Collections.emptyList();
+    }
+
     @Override
     public Boolean validateUserAddress(Long userId, Long addressId) {
         log.error("User Service unavailable. Cannot validate address {} for user {}", addressId, userId);
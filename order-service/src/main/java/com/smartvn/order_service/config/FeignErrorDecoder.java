@@ -1,5 +1,6 @@
 package com.smartvn.order_service.config;
 
+import com.smartvn.order_service.exceptions.AppException;
 import feign.Response;
 import feign.codec.ErrorDecoder;
 import lombok.extern.slf4j.Slf4j;
@@ -28,6 +29,9 @@ public class FeignErrorDecoder implements ErrorDecoder {
                 return new RuntimeException("Resource not found: " + methodKey);
             case BAD_REQUEST:
                 return new RuntimeException("Bad request: " + methodKey);
+            case CONFLICT:
+                // VD: product-service từ chối trừ kho vì không đủ hàng (INSUFFICIENT_STOCK)
+                return new AppException("Conflict: " + methodKey, HttpStatus.CONFLICT);
             case UNAUTHORIZED:
             case FORBIDDEN:
                 return new RuntimeException("Authentication/Authorization failed: " + methodKey);
@@ -13,6 +13,7 @@ import com.smartvn.order_service.exceptions.AppException;
 import com.smartvn.order_service.model.Cart;
 import com.smartvn.order_service.model.CartItem;
 import com.smartvn.order_service.service.CartService;
+import com.smartvn.order_service.service.ProductInfoService;
 import com.smartvn.order_service.service.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -31,6 +32,7 @@ public class CartController {
     private final CartService cartService;
     private final UserService userService;
     private final ProductServiceClient productServiceClient;
+    private final ProductInfoService productInfoService;
 
     @GetMapping("/me")
     public ResponseEntity<?> getMyCart(@RequestHeader("Authorization") String jwt) {
@@ -39,12 +41,15 @@ public class CartController {
             Cart cart = cartService.getCart(userId);
             CartDTO cartDTO =new CartDTO(cart);
 
+            // ✅ 1 request cho toàn bộ sản phẩm trong giỏ
+            Map<Long, ProductDTO> products = productInfoService.getProductsByIds(
+                    cartDTO.getCartItems().stream().map(CartItemDTO::getProductId).toList());
             for(CartItemDTO ciDTO: cartDTO.getCartItems()) {
-                try {
-                    ProductDTO productDTO = productServiceClient.getProductById(ciDTO.getProductId());
+                ProductDTO productDTO = products.get(ciDTO.getProductId());
+                if (productDTO != null) {
                     ciDTO.enrichWithProductInfo(productDTO);
-                }  catch (AppException e) {
-                    log.error("Lỗi khi lấy thông tin sản phẩm {}: {}", ciDTO.getProductId(), e.getMessage());
+                } else {
+                    log.error("Lỗi khi lấy thông tin sản phẩm {}", ciDTO.getProductId());
                 }
             }
             return new ResponseEntity<>(cartDTO, HttpStatus.OK);
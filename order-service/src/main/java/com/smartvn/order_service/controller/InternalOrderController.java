@@ -1,8 +1,6 @@
 package com.smartvn.order_service.controller;
 
 
-import com.smartvn.order_service.client.ProductServiceClient;
-import com.smartvn.order_service.client.UserServiceClient;
 import com.smartvn.order_service.dto.admin.OrderAdminViewDTO;
 import com.smartvn.order_service.dto.admin.OrderItemAdminDTO;
 import com.smartvn.order_service.dto.admin.OrderStatsDTO;
@@ -18,8 +16,7 @@ import com.smartvn.order_service.model.Order;
 import com.smartvn.order_service.model.OrderItem;
 import com.smartvn.order_service.repository.OrderRepository;
 import com.smartvn.order_service.service.OrderService;
-import feign.FeignException;
-import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import com.smartvn.order_service.service.OrderAdminEnrichmentService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -34,6 +31,7 @@ import org.springframework.web.bind.annotation.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -43,8 +41,7 @@ import java.util.stream.Collectors;
 public class InternalOrderController {
     private final OrderRepository  orderRepository;
     private final OrderService  orderService;
-    private final UserServiceClient userServiceClient;
-    private final ProductServiceClient  productServiceClient;
+    private final OrderAdminEnrichmentService orderAdminEnrichment;
 
     @GetMapping("/users/{userId}/products/{productId}/purchased")
     public ResponseEntity<Boolean> hasUserPurchasedProduct(@PathVariable Long userId, @PathVariable Long productId) {
@@ -72,12 +69,18 @@ public class InternalOrderController {
         Page<Order> orders = orderService.searchOrdersForAdmin(
                 search, status, paymentStatus, startDate, endDate, pageable);
 
-        Page<OrderAdminViewDTO> dtos = orders.map(this::convertToAdminDTO);
+        // ✅ user / địa chỉ / product của cả trang: 3 request batch song song
+        OrderAdminEnrichmentService.Lookups lookups = orderAdminEnrichment.load(orders.getContent());
+        Page<OrderAdminViewDTO> dtos = orders.map(order -> convertToAdminDTO(order, lookups));
 
         return ResponseEntity.ok(ApiResponse.success(dtos, "Orders retrieved", null));
     }
 
     private OrderAdminViewDTO convertToAdminDTO(Order order) {
+        return convertToAdminDTO(order, orderAdminEnrichment.load(List.of(order)));
+    }
+
+    private OrderAdminViewDTO convertToAdminDTO(Order order, OrderAdminEnrichmentService.Lookups lookups) {
         OrderAdminViewDTO dto = new OrderAdminViewDTO();
         dto.setId(order.getId());
         dto.setUserId(order.getUserId());
@@ -93,23 +96,34 @@ public class InternalOrderController {
         dto.setDeliveryDate(order.getDeliveryDate());
         dto.setShippingAddressId(order.getShippingAddressId());
 
-        // ✅ FETCH user info (with circuit breaker fallback)
-        enrichWithUserInfo(dto, order.getUserId());
+        // ✅ User info (đã fetch batch)
+        UserDTO user = lookups.users().get(order.getUserId());
+        if (user != null) {
+            dto.setUserName(user.getFirstName() + " " + user.getLastName());
+        } else {
+            log.warn("Failed to fetch user: {}", order.getUserId());
+            dto.setUserName("Unknown User");
+        }
 
-        // ✅ FETCH address info (with fallback)
-        enrichWithAddressInfo(dto, order.getShippingAddressId());
+        // ✅ Địa chỉ: snapshot lúc đặt hàng, đơn cũ lấy từ batch
+        if (order.getShippingAddressText() != null) {
+            dto.setShippingAddressDetails(order.getShippingAddressText());
+        } else {
+            AddressDTO address = lookups.addresses().get(order.getShippingAddressId());
+            dto.setShippingAddressDetails(address != null ? address.getFullAddress() : "Address not available");
+        }
 
-        // ✅ MAP order items (batch enrich sau)
+        // ✅ MAP order items
         if (order.getOrderItems() != null) {
             dto.setOrderItems(order.getOrderItems().stream()
-                    .map(this::convertToOrderItemAdminDTO)
+                    .map(item -> convertToOrderItemAdminDTO(item, lookups.products()))
                     .collect(Collectors.toList()));
         }
 
         return dto;
     }
 
-    private OrderItemAdminDTO convertToOrderItemAdminDTO(OrderItem item) {
+    private OrderItemAdminDTO convertToOrderItemAdminDTO(OrderItem item, Map<Long, ProductDTO> products) {
         OrderItemAdminDTO dto = new OrderItemAdminDTO();
         dto.setId(item.getId());
         dto.setProductId(item.getProductId());
@@ -118,12 +132,14 @@ public class InternalOrderController {
         dto.setPrice(item.getPrice());
         dto.setDiscountedPrice(item.getDiscountedPrice());
 
-        // ✅ Lấy tên product
-        try {
-            ProductDTO product = productServiceClient.getProductById(item.getProductId());
+        // ✅ Tên product: snapshot lúc đặt hàng, đơn cũ lấy từ batch
+        ProductDTO product = products.get(item.getProductId());
+        if (item.getProductTitle() != null) {
+            dto.setProductTitle(item.getProductTitle());
+        } else if (product != null) {
             dto.setProductTitle(product.getTitle());
-        } catch (Exception e) {
-            log.warn("Failed to fetch product: {}", e.getMessage());
+        } else {
+            log.warn("Failed to fetch product: {}", item.getProductId());
         }
 
         return dto;
@@ -175,40 +191,6 @@ public class InternalOrderController {
     }
 
 
-    @CircuitBreaker(name = "userService", fallbackMethod = "userInfoFallback")
-    private void enrichWithUserInfo(OrderAdminViewDTO dto, Long userId) {
-        try {
-            UserDTO user = userServiceClient.getUserById(userId);
-            dto.setUserName(user.getFirstName() + " " + user.getLastName());
-        } catch (FeignException e) {
-            log.warn("Failed to fetch user {}: {}", userId, e.getMessage());
-            dto.setUserEmail("Unknown");
-            dto.setUserName("Unknown User");
-        }
-    }
-
-    private void userInfoFallback(OrderAdminViewDTO dto, Long userId, Throwable t) {
-        log.error("User service unavailable for userId {}", userId);
-        dto.setUserEmail("Service Unavailable");
-        dto.setUserName("N/A");
-    }
-
-    @CircuitBreaker(name = "userService", fallbackMethod = "addressInfoFallback")
-    private void enrichWithAddressInfo(OrderAdminViewDTO dto, Long addressId) {
-        try {
-            AddressDTO address = userServiceClient.getAddressById(addressId);
-            dto.setShippingAddressDetails(address.getFullAddress());
-        } catch (FeignException e) {
-            log.warn("Failed to fetch address {}: {}", addressId, e.getMessage());
-            dto.setShippingAddressDetails("Address not available");
-        }
-    }
-
-    private void addressInfoFallback(OrderAdminViewDTO dto, Long addressId, Throwable t) {
-        log.error("User service unavailable for addressId {}", addressId);
-        dto.setShippingAddressDetails("N/A");
-    }
-
     @GetMapping("/export/interactions")
     public ResponseEntity<List<InteractionExportDTO>> exportOrderInteractions() {
         // Lấy tất cả orders đã DELIVERED
@@ -1,6 +1,5 @@
 package com.smartvn.order_service.controller;
 
-import com.smartvn.order_service.client.ProductServiceClient;
 import com.smartvn.order_service.client.UserServiceClient;
 import com.smartvn.order_service.dto.cart.CreateOrderRequest;
 import com.smartvn.order_service.dto.order.OrderDTO;
@@ -11,7 +10,9 @@ import com.smartvn.order_service.enums.OrderStatus;
 import com.smartvn.order_service.exceptions.AppException;
 import com.smartvn.order_service.model.Order;
 import com.smartvn.order_service.dto.response.ApiResponse;
+import com.smartvn.order_service.dto.response.CursorSlice;
 import com.smartvn.order_service.service.OrderService;
+import com.smartvn.order_service.service.ProductInfoService;
 
 import com.smartvn.order_service.service.UserService;
 import lombok.RequiredArgsConstructor;
@@ -29,7 +30,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @RestController
 @RequiredArgsConstructor
@@ -38,7 +38,7 @@ public class OrderController {
     private final OrderService orderService;
     private final UserService userService;
     private final UserServiceClient  userServiceClient;
-    private final ProductServiceClient  productServiceClient;
+    private final ProductInfoService productInfoService;
 
     private static final Logger log = LoggerFactory.getLogger(OrderController.class);
 
@@ -50,7 +50,9 @@ public class OrderController {
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
             LocalDate startDate,  // ✅ Từ ngày
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
-            LocalDate endDate     // ✅ Đến ngày
+            LocalDate endDate,    // ✅ Đến ngày
+            @RequestParam(required = false) String cursor,          // ✅ nextCursor của trang trước
+            @RequestParam(defaultValue = "20") int size
     ) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication == null) {
@@ -62,23 +64,19 @@ public class OrderController {
             Long userId = userService.getUserIdFromJwt(jwt);
             userService.validateUser(userId);
 
-            // ✅ GỌI method mới với filters
-            List<Order> orders = orderService.searchUserOrders(
-                    userId, orderId, status, startDate, endDate
-            );
-
-            List<OrderDTO> orderDTOS = orders.stream()
-                    .map(OrderDTO::new)
-                    .collect(Collectors.toList());
+            // ✅ Phân trang cursor: mỗi request chỉ 1 trang, kích thước / độ trễ không tăng theo số đơn
+            CursorSlice<OrderDTO> slice = orderService.scrollUserOrders(
+                    userId, orderId, status, startDate, endDate, cursor, size
+            ).map(OrderDTO::new);
+            List<OrderDTO> orderDTOS = slice.getContent();
 
-            for (OrderDTO dto : orderDTOS) {
-                enrichOrderDTO(dto);
-            }
+            enrichOrderDTOs(orderDTOS);
 
             Map<String, Object> response = new HashMap<>();
             response.put("orders", orderDTOS);
             response.put("message", "Successfully retrieved order history");
-            response.put("total", orderDTOS.size());
+            response.put("hasNext", slice.isHasNext());
+            response.put("nextCursor", slice.getNextCursor());
 
             return ResponseEntity.ok(response);
 
@@ -120,7 +118,8 @@ public class OrderController {
             Order order = orderService.placeOrder(
                     userId,
                     request.getAddressId(),
-                    request.getCartItemIds()
+                    request.getCartItemIds(),
+                    request.getPaymentMethod()
             );
 
             if(order==null) {
@@ -197,22 +196,52 @@ public class OrderController {
     }
 
     private void enrichOrderDTO(OrderDTO orderDTO) {
-        // Lấy thông tin address
-        try {
-            AddressDTO address = userServiceClient.getAddressById(orderDTO.getShippingAddressId());
-            orderDTO.setShippingAddress(address);
-        } catch (Exception e) {
-            log.warn("Failed to fetch address info: {}", e.getMessage());
-        }
+        enrichOrderDTOs(List.of(orderDTO));
+    }
+
+    /**
+     * ✅ Đơn mới đã có snapshot product + địa chỉ (lưu lúc đặt hàng) → không gọi service khác.
+     * Chỉ đơn cũ (chưa có snapshot) mới enrich: gom productId → 1 request batch tới product-service;
+     * address trùng nhau giữa các order chỉ lấy 1 lần
+     */
+    private void enrichOrderDTOs(List<OrderDTO> orderDTOs) {
+        List<Long> legacyProductIds = orderDTOs.stream()
+                .flatMap(o -> o.getOrderItems().stream())
+                .filter(item -> !item.hasProductSnapshot())
+                .map(OrderItemDTO::getProductId)
+                .toList();
+        Map<Long, ProductDTO> products = legacyProductIds.isEmpty()
+                ? Map.of()
+                : productInfoService.getProductsByIds(legacyProductIds);
+
+        Map<Long, AddressDTO> addresses = new HashMap<>();
+        for (OrderDTO orderDTO : orderDTOs) {
+            // Lấy thông tin address (đơn cũ)
+            Long addressId = orderDTO.getShippingAddressId();
+            if (addressId != null && orderDTO.getShippingAddressText() == null) {
+                AddressDTO address = addresses.computeIfAbsent(addressId, id -> {
+                    try {
+                        return userServiceClient.getAddressById(id);
+                    } catch (Exception e) {
+                        log.warn("Failed to fetch address info: {}", e.getMessage());
+                        return null;
+                    }
+                });
+                orderDTO.setShippingAddress(address);
+            }
 
-        // Lấy thông tin product cho từng OrderItem
-        for (OrderItemDTO item : orderDTO.getOrderItems()) {
-            try {
-                ProductDTO product = productServiceClient.getProductById(item.getProductId());
-                item.enrichWithProductInfo(product);
-            } catch (Exception e) {
-                log.warn("Failed to fetch product {} info: {}", item.getProductId(), e.getMessage());
+            // Gắn thông tin product cho từng OrderItem
+            for (OrderItemDTO item : orderDTO.getOrderItems()) {
+                if (item.hasProductSnapshot()) {
+                    continue;
+                }
+                ProductDTO product = products.get(item.getProductId());
+                if (product != null) {
+                    item.enrichWithProductInfo(product);
+                } else {
+                    log.warn("Failed to fetch product {} info", item.getProductId());
+                }
             }
         }
     }
-}
\ No newline at end of file
+}
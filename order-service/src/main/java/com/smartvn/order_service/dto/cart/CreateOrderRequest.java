@@ -9,4 +9,10 @@ import java.util.List;
 public class CreateOrderRequest {
     private Long addressId;
     private List<Long> cartItemIds; // ✅ Danh sách ID các item muốn checkout
+
+    /**
+     * COD (mặc định): trừ kho ngay khi đặt.
+     * VNPAY: chỉ giữ hàng có thời hạn, trừ kho khi thanh toán thành công.
+     */
+    private PaymentMethod paymentMethod;
 }
\ No newline at end of file
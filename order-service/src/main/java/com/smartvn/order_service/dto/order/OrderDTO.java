@@ -27,6 +27,7 @@ public class OrderDTO {
     private Integer originalPrice;
     private Long shippingAddressId;
     private AddressDTO shippingAddress;
+    private String shippingAddressText;
     private PaymentStatus paymentStatus;
     private PaymentMethod paymentMethod;
     private List<OrderItemDTO> orderItems;
@@ -61,8 +62,22 @@ public class OrderDTO {
             this.orderItems = new ArrayList<>();
         }
 
-        // shippingAddress sẽ được enrich sau bởi service
-        this.shippingAddress = null;
+        // ✅ Địa chỉ snapshot lúc đặt; đơn cũ (chưa có snapshot) → shippingAddress được enrich sau bởi service
+        this.shippingAddressText = order.getShippingAddressText();
+        if (order.getShippingAddressText() != null) {
+            AddressDTO address = new AddressDTO();
+            address.setId(order.getShippingAddressId());
+            address.setFullName(order.getShippingRecipientName());
+            address.setPhoneNumber(order.getShippingPhone());
+            address.setProvince(order.getShippingProvince());
+            address.setWard(order.getShippingWard());
+            address.setStreet(order.getShippingStreet());
+            address.setNote(order.getShippingNote());
+            address.setUserId(order.getUserId());
+            this.shippingAddress = address;
+        } else {
+            this.shippingAddress = null;
+        }
     }
 
     /**
@@ -17,7 +17,9 @@ public class OrderItemDTO {
     private Long id;
     private Long productId;
     private String productTitle;
+    private String brand;
     private String imageUrl;
+    private String variantLabel;
     private Integer quantity;
     private String size;
     private BigDecimal price;
@@ -37,9 +39,15 @@ public class OrderItemDTO {
         this.discountedPrice = orderItem.getDiscountedPrice();
         this.discountPercent = orderItem.getDiscountPercent();
 
-        // productTitle và imageUrl sẽ được set sau
-        this.productTitle = null;
-        this.imageUrl = null;
+        // ✅ Snapshot lúc đặt hàng; đơn cũ chưa có snapshot → enrich sau (hasProductSnapshot)
+        this.productTitle = orderItem.getProductTitle();
+        this.brand = orderItem.getProductBrand();
+        this.imageUrl = orderItem.getThumbnailUrl();
+        this.variantLabel = orderItem.getVariantLabel();
+    }
+
+    public boolean hasProductSnapshot() {
+        return productTitle != null;
     }
 
     /**
@@ -48,6 +56,7 @@ public class OrderItemDTO {
     public void enrichWithProductInfo(ProductDTO product) {
         if (product != null) {
             this.productTitle = product.getTitle();
+            this.brand = product.getBrand();
             this.imageUrl = product.getFirstImageUrl();
         } else {
             log.info("product is null");
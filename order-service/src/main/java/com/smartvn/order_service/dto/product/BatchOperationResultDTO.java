@@ -0,0 +1,19 @@
+package com.smartvn.order_service.dto.product;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchOperationResultDTO {
+    private String operationKey;
+
+    /**
+     * false = đã áp dụng từ lần gọi trước
+     */
+    private Boolean applied;
+
+    private Integer lines;
+}
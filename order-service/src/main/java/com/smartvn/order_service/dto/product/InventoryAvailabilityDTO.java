@@ -0,0 +1,24 @@
+package com.smartvn.order_service.dto.product;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Tồn kho + giá hiện tại của một dòng (productId, size) từ product-service
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryAvailabilityDTO {
+    private Long productId;
+    private String size;
+    private Integer requested;
+    private Integer available;
+    private Boolean found;
+    private Boolean sufficient;
+    private BigDecimal price;
+    private BigDecimal discountedPrice;
+}
@@ -0,0 +1,18 @@
+package com.smartvn.order_service.dto.product;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Thao tác kho theo lô, idempotent theo operationKey (VD: "order-123:sold")
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryBatchOperationRequest {
+    private String operationKey;
+    private List<InventoryCheckRequest> items;
+}
@@ -0,0 +1,23 @@
+package com.smartvn.order_service.dto.product;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductChangeDTO {
+    private Long offset;
+    private Long productId;
+
+    /**
+     * CREATED | DETAILS | PRICE | STOCK | STATUS | DELETED
+     */
+    private List<String> changeTypes;
+
+    private LocalDateTime changedAt;
+}
@@ -0,0 +1,20 @@
+package com.smartvn.order_service.dto.product;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductChangeFeedDTO {
+    private List<ProductChangeDTO> changes;
+    private Long nextOffset;
+
+    /**
+     * true = đã lỡ event (quá retention bên product-service)
+     */
+    private Boolean reset;
+}
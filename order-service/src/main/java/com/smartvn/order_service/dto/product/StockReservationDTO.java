@@ -0,0 +1,23 @@
+package com.smartvn.order_service.dto.product;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReservationDTO {
+    private String reference;
+
+    /**
+     * ACTIVE | COMMITTED | RELEASED | EXPIRED | NONE
+     */
+    private String status;
+
+    private LocalDateTime expiresAt;
+    private List<InventoryCheckRequest> items;
+}
@@ -0,0 +1,19 @@
+package com.smartvn.order_service.dto.product;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Request giữ hàng có thời hạn (product-service)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReservationRequest {
+    private String reference;
+    private Long ttlSeconds;
+    private List<InventoryCheckRequest> items;
+}
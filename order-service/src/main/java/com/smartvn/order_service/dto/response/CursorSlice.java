@@ -0,0 +1,31 @@
+package com.smartvn.order_service.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Một "lát" kết quả của phân trang cursor: không có totalElements/totalPages.
+ * Client gửi nextCursor ở request sau để lấy lát tiếp theo (null nếu đã hết).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorSlice<T> {
+    private List<T> content;
+    private int size;
+    private boolean hasNext;
+    private String nextCursor;
+
+    public <R> CursorSlice<R> map(Function<T, R> mapper) {
+        return new CursorSlice<>(
+                content.stream().map(mapper).toList(),
+                size,
+                hasNext,
+                nextCursor
+        );
+    }
+}
@@ -0,0 +1,108 @@
+package com.smartvn.order_service.model;
+
+import com.smartvn.order_service.enums.PaymentMethod;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Nhật ký saga đặt hàng (xem CheckoutSagaService): bước hiện tại, số lần thử, lỗi gần nhất.
+ * Mỗi bước commit trạng thái trước khi sang bước sau → service chết giữa chừng thì scheduler chạy tiếp
+ * từ bước đã ghi (các lời gọi product-service đều idempotent theo reservation reference).
+ */
+@Entity
+@Table(name = "checkout_sagas",
+        indexes = {
+                @Index(name = "idx_saga_status_next_attempt", columnList = "status, next_attempt_at")
+        },
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_saga_order", columnNames = {"order_id"})
+        }
+)
+@Getter
+@Setter
+@NoArgsConstructor
+public class CheckoutSaga {
+
+    public enum Step {
+        /** Giữ hàng bên product-service (reference = order-{orderId}) */
+        RESERVE_STOCK,
+        /** COD: chuyển phần giữ thành đã trừ ngay */
+        COMMIT_STOCK,
+        /** Xoá các item đã đặt khỏi giỏ */
+        CLEAR_CART,
+        /** Bù trừ: trả lại hàng đã giữ / đã trừ */
+        RELEASE_STOCK,
+        /** Bù trừ: xoá đơn chưa hoàn tất */
+        DELETE_ORDER,
+        DONE
+    }
+
+    public enum Status {
+        RUNNING,
+        COMPENSATING,
+        COMPLETED,
+        COMPENSATED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "payment_method", length = 50, nullable = false)
+    private PaymentMethod paymentMethod;
+
+    /**
+     * ID các cart item được đặt, phân tách bằng dấu phẩy
+     */
+    @Column(name = "cart_item_ids", nullable = false, length = 2000)
+    private String cartItemIds;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 30)
+    private Step step;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 30)
+    private Status status;
+
+    /**
+     * Số lần thử liên tiếp của bước hiện tại
+     */
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    /**
+     * Scheduler chỉ nhận saga có nextAttemptAt ≤ now; bước đang chạy đẩy mốc này lên (lease)
+     */
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    /**
+     * true = product-service từ chối (VD: hết hàng), không phải lỗi tạm thời
+     */
+    @Column(nullable = false)
+    private Boolean rejected = false;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Version
+    private Long version;
+}
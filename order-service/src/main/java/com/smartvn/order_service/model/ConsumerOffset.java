@@ -0,0 +1,30 @@
+package com.smartvn.order_service.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Vị trí đã đọc tới của một consumer trên change feed của service khác,
+ * lưu trong cùng transaction với các thay đổi đã áp dụng → restart thì đọc tiếp từ đây.
+ */
+@Entity
+@Table(name = "consumer_offsets")
+@Getter
+@Setter
+@NoArgsConstructor
+public class ConsumerOffset {
+
+    @Id
+    @Column(name = "consumer_name", length = 64)
+    private String consumerName;
+
+    @Column(name = "offset_value", nullable = false)
+    private Long offsetValue = 0L;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -19,9 +19,14 @@ import java.util.List;
 @Entity
 @Table(name = "orders",
         indexes = {
-                @Index(name = "idx_user", columnList = "user_id"),
+                // Lịch sử đơn của user: keyset (created_at, id), id có sẵn trong index InnoDB
+                @Index(name = "idx_user_created", columnList = "user_id, created_at"),
                 @Index(name = "idx_order_status", columnList = "order_status"),
-                @Index(name = "idx_payment_status", columnList = "payment_status")
+                @Index(name = "idx_payment_status", columnList = "payment_status"),
+                // Job huỷ đơn VNPAY chưa thanh toán quá hạn giữ hàng
+                @Index(name = "idx_unpaid_expiry", columnList = "payment_method, order_status, created_at"),
+                // Job gửi lại số lượng đã bán cho đơn đã giao
+                @Index(name = "idx_quantity_sold_retry", columnList = "quantity_sold_retry_at")
         }
 )
 @Getter
@@ -47,6 +52,10 @@ public class Order {
     @Column(name = "delivery_date")
     private LocalDateTime deliveryDate;
 
+    // ✅ Khác null = chưa cộng được số lượng đã bán sang product-service (key "order-N:sold"), thử lại từ thời điểm này
+    @Column(name = "quantity_sold_retry_at")
+    private LocalDateTime quantitySoldRetryAt;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "payment_method", length = 50)
     private PaymentMethod paymentMethod;
@@ -66,6 +75,28 @@ public class Order {
     @Column(name = "shipping_address_id", nullable = false)
     private Long shippingAddressId;
 
+    // ✅ Snapshot địa chỉ giao hàng lúc đặt (user sửa / xoá địa chỉ sau đó không ảnh hưởng đơn)
+    @Column(name = "shipping_recipient_name", length = 100)
+    private String shippingRecipientName;
+
+    @Column(name = "shipping_phone", length = 20)
+    private String shippingPhone;
+
+    @Column(name = "shipping_address_text", length = 500)
+    private String shippingAddressText;
+
+    @Column(name = "shipping_province", length = 100)
+    private String shippingProvince;
+
+    @Column(name = "shipping_ward", length = 50)
+    private String shippingWard;
+
+    @Column(name = "shipping_street", length = 50)
+    private String shippingStreet;
+
+    @Column(name = "shipping_note", length = 100)
+    private String shippingNote;
+
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<OrderItem> orderItems = new ArrayList<>();
 
@@ -47,6 +47,20 @@ public class OrderItem {
     @Column(name = "product_id", nullable = false)
     private Long productId;
 
+    // ✅ Snapshot thông tin product lúc đặt hàng: lịch sử đơn không gọi product-service,
+    // và vẫn đúng khi product bị sửa / xoá sau này. Null = đơn cũ (trước khi có snapshot)
+    @Column(name = "product_title")
+    private String productTitle;
+
+    @Column(name = "product_brand", length = 100)
+    private String productBrand;
+
+    @Column(name = "thumbnail_url", length = 500)
+    private String thumbnailUrl;
+
+    @Column(name = "variant_label", length = 150)
+    private String variantLabel;
+
     // Helper method để tính discount percent
     @Transient
     public Integer getDiscountPercent() {
@@ -0,0 +1,43 @@
+package com.smartvn.order_service.pagination;
+
+import com.smartvn.order_service.exceptions.AppException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Cursor "mờ" cho lịch sử đơn hàng (sort cố định createdAt DESC, id DESC):
+ * lưu createdAt và id của đơn cuối trang trước. Client chỉ cần gửi lại chuỗi nextCursor.
+ */
+@Getter
+@AllArgsConstructor
+public class OrderHistoryCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private final LocalDateTime lastCreatedAt;
+    private final Long lastId;
+
+    public String encode() {
+        String raw = lastId + SEPARATOR + lastCreatedAt;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static OrderHistoryCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            return new OrderHistoryCursor(LocalDateTime.parse(parts[1]), Long.valueOf(parts[0]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new AppException("Invalid cursor", HttpStatus.BAD_REQUEST);
+        }
+    }
+}
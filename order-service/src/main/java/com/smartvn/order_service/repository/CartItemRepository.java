@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -44,6 +45,9 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     @Query("SELECT ci FROM CartItem ci WHERE ci.productId = :productId")
     List<CartItem> findByProductId(@Param("productId") Long productId);
 
+    @Query("SELECT ci FROM CartItem ci JOIN FETCH ci.cart WHERE ci.productId IN :productIds")
+    List<CartItem> findByProductIdIn(@Param("productIds") Collection<Long> productIds);
+
     /**
      * Xóa tất cả cart items của một cart
      */
@@ -51,6 +55,13 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     @Query("DELETE FROM CartItem ci WHERE ci.cart.id = :cartId")
     void deleteByCartId(@Param("cartId") Long cartId);
 
+    /**
+     * Xoá các item đã đặt hàng (item đã bị xoá trước đó thì bỏ qua)
+     */
+    @Modifying
+    @Query("DELETE FROM CartItem ci WHERE ci.id IN :itemIds AND ci.cart.id = :cartId")
+    int deleteByIdsAndCartId(@Param("itemIds") Collection<Long> itemIds, @Param("cartId") Long cartId);
+
     /**
      * Xóa cart items theo userId (thông qua cart)
      */
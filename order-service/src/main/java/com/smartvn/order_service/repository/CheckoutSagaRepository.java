@@ -0,0 +1,25 @@
+package com.smartvn.order_service.repository;
+
+import com.smartvn.order_service.model.CheckoutSaga;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface CheckoutSagaRepository extends JpaRepository<CheckoutSaga, Long> {
+
+    /**
+     * Saga chưa kết thúc đã tới lượt thử lại (hoặc lease của lần chạy trước đã hết, VD: service chết)
+     */
+    @Query("SELECT s.id FROM CheckoutSaga s WHERE s.status IN :statuses AND s.nextAttemptAt <= :now " +
+            "ORDER BY s.nextAttemptAt")
+    List<Long> findDueIds(@Param("statuses") Collection<CheckoutSaga.Status> statuses,
+                          @Param("now") LocalDateTime now,
+                          Pageable pageable);
+}
@@ -0,0 +1,9 @@
+package com.smartvn.order_service.repository;
+
+import com.smartvn.order_service.model.ConsumerOffset;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ConsumerOffsetRepository extends JpaRepository<ConsumerOffset, String> {
+}
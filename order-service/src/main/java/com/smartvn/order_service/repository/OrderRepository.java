@@ -1,17 +1,21 @@
 package com.smartvn.order_service.repository;
 
 import com.smartvn.order_service.enums.OrderStatus;
+import com.smartvn.order_service.enums.PaymentMethod;
 import com.smartvn.order_service.enums.PaymentStatus;
 import com.smartvn.order_service.model.Order;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -50,6 +54,37 @@ public interface OrderRepository extends JpaRepository<Order, Long>, JpaSpecific
      */
     List<Order> findByPaymentStatus(PaymentStatus paymentStatus);
 
+    /**
+     * Id các đơn chưa thanh toán quá hạn giữ hàng (dùng cho job huỷ đơn tự động),
+     * phân trang keyset theo id: đơn lỗi ở trang trước không chặn các trang sau
+     */
+    @Query("SELECT o.id FROM Order o WHERE o.paymentMethod = :paymentMethod " +
+            "AND o.orderStatus = :orderStatus AND o.paymentStatus IN :paymentStatuses " +
+            "AND o.createdAt < :createdBefore AND o.id > :afterId ORDER BY o.id")
+    List<Long> findUnpaidOrderIdsAfter(
+            @Param("paymentMethod") PaymentMethod paymentMethod,
+            @Param("orderStatus") OrderStatus orderStatus,
+            @Param("paymentStatuses") Collection<PaymentStatus> paymentStatuses,
+            @Param("createdBefore") LocalDateTime createdBefore,
+            @Param("afterId") Long afterId,
+            Pageable limit);
+
+    /**
+     * Huỷ 1 đơn nếu vẫn chưa thanh toán (transaction ngắn riêng; callback thanh toán tới trước → 0 dòng)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Order o SET o.orderStatus = :cancelled, o.paymentStatus = :paymentCancelled, " +
+            "o.updatedAt = :now WHERE o.id = :orderId AND o.orderStatus = :orderStatus " +
+            "AND o.paymentStatus IN :paymentStatuses")
+    int cancelIfUnpaid(
+            @Param("orderId") Long orderId,
+            @Param("orderStatus") OrderStatus orderStatus,
+            @Param("paymentStatuses") Collection<PaymentStatus> paymentStatuses,
+            @Param("cancelled") OrderStatus cancelled,
+            @Param("paymentCancelled") PaymentStatus paymentCancelled,
+            @Param("now") LocalDateTime now);
+
     // ============================================
     // TÌM KIẾM THEO THỜI GIAN
     // ============================================
@@ -123,6 +158,44 @@ public interface OrderRepository extends JpaRepository<Order, Long>, JpaSpecific
             Pageable pageable
     );
 
+    /**
+     * ✅ Lịch sử đơn của user, phân trang keyset (createdAt DESC, id DESC) trên index (user_id, created_at).
+     * Chỉ lấy id (không OFFSET, không COUNT); pageable chỉ dùng làm LIMIT.
+     */
+    @Query("SELECT o.id FROM Order o WHERE o.userId = :userId " +
+            "AND (:orderId IS NULL OR o.id = :orderId) " +
+            "AND (:status IS NULL OR o.orderStatus = :status) " +
+            "AND (:startDate IS NULL OR o.createdAt >= :startDate) " +
+            "AND (:endDate IS NULL OR o.createdAt <= :endDate) " +
+            "AND (:afterCreatedAt IS NULL OR o.createdAt < :afterCreatedAt " +
+            "     OR (o.createdAt = :afterCreatedAt AND o.id < :afterId)) " +
+            "ORDER BY o.createdAt DESC, o.id DESC")
+    List<Long> findUserOrderIdsAfter(
+            @Param("userId") Long userId,
+            @Param("orderId") Long orderId,
+            @Param("status") OrderStatus status,
+            @Param("startDate") LocalDateTime startDate,
+            @Param("endDate") LocalDateTime endDate,
+            @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+            @Param("afterId") Long afterId,
+            Pageable limit
+    );
+
+    /**
+     * Nạp các đơn của 1 trang kèm items + payment trong 1 query (tránh N+1 khi map DTO)
+     */
+    @Query("SELECT DISTINCT o FROM Order o " +
+            "LEFT JOIN FETCH o.orderItems " +
+            "LEFT JOIN FETCH o.paymentDetail " +
+            "WHERE o.id IN :ids")
+    List<Order> findAllWithItemsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Đơn đã giao chưa cộng được số lượng đã bán, đến hạn thử lại (cũ nhất trước)
+     */
+    @Query("SELECT o FROM Order o WHERE o.quantitySoldRetryAt <= :now ORDER BY o.quantitySoldRetryAt")
+    List<Order> findQuantitySoldDue(@Param("now") LocalDateTime now, Pageable limit);
+
     // ============================================
     // THỐNG KÊ
     // ============================================
@@ -0,0 +1,153 @@
+package com.smartvn.order_service.service;
+
+import com.smartvn.order_service.client.ProductServiceClient;
+import com.smartvn.order_service.dto.product.InventoryItemDTO;
+import com.smartvn.order_service.dto.product.ProductChangeDTO;
+import com.smartvn.order_service.dto.product.ProductChangeFeedDTO;
+import com.smartvn.order_service.model.Cart;
+import com.smartvn.order_service.model.CartItem;
+import com.smartvn.order_service.model.ConsumerOffset;
+import com.smartvn.order_service.repository.CartItemRepository;
+import com.smartvn.order_service.repository.CartRepository;
+import com.smartvn.order_service.repository.ConsumerOffsetRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * ✅ Đồng bộ giá trong giỏ hàng theo change feed của product-service.
+ * Cart item lưu bản copy price/discountedPrice lúc thêm vào giỏ; khi product có event PRICE
+ * thì cập nhật lại giá các item của product đó và tính lại tổng giỏ.
+ * Offset đã đọc lưu trong consumer_offsets cùng transaction với cập nhật → restart không xử lý lại / bỏ sót.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CartPriceSyncService {
+
+    private static final String CONSUMER_NAME = "cart-price-sync";
+    private static final String PRICE_CHANGE = "PRICE";
+
+    private final ProductServiceClient productServiceClient;
+    private final ConsumerOffsetRepository offsetRepository;
+    private final CartItemRepository cartItemRepository;
+    private final CartRepository cartRepository;
+    private final CartService cartService;
+
+    @Value("${cart.price-sync.batch-size:200}")
+    private int batchSize;
+
+    @Scheduled(
+            fixedDelayString = "${cart.price-sync.interval-ms:5000}",
+            initialDelayString = "${cart.price-sync.interval-ms:5000}"
+    )
+    @Transactional
+    public void syncPrices() {
+        ConsumerOffset offset = offsetRepository.findById(CONSUMER_NAME).orElseGet(() -> {
+            ConsumerOffset created = new ConsumerOffset();
+            created.setConsumerName(CONSUMER_NAME);
+            return created;
+        });
+
+        ProductChangeFeedDTO feed = productServiceClient.getProductChanges(offset.getOffsetValue(), batchSize, 0);
+        if (feed == null || feed.getChanges() == null) {
+            return;
+        }
+        if (Boolean.TRUE.equals(feed.getReset())) {
+            log.warn("⚠️ Product change feed skipped events after offset {}, cart prices may be stale until next change",
+                    offset.getOffsetValue());
+        }
+
+        Set<Long> repricedProducts = new LinkedHashSet<>();
+        for (ProductChangeDTO change : feed.getChanges()) {
+            if (change.getChangeTypes() != null && change.getChangeTypes().contains(PRICE_CHANGE)) {
+                repricedProducts.add(change.getProductId());
+            }
+        }
+        if (!repricedProducts.isEmpty() && !applyCurrentPrices(repricedProducts)) {
+            // Không lưu offset → lượt sau đọc lại đúng các event này, không mất event PRICE
+            return;
+        }
+
+        if (!Objects.equals(feed.getNextOffset(), offset.getOffsetValue())) {
+            offset.setOffsetValue(feed.getNextOffset());
+            offset.setUpdatedAt(LocalDateTime.now());
+            offsetRepository.save(offset);
+        }
+    }
+
+    /**
+     * @return false nếu product-service không trả lời (chưa sửa item nào) → caller giữ nguyên offset
+     */
+    private boolean applyCurrentPrices(Set<Long> productIds) {
+        List<CartItem> items = cartItemRepository.findByProductIdIn(productIds);
+        if (items.isEmpty()) {
+            return true;
+        }
+
+        // Lấy giá của mọi product trước khi sửa item: lỗi giữa chừng không để lại cập nhật dở
+        Map<Long, Map<String, InventoryItemDTO>> variantsByProduct = new HashMap<>();
+        for (CartItem item : items) {
+            if (!variantsByProduct.containsKey(item.getProductId())) {
+                Map<String, InventoryItemDTO> variants = loadVariants(item.getProductId());
+                if (variants == null) {
+                    log.warn("⚠️ Product Service unavailable, cart price sync will retry the same events");
+                    return false;
+                }
+                variantsByProduct.put(item.getProductId(), variants);
+            }
+        }
+
+        Map<Long, Cart> touchedCarts = new LinkedHashMap<>();
+        for (CartItem item : items) {
+            InventoryItemDTO variant = variantsByProduct.get(item.getProductId()).get(item.getSize());
+            if (variant == null || variant.getPrice() == null) {
+                continue; // variant đã bị xoá: checkout sẽ báo lỗi
+            }
+            BigDecimal discounted = variant.getDiscountedPrice() != null ? variant.getDiscountedPrice() : variant.getPrice();
+            if (variant.getPrice().compareTo(item.getPrice()) != 0
+                    || item.getDiscountedPrice() == null
+                    || discounted.compareTo(item.getDiscountedPrice()) != 0) {
+                item.setPrice(variant.getPrice());
+                item.setDiscountedPrice(discounted);
+                touchedCarts.put(item.getCart().getId(), item.getCart());
+            }
+        }
+
+        for (Cart cart : touchedCarts.values()) {
+            cartService.reCalculateCart(cart);
+            cartRepository.save(cart);
+        }
+        if (!touchedCarts.isEmpty()) {
+            log.info("💱 Updated prices in {} carts for {} changed products", touchedCarts.size(), productIds.size());
+        }
+        return true;
+    }
+
+    /**
+     * @return null nếu product-service không trả lời (fallback); map rỗng nếu product không còn variant nào
+     */
+    private Map<String, InventoryItemDTO> loadVariants(Long productId) {
+        List<InventoryItemDTO> inventories = productServiceClient.getProductInventory(productId);
+        if (inventories == null) {
+            return null;
+        }
+        Map<String, InventoryItemDTO> variants = new HashMap<>();
+        if (inventories.isEmpty()) {
+            // Product đã bị xoá: bỏ qua, checkout sẽ báo lỗi
+            log.warn("⚠️ No inventory for product {}, cart prices not updated", productId);
+            return variants;
+        }
+        for (InventoryItemDTO inventory : inventories) {
+            variants.put(inventory.getSize(), inventory);
+        }
+        return variants;
+    }
+}
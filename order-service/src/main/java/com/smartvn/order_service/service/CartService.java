@@ -4,8 +4,7 @@ import com.smartvn.order_service.client.ProductServiceClient;
 import com.smartvn.order_service.client.UserServiceClient;
 import com.smartvn.order_service.dto.cart.AddItemRequest;
 import com.smartvn.order_service.dto.product.InventoryCheckRequest;
-import com.smartvn.order_service.dto.product.InventoryItemDTO;
-import com.smartvn.order_service.dto.product.ProductDTO;
+import com.smartvn.order_service.dto.product.InventoryQuoteDTO;
 import com.smartvn.order_service.dto.user.UserDTO;
 import com.smartvn.order_service.exceptions.AppException;
 import com.smartvn.order_service.model.*;
@@ -68,53 +67,32 @@ public class CartService {
     @Transactional
     public CartItem addCartItem(Long userId, AddItemRequest req) { // ✅ SỬA: Thay đổi kiểu trả về từ Cart sang CartItem
         Cart cart = getOrCreateCart(userId);
-        ProductDTO dto = productServiceClient.getProductById(req.getProductId());
-        if(dto == null || !dto.getIsActive()) {
-            throw new AppException("Product not available", HttpStatus.BAD_REQUEST);
-        }
-
-        List<InventoryItemDTO> inventoryDTOS = productServiceClient.getProductInventory(req.getProductId());
-        InventoryItemDTO inventoryItem = inventoryDTOS.stream()
-                .filter(i -> i.getSize().equals(req.getSize()))
-                .findFirst()
-                .orElseThrow(() -> new AppException("Size not found", HttpStatus.NOT_FOUND));
 
         Optional<CartItem> existingItem = cartItemRepository
                 .findByCartIdAndProductIdAndSize(cart.getId(), req.getProductId(), req.getSize());
+        int newTotalQuantity = existingItem.map(CartItem::getQuantity).orElse(0) + req.getQuantity();
 
-        CartItem savedItem; // Biến để lưu CartItem sẽ được trả về
-
-        if(existingItem.isPresent()) {
-            CartItem ci = existingItem.get();
-            int newTotalQuantity = ci.getQuantity() + req.getQuantity();
-
-            InventoryCheckRequest recheckRequest = new InventoryCheckRequest(
-                    req.getProductId(),
-                    req.getSize(),
-                    newTotalQuantity
+        // ✅ 1 lần gọi product-service: trạng thái + giá + tồn kho cho tổng số lượng sau khi thêm
+        InventoryQuoteDTO quote = quote(req.getProductId(), req.getSize(), newTotalQuantity);
+        if (!Boolean.TRUE.equals(quote.getSufficient())) {
+            throw new AppException(
+                    "Không đủ hàng. Tồn kho hiện tại không đủ cho số lượng yêu cầu.",
+                    HttpStatus.BAD_REQUEST
             );
-
-            Boolean hasEnoughStock = productServiceClient.checkInventoryAvailability(recheckRequest);
-            if (!hasEnoughStock) {
-                throw new AppException(
-                        "Không đủ hàng. Tồn kho hiện tại không đủ cho số lượng yêu cầu.",
-                        HttpStatus.BAD_REQUEST
-                );
-            }
-
-            ci.setQuantity(newTotalQuantity);
-            savedItem = cartItemRepository.save(ci); // Gán item đã được cập nhật
-        } else {
-            CartItem ci = new CartItem();
-            ci.setCart(cart);
-            ci.setProductId(req.getProductId());
-            ci.setSize(req.getSize());
-            ci.setQuantity(req.getQuantity());
-            ci.setPrice(inventoryItem.getPrice());
-            ci.setDiscountedPrice(inventoryItem.getDiscountedPrice());
-            savedItem = cartItemRepository.save(ci); // Gán item mới được tạo
         }
 
+        CartItem ci = existingItem.orElseGet(() -> {
+            CartItem created = new CartItem();
+            created.setCart(cart);
+            created.setProductId(req.getProductId());
+            created.setSize(req.getSize());
+            return created;
+        });
+        ci.setQuantity(newTotalQuantity);
+        ci.setPrice(quote.getPrice());
+        ci.setDiscountedPrice(quote.getDiscountedPrice());
+        CartItem savedItem = cartItemRepository.save(ci);
+
         reCalculateCart(cart); // Vẫn tính toán lại toàn bộ giỏ hàng
         cartRepository.save(cart);
 
@@ -138,22 +116,37 @@ public class CartService {
             return cartRepository.save(cart);
         }
 
-        InventoryCheckRequest checkRequest = new InventoryCheckRequest(
-                item.getProductId(),
-                item.getSize(),
-                req.getQuantity()
-        );
-        Boolean hasStock = productServiceClient.checkInventoryAvailability(checkRequest);
-        if (!hasStock) {
+        InventoryQuoteDTO quote = quote(item.getProductId(), item.getSize(), req.getQuantity());
+        if (!Boolean.TRUE.equals(quote.getSufficient())) {
             throw new AppException("Insufficient stock", HttpStatus.BAD_REQUEST);
         }
 
         item.setQuantity(req.getQuantity());
+        item.setPrice(quote.getPrice());
+        item.setDiscountedPrice(quote.getDiscountedPrice());
         cartItemRepository.save(item);
         reCalculateCart(cart);
         return cartRepository.save(cart);
     }
 
+    /**
+     * Báo giá variant từ product-service; product ngừng bán / không có size → lỗi tương ứng
+     */
+    private InventoryQuoteDTO quote(Long productId, String size, int quantity) {
+        InventoryQuoteDTO quote = productServiceClient.quoteInventory(
+                new InventoryCheckRequest(productId, size, quantity));
+        if (quote == null) {
+            throw new AppException("Không thể kiểm tra tồn kho. Vui lòng thử lại.", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        if (!Boolean.TRUE.equals(quote.getProductFound()) || !Boolean.TRUE.equals(quote.getActive())) {
+            throw new AppException("Product not available", HttpStatus.BAD_REQUEST);
+        }
+        if (!Boolean.TRUE.equals(quote.getVariantFound())) {
+            throw new AppException("Size not found", HttpStatus.NOT_FOUND);
+        }
+        return quote;
+    }
+
 
     public void removeCartItem(Long userId, Long itemId) {
         Cart cart = getOrCreateCart(userId);
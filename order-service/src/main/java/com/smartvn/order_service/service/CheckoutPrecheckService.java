@@ -0,0 +1,224 @@
+package com.smartvn.order_service.service;
+
+import com.smartvn.order_service.client.ProductServiceClient;
+import com.smartvn.order_service.client.UserServiceClient;
+import com.smartvn.order_service.dto.product.InventoryAvailabilityDTO;
+import com.smartvn.order_service.dto.product.InventoryCheckRequest;
+import com.smartvn.order_service.dto.product.ProductDTO;
+import com.smartvn.order_service.dto.user.AddressDTO;
+import com.smartvn.order_service.dto.user.UserDTO;
+import com.smartvn.order_service.exceptions.AppException;
+import com.smartvn.order_service.model.Cart;
+import com.smartvn.order_service.model.CartItem;
+import com.smartvn.order_service.repository.CartItemRepository;
+import com.smartvn.order_service.repository.CartRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * ✅ Các bước kiểm tra trước khi đặt hàng, chạy song song trên virtual thread:
+ * - address: địa chỉ thuộc user (lấy luôn nội dung để snapshot vào đơn)
+ * - user: email của user
+ * - cart_stock: giỏ hàng + item đã chọn (DB) → tồn kho + giá hiện tại, song song với
+ *   thông tin product (title, brand, ảnh) để snapshot vào OrderItem
+ * Một deadline chung cho cả nhóm; bước đầu tiên thất bại huỷ các bước còn lại.
+ * Timer order.checkout.precheck (tag stage, outcome) đo từng bước và tổng (stage=total).
+ * StructuredTaskScope còn là preview ở Java 21 → dùng executor virtual-thread + completion service.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CheckoutPrecheckService {
+
+    private final UserServiceClient userServiceClient;
+    private final ProductServiceClient productServiceClient;
+    private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final ProductInfoService productInfoService;
+    private final MeterRegistry meterRegistry;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Value("${order.checkout.precheck-timeout-ms:8000}")
+    private long precheckTimeoutMs;
+
+    /**
+     * Kết quả các bước kiểm tra, dùng để dựng đơn hàng
+     */
+    public record Result(Cart cart,
+                         List<CartItem> selectedItems,
+                         List<InventoryCheckRequest> stockLines,
+                         Map<String, InventoryAvailabilityDTO> availabilityByKey,
+                         Map<Long, ProductDTO> products,
+                         UserDTO user,
+                         AddressDTO address) {
+    }
+
+    private record CartStock(Cart cart,
+                             List<CartItem> selectedItems,
+                             List<InventoryCheckRequest> stockLines,
+                             Map<String, InventoryAvailabilityDTO> availabilityByKey,
+                             Map<Long, ProductDTO> products) {
+    }
+
+    public Result run(Long userId, Long addressId, List<Long> cartItemIds) {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(precheckTimeoutMs);
+        CompletionService<Object> completion = new ExecutorCompletionService<>(executor);
+        List<Future<Object>> futures = new ArrayList<>(3);
+        String outcome = "failure";
+
+        try {
+            Future<Object> address = submit(completion, futures, "address", () -> {
+                // 1 lần gọi: kiểm tra quyền sở hữu + nội dung địa chỉ (fallback không có userId → từ chối)
+                AddressDTO dto = userServiceClient.getAddressById(addressId);
+                if (dto == null || !userId.equals(dto.getUserId())) {
+                    throw new AppException("Address does not belong to user or is invalid", HttpStatus.BAD_REQUEST);
+                }
+                return dto;
+            });
+            Future<Object> user = submit(completion, futures, "user", () -> {
+                UserDTO dto = userServiceClient.getUserById(userId);
+                if (dto == null) {
+                    throw new AppException("User not found", HttpStatus.NOT_FOUND);
+                }
+                return dto;
+            });
+            Future<Object> cartStock = submit(completion, futures, "cart_stock",
+                    () -> loadCartAndCheckStock(userId, cartItemIds));
+
+            // Chờ lần lượt theo thứ tự hoàn thành → lỗi đầu tiên được thấy ngay, không đợi bước chậm hơn
+            for (int done = 0; done < futures.size(); done++) {
+                long remaining = deadline - System.nanoTime();
+                Future<Object> next = remaining > 0 ? completion.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                if (next == null) {
+                    throw new AppException("Hệ thống đang bận, vui lòng thử lại.", HttpStatus.SERVICE_UNAVAILABLE);
+                }
+                next.get(); // ném lỗi của bước thất bại
+            }
+
+            CartStock stock = (CartStock) cartStock.get();
+            outcome = "success";
+            return new Result(stock.cart(), stock.selectedItems(), stock.stockLines(),
+                    stock.availabilityByKey(), stock.products(), (UserDTO) user.get(), (AddressDTO) address.get());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof AppException app) {
+                throw app;
+            }
+            log.error("❌ Checkout pre-check failed for user {}: {}", userId, cause.getMessage());
+            throw new AppException("Không thể xử lý đơn hàng. Vui lòng thử lại.", HttpStatus.SERVICE_UNAVAILABLE, cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AppException("Không thể xử lý đơn hàng. Vui lòng thử lại.", HttpStatus.SERVICE_UNAVAILABLE, e);
+        } finally {
+            // Thành công: no-op; thất bại / hết hạn: huỷ (interrupt) các lời gọi còn đang chạy
+            futures.forEach(f -> f.cancel(true));
+            timer("total", outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private CartStock loadCartAndCheckStock(Long userId, List<Long> cartItemIds) throws Exception {
+        Cart cart = cartRepository.findByUserId(userId)
+                .orElseThrow(() -> new AppException("Cart not found", HttpStatus.NOT_FOUND));
+
+        List<CartItem> selectedItems = cartItemRepository.findAllById(cartItemIds);
+        if (selectedItems.isEmpty()) {
+            throw new AppException("No valid items found", HttpStatus.BAD_REQUEST);
+        }
+
+        boolean allItemsBelongToCart = selectedItems.stream().allMatch(
+                item -> item.getCart().getId().equals(cart.getId())
+        );
+        if (!allItemsBelongToCart) {
+            throw new AppException("Some items don't belong to your cart", HttpStatus.FORBIDDEN);
+        }
+
+        List<InventoryCheckRequest> stockLines = selectedItems.stream()
+                .map(i -> new InventoryCheckRequest(
+                        i.getProductId(),
+                        i.getSize(),
+                        i.getQuantity()
+                ))
+                .collect(Collectors.toList());
+
+        // Thông tin product cho snapshot: chạy song song với kiểm tra tồn kho.
+        // Lỗi → product thiếu trong map, đơn vẫn đặt được (item không có snapshot, enrich lúc đọc)
+        Future<Map<Long, ProductDTO>> productsFuture = executor.submit(() -> productInfoService.getProductsByIds(
+                selectedItems.stream().map(CartItem::getProductId).toList()));
+        Map<String, InventoryAvailabilityDTO> availabilityByKey;
+        Map<Long, ProductDTO> products;
+        try {
+            // ✅ 1 lần gọi: tồn kho + giá hiện tại của tất cả dòng
+            List<InventoryAvailabilityDTO> availability = productServiceClient.checkAvailability(stockLines);
+            if (availability == null || availability.isEmpty()) {
+                throw new AppException("Không thể kiểm tra tồn kho. Vui lòng thử lại.", HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            availabilityByKey = new HashMap<>();
+            for (InventoryAvailabilityDTO line : availability) {
+                availabilityByKey.put(line.getProductId() + "-" + line.getSize(), line);
+            }
+            products = productsFuture.get();
+        } finally {
+            productsFuture.cancel(true);
+        }
+
+        for (InventoryCheckRequest req : stockLines) {
+            InventoryAvailabilityDTO line = availabilityByKey.get(req.getProductId() + "-" + req.getSize());
+
+            if (line == null || !Boolean.TRUE.equals(line.getSufficient())) {
+                ProductDTO product = products.get(req.getProductId());
+                if (product == null) {
+                    product = productServiceClient.getProductById(req.getProductId());
+                }
+                throw new AppException(
+                        String.format("Sản phẩm '%s' (size %s) không đủ hàng",
+                                product.getTitle(), req.getSize()),
+                        HttpStatus.BAD_REQUEST
+                );
+            }
+        }
+        return new CartStock(cart, selectedItems, stockLines, availabilityByKey, products);
+    }
+
+    private Future<Object> submit(CompletionService<Object> completion,
+                                  List<Future<Object>> futures,
+                                  String stage,
+                                  Callable<Object> task) {
+        Future<Object> future = completion.submit(() -> {
+            long start = System.nanoTime();
+            String outcome = "failure";
+            try {
+                Object result = task.call();
+                outcome = "success";
+                return result;
+            } finally {
+                timer(stage, outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        });
+        futures.add(future);
+        return future;
+    }
+
+    private Timer timer(String stage, String outcome) {
+        return Timer.builder("order.checkout.precheck")
+                .tag("stage", stage)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,302 @@
+package com.smartvn.order_service.service;
+
+import com.smartvn.order_service.client.ProductServiceClient;
+import com.smartvn.order_service.dto.product.InventoryCheckRequest;
+import com.smartvn.order_service.dto.product.StockReservationDTO;
+import com.smartvn.order_service.dto.product.StockReservationRequest;
+import com.smartvn.order_service.enums.PaymentMethod;
+import com.smartvn.order_service.exceptions.AppException;
+import com.smartvn.order_service.model.Cart;
+import com.smartvn.order_service.model.CheckoutSaga;
+import com.smartvn.order_service.model.Order;
+import com.smartvn.order_service.repository.CartItemRepository;
+import com.smartvn.order_service.repository.CartRepository;
+import com.smartvn.order_service.repository.CheckoutSagaRepository;
+import com.smartvn.order_service.repository.OrderRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * ✅ Saga đặt hàng: tạo đơn (local) → giữ hàng → (COD) trừ kho → xoá item khỏi giỏ (local).
+ * - Không giữ transaction DB qua lời gọi mạng: mỗi bước local là 1 transaction ngắn, trạng thái saga
+ *   được ghi sau mỗi bước (bảng checkout_sagas)
+ * - Bước remote idempotent theo reservation reference → thử lại (backoff) hoặc chạy lại sau crash đều an toàn
+ * - Bước trước CLEAR_CART thất bại hẳn (hết hàng, hoặc lỗi mạng quá số lần thử) → bù trừ:
+ *   trả hàng theo reference rồi xoá đơn. CLEAR_CART chỉ thử lại, không bù trừ (đơn đã thành công)
+ * - Scheduler chạy tiếp các saga dở dang: lease hết hạn (service chết giữa chừng) hoặc tới lượt thử lại
+ */
+@Service
+@Slf4j
+public class CheckoutSagaService {
+
+    private static final List<CheckoutSaga.Status> ACTIVE_STATUSES =
+            List.of(CheckoutSaga.Status.RUNNING, CheckoutSaga.Status.COMPENSATING);
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final ProductServiceClient productServiceClient;
+    private final OrderRepository orderRepository;
+    private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final CartService cartService;
+    private final CheckoutSagaRepository sagaRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${order.stock-reservation-ttl-seconds:1200}")
+    private long stockReservationTtlSeconds;
+
+    /** Số lần thử mỗi bước trong 1 lượt chạy */
+    @Value("${order.checkout.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${order.checkout.backoff-ms:200}")
+    private long backoffMs;
+
+    @Value("${order.checkout.max-backoff-ms:300000}")
+    private long maxBackoffMs;
+
+    /** Saga đang chạy không bị scheduler nhận trong khoảng này (gia hạn sau mỗi bước) */
+    @Value("${order.checkout.lease-ms:60000}")
+    private long leaseMs;
+
+    public CheckoutSagaService(ProductServiceClient productServiceClient,
+                               OrderRepository orderRepository,
+                               CartRepository cartRepository,
+                               CartItemRepository cartItemRepository,
+                               CartService cartService,
+                               CheckoutSagaRepository sagaRepository,
+                               PlatformTransactionManager transactionManager) {
+        this.productServiceClient = productServiceClient;
+        this.orderRepository = orderRepository;
+        this.cartRepository = cartRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.cartService = cartService;
+        this.sagaRepository = sagaRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Bước local đầu tiên: lưu đơn (PENDING) và saga trong 1 transaction
+     */
+    public CheckoutSaga begin(Order order, List<Long> cartItemIds) {
+        return transactionTemplate.execute(status -> {
+            Order saved = orderRepository.save(order);
+            LocalDateTime now = LocalDateTime.now();
+
+            CheckoutSaga saga = new CheckoutSaga();
+            saga.setOrderId(saved.getId());
+            saga.setUserId(saved.getUserId());
+            saga.setPaymentMethod(saved.getPaymentMethod());
+            saga.setCartItemIds(cartItemIds.stream().map(String::valueOf).collect(Collectors.joining(",")));
+            saga.setStep(CheckoutSaga.Step.RESERVE_STOCK);
+            saga.setStatus(CheckoutSaga.Status.RUNNING);
+            saga.setNextAttemptAt(now.plusNanos(leaseMs * 1_000_000));
+            saga.setCreatedAt(now);
+            saga.setUpdatedAt(now);
+            return sagaRepository.save(saga);
+        });
+    }
+
+    /**
+     * Chạy saga tới khi kết thúc (COMPLETED / COMPENSATED) hoặc phải chờ scheduler thử lại.
+     *
+     * @return trạng thái saga sau lượt chạy
+     */
+    public CheckoutSaga run(CheckoutSaga saga) {
+        int attempt = 0;
+        while (ACTIVE_STATUSES.contains(saga.getStatus())) {
+            try {
+                executeStep(saga);
+                saga = save(advance(saga));
+                attempt = 0;
+            } catch (OptimisticLockingFailureException e) {
+                log.warn("⚠️ Checkout saga {} was taken over by another worker", saga.getId());
+                return saga;
+            } catch (RuntimeException e) {
+                attempt++;
+                boolean rejected = e instanceof AppException app && app.getStatus().is4xxClientError();
+                log.warn("⚠️ Checkout saga {} step {} failed (attempt {}): {}",
+                        saga.getId(), saga.getStep(), attempt, e.getMessage());
+                try {
+                    if (canCompensate(saga) && (rejected || attempt >= maxAttempts)) {
+                        saga = save(startCompensation(saga, e, rejected));
+                        attempt = 0;
+                    } else if (rejected || attempt >= maxAttempts) {
+                        return save(scheduleRetry(saga, e));
+                    } else {
+                        Thread.sleep(backoffMs << (attempt - 1));
+                    }
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return save(scheduleRetry(saga, e));
+                } catch (OptimisticLockingFailureException conflict) {
+                    log.warn("⚠️ Checkout saga {} was taken over by another worker", saga.getId());
+                    return saga;
+                }
+            }
+        }
+        return saga;
+    }
+
+    /**
+     * ✅ Chạy tiếp saga dở dang: service chết giữa chừng (lease hết hạn) hoặc bước bù trừ chờ thử lại
+     */
+    @Scheduled(
+            fixedDelayString = "${order.checkout.resume-interval-ms:10000}",
+            initialDelayString = "${order.checkout.resume-interval-ms:10000}"
+    )
+    public void resumeDueSagas() {
+        List<Long> dueIds = sagaRepository.findDueIds(ACTIVE_STATUSES, LocalDateTime.now(), PageRequest.of(0, 50));
+        for (Long sagaId : dueIds) {
+            try {
+                CheckoutSaga saga = claim(sagaId);
+                if (saga != null) {
+                    log.info("🔁 Resuming checkout saga {} (order {}) at {} / {}",
+                            saga.getId(), saga.getOrderId(), saga.getStatus(), saga.getStep());
+                    run(saga);
+                }
+            } catch (RuntimeException e) {
+                log.error("❌ Failed to resume checkout saga {}", sagaId, e);
+            }
+        }
+    }
+
+    /**
+     * Nhận saga bằng cách gia hạn lease; version đổi → worker khác đã nhận
+     */
+    private CheckoutSaga claim(Long sagaId) {
+        try {
+            return transactionTemplate.execute(status -> {
+                CheckoutSaga saga = sagaRepository.findById(sagaId).orElse(null);
+                if (saga == null
+                        || !ACTIVE_STATUSES.contains(saga.getStatus())
+                        || saga.getNextAttemptAt().isAfter(LocalDateTime.now())) {
+                    return null;
+                }
+                saga.setNextAttemptAt(LocalDateTime.now().plusNanos(leaseMs * 1_000_000));
+                return sagaRepository.saveAndFlush(saga);
+            });
+        } catch (OptimisticLockingFailureException e) {
+            return null;
+        }
+    }
+
+    private void executeStep(CheckoutSaga saga) {
+        String reference = OrderService.reservationReference(saga.getOrderId());
+        switch (saga.getStep()) {
+            case RESERVE_STOCK -> productServiceClient.reserveInventory(new StockReservationRequest(
+                    reference, stockReservationTtlSeconds, loadStockLines(saga.getOrderId())));
+            case COMMIT_STOCK -> productServiceClient.commitReservation(reference);
+            case CLEAR_CART -> transactionTemplate.executeWithoutResult(status -> clearCart(saga));
+            case RELEASE_STOCK -> {
+                // Không có fallbackItems: chỉ trả phần đã ghi trong ledger của reference này
+                StockReservationDTO released = productServiceClient.releaseReservation(reference, Collections.emptyList());
+                if (released == null) {
+                    throw new IllegalStateException("Product service did not confirm release of " + reference);
+                }
+            }
+            case DELETE_ORDER -> transactionTemplate.executeWithoutResult(status -> {
+                if (orderRepository.existsById(saga.getOrderId())) {
+                    orderRepository.deleteById(saga.getOrderId());
+                }
+            });
+            case DONE -> { }
+        }
+    }
+
+    private List<InventoryCheckRequest> loadStockLines(Long orderId) {
+        return transactionTemplate.execute(status -> orderRepository.findById(orderId)
+                .map(order -> order.getOrderItems().stream()
+                        .map(item -> new InventoryCheckRequest(item.getProductId(), item.getSize(), item.getQuantity()))
+                        .collect(Collectors.toList()))
+                .orElseThrow(() -> new IllegalStateException("Order " + orderId + " not found")));
+    }
+
+    private void clearCart(CheckoutSaga saga) {
+        Cart cart = cartRepository.findByUserId(saga.getUserId()).orElse(null);
+        if (cart == null) {
+            return;
+        }
+        List<Long> itemIds = Arrays.stream(saga.getCartItemIds().split(","))
+                .map(Long::valueOf)
+                .collect(Collectors.toList());
+        cartItemRepository.deleteByIdsAndCartId(itemIds, cart.getId());
+        cartService.reCalculateCart(cart);
+        cartRepository.save(cart);
+    }
+
+    private CheckoutSaga advance(CheckoutSaga saga) {
+        CheckoutSaga.Step next = switch (saga.getStep()) {
+            case RESERVE_STOCK -> saga.getPaymentMethod() == PaymentMethod.VNPAY
+                    ? CheckoutSaga.Step.CLEAR_CART   // VNPAY: trừ kho khi thanh toán thành công
+                    : CheckoutSaga.Step.COMMIT_STOCK;
+            case COMMIT_STOCK -> CheckoutSaga.Step.CLEAR_CART;
+            case RELEASE_STOCK -> CheckoutSaga.Step.DELETE_ORDER;
+            case CLEAR_CART, DELETE_ORDER, DONE -> CheckoutSaga.Step.DONE;
+        };
+        saga.setStep(next);
+        saga.setAttempts(0);
+        if (next == CheckoutSaga.Step.DONE) {
+            saga.setStatus(saga.getStatus() == CheckoutSaga.Status.COMPENSATING
+                    ? CheckoutSaga.Status.COMPENSATED
+                    : CheckoutSaga.Status.COMPLETED);
+            log.info("✅ Checkout saga {} for order {} {}", saga.getId(), saga.getOrderId(), saga.getStatus());
+        }
+        saga.setNextAttemptAt(LocalDateTime.now().plusNanos(leaseMs * 1_000_000));
+        return saga;
+    }
+
+    private boolean canCompensate(CheckoutSaga saga) {
+        return saga.getStatus() == CheckoutSaga.Status.RUNNING
+                && (saga.getStep() == CheckoutSaga.Step.RESERVE_STOCK || saga.getStep() == CheckoutSaga.Step.COMMIT_STOCK);
+    }
+
+    private CheckoutSaga startCompensation(CheckoutSaga saga, RuntimeException cause, boolean rejected) {
+        log.warn("↩️ Compensating checkout saga {} for order {} after {} failed",
+                saga.getId(), saga.getOrderId(), saga.getStep());
+        saga.setStatus(CheckoutSaga.Status.COMPENSATING);
+        saga.setStep(CheckoutSaga.Step.RELEASE_STOCK);
+        saga.setAttempts(0);
+        saga.setRejected(rejected);
+        saga.setLastError(truncate(cause.getMessage()));
+        saga.setNextAttemptAt(LocalDateTime.now().plusNanos(leaseMs * 1_000_000));
+        return saga;
+    }
+
+    /**
+     * Hết số lần thử trong lượt này → scheduler thử lại sau, backoff theo tổng số lần đã thử
+     */
+    private CheckoutSaga scheduleRetry(CheckoutSaga saga, RuntimeException cause) {
+        int attempts = saga.getAttempts() + 1;
+        long delay = Math.min(backoffMs << Math.min(attempts + 4, 30), maxBackoffMs);
+        saga.setAttempts(attempts);
+        saga.setLastError(truncate(cause.getMessage()));
+        saga.setNextAttemptAt(LocalDateTime.now().plusNanos(delay * 1_000_000));
+        log.error("❌ Checkout saga {} step {} still failing, retry in {} ms: {}",
+                saga.getId(), saga.getStep(), delay, cause.getMessage());
+        return saga;
+    }
+
+    private CheckoutSaga save(CheckoutSaga saga) {
+        saga.setUpdatedAt(LocalDateTime.now());
+        return transactionTemplate.execute(status -> sagaRepository.saveAndFlush(saga));
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+}
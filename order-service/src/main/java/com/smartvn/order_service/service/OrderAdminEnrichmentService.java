@@ -0,0 +1,112 @@
+package com.smartvn.order_service.service;
+
+import com.smartvn.order_service.client.UserServiceClient;
+import com.smartvn.order_service.dto.product.ProductDTO;
+import com.smartvn.order_service.dto.user.AddressDTO;
+import com.smartvn.order_service.dto.user.UserDTO;
+import com.smartvn.order_service.model.Order;
+import com.smartvn.order_service.model.OrderItem;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * ✅ Thông tin user / địa chỉ / product cho 1 trang đơn hàng admin:
+ * gom id khác nhau của cả trang → 3 request batch chạy song song (virtual thread) → join trong bộ nhớ.
+ * Số round trip không đổi theo số đơn / số item trên trang.
+ * Đơn đã có snapshot (địa chỉ, title product lúc đặt hàng) không cần lấy lại.
+ * Lỗi / quá hạn ở một nguồn → nguồn đó trả map rỗng, trang vẫn hiển thị (thiếu tên / địa chỉ).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderAdminEnrichmentService {
+
+    private final UserServiceClient userServiceClient;
+    private final ProductInfoService productInfoService;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Value("${order.admin.enrich-timeout-ms:5000}")
+    private long enrichTimeoutMs;
+
+    /**
+     * Kết quả tra cứu của 1 trang, theo id
+     */
+    public record Lookups(Map<Long, UserDTO> users,
+                          Map<Long, AddressDTO> addresses,
+                          Map<Long, ProductDTO> products) {
+    }
+
+    public Lookups load(Collection<Order> orders) {
+        Set<Long> userIds = new LinkedHashSet<>();
+        Set<Long> addressIds = new LinkedHashSet<>();
+        Set<Long> productIds = new LinkedHashSet<>();
+        for (Order order : orders) {
+            userIds.add(order.getUserId());
+            if (order.getShippingAddressText() == null && order.getShippingAddressId() != null) {
+                addressIds.add(order.getShippingAddressId());
+            }
+            if (order.getOrderItems() != null) {
+                for (OrderItem item : order.getOrderItems()) {
+                    if (item.getProductTitle() == null) {
+                        productIds.add(item.getProductId());
+                    }
+                }
+            }
+        }
+
+        CompletableFuture<Map<Long, UserDTO>> users = fetch("users", userIds, () -> {
+            Map<Long, UserDTO> result = new HashMap<>();
+            for (UserDTO user : nonNull(userServiceClient.getUsersByIds(new ArrayList<>(userIds)))) {
+                result.put(user.getId(), user);
+            }
+            return result;
+        });
+        CompletableFuture<Map<Long, AddressDTO>> addresses = fetch("addresses", addressIds, () -> {
+            Map<Long, AddressDTO> result = new HashMap<>();
+            for (AddressDTO address : nonNull(userServiceClient.getAddressesByIds(new ArrayList<>(addressIds)))) {
+                result.put(address.getId(), address);
+            }
+            return result;
+        });
+        CompletableFuture<Map<Long, ProductDTO>> products = fetch("products", productIds,
+                () -> productInfoService.getProductsByIds(productIds));
+
+        // Mỗi future tự hoàn thành (rỗng) khi lỗi / quá hạn → join không chờ quá enrichTimeoutMs
+        CompletableFuture.allOf(users, addresses, products).join();
+        return new Lookups(users.join(), addresses.join(), products.join());
+    }
+
+    private <T> CompletableFuture<Map<Long, T>> fetch(String source,
+                                                      Set<Long> ids,
+                                                      Supplier<Map<Long, T>> call) {
+        if (ids.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyMap());
+        }
+        return CompletableFuture.supplyAsync(call, executor)
+                .exceptionally(e -> {
+                    log.warn("⚠️ Failed to fetch {} {} for admin orders: {}", ids.size(), source, e.getMessage());
+                    return Collections.emptyMap();
+                })
+                .completeOnTimeout(Collections.emptyMap(), enrichTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static <T> List<T> nonNull(List<T> list) {
+        return list != null ? list : Collections.emptyList();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
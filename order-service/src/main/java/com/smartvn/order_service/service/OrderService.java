@@ -1,30 +1,36 @@
 package com.smartvn.order_service.service;
 
 import com.smartvn.order_service.client.ProductServiceClient;
-import com.smartvn.order_service.client.UserServiceClient;
 import com.smartvn.order_service.dto.admin.OrderStatsDTO;
 import com.smartvn.order_service.dto.admin.RevenueChartDTO;
+import com.smartvn.order_service.dto.product.BatchOperationResultDTO;
+import com.smartvn.order_service.dto.product.InventoryAvailabilityDTO;
+import com.smartvn.order_service.dto.product.InventoryBatchOperationRequest;
 import com.smartvn.order_service.dto.product.InventoryCheckRequest;
 import com.smartvn.order_service.dto.product.ProductDTO;
+import com.smartvn.order_service.dto.product.StockReservationDTO;
+import com.smartvn.order_service.dto.response.CursorSlice;
+import com.smartvn.order_service.dto.user.AddressDTO;
 import com.smartvn.order_service.dto.user.UserDTO;
 import com.smartvn.order_service.enums.OrderStatus;
 import com.smartvn.order_service.enums.PaymentMethod;
 import com.smartvn.order_service.enums.PaymentStatus;
 import com.smartvn.order_service.exceptions.AppException;
-import com.smartvn.order_service.model.Cart;
 import com.smartvn.order_service.model.CartItem;
+import com.smartvn.order_service.model.CheckoutSaga;
 import com.smartvn.order_service.model.Order;
 import com.smartvn.order_service.model.OrderItem;
-import com.smartvn.order_service.repository.CartItemRepository;
-import com.smartvn.order_service.repository.CartRepository;
+import com.smartvn.order_service.pagination.OrderHistoryCursor;
 import com.smartvn.order_service.repository.OrderRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -32,6 +38,7 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -42,114 +49,89 @@ import static java.lang.Long.parseLong;
 @Slf4j
 @RequiredArgsConstructor
 public class OrderService {
-    private final UserServiceClient userServiceClient;
     private final ProductServiceClient productServiceClient;
     private final OrderRepository orderRepository;
-    private final CartRepository  cartRepository;
-    private final CartItemRepository cartItemRepository;
-    private final CartService cartService;
+    private final CheckoutSagaService checkoutSaga;
+    private final CheckoutPrecheckService checkoutPrechecks;
 
-    @Transactional
-    public Order placeOrder(
-            Long userId,
-            Long addressId,
-            List<Long> cartItemIds) {
-        Boolean isValidAddress = userServiceClient.validateUserAddress(userId, addressId);
-        if (!isValidAddress) {
-            throw new AppException(
-                    "Address does not belong to user or is invalid",
-                    HttpStatus.BAD_REQUEST
-            );
-        }
-        Cart cart = cartRepository.findByUserId(userId)
-                .orElseThrow(() -> new AppException("Cart not found", HttpStatus.NOT_FOUND));
+    private static final int MAX_HISTORY_PAGE_SIZE = 100;
 
-        List<CartItem> selectedItems = cartItemRepository.findAllById(cartItemIds);
-        if (selectedItems.isEmpty()) {
-            throw new AppException("No valid items found", HttpStatus.BAD_REQUEST);
-        }
-
-        boolean allItemsBelongToCart = selectedItems.stream().allMatch(
-                item -> item.getCart().getId().equals(cart.getId())
-        );
-        if (!allItemsBelongToCart) {
-            throw new AppException("Some items don't belong to your cart", HttpStatus.FORBIDDEN);
-        }
-
-        List<InventoryCheckRequest> inventoryCheckRequests = selectedItems.stream()
-                .map(i -> new InventoryCheckRequest(
-                        i.getProductId(),
-                        i.getSize(),
-                        i.getQuantity()
-                ))
-                .collect(Collectors.toList());
+    /**
+     * Thời gian giữ hàng cho đơn VNPAY (VNPay cho 15 phút thanh toán + thời gian dự phòng)
+     */
+    @Value("${order.stock-reservation-ttl-seconds:1200}")
+    private long stockReservationTtlSeconds;
 
-        Map<String, Boolean> stockResults = productServiceClient.batchCheckInventory(inventoryCheckRequests);
+    @Value("${order.unpaid-expiry-batch-size:100}")
+    private int unpaidExpiryBatchSize;
 
-        for (InventoryCheckRequest req : inventoryCheckRequests) {
-            String key = req.getProductId() + "-" + req.getSize();
-            Boolean hasStock = stockResults.get(key);
+    @Value("${order.quantity-sold.retry-delay-seconds:300}")
+    private long quantitySoldRetryDelaySeconds;
 
-            if (!hasStock) {
-                ProductDTO product = productServiceClient.getProductById(req.getProductId());
-                throw new AppException(
-                        String.format("Sản phẩm '%s' (size %s) không đủ hàng",
-                                product.getTitle(), req.getSize()),
-                        HttpStatus.BAD_REQUEST
-                );
-            }
-        }
+    /**
+     * Đặt hàng qua CheckoutSagaService; không mở transaction DB trong lúc gọi service khác.
+     *
+     * @param paymentMethod COD (mặc định) → trừ kho ngay (giữ hàng rồi commit); VNPAY → giữ hàng
+     *                      stockReservationTtlSeconds giây, trừ kho khi callback thanh toán thành công (xem PaymentService).
+     */
+    public Order placeOrder(
+            Long userId,
+            Long addressId,
+            List<Long> cartItemIds,
+            PaymentMethod paymentMethod) {
+        PaymentMethod method = paymentMethod != null ? paymentMethod : PaymentMethod.COD;
 
-        UserDTO user = userServiceClient.getUserById(userId);
+        // ✅ Địa chỉ, user, giỏ hàng + tồn kho: kiểm tra song song, 1 deadline chung
+        CheckoutPrecheckService.Result prechecks = checkoutPrechecks.run(userId, addressId, cartItemIds);
+        List<CartItem> selectedItems = prechecks.selectedItems();
+        Map<String, InventoryAvailabilityDTO> availabilityByKey = prechecks.availabilityByKey();
+        Map<Long, ProductDTO> products = prechecks.products();
+        UserDTO user = prechecks.user();
 
         Order order = new Order();
         order.setUserId(userId);
         order.setUserEmail(user.getEmail());
         order.setShippingAddressId(addressId);
         order.setOrderStatus(OrderStatus.PENDING);
-        order.setPaymentMethod(PaymentMethod.COD);
+        order.setPaymentMethod(method);
         order.setPaymentStatus(PaymentStatus.PENDING);
-        order.setShippingAddressId(addressId);
+        applyAddressSnapshot(order, prechecks.address());
 
         List<OrderItem> orderItems = selectedItems.stream()
-                .map(this::convertToOrderItem)
+                .map(item -> {
+                    OrderItem orderItem = convertToOrderItem(item);
+                    applyCurrentPrice(orderItem, availabilityByKey.get(item.getProductId() + "-" + item.getSize()));
+                    applyProductSnapshot(orderItem, products.get(item.getProductId()));
+                    return orderItem;
+                })
                 .collect(Collectors.toList());
 
         orderItems.forEach(i -> i.setOrder(order));
         order.setOrderItems(orderItems);
         order.calculateTotals();
 
-        Order savedOrder = orderRepository.save(order);
-
-        try {
-            productServiceClient.batchReduceInventory(inventoryCheckRequests);
-        } catch (Exception e) {
-            log.error("Failed to reduce inventory batch: {}", e.getMessage());
-            orderRepository.delete(savedOrder);
-            throw new AppException(
-                    "Không thể xử lý đơn hàng. Vui lòng thử lại.",
-                    HttpStatus.INTERNAL_SERVER_ERROR
-            );
+        // ✅ Lưu đơn + saga (transaction ngắn), rồi giữ hàng / trừ kho / dọn giỏ theo từng bước
+        CheckoutSaga saga = checkoutSaga.run(checkoutSaga.begin(order, cartItemIds));
+        switch (saga.getStatus()) {
+            case COMPLETED -> log.info("✅ Order {} created successfully with {} items",
+                    saga.getOrderId(), orderItems.size());
+            case COMPENSATED, COMPENSATING -> {
+                if (Boolean.TRUE.equals(saga.getRejected())) {
+                    throw new AppException("Một số sản phẩm đã hết hàng. Vui lòng kiểm tra lại giỏ hàng.", HttpStatus.CONFLICT);
+                }
+                throw new AppException("Không thể xử lý đơn hàng. Vui lòng thử lại.", HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            case RUNNING -> {
+                if (saga.getStep() != CheckoutSaga.Step.CLEAR_CART) {
+                    // Worker khác đang chạy tiếp saga này (lease hết hạn giữa chừng)
+                    throw new AppException("Đơn hàng đang được xử lý, vui lòng kiểm tra lại sau.",
+                            HttpStatus.SERVICE_UNAVAILABLE);
+                }
+                // Hàng đã giữ/trừ xong, chỉ còn dọn giỏ → scheduler làm nốt
+                log.warn("⚠️ Order {} placed, cart cleanup deferred", saga.getOrderId());
+            }
         }
-
-        // ✅ 11. Xóa items đã checkout khỏi cart
-        cartItemRepository.deleteAll(selectedItems);
-
-        Cart updatedCart = cartRepository.findByUserId(userId)
-                .orElseThrow(() -> new AppException("Cart not found", HttpStatus.NOT_FOUND));
-        cartService.reCalculateCart(updatedCart);
-        cartRepository.save(updatedCart);
-
-        log.info("✅ Order {} created successfully with {} items",
-                savedOrder.getId(), orderItems.size());
-
-        return savedOrder;
-    }
-
-    @Transactional(readOnly = true)
-    public List<Order> getOrderHistory(Long userId, OrderStatus orderStatus) {
-        // Delegate sang method mới
-        return searchUserOrders(userId, null, orderStatus, null, null);
+        return order;
     }
 
     @Transactional(readOnly = true)
@@ -175,27 +157,86 @@ public class OrderService {
             );
         }
 
-        // Restore inventory
-        for (OrderItem item : order.getOrderItems()) {
-            InventoryCheckRequest restoreRequest = new InventoryCheckRequest(
-                    item.getProductId(),
-                    item.getSize(),
-                    item.getQuantity()
-            );
-
-            try {
-                productServiceClient.restoreInventory(restoreRequest);
-            } catch (Exception e) {
-                log.error("Failed to restore inventory for product {}", item.getProductId(), e);
-                // Vẫn tiếp tục hủy đơn nhưng log warning
-            }
-        }
+        // Trả hàng trước: lỗi → ném 503, đơn giữ nguyên trạng thái để user hủy lại
+        releaseStock(order);
 
         order.setOrderStatus(OrderStatus.CANCELLED);
         order.setPaymentStatus(PaymentStatus.CANCELLED);
         return orderRepository.save(order);
     }
 
+    /**
+     * Mã giữ hàng của đơn bên product-service
+     */
+    public static String reservationReference(Long orderId) {
+        return "order-" + orderId;
+    }
+
+    /**
+     * ✅ Trả hàng của đơn trong 1 request: hàng đang giữ được nhả ra, hàng đã trừ được hoàn lại.
+     * Đơn cũ (trước khi có ledger) được hoàn theo danh sách item.
+     * Product-service không xác nhận (fallback trả null / lỗi) → 503, caller không được đánh dấu huỷ đơn:
+     * hàng đã trừ (COD, VNPAY đã thanh toán) không có ai khác trả lại. Release idempotent nên gọi lại an toàn.
+     */
+    private void releaseStock(Order order) {
+        List<InventoryCheckRequest> items = order.getOrderItems().stream()
+                .map(item -> new InventoryCheckRequest(item.getProductId(), item.getSize(), item.getQuantity()))
+                .collect(Collectors.toList());
+        StockReservationDTO released = null;
+        try {
+            released = productServiceClient.releaseReservation(reservationReference(order.getId()), items);
+        } catch (Exception e) {
+            log.error("Failed to release stock for order {}. Error: {}", order.getId(), e.getMessage());
+        }
+        if (released == null) {
+            throw new AppException("Không thể hủy đơn hàng lúc này. Vui lòng thử lại sau.",
+                    HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    /**
+     * ✅ Huỷ các đơn VNPAY chưa thanh toán đã quá thời gian giữ hàng.
+     * Hàng đã được product-service tự trả khi reservation hết hạn; release ở đây là idempotent.
+     * Không mở transaction bao cả job: duyệt từng trang unpaidExpiryBatchSize đơn, gọi product-service ngoài
+     * transaction, mỗi đơn huỷ bằng 1 UPDATE có điều kiện (đơn vừa được thanh toán thì không bị huỷ).
+     */
+    @Scheduled(
+            fixedDelayString = "${order.unpaid-expiry-interval-ms:60000}",
+            initialDelayString = "${order.unpaid-expiry-interval-ms:60000}"
+    )
+    public void cancelExpiredUnpaidOrders() {
+        LocalDateTime cutoff = LocalDateTime.now().minusSeconds(stockReservationTtlSeconds);
+        List<PaymentStatus> unpaid = List.of(PaymentStatus.PENDING, PaymentStatus.FAILED);
+        int cancelled = 0;
+        long afterId = 0;
+        List<Long> ids;
+        do {
+            ids = orderRepository.findUnpaidOrderIdsAfter(PaymentMethod.VNPAY, OrderStatus.PENDING, unpaid,
+                    cutoff, afterId, PageRequest.of(0, unpaidExpiryBatchSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            afterId = ids.get(ids.size() - 1);
+            for (Order order : orderRepository.findAllWithItemsByIdIn(ids)) {
+                try {
+                    releaseStock(order);
+                } catch (AppException e) {
+                    // Chưa trả được hàng → giữ PENDING, lượt sau thử lại
+                    continue;
+                }
+                if (orderRepository.cancelIfUnpaid(order.getId(), OrderStatus.PENDING, unpaid,
+                        OrderStatus.CANCELLED, PaymentStatus.CANCELLED, LocalDateTime.now()) == 1) {
+                    cancelled++;
+                } else {
+                    log.warn("⚠️ Order {} changed while its expired hold was released, not cancelled", order.getId());
+                }
+            }
+        } while (ids.size() == unpaidExpiryBatchSize);
+        if (cancelled > 0) {
+            log.info("⏰ Cancelled {} unpaid VNPAY orders past the stock hold", cancelled);
+        }
+    }
+
     private OrderItem convertToOrderItem(CartItem cartItem) {
         OrderItem orderItem = new OrderItem();
         orderItem.setProductId(cartItem.getProductId());
@@ -206,6 +247,58 @@ public class OrderService {
         return orderItem;
     }
 
+    /**
+     * Giá trong giỏ có thể đã cũ (admin đổi giá sau khi thêm vào giỏ) → đơn luôn lấy giá hiện tại
+     */
+    private void applyCurrentPrice(OrderItem orderItem, InventoryAvailabilityDTO current) {
+        if (current == null || current.getPrice() == null) {
+            return;
+        }
+        BigDecimal currentDiscounted = current.getDiscountedPrice() != null
+                ? current.getDiscountedPrice()
+                : current.getPrice();
+        if (orderItem.getDiscountedPrice() == null
+                || orderItem.getDiscountedPrice().compareTo(currentDiscounted) != 0) {
+            log.info("💱 Price drift for product {} size {}: cart {} → current {}",
+                    orderItem.getProductId(), orderItem.getSize(), orderItem.getDiscountedPrice(), currentDiscounted);
+        }
+        orderItem.setPrice(current.getPrice());
+        orderItem.setDiscountedPrice(currentDiscounted);
+    }
+
+    /**
+     * ✅ Snapshot product lúc đặt hàng: lịch sử đơn hiển thị đúng như lúc mua, không cần gọi product-service
+     */
+    private void applyProductSnapshot(OrderItem orderItem, ProductDTO product) {
+        if (product == null) {
+            log.warn("⚠️ No product info for {}, order item saved without snapshot", orderItem.getProductId());
+            return;
+        }
+        orderItem.setProductTitle(product.getTitle());
+        orderItem.setProductBrand(product.getBrand());
+        orderItem.setThumbnailUrl(product.getFirstImageUrl());
+        orderItem.setVariantLabel(variantLabel(product.getColor(), orderItem.getSize()));
+    }
+
+    private static String variantLabel(String color, String size) {
+        boolean hasColor = color != null && !color.isBlank();
+        boolean hasSize = size != null && !size.isBlank();
+        if (hasColor && hasSize) {
+            return color + " / " + size;
+        }
+        return hasColor ? color : (hasSize ? size : null);
+    }
+
+    private void applyAddressSnapshot(Order order, AddressDTO address) {
+        order.setShippingRecipientName(address.getFullName());
+        order.setShippingPhone(address.getPhoneNumber());
+        order.setShippingAddressText(address.getFullAddress());
+        order.setShippingProvince(address.getProvince());
+        order.setShippingWard(address.getWard());
+        order.setShippingStreet(address.getStreet());
+        order.setShippingNote(address.getNote());
+    }
+
     @Transactional
     public Order updateOrderPaymentAndStatus(Long orderId, PaymentStatus paymentStatus, PaymentMethod paymentMethod) {
         Order order = findOrderById(orderId);
@@ -290,83 +383,105 @@ public class OrderService {
                 order.setPaymentStatus(PaymentStatus.COMPLETED);
             }
 
-            for (OrderItem item : order.getOrderItems()) {
-                try {
-                    InventoryCheckRequest increaseSoldRequest = new InventoryCheckRequest(item.getProductId(), item.getQuantity());
-                    productServiceClient.increaseQuantitySold(increaseSoldRequest);
-                    log.info("Increased quantity sold for product {} by {}", item.getProductId(), item.getQuantity());
-                } catch (Exception e) {
-                    log.error("Failed to increase quantity sold for product {} (Order {}). Error: {}",
-                            item.getProductId(), orderId, e.getMessage());
-                }
-            }
+            // ✅ 1 request cho cả đơn; lỗi → đánh dấu thử lại cùng transaction với trạng thái DELIVERED
+            recordQuantitySold(order);
         }
 
         order.setOrderStatus(newStatus);
         return orderRepository.save(order);
     }
 
+    /**
+     * ✅ Gửi lại số lượng đã bán cho các đơn đã giao mà lần trước product-service không nhận
+     */
+    @Scheduled(
+            fixedDelayString = "${order.quantity-sold.retry-interval-ms:60000}",
+            initialDelayString = "${order.quantity-sold.retry-interval-ms:60000}"
+    )
+    @Transactional
+    public void retryPendingQuantitySold() {
+        List<Order> due = orderRepository.findQuantitySoldDue(LocalDateTime.now(), PageRequest.of(0, 50));
+        for (Order order : due) {
+            recordQuantitySold(order);
+        }
+        if (!due.isEmpty()) {
+            log.info("🔁 Retried quantity sold for {} delivered orders", due.size());
+        }
+    }
 
+    /**
+     * Cộng số lượng đã bán với key "order-N:sold" (product-service bỏ qua nếu đã áp dụng → retry an toàn).
+     * Fallback trả null / lỗi = chưa cộng → đặt quantitySoldRetryAt, job retryPendingQuantitySold gửi lại.
+     */
+    private void recordQuantitySold(Order order) {
+        String operationKey = reservationReference(order.getId()) + ":sold";
+        List<InventoryCheckRequest> soldItems = order.getOrderItems().stream()
+                .map(item -> new InventoryCheckRequest(item.getProductId(), item.getQuantity()))
+                .collect(Collectors.toList());
+        BatchOperationResultDTO result = null;
+        try {
+            result = productServiceClient.batchIncreaseQuantitySold(
+                    new InventoryBatchOperationRequest(operationKey, soldItems));
+        } catch (Exception e) {
+            log.error("Failed to increase quantity sold for order {}. Error: {}", order.getId(), e.getMessage());
+        }
+
+        if (result == null) {
+            order.setQuantitySoldRetryAt(LocalDateTime.now().plusSeconds(quantitySoldRetryDelaySeconds));
+            log.warn("⚠️ Quantity sold for order {} not recorded, will retry {}", order.getId(), operationKey);
+            return;
+        }
+        order.setQuantitySoldRetryAt(null);
+        log.info("Increased quantity sold for {} items of order {} (applied: {})",
+                soldItems.size(), order.getId(), result.getApplied());
+    }
 
     /**
-     * Tìm kiếm orders của user với filters
-     * @param userId ID của user (bắt buộc - security)
-     * @param orderId Filter theo order ID cụ thể (optional)
-     * @param status Filter theo trạng thái (optional)
-     * @param startDate Filter từ ngày (optional)
-     * @param endDate Filter đến ngày (optional)
+     * ✅ Lịch sử đơn của user ở chế độ cursor (keyset theo createdAt DESC, id DESC):
+     * 1 query lấy id của trang (dư 1 dòng để biết còn trang sau) + 1 query nạp đơn kèm items.
+     * Thời gian / kích thước response không tăng theo số đơn của user.
+     *
+     * @param cursor nextCursor của response trước (bỏ trống cho trang đầu)
      */
-    public List<Order> searchUserOrders(
+    @Transactional(readOnly = true)
+    public CursorSlice<Order> scrollUserOrders(
             Long userId,
             Long orderId,
             OrderStatus status,
             LocalDate startDate,
-            LocalDate endDate) {
-
-        Specification<Order> spec = Specification.where(null);
-
-        // ✅ LUÔN LUÔN filter theo userId (security - quan trọng!)
-        spec = spec.and((root, query, cb) ->
-                cb.equal(root.get("userId"), userId)
-        );
-
-        // ✅ Nếu có orderId -> tìm order cụ thể
-        if (orderId != null) {
-            spec = spec.and((root, query, cb) ->
-                    cb.equal(root.get("id"), orderId)
-            );
-        }
-
-        // ✅ Nếu có status -> lọc theo trạng thái
-        if (status != null) {
-            spec = spec.and((root, query, cb) ->
-                    cb.equal(root.get("orderStatus"), status)
-            );
+            LocalDate endDate,
+            String cursor,
+            int size) {
+        OrderHistoryCursor after = cursor != null && !cursor.isBlank() ? OrderHistoryCursor.decode(cursor) : null;
+        int limit = Math.max(1, Math.min(size, MAX_HISTORY_PAGE_SIZE));
+
+        List<Long> ids = orderRepository.findUserOrderIdsAfter(
+                userId,
+                orderId,
+                status,
+                startDate != null ? startDate.atStartOfDay() : null,
+                endDate != null ? endDate.atTime(23, 59, 59) : null,
+                after != null ? after.getLastCreatedAt() : null,
+                after != null ? after.getLastId() : null,
+                PageRequest.of(0, limit + 1));
+
+        boolean hasNext = ids.size() > limit;
+        List<Long> pageIds = hasNext ? ids.subList(0, limit) : ids;
+        if (pageIds.isEmpty()) {
+            return new CursorSlice<>(new ArrayList<>(), limit, false, null);
         }
 
-        // ✅ Nếu có startDate -> lọc từ ngày
-        if (startDate != null) {
-            spec = spec.and((root, query, cb) ->
-                    cb.greaterThanOrEqualTo(root.get("createdAt"),
-                            startDate.atStartOfDay())
-            );
-        }
+        List<Order> orders = new ArrayList<>(orderRepository.findAllWithItemsByIdIn(pageIds));
+        orders.sort(Comparator.comparing(Order::getCreatedAt).thenComparing(Order::getId).reversed());
 
-        // ✅ Nếu có endDate -> lọc đến ngày
-        if (endDate != null) {
-            spec = spec.and((root, query, cb) ->
-                    cb.lessThanOrEqualTo(root.get("createdAt"),
-                            endDate.atTime(23, 59, 59))
-            );
+        String nextCursor = null;
+        if (hasNext) {
+            Order last = orders.get(orders.size() - 1);
+            nextCursor = new OrderHistoryCursor(last.getCreatedAt(), last.getId()).encode();
         }
-
-        // ✅ Sắp xếp theo ngày tạo mới nhất
-        return orderRepository.findAll(spec,
-                Sort.by(Sort.Direction.DESC, "createdAt")
-        );
+        return new CursorSlice<>(orders, limit, hasNext, nextCursor);
     }
 
-
     private void validateStatusTransition(OrderStatus current, OrderStatus next) {
         log.debug("Validating transition from {} to {}", current, next);
 
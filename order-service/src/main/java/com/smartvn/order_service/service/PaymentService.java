@@ -1,6 +1,7 @@
 package com.smartvn.order_service.service;
 
 
+import com.smartvn.order_service.client.ProductServiceClient;
 import com.smartvn.order_service.enums.OrderStatus;
 import com.smartvn.order_service.enums.PaymentMethod;
 import com.smartvn.order_service.enums.PaymentStatus;
@@ -10,6 +11,7 @@ import com.smartvn.order_service.repository.OrderRepository;
 import com.smartvn.order_service.repository.PaymentDetailRepository;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -30,6 +32,7 @@ import java.util.*;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class PaymentService {
 
     @Value("${vnpay.tmn-code}")
@@ -45,6 +48,7 @@ public class PaymentService {
     private String vnp_Returnurl;
 
     private final OrderService orderService;
+    private final ProductServiceClient productServiceClient;
     private final OrderRepository  orderRepository;
 
     private final PaymentDetailRepository paymentDetailRepository;
@@ -212,7 +216,9 @@ public class PaymentService {
 
                 order.setPaymentMethod(PaymentMethod.VNPAY);
                 order.setPaymentStatus(PaymentStatus.COMPLETED);
-                order.setOrderStatus(OrderStatus.CONFIRMED); // Tự động confirm đơn
+                if (commitReservedStock(order)) {
+                    order.setOrderStatus(OrderStatus.CONFIRMED); // Tự động confirm đơn
+                }
 
                 // ✅ Lưu payment (order sẽ cascade save)
                 orderRepository.save(order);  // Explicit save
@@ -234,6 +240,27 @@ public class PaymentService {
         }
     }
 
+    /**
+     * ✅ Chuyển hàng đang giữ của đơn thành đã bán.
+     * Đơn đã huỷ (quá hạn giữ hàng) hoặc hết hàng → giữ nguyên trạng thái đơn để xử lý hoàn tiền.
+     *
+     * @return true nếu hàng đã được đảm bảo cho đơn
+     */
+    private boolean commitReservedStock(Order order) {
+        if (order.getOrderStatus() == OrderStatus.CANCELLED) {
+            log.error("❌ Payment received for cancelled order {} - needs refund", order.getId());
+            return false;
+        }
+        try {
+            productServiceClient.commitReservation(OrderService.reservationReference(order.getId()));
+            return true;
+        } catch (Exception e) {
+            log.error("❌ Payment received but stock could not be committed for order {} - needs refund: {}",
+                    order.getId(), e.getMessage());
+            return false;
+        }
+    }
+
     // Các phương thức hỗ trợ
     private String getRandomNumber(int len) {
         Random rnd = new Random();
@@ -0,0 +1,57 @@
+package com.smartvn.order_service.service;
+
+import com.smartvn.order_service.client.ProductServiceClient;
+import com.smartvn.order_service.dto.product.ProductDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Lấy thông tin product (title, ảnh) để hiển thị cart / order.
+ * Gom tất cả productId lại và gọi POST /internal/products/batch thay vì gọi từng cái.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ProductInfoService {
+
+    /**
+     * Giới hạn số id mỗi request của product-service
+     */
+    private static final int BATCH_SIZE = 200;
+
+    private final ProductServiceClient productServiceClient;
+
+    /**
+     * @return productId → ProductDTO. Product không lấy được sẽ không có trong map
+     * (caller giữ nguyên item, chỉ thiếu title/ảnh).
+     */
+    public Map<Long, ProductDTO> getProductsByIds(Collection<Long> productIds) {
+        if (productIds == null || productIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        List<Long> distinctIds = productIds.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+
+        Map<Long, ProductDTO> result = new HashMap<>(distinctIds.size() * 2);
+        for (int from = 0; from < distinctIds.size(); from += BATCH_SIZE) {
+            List<Long> chunk = distinctIds.subList(from, Math.min(from + BATCH_SIZE, distinctIds.size()));
+            try {
+                List<ProductDTO> products = productServiceClient.getProductsByIds(chunk);
+                if (products != null) {
+                    for (ProductDTO product : products) {
+                        result.put(product.getId(), product);
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("⚠️ Failed to fetch {} products: {}", chunk.size(), e.getMessage());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,42 @@
+package com.smartvn.order_service.dto.order;
+
+import com.smartvn.order_service.dto.user.AddressDTO;
+import com.smartvn.order_service.model.Order;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderDTOTest {
+
+    @Test
+    void snapshotAddressIsMappedInFull() {
+        Order order = new Order();
+        order.setUserId(5L);
+        order.setShippingAddressId(9L);
+        order.setShippingRecipientName("Nguyễn Văn A");
+        order.setShippingPhone("0901234567");
+        order.setShippingStreet("12 Lê Lợi");
+        order.setShippingWard("Phường Bến Nghé");
+        order.setShippingProvince("TP. Hồ Chí Minh");
+        order.setShippingNote("Giao giờ hành chính");
+        order.setShippingAddressText("12 Lê Lợi, Phường Bến Nghé, TP. Hồ Chí Minh");
+
+        AddressDTO address = new OrderDTO(order).getShippingAddress();
+
+        assertThat(address).isEqualTo(new AddressDTO(9L, "Nguyễn Văn A", "TP. Hồ Chí Minh", "Phường Bến Nghé",
+                "12 Lê Lợi", "Giao giờ hành chính", "0901234567", 5L));
+        assertThat(address.getFullAddress()).isEqualTo(order.getShippingAddressText());
+    }
+
+    @Test
+    void legacyOrderWithoutSnapshotLeavesAddressForEnrichment() {
+        Order order = new Order();
+        order.setUserId(5L);
+        order.setShippingAddressId(9L);
+
+        OrderDTO dto = new OrderDTO(order);
+
+        assertThat(dto.getShippingAddress()).isNull();
+        assertThat(dto.getShippingAddressId()).isEqualTo(9L);
+    }
+}
@@ -0,0 +1,108 @@
+package com.smartvn.order_service.service;
+
+import com.smartvn.order_service.client.ProductServiceClient;
+import com.smartvn.order_service.dto.product.InventoryItemDTO;
+import com.smartvn.order_service.dto.product.ProductChangeDTO;
+import com.smartvn.order_service.dto.product.ProductChangeFeedDTO;
+import com.smartvn.order_service.model.Cart;
+import com.smartvn.order_service.model.CartItem;
+import com.smartvn.order_service.model.ConsumerOffset;
+import com.smartvn.order_service.repository.CartItemRepository;
+import com.smartvn.order_service.repository.CartRepository;
+import com.smartvn.order_service.repository.ConsumerOffsetRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CartPriceSyncServiceTest {
+
+    @Mock
+    private ProductServiceClient productServiceClient;
+    @Mock
+    private ConsumerOffsetRepository offsetRepository;
+    @Mock
+    private CartItemRepository cartItemRepository;
+    @Mock
+    private CartRepository cartRepository;
+    @Mock
+    private CartService cartService;
+
+    @InjectMocks
+    private CartPriceSyncService cartPriceSyncService;
+
+    private ConsumerOffset offset;
+    private CartItem item;
+
+    @BeforeEach
+    void setUp() {
+        offset = new ConsumerOffset();
+        offset.setConsumerName("cart-price-sync");
+        offset.setOffsetValue(10L);
+        when(offsetRepository.findById("cart-price-sync")).thenReturn(Optional.of(offset));
+        when(productServiceClient.getProductChanges(anyLong(), anyInt(), anyLong())).thenReturn(new ProductChangeFeedDTO(
+                List.of(new ProductChangeDTO(11L, 7L, List.of("PRICE"), null)), 11L, false));
+
+        Cart cart = new Cart();
+        cart.setId(1L);
+        item = new CartItem();
+        item.setCart(cart);
+        item.setProductId(7L);
+        item.setSize("M");
+        item.setPrice(new BigDecimal("100000"));
+        item.setDiscountedPrice(new BigDecimal("100000"));
+        when(cartItemRepository.findByProductIdIn(anySet())).thenReturn(List.of(item));
+    }
+
+    @Test
+    void productServiceUnavailableKeepsOffsetAndItems() {
+        when(productServiceClient.getProductInventory(7L)).thenReturn(null); // fallback
+
+        cartPriceSyncService.syncPrices();
+
+        assertThat(offset.getOffsetValue()).isEqualTo(10L);
+        assertThat(item.getPrice()).isEqualByComparingTo("100000");
+        verify(offsetRepository, never()).save(any());
+        verify(cartRepository, never()).save(any());
+    }
+
+    @Test
+    void deletedProductIsSkippedAndOffsetAdvances() {
+        when(productServiceClient.getProductInventory(7L)).thenReturn(List.of());
+
+        cartPriceSyncService.syncPrices();
+
+        assertThat(offset.getOffsetValue()).isEqualTo(11L);
+        verify(offsetRepository).save(offset);
+        verify(cartRepository, never()).save(any());
+    }
+
+    @Test
+    void changedPriceIsAppliedAndOffsetAdvances() {
+        when(productServiceClient.getProductInventory(7L)).thenReturn(List.of(
+                new InventoryItemDTO("M", 3, new BigDecimal("120000"), 10, new BigDecimal("108000"))));
+
+        cartPriceSyncService.syncPrices();
+
+        assertThat(item.getPrice()).isEqualByComparingTo("120000");
+        assertThat(item.getDiscountedPrice()).isEqualByComparingTo("108000");
+        assertThat(offset.getOffsetValue()).isEqualTo(11L);
+        verify(cartRepository).save(item.getCart());
+    }
+}
@@ -0,0 +1,214 @@
+package com.smartvn.order_service.service;
+
+import com.smartvn.order_service.client.ProductServiceClient;
+import com.smartvn.order_service.client.UserServiceClient;
+import com.smartvn.order_service.dto.product.InventoryAvailabilityDTO;
+import com.smartvn.order_service.dto.product.ProductDTO;
+import com.smartvn.order_service.dto.user.AddressDTO;
+import com.smartvn.order_service.dto.user.UserDTO;
+import com.smartvn.order_service.exceptions.AppException;
+import com.smartvn.order_service.model.Cart;
+import com.smartvn.order_service.model.CartItem;
+import com.smartvn.order_service.repository.CartItemRepository;
+import com.smartvn.order_service.repository.CartRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CheckoutPrecheckServiceTest {
+
+    private static final long USER_ID = 7L;
+    private static final long ADDRESS_ID = 3L;
+    private static final long TIMEOUT_MS = 300;
+
+    @Mock
+    private UserServiceClient userServiceClient;
+    @Mock
+    private ProductServiceClient productServiceClient;
+    @Mock
+    private CartRepository cartRepository;
+    @Mock
+    private CartItemRepository cartItemRepository;
+    @Mock
+    private ProductInfoService productInfoService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CheckoutPrecheckService prechecks;
+    /** Mở khi lời gọi chậm bị huỷ (interrupt) lúc cả nhóm dừng */
+    private final CountDownLatch interrupted = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        prechecks = new CheckoutPrecheckService(userServiceClient, productServiceClient,
+                cartRepository, cartItemRepository, productInfoService, meterRegistry);
+        ReflectionTestUtils.setField(prechecks, "precheckTimeoutMs", TIMEOUT_MS);
+
+        Cart cart = new Cart();
+        cart.setId(5L);
+        cart.setUserId(USER_ID);
+        CartItem item = new CartItem();
+        item.setId(10L);
+        item.setCart(cart);
+        item.setProductId(1L);
+        item.setSize("M");
+        item.setQuantity(2);
+
+        AddressDTO address = new AddressDTO();
+        address.setId(ADDRESS_ID);
+        address.setUserId(USER_ID);
+        UserDTO user = new UserDTO();
+        user.setId(USER_ID);
+        ProductDTO product = new ProductDTO();
+        product.setId(1L);
+        product.setTitle("Áo thun");
+        InventoryAvailabilityDTO line = new InventoryAvailabilityDTO();
+        line.setProductId(1L);
+        line.setSize("M");
+        line.setRequested(2);
+        line.setAvailable(5);
+        line.setSufficient(true);
+        line.setPrice(new BigDecimal("100000"));
+
+        lenient().when(userServiceClient.getAddressById(ADDRESS_ID)).thenReturn(address);
+        lenient().when(userServiceClient.getUserById(USER_ID)).thenReturn(user);
+        lenient().when(cartRepository.findByUserId(USER_ID)).thenReturn(Optional.of(cart));
+        lenient().when(cartItemRepository.findAllById(List.of(10L))).thenReturn(List.of(item));
+        lenient().when(productInfoService.getProductsByIds(anyCollection())).thenReturn(Map.of(1L, product));
+        lenient().when(productServiceClient.checkAvailability(anyList())).thenReturn(List.of(line));
+    }
+
+    @AfterEach
+    void tearDown() {
+        prechecks.shutdown();
+    }
+
+    @Test
+    void allStagesPassReturnSnapshotForOrder() {
+        CheckoutPrecheckService.Result result = prechecks.run(USER_ID, ADDRESS_ID, List.of(10L));
+
+        assertThat(result.address().getId()).isEqualTo(ADDRESS_ID);
+        assertThat(result.user().getId()).isEqualTo(USER_ID);
+        assertThat(result.selectedItems()).hasSize(1);
+        assertThat(result.availabilityByKey()).containsKey("1-M");
+        assertThat(result.products()).containsKey(1L);
+        assertThat(timerCount("total", "success")).isEqualTo(1);
+    }
+
+    @Test
+    void slowStageHitsSharedDeadlineAndIsCancelled() {
+        when(userServiceClient.getUserById(USER_ID)).thenAnswer(inv -> blockUntilInterrupted());
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> prechecks.run(USER_ID, ADDRESS_ID, List.of(10L)))
+                .isInstanceOf(AppException.class)
+                .extracting(e -> ((AppException) e).getStatus())
+                .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // 1 deadline cho cả nhóm, không phải mỗi bước 1 timeout
+        assertThat(elapsedMs).isGreaterThanOrEqualTo(TIMEOUT_MS).isLessThan(TIMEOUT_MS * 5);
+        assertThat(awaitInterrupt()).isTrue();
+        assertThat(timerCount("total", "failure")).isEqualTo(1);
+    }
+
+    @Test
+    void firstFailingStageFailsFastAndCancelsTheOthers() {
+        when(userServiceClient.getUserById(USER_ID)).thenAnswer(inv -> blockUntilInterrupted());
+        when(cartRepository.findByUserId(USER_ID)).thenReturn(Optional.empty());
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> prechecks.run(USER_ID, ADDRESS_ID, List.of(10L)))
+                .isInstanceOf(AppException.class)
+                .extracting(e -> ((AppException) e).getStatus())
+                .isEqualTo(HttpStatus.NOT_FOUND);
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(TIMEOUT_MS);
+        assertThat(awaitInterrupt()).isTrue();
+        assertThat(timerCount("cart_stock", "failure")).isEqualTo(1);
+    }
+
+    @Test
+    void addressOfAnotherUserIsRejected() {
+        AddressDTO foreign = new AddressDTO();
+        foreign.setId(ADDRESS_ID);
+        foreign.setUserId(99L);
+        when(userServiceClient.getAddressById(ADDRESS_ID)).thenReturn(foreign);
+
+        assertThatThrownBy(() -> prechecks.run(USER_ID, ADDRESS_ID, List.of(10L)))
+                .isInstanceOf(AppException.class)
+                .extracting(e -> ((AppException) e).getStatus())
+                .isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    void addressFromFallbackIsRejected() {
+        // Fallback trả DTO không có userId → coi như không thuộc user
+        when(userServiceClient.getAddressById(ADDRESS_ID)).thenReturn(new AddressDTO());
+
+        assertThatThrownBy(() -> prechecks.run(USER_ID, ADDRESS_ID, List.of(10L)))
+                .isInstanceOf(AppException.class)
+                .extracting(e -> ((AppException) e).getStatus())
+                .isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    void insufficientStockNamesTheProduct() {
+        InventoryAvailabilityDTO shortLine = new InventoryAvailabilityDTO();
+        shortLine.setProductId(1L);
+        shortLine.setSize("M");
+        shortLine.setSufficient(false);
+        when(productServiceClient.checkAvailability(anyList())).thenReturn(List.of(shortLine));
+
+        assertThatThrownBy(() -> prechecks.run(USER_ID, ADDRESS_ID, List.of(10L)))
+                .isInstanceOf(AppException.class)
+                .hasMessageContaining("Áo thun");
+    }
+
+    private Object blockUntilInterrupted() {
+        try {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            interrupted.countDown();
+        }
+        return null;
+    }
+
+    private boolean awaitInterrupt() {
+        try {
+            return interrupted.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private long timerCount(String stage, String outcome) {
+        return meterRegistry.get("order.checkout.precheck")
+                .tag("stage", stage)
+                .tag("outcome", outcome)
+                .timer()
+                .count();
+    }
+}
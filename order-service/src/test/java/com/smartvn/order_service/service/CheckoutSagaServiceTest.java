@@ -0,0 +1,277 @@
+package com.smartvn.order_service.service;
+
+import com.smartvn.order_service.client.ProductServiceClient;
+import com.smartvn.order_service.client.ProductServiceFallback;
+import com.smartvn.order_service.dto.product.StockReservationDTO;
+import com.smartvn.order_service.dto.product.StockReservationRequest;
+import com.smartvn.order_service.enums.PaymentMethod;
+import com.smartvn.order_service.exceptions.AppException;
+import com.smartvn.order_service.model.Cart;
+import com.smartvn.order_service.model.CheckoutSaga;
+import com.smartvn.order_service.model.Order;
+import com.smartvn.order_service.model.OrderItem;
+import com.smartvn.order_service.repository.CartItemRepository;
+import com.smartvn.order_service.repository.CartRepository;
+import com.smartvn.order_service.repository.CheckoutSagaRepository;
+import com.smartvn.order_service.repository.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CheckoutSagaServiceTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    @Mock
+    private ProductServiceClient productServiceClient;
+    @Mock
+    private OrderRepository orderRepository;
+    @Mock
+    private CartRepository cartRepository;
+    @Mock
+    private CartItemRepository cartItemRepository;
+    @Mock
+    private CartService cartService;
+    @Mock
+    private CheckoutSagaRepository sagaRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private CheckoutSagaService sagaService;
+
+    @BeforeEach
+    void setUp() {
+        sagaService = new CheckoutSagaService(productServiceClient, orderRepository, cartRepository,
+                cartItemRepository, cartService, sagaRepository, transactionManager);
+        ReflectionTestUtils.setField(sagaService, "stockReservationTtlSeconds", 1200L);
+        ReflectionTestUtils.setField(sagaService, "maxAttempts", MAX_ATTEMPTS);
+        ReflectionTestUtils.setField(sagaService, "backoffMs", 1L);
+        ReflectionTestUtils.setField(sagaService, "maxBackoffMs", 1000L);
+        ReflectionTestUtils.setField(sagaService, "leaseMs", 60_000L);
+
+        Order order = new Order();
+        order.setId(42L);
+        OrderItem item = new OrderItem();
+        item.setProductId(3L);
+        item.setSize("M");
+        item.setQuantity(2);
+        item.setPrice(new BigDecimal("100000"));
+        item.setOrder(order);
+        order.getOrderItems().add(item);
+
+        lenient().when(orderRepository.findById(42L)).thenReturn(Optional.of(order));
+        lenient().when(orderRepository.existsById(42L)).thenReturn(true);
+        lenient().when(sagaRepository.saveAndFlush(any(CheckoutSaga.class))).thenAnswer(inv -> inv.getArgument(0));
+        lenient().when(productServiceClient.releaseReservation(eq("order-42"), anyList()))
+                .thenReturn(new StockReservationDTO());
+
+        Cart cart = new Cart();
+        cart.setId(5L);
+        cart.setUserId(7L);
+        lenient().when(cartRepository.findByUserId(7L)).thenReturn(Optional.of(cart));
+    }
+
+    @Test
+    void codOrderReservesThenCommitsThenClearsCart() {
+        CheckoutSaga saga = sagaService.run(newSaga(PaymentMethod.COD));
+
+        assertThat(saga.getStatus()).isEqualTo(CheckoutSaga.Status.COMPLETED);
+        assertThat(saga.getStep()).isEqualTo(CheckoutSaga.Step.DONE);
+        InOrder steps = inOrder(productServiceClient, cartItemRepository);
+        steps.verify(productServiceClient).reserveInventory(any(StockReservationRequest.class));
+        steps.verify(productServiceClient).commitReservation("order-42");
+        steps.verify(cartItemRepository).deleteByIdsAndCartId(List.of(10L, 11L), 5L);
+        verify(productServiceClient, never()).releaseReservation(anyString(), anyList());
+    }
+
+    @Test
+    void vnpayOrderOnlyReservesUntilPaid() {
+        CheckoutSaga saga = sagaService.run(newSaga(PaymentMethod.VNPAY));
+
+        assertThat(saga.getStatus()).isEqualTo(CheckoutSaga.Status.COMPLETED);
+        verify(productServiceClient).reserveInventory(any(StockReservationRequest.class));
+        verify(productServiceClient, never()).commitReservation(anyString());
+        verify(cartItemRepository).deleteByIdsAndCartId(List.of(10L, 11L), 5L);
+    }
+
+    @Test
+    void rejectedCommitReleasesReservationThenDeletesOrder() {
+        when(productServiceClient.commitReservation("order-42"))
+                .thenThrow(new AppException("Reservation expired", HttpStatus.CONFLICT));
+
+        CheckoutSaga saga = sagaService.run(newSaga(PaymentMethod.COD));
+
+        assertThat(saga.getStatus()).isEqualTo(CheckoutSaga.Status.COMPENSATED);
+        assertThat(saga.getRejected()).isTrue();
+        InOrder steps = inOrder(productServiceClient, orderRepository);
+        steps.verify(productServiceClient).reserveInventory(any(StockReservationRequest.class));
+        steps.verify(productServiceClient).commitReservation("order-42");
+        steps.verify(productServiceClient).releaseReservation(eq("order-42"), anyList());
+        steps.verify(orderRepository).deleteById(42L);
+        verify(cartItemRepository, never()).deleteByIdsAndCartId(anyCollection(), any());
+    }
+
+    @Test
+    void unconfirmedReleaseIsRetriedLaterBeforeDeletingOrder() {
+        when(productServiceClient.reserveInventory(any(StockReservationRequest.class)))
+                .thenThrow(new AppException("Out of stock", HttpStatus.CONFLICT));
+        when(productServiceClient.releaseReservation(eq("order-42"), anyList())).thenReturn(null);
+
+        CheckoutSaga saga = sagaService.run(newSaga(PaymentMethod.COD));
+
+        // Chưa chắc hàng đã trả → không xoá đơn, scheduler chạy lại bước RELEASE_STOCK
+        assertThat(saga.getStatus()).isEqualTo(CheckoutSaga.Status.COMPENSATING);
+        assertThat(saga.getStep()).isEqualTo(CheckoutSaga.Step.RELEASE_STOCK);
+        assertThat(saga.getAttempts()).isEqualTo(1);
+        assertThat(saga.getNextAttemptAt()).isAfter(LocalDateTime.now());
+        verify(productServiceClient, times(MAX_ATTEMPTS)).releaseReservation(eq("order-42"), anyList());
+        verify(orderRepository, never()).deleteById(any());
+    }
+
+    @Test
+    void failingCartCleanupIsRetriedWithoutCompensating() {
+        when(cartRepository.findByUserId(7L)).thenThrow(new RuntimeException("Deadlock found"));
+
+        CheckoutSaga saga = sagaService.run(newSaga(PaymentMethod.COD));
+
+        assertThat(saga.getStatus()).isEqualTo(CheckoutSaga.Status.RUNNING);
+        assertThat(saga.getStep()).isEqualTo(CheckoutSaga.Step.CLEAR_CART);
+        assertThat(saga.getAttempts()).isEqualTo(1);
+        verify(cartRepository, times(MAX_ATTEMPTS)).findByUserId(7L);
+        verify(productServiceClient, never()).releaseReservation(anyString(), anyList());
+        verify(orderRepository, never()).deleteById(any());
+    }
+
+    @Test
+    void versionConflictHandsSagaToOtherWorker() {
+        doThrow(new ObjectOptimisticLockingFailureException(CheckoutSaga.class, 1L))
+                .when(sagaRepository).saveAndFlush(any(CheckoutSaga.class));
+
+        sagaService.run(newSaga(PaymentMethod.COD));
+
+        // Worker khác đã ghi saga sau bước RESERVE_STOCK → dừng, không chạy tiếp / bù trừ
+        verify(productServiceClient).reserveInventory(any(StockReservationRequest.class));
+        verify(productServiceClient, never()).commitReservation(anyString());
+        verify(productServiceClient, never()).releaseReservation(anyString(), anyList());
+    }
+
+    @Test
+    void schedulerResumesDueSagaFromItsStep() {
+        CheckoutSaga stalled = newSaga(PaymentMethod.COD);
+        stalled.setStep(CheckoutSaga.Step.COMMIT_STOCK);
+        stalled.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+        when(sagaRepository.findDueIds(anyCollection(), any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(1L));
+        when(sagaRepository.findById(1L)).thenReturn(Optional.of(stalled));
+
+        sagaService.resumeDueSagas();
+
+        assertThat(stalled.getStatus()).isEqualTo(CheckoutSaga.Status.COMPLETED);
+        verify(productServiceClient, never()).reserveInventory(any(StockReservationRequest.class));
+        verify(productServiceClient).commitReservation("order-42");
+        verify(cartItemRepository).deleteByIdsAndCartId(List.of(10L, 11L), 5L);
+    }
+
+    @Test
+    void schedulerSkipsSagaWhoseLeaseWasRenewed() {
+        // Worker khác vừa nhận saga (lease còn hạn) giữa lúc tìm và lúc claim
+        CheckoutSaga leased = newSaga(PaymentMethod.COD);
+        when(sagaRepository.findDueIds(anyCollection(), any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(1L));
+        when(sagaRepository.findById(1L)).thenReturn(Optional.of(leased));
+
+        sagaService.resumeDueSagas();
+
+        verify(sagaRepository, never()).saveAndFlush(any(CheckoutSaga.class));
+        verify(productServiceClient, never()).reserveInventory(any(StockReservationRequest.class));
+    }
+
+    @Test
+    void schedulerSkipsSagaClaimedConcurrently() {
+        CheckoutSaga due = newSaga(PaymentMethod.COD);
+        due.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+        when(sagaRepository.findDueIds(anyCollection(), any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(1L));
+        when(sagaRepository.findById(1L)).thenReturn(Optional.of(due));
+        doThrow(new ObjectOptimisticLockingFailureException(CheckoutSaga.class, 1L))
+                .when(sagaRepository).saveAndFlush(any(CheckoutSaga.class));
+
+        sagaService.resumeDueSagas();
+
+        verify(productServiceClient, never()).reserveInventory(any(StockReservationRequest.class));
+    }
+
+    @Test
+    void conflictFromReserveCompensatesRightAwayAsRejected() {
+        // Đi qua fallback như khi circuit breaker bật: 409 từ FeignErrorDecoder phải được ném lại nguyên vẹn
+        ProductServiceFallback fallback =
+                new ProductServiceFallback(new AppException("Conflict: reserveInventory", HttpStatus.CONFLICT));
+        when(productServiceClient.reserveInventory(any(StockReservationRequest.class)))
+                .thenAnswer(inv -> fallback.reserveInventory(inv.getArgument(0)));
+
+        CheckoutSaga saga = sagaService.run(newSaga(PaymentMethod.COD));
+
+        assertThat(saga.getStatus()).isEqualTo(CheckoutSaga.Status.COMPENSATED);
+        assertThat(saga.getRejected()).isTrue();
+        verify(productServiceClient, times(1)).reserveInventory(any(StockReservationRequest.class));
+        InOrder order = inOrder(productServiceClient, orderRepository);
+        order.verify(productServiceClient).releaseReservation(eq("order-42"), anyList());
+        order.verify(orderRepository).deleteById(42L);
+    }
+
+    @Test
+    void unavailableReserveIsRetriedThenCompensatedAsNotRejected() {
+        ProductServiceFallback fallback = new ProductServiceFallback(new RuntimeException("Connection refused"));
+        when(productServiceClient.reserveInventory(any(StockReservationRequest.class)))
+                .thenAnswer(inv -> fallback.reserveInventory(inv.getArgument(0)));
+
+        CheckoutSaga saga = sagaService.run(newSaga(PaymentMethod.COD));
+
+        assertThat(saga.getStatus()).isEqualTo(CheckoutSaga.Status.COMPENSATED);
+        assertThat(saga.getRejected()).isFalse();
+        verify(productServiceClient, times(MAX_ATTEMPTS)).reserveInventory(any(StockReservationRequest.class));
+    }
+
+    private static CheckoutSaga newSaga(PaymentMethod paymentMethod) {
+        CheckoutSaga saga = new CheckoutSaga();
+        saga.setId(1L);
+        saga.setOrderId(42L);
+        saga.setUserId(7L);
+        saga.setPaymentMethod(paymentMethod);
+        saga.setCartItemIds("10,11");
+        saga.setStep(CheckoutSaga.Step.RESERVE_STOCK);
+        saga.setStatus(CheckoutSaga.Status.RUNNING);
+        saga.setNextAttemptAt(LocalDateTime.now().plusMinutes(1));
+        saga.setCreatedAt(LocalDateTime.now());
+        saga.setUpdatedAt(LocalDateTime.now());
+        return saga;
+    }
+}
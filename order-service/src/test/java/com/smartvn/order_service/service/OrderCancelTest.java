@@ -0,0 +1,143 @@
+package com.smartvn.order_service.service;
+
+import com.smartvn.order_service.client.ProductServiceClient;
+import com.smartvn.order_service.dto.product.StockReservationDTO;
+import com.smartvn.order_service.enums.OrderStatus;
+import com.smartvn.order_service.enums.PaymentMethod;
+import com.smartvn.order_service.enums.PaymentStatus;
+import com.smartvn.order_service.exceptions.AppException;
+import com.smartvn.order_service.model.Order;
+import com.smartvn.order_service.model.OrderItem;
+import com.smartvn.order_service.repository.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OrderCancelTest {
+
+    @Mock
+    private ProductServiceClient productServiceClient;
+    @Mock
+    private OrderRepository orderRepository;
+    @Mock
+    private CheckoutSagaService checkoutSaga;
+    @Mock
+    private CheckoutPrecheckService checkoutPrechecks;
+
+    @InjectMocks
+    private OrderService orderService;
+
+    private Order order;
+
+    @BeforeEach
+    void setUp() {
+        order = new Order();
+        order.setId(42L);
+        order.setUserId(7L);
+        order.setOrderStatus(OrderStatus.CONFIRMED);
+        order.setPaymentStatus(PaymentStatus.PENDING);
+        OrderItem item = new OrderItem();
+        item.setProductId(3L);
+        item.setSize("M");
+        item.setQuantity(2);
+        item.setPrice(new BigDecimal("100000"));
+        item.setOrder(order);
+        order.getOrderItems().add(item);
+        lenient().when(orderRepository.findById(42L)).thenReturn(Optional.of(order));
+        lenient().when(orderRepository.save(any(Order.class))).thenAnswer(inv -> inv.getArgument(0));
+    }
+
+    @Test
+    void unconfirmedReleaseKeepsOrderOpen() {
+        when(productServiceClient.releaseReservation(eq("order-42"), anyList())).thenReturn(null);
+
+        assertThatThrownBy(() -> orderService.cancelOrder(42L, 7L))
+                .isInstanceOf(AppException.class)
+                .extracting(e -> ((AppException) e).getStatus())
+                .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+
+        assertThat(order.getOrderStatus()).isEqualTo(OrderStatus.CONFIRMED);
+        verify(orderRepository, never()).save(any(Order.class));
+    }
+
+    @Test
+    void releaseErrorKeepsOrderOpen() {
+        when(productServiceClient.releaseReservation(eq("order-42"), anyList()))
+                .thenThrow(new RuntimeException("circuit open"));
+
+        assertThatThrownBy(() -> orderService.cancelOrder(42L, 7L)).isInstanceOf(AppException.class);
+
+        assertThat(order.getOrderStatus()).isEqualTo(OrderStatus.CONFIRMED);
+        verify(orderRepository, never()).save(any(Order.class));
+    }
+
+    @Test
+    void confirmedReleaseCancelsOrder() {
+        when(productServiceClient.releaseReservation(eq("order-42"), anyList()))
+                .thenReturn(new StockReservationDTO());
+
+        Order cancelled = orderService.cancelOrder(42L, 7L);
+
+        assertThat(cancelled.getOrderStatus()).isEqualTo(OrderStatus.CANCELLED);
+        assertThat(cancelled.getPaymentStatus()).isEqualTo(PaymentStatus.CANCELLED);
+    }
+
+    @Test
+    void expiredOrdersAreCancelledPageByPageOutsideOneTransaction() {
+        ReflectionTestUtils.setField(orderService, "unpaidExpiryBatchSize", 2);
+        when(orderRepository.findUnpaidOrderIdsAfter(eq(PaymentMethod.VNPAY), eq(OrderStatus.PENDING), anyCollection(),
+                any(LocalDateTime.class), eq(0L), any(Pageable.class))).thenReturn(List.of(1L, 2L));
+        when(orderRepository.findUnpaidOrderIdsAfter(eq(PaymentMethod.VNPAY), eq(OrderStatus.PENDING), anyCollection(),
+                any(LocalDateTime.class), eq(2L), any(Pageable.class))).thenReturn(List.of(3L));
+        when(orderRepository.findAllWithItemsByIdIn(List.of(1L, 2L))).thenReturn(List.of(unpaid(1L), unpaid(2L)));
+        when(orderRepository.findAllWithItemsByIdIn(List.of(3L))).thenReturn(List.of(unpaid(3L)));
+        when(productServiceClient.releaseReservation(eq("order-1"), anyList())).thenReturn(new StockReservationDTO());
+        // Đơn 2: product-service không xác nhận → giữ PENDING cho lượt sau
+        when(productServiceClient.releaseReservation(eq("order-2"), anyList())).thenReturn(null);
+        when(productServiceClient.releaseReservation(eq("order-3"), anyList())).thenReturn(new StockReservationDTO());
+        when(orderRepository.cancelIfUnpaid(anyLong(), eq(OrderStatus.PENDING), anyCollection(),
+                eq(OrderStatus.CANCELLED), eq(PaymentStatus.CANCELLED), any(LocalDateTime.class))).thenReturn(1);
+
+        orderService.cancelExpiredUnpaidOrders();
+
+        verify(orderRepository).cancelIfUnpaid(eq(1L), any(), anyCollection(), any(), any(), any());
+        verify(orderRepository, never()).cancelIfUnpaid(eq(2L), any(), anyCollection(), any(), any(), any());
+        verify(orderRepository).cancelIfUnpaid(eq(3L), any(), anyCollection(), any(), any(), any());
+        verify(orderRepository, times(2)).findUnpaidOrderIdsAfter(any(), any(), anyCollection(), any(), anyLong(), any());
+        verify(orderRepository, never()).save(any(Order.class));
+    }
+
+    private static Order unpaid(Long id) {
+        Order expired = new Order();
+        expired.setId(id);
+        expired.setPaymentMethod(PaymentMethod.VNPAY);
+        expired.setOrderStatus(OrderStatus.PENDING);
+        expired.setPaymentStatus(PaymentStatus.PENDING);
+        return expired;
+    }
+}
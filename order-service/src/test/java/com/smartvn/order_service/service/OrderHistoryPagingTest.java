@@ -0,0 +1,131 @@
+package com.smartvn.order_service.service;
+
+import com.smartvn.order_service.dto.response.CursorSlice;
+import com.smartvn.order_service.exceptions.AppException;
+import com.smartvn.order_service.model.Order;
+import com.smartvn.order_service.pagination.OrderHistoryCursor;
+import com.smartvn.order_service.repository.OrderRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OrderHistoryPagingTest {
+
+    private static final Long USER_ID = 7L;
+    private static final LocalDateTime SAME_TIME = LocalDateTime.of(2025, 3, 1, 10, 15, 30, 123_000_000);
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @InjectMocks
+    private OrderService orderService;
+
+    @Test
+    void ordersCreatedInTheSameInstantArePagedByIdWithoutGapOrRepeat() {
+        // 3 đơn cùng createdAt: trang 1 = [12, 11], trang 2 = [10]
+        when(orderRepository.findUserOrderIdsAfter(eq(USER_ID), isNull(), isNull(), isNull(), isNull(),
+                isNull(), isNull(), eq(PageRequest.of(0, 3)))).thenReturn(List.of(12L, 11L, 10L));
+        when(orderRepository.findAllWithItemsByIdIn(List.of(12L, 11L)))
+                .thenReturn(List.of(order(11L, SAME_TIME), order(12L, SAME_TIME)));
+
+        CursorSlice<Order> first = orderService.scrollUserOrders(USER_ID, null, null, null, null, null, 2);
+
+        assertThat(first.getContent()).extracting(Order::getId).containsExactly(12L, 11L);
+        assertThat(first.isHasNext()).isTrue();
+        OrderHistoryCursor cursor = OrderHistoryCursor.decode(first.getNextCursor());
+        assertThat(cursor.getLastCreatedAt()).isEqualTo(SAME_TIME);
+        assertThat(cursor.getLastId()).isEqualTo(11L);
+
+        when(orderRepository.findUserOrderIdsAfter(eq(USER_ID), isNull(), isNull(), isNull(), isNull(),
+                eq(SAME_TIME), eq(11L), eq(PageRequest.of(0, 3)))).thenReturn(List.of(10L));
+        when(orderRepository.findAllWithItemsByIdIn(List.of(10L))).thenReturn(List.of(order(10L, SAME_TIME)));
+
+        CursorSlice<Order> second = orderService.scrollUserOrders(
+                USER_ID, null, null, null, null, first.getNextCursor(), 2);
+
+        assertThat(second.getContent()).extracting(Order::getId).containsExactly(10L);
+        assertThat(second.isHasNext()).isFalse();
+        assertThat(second.getNextCursor()).isNull();
+    }
+
+    @Test
+    void pageIsSortedNewestFirstWhateverTheLoadOrder() {
+        LocalDateTime older = SAME_TIME.minusMinutes(1);
+        when(orderRepository.findUserOrderIdsAfter(eq(USER_ID), any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(List.of(5L, 4L, 9L));
+        when(orderRepository.findAllWithItemsByIdIn(List.of(5L, 4L, 9L)))
+                .thenReturn(List.of(order(4L, SAME_TIME), order(9L, older), order(5L, SAME_TIME)));
+
+        CursorSlice<Order> page = orderService.scrollUserOrders(USER_ID, null, null, null, null, null, 20);
+
+        assertThat(page.getContent()).extracting(Order::getId).containsExactly(5L, 4L, 9L);
+        assertThat(page.isHasNext()).isFalse();
+    }
+
+    @Test
+    void pageSizeIsCapped() {
+        when(orderRepository.findUserOrderIdsAfter(eq(USER_ID), any(), any(), any(), any(), any(), any(),
+                eq(PageRequest.of(0, 101)))).thenReturn(List.of());
+
+        CursorSlice<Order> page = orderService.scrollUserOrders(USER_ID, null, null, null, null, null, 10_000);
+
+        assertThat(page.getSize()).isEqualTo(100);
+        assertThat(page.getContent()).isEmpty();
+    }
+
+    @Test
+    void tamperedCursorIsRejectedBeforeQuerying() {
+        for (String tampered : List.of(
+                "not base64 !",
+                encode("11"),
+                encode("abc|" + SAME_TIME),
+                encode("11|yesterday"))) {
+            assertThatThrownBy(() -> orderService.scrollUserOrders(USER_ID, null, null, null, null, tampered, 20))
+                    .as(tampered)
+                    .isInstanceOf(AppException.class)
+                    .extracting(e -> ((AppException) e).getStatus())
+                    .isEqualTo(HttpStatus.BAD_REQUEST);
+        }
+        verifyNoInteractions(orderRepository);
+    }
+
+    @Test
+    void cursorRoundTripKeepsFractionalSeconds() {
+        OrderHistoryCursor cursor = new OrderHistoryCursor(SAME_TIME, 11L);
+
+        OrderHistoryCursor decoded = OrderHistoryCursor.decode(cursor.encode());
+
+        assertThat(decoded.getLastCreatedAt()).isEqualTo(SAME_TIME);
+        assertThat(decoded.getLastId()).isEqualTo(11L);
+    }
+
+    private static Order order(Long id, LocalDateTime createdAt) {
+        Order order = new Order();
+        order.setId(id);
+        order.setUserId(USER_ID);
+        order.setCreatedAt(createdAt);
+        return order;
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,120 @@
+package com.smartvn.order_service.service;
+
+import com.smartvn.order_service.client.ProductServiceClient;
+import com.smartvn.order_service.dto.product.BatchOperationResultDTO;
+import com.smartvn.order_service.dto.product.InventoryBatchOperationRequest;
+import com.smartvn.order_service.enums.OrderStatus;
+import com.smartvn.order_service.model.Order;
+import com.smartvn.order_service.model.OrderItem;
+import com.smartvn.order_service.repository.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OrderQuantitySoldTest {
+
+    @Mock
+    private ProductServiceClient productServiceClient;
+    @Mock
+    private OrderRepository orderRepository;
+    @Mock
+    private CheckoutSagaService checkoutSaga;
+    @Mock
+    private CheckoutPrecheckService checkoutPrechecks;
+
+    @InjectMocks
+    private OrderService orderService;
+
+    private Order order;
+
+    @BeforeEach
+    void setUp() {
+        order = new Order();
+        order.setId(42L);
+        order.setOrderStatus(OrderStatus.SHIPPED);
+        OrderItem item = new OrderItem();
+        item.setProductId(7L);
+        item.setQuantity(2);
+        item.setPrice(new BigDecimal("100000"));
+        item.setOrder(order);
+        order.getOrderItems().add(item);
+        lenient().when(orderRepository.findById(42L)).thenReturn(Optional.of(order));
+        lenient().when(orderRepository.save(any(Order.class))).thenAnswer(inv -> inv.getArgument(0));
+    }
+
+    @Test
+    void fallbackNullMarksOrderForRetry() {
+        when(productServiceClient.batchIncreaseQuantitySold(any())).thenReturn(null);
+
+        orderService.updateOrderStatus(42L, OrderStatus.DELIVERED);
+
+        assertThat(order.getOrderStatus()).isEqualTo(OrderStatus.DELIVERED);
+        assertThat(order.getQuantitySoldRetryAt()).isNotNull();
+    }
+
+    @Test
+    void exceptionMarksOrderForRetry() {
+        when(productServiceClient.batchIncreaseQuantitySold(any())).thenThrow(new RuntimeException("timeout"));
+
+        orderService.updateOrderStatus(42L, OrderStatus.DELIVERED);
+
+        assertThat(order.getQuantitySoldRetryAt()).isNotNull();
+    }
+
+    @Test
+    void successLeavesNothingPending() {
+        when(productServiceClient.batchIncreaseQuantitySold(any()))
+                .thenReturn(new BatchOperationResultDTO("order-42:sold", true, 1));
+
+        orderService.updateOrderStatus(42L, OrderStatus.DELIVERED);
+
+        assertThat(order.getQuantitySoldRetryAt()).isNull();
+    }
+
+    @Test
+    void retryResendsSameOperationKeyAndClearsMarker() {
+        order.setOrderStatus(OrderStatus.DELIVERED);
+        order.setQuantitySoldRetryAt(LocalDateTime.now().minusMinutes(1));
+        when(orderRepository.findQuantitySoldDue(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(order));
+        when(productServiceClient.batchIncreaseQuantitySold(any()))
+                .thenReturn(new BatchOperationResultDTO("order-42:sold", false, 1));
+
+        orderService.retryPendingQuantitySold();
+
+        ArgumentCaptor<InventoryBatchOperationRequest> sent = ArgumentCaptor.forClass(InventoryBatchOperationRequest.class);
+        verify(productServiceClient).batchIncreaseQuantitySold(sent.capture());
+        assertThat(sent.getValue().getOperationKey()).isEqualTo("order-42:sold");
+        assertThat(order.getQuantitySoldRetryAt()).isNull();
+    }
+
+    @Test
+    void retryStillFailingKeepsMarker() {
+        order.setOrderStatus(OrderStatus.DELIVERED);
+        order.setQuantitySoldRetryAt(LocalDateTime.now().minusMinutes(1));
+        when(orderRepository.findQuantitySoldDue(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(order));
+        when(productServiceClient.batchIncreaseQuantitySold(any())).thenReturn(null);
+
+        orderService.retryPendingQuantitySold();
+
+        assertThat(order.getQuantitySoldRetryAt()).isNotNull();
+    }
+}
@@ -3,12 +3,22 @@ package com.smartvn.product_service.controller;
 import com.smartvn.product_service.dto.InventoryDTO;
 import com.smartvn.product_service.dto.admin.*;
 import com.smartvn.product_service.dto.response.ApiResponse;
+import com.smartvn.product_service.dto.response.CursorSlice;
 import com.smartvn.product_service.model.Image;
 import com.smartvn.product_service.model.Inventory;
+import com.smartvn.product_service.model.LowStockEntry;
 import com.smartvn.product_service.model.Product;
+import com.smartvn.product_service.service.BulkProductIngestionService;
+import com.smartvn.product_service.service.FlashSaleStockService;
 import com.smartvn.product_service.service.ImageService;
 import com.smartvn.product_service.service.InventoryService;
+import com.smartvn.product_service.service.InventoryStockSyncService;
+import com.smartvn.product_service.service.LowStockWatchlistService;
 import com.smartvn.product_service.service.ProductService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -20,6 +30,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -34,6 +46,11 @@ public class AdminProductController {
     private final ProductService productService;
     private final InventoryService inventoryService;
     private final ImageService imageService;
+    private final BulkProductIngestionService bulkIngestionService;
+    private final InventoryStockSyncService stockSyncService;
+    private final FlashSaleStockService flashSaleStockService;
+    private final LowStockWatchlistService lowStockWatchlistService;
+    private final ObjectMapper objectMapper;
 
     /**
      * ✅ TẠO SẢN PHẨM ĐƠN LẺ
@@ -52,6 +69,72 @@ public class AdminProductController {
                 .body(ApiResponse.success(dto, "Product created successfully"));
     }
 
+    /**
+     * ✅ BULK IMPORT DẠNG STREAM (NDJSON)
+     * Request: mỗi dòng là một CreateProductRequest.
+     * Response (NDJSON): một dòng {"type":"chunk",...} sau mỗi chunk, dòng cuối {"type":"summary",...}.
+     *
+     * @param chunkSize Số dòng mỗi chunk/transaction (mặc định product.bulk.chunk-size)
+     */
+    @PostMapping("/bulk/stream")
+    public void streamBulkProducts(
+            @RequestParam(required = false) Integer chunkSize,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+
+        log.info("📦 Bulk stream import started (chunkSize: {})", chunkSize);
+
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        PrintWriter writer = response.getWriter();
+
+        BulkProductIngestionService.IngestionSummary summary = bulkIngestionService.ingestNdjson(
+                request.getInputStream(),
+                chunkSize,
+                report -> writeNdjsonLine(writer, Map.of("type", "chunk", "report", report))
+        );
+        writeNdjsonLine(writer, Map.of("type", "summary", "summary", summary));
+    }
+
+    /**
+     * ✅ ĐỒNG BỘ TỒN KHO TỪ SNAPSHOT CỦA KHO (STREAM)
+     * Request: Content-Type text/csv (productId,size,quantity,price; header tuỳ chọn) hoặc NDJSON (StockSyncRow).
+     * Chỉ ghi các dòng thay đổi; response NDJSON giống /bulk/stream (chunk... rồi summary).
+     *
+     * @param chunkSize Số dòng mỗi chunk/transaction (mặc định inventory.stock-sync.chunk-size)
+     */
+    @PostMapping("/inventory/sync/stream")
+    public void streamStockSync(
+            @RequestParam(required = false) Integer chunkSize,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+
+        boolean csv = request.getContentType() != null && request.getContentType().startsWith("text/csv");
+        log.info("📦 Stock sync started (format: {}, chunkSize: {})", csv ? "csv" : "ndjson", chunkSize);
+
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        PrintWriter writer = response.getWriter();
+
+        InventoryStockSyncService.SyncSummary summary = stockSyncService.sync(
+                request.getInputStream(),
+                csv,
+                chunkSize,
+                report -> writeNdjsonLine(writer, Map.of("type", "chunk", "report", report))
+        );
+        writeNdjsonLine(writer, Map.of("type", "summary", "summary", summary));
+    }
+
+    private void writeNdjsonLine(PrintWriter writer, Object payload) {
+        try {
+            writer.write(objectMapper.writeValueAsString(payload));
+            writer.write("\n");
+            writer.flush();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize bulk import progress", e);
+        }
+    }
+
     /**
      * ✅ TẠO NHIỀU SẢN PHẨM (BULK IMPORT)
      */
@@ -162,6 +245,30 @@ public class AdminProductController {
                 .build());
     }
 
+    /**
+     * Admin search ở chế độ cursor (keyset), sort theo createdAt | quantitySold | averageRating
+     */
+    @GetMapping("/all/scroll")
+    public ResponseEntity<ApiResponse<CursorSlice<ProductAdminViewDTO>>> scrollAllProducts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String sortBy,
+            @RequestParam(required = false) String direction,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) Boolean isActive) {
+
+        CursorSlice<ProductAdminViewDTO> slice = productService
+                .scrollProductsForAdmin(search, categoryId, isActive, sortBy, direction, cursor, size)
+                .map(this::convertToAdminDTO);
+
+        return ResponseEntity.ok(ApiResponse.<CursorSlice<ProductAdminViewDTO>>builder()
+                .data(slice)
+                .message("Products retrieved")
+                .status(HttpStatus.OK.value())
+                .build());
+    }
+
     @PutMapping("/{id}/toggle-active")
     public ResponseEntity<ApiResponse<Void>> toggleActive(@PathVariable Long id) {
         productService.toggleProductActive(id);
@@ -172,6 +279,33 @@ public class AdminProductController {
                 .build());
     }
 
+    /**
+     * ✅ Bật/tắt chế độ flash-sale (trừ kho trên bộ đếm trong RAM) cho SKU nóng.
+     * Chỉ dùng khi product-service chạy 1 instance.
+     */
+    @PutMapping("/{id}/flash-sale")
+    public ResponseEntity<ApiResponse<Void>> setFlashSale(@PathVariable Long id,
+                                                          @RequestParam boolean enabled) {
+        flashSaleStockService.setFlashSale(id, enabled);
+        return ResponseEntity.ok(ApiResponse.<Void>builder()
+                .data(null)
+                .message(enabled ? "Flash sale enabled" : "Flash sale disabled")
+                .status(HttpStatus.OK.value())
+                .build());
+    }
+
+    /**
+     * Số lượng còn bán được trên bộ đếm flash-sale theo size (rỗng nếu không bật)
+     */
+    @GetMapping("/{id}/flash-sale")
+    public ResponseEntity<ApiResponse<Map<String, Integer>>> getFlashSaleStock(@PathVariable Long id) {
+        return ResponseEntity.ok(ApiResponse.<Map<String, Integer>>builder()
+                .data(flashSaleStockService.snapshot(id))
+                .message("Flash sale stock retrieved")
+                .status(HttpStatus.OK.value())
+                .build());
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<ApiResponse<Void>> deleteProduct(@PathVariable Long id) {
         productService.softDeleteProduct(id); // Set isActive = false
@@ -282,6 +416,55 @@ public class AdminProductController {
                 .body(ApiResponse.success(new InventoryDTO(inv), "Inventory added"));
     }
 
+    /**
+     * ✅ ĐẶT NGƯỠNG CẢNH BÁO SẮP HẾT HÀNG CHO SKU (bỏ value = dùng ngưỡng mặc định)
+     */
+    @PutMapping("/inventory/{inventoryId}/reorder-point")
+    public ResponseEntity<ApiResponse<InventoryDTO>> updateReorderPoint(
+            @PathVariable Long inventoryId,
+            @RequestParam(required = false) Integer value) {
+
+        Inventory updated = inventoryService.updateReorderPoint(inventoryId, value);
+
+        return ResponseEntity.ok(
+                ApiResponse.success(new InventoryDTO(updated), "Reorder point updated")
+        );
+    }
+
+    /**
+     * ✅ DANH SÁCH SKU SẮP HẾT / HẾT HÀNG (ít hàng nhất trước)
+     *
+     * @param level LOW | OUT, bỏ trống = cả hai
+     */
+    @GetMapping("/inventory/low-stock")
+    public ResponseEntity<ApiResponse<Page<LowStockEntryDTO>>> getLowStock(
+            @RequestParam(required = false) LowStockEntry.Level level,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+
+        return ResponseEntity.ok(ApiResponse.<Page<LowStockEntryDTO>>builder()
+                .data(lowStockWatchlistService.getWatchlist(level, page, size))
+                .message("Low stock retrieved")
+                .status(HttpStatus.OK.value())
+                .build());
+    }
+
+    /**
+     * ✅ LUỒNG ALERT SẮP HẾT HÀNG: poll theo offset (nextOffset của lần trước), waitMs > 0 = long-poll
+     */
+    @GetMapping("/inventory/low-stock/alerts")
+    public ResponseEntity<ApiResponse<LowStockAlertFeedDTO>> getLowStockAlerts(
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(defaultValue = "0") long waitMs) {
+
+        return ResponseEntity.ok(ApiResponse.<LowStockAlertFeedDTO>builder()
+                .data(lowStockWatchlistService.readAlerts(after, limit, waitMs))
+                .message("Low stock alerts retrieved")
+                .status(HttpStatus.OK.value())
+                .build());
+    }
+
     /**
      * ✅ XÓA INVENTORY VARIANT
      */
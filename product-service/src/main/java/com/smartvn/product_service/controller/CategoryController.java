@@ -4,13 +4,13 @@ import com.smartvn.product_service.dto.CategoryDTO;
 import com.smartvn.product_service.dto.response.ApiResponse;
 import com.smartvn.product_service.model.Category;
 import com.smartvn.product_service.service.CategoryService;
+import com.smartvn.product_service.service.CategoryTreeService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("${api.prefix}/categories")
@@ -18,21 +18,15 @@ import java.util.stream.Collectors;
 public class CategoryController {
 
     private final CategoryService categoryService;
+    private final CategoryTreeService categoryTreeService;
 
     /**
      * API để lấy tất cả danh mục.
      */
     @GetMapping
     public ResponseEntity<ApiResponse<List<CategoryDTO>>> getAllCategories() {
-        // ✅ CHỈ LẤY CATEGORIES LEVEL 1 (có nested subCategories)
-        List<Category> topLevelCategories = categoryService.getAllCategories()
-                .stream()
-                .filter(cat -> cat.getLevel() == 1) // Chỉ lấy level 1
-                .collect(Collectors.toList());
-
-        List<CategoryDTO> categoryDTOs = topLevelCategories.stream()
-                .map(CategoryDTO::new) // CategoryDTO tự động map subCategories
-                .toList();
+        // ✅ CHỈ LẤY CATEGORIES LEVEL 1 (có nested subCategories), đọc từ snapshot, không query DB
+        List<CategoryDTO> categoryDTOs = categoryTreeService.current().toTopLevelDTOs();
 
         ApiResponse<List<CategoryDTO>> response = ApiResponse.<List<CategoryDTO>>builder()
                 .message("Categories fetched successfully.")
@@ -1,10 +1,17 @@
 package com.smartvn.product_service.controller;
 
 
+import com.smartvn.product_service.dto.BatchOperationResultDTO;
+import com.smartvn.product_service.dto.InventoryAvailabilityDTO;
+import com.smartvn.product_service.dto.InventoryBatchOperationRequest;
 import com.smartvn.product_service.dto.InventoryCheckRequest;
 import com.smartvn.product_service.dto.InventoryDTO;
+import com.smartvn.product_service.dto.InventoryQuoteDTO;
+import com.smartvn.product_service.dto.ProductChangeFeedDTO;
 import com.smartvn.product_service.dto.ProductDTO;
 import com.smartvn.product_service.dto.ProductDetailDTO;
+import com.smartvn.product_service.dto.StockReservationDTO;
+import com.smartvn.product_service.dto.StockReservationRequest;
 import com.smartvn.product_service.dto.admin.ProductStatsDTO;
 import com.smartvn.product_service.dto.ai.ProductExportDTO;
 import com.smartvn.product_service.dto.response.ApiResponse;
@@ -12,7 +19,9 @@ import com.smartvn.product_service.model.Inventory;
 import com.smartvn.product_service.model.Product;
 import com.smartvn.product_service.repository.ProductRepository;
 import com.smartvn.product_service.service.InventoryService;
+import com.smartvn.product_service.service.ProductChangeFeedService;
 import com.smartvn.product_service.service.ProductService;
+import com.smartvn.product_service.service.StockReservationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -31,13 +40,24 @@ public class InternalProductController {
     private final InventoryService  inventoryService;
     private final ProductService productService;
     private final ProductRepository  productRepository;
+    private final StockReservationService stockReservationService;
+    private final ProductChangeFeedService changeFeedService;
 
     @GetMapping("/products/{productId}")
     public ResponseEntity<ProductDTO> getProductById(@PathVariable Long productId) {
-        ProductDetailDTO dto = productService.getProductDetail(productId);
+        // Order-service dùng endpoint này khi checkout → luôn lấy tồn kho mới nhất
+        ProductDetailDTO dto = productService.getProductDetailWithFreshStock(productId);
         return ResponseEntity.ok(dto.toSimpleDTO());
     }
 
+    /**
+     * ✅ Lấy nhiều product trong 1 request / 1 query (thay cho gọi GET /products/{id} từng cái)
+     */
+    @PostMapping("/products/batch")
+    public ResponseEntity<List<ProductDTO>> getProductsByIds(@RequestBody List<Long> productIds) {
+        return ResponseEntity.ok(productService.getProductsByIds(productIds));
+    }
+
     @GetMapping("/products/{productId}/inventory")
     public ResponseEntity<List<InventoryDTO>> getInventory(@PathVariable Long productId) {
         List<Inventory> invs = inventoryService.getInventoriesByProduct(productId);
@@ -72,21 +92,44 @@ public class InternalProductController {
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * ✅ Hoàn kho nhiều dòng trong 1 transaction, idempotent theo operationKey
+     */
+    @PostMapping("/inventory/batch-restore")
+    public ResponseEntity<BatchOperationResultDTO> batchRestoreInventory(
+            @RequestBody InventoryBatchOperationRequest request) {
+        return ResponseEntity.ok(inventoryService.restoreInventory(request.getOperationKey(), request.getItems()));
+    }
+
     @PostMapping("/inventory/batch-check")
     public ResponseEntity<Map<String, Boolean>> batchCheckInventory(
             @RequestBody List<InventoryCheckRequest> requests) {
 
         Map<String, Boolean> results = new HashMap<>();
-
-        for (InventoryCheckRequest req : requests) {
-            String key = req.getProductId() + "-" + req.getSize();
-            boolean hasStock = inventoryService.checkInventoryAvailability(req);
-            results.put(key, hasStock);
+        for (InventoryAvailabilityDTO line : inventoryService.checkAvailability(requests)) {
+            results.put(line.getProductId() + "-" + line.getSize(), line.getSufficient());
         }
 
         return ResponseEntity.ok(results);
     }
 
+    /**
+     * ✅ Kiểm tra tồn kho nhiều dòng trong 1 query, trả về số lượng còn bán được + giá hiện tại từng dòng
+     */
+    @PostMapping("/inventory/availability")
+    public ResponseEntity<List<InventoryAvailabilityDTO>> checkAvailability(
+            @RequestBody List<InventoryCheckRequest> requests) {
+        return ResponseEntity.ok(inventoryService.checkAvailability(requests));
+    }
+
+    /**
+     * ✅ Báo giá 1 variant (trạng thái, giá, tồn kho, title/ảnh) cho add-to-cart trong 1 round trip
+     */
+    @PostMapping("/inventory/quote")
+    public ResponseEntity<InventoryQuoteDTO> quoteInventory(@RequestBody InventoryCheckRequest request) {
+        return ResponseEntity.ok(inventoryService.quote(request));
+    }
+
     @PostMapping("/inventory/batch-reduce")
     public ResponseEntity<Void> batchReduceInventory(
             @RequestBody List<InventoryCheckRequest> requests) {
@@ -95,6 +138,35 @@ public class InternalProductController {
         return ResponseEntity.ok().build();
     }
 
+    // ============================================
+    // GIỮ HÀNG CÓ THỜI HẠN (đặt đơn → thanh toán)
+    // ============================================
+
+    @PostMapping("/inventory/reservations")
+    public ResponseEntity<StockReservationDTO> reserveInventory(@RequestBody StockReservationRequest request) {
+        return ResponseEntity.ok(stockReservationService.reserve(request));
+    }
+
+    @GetMapping("/inventory/reservations/{reference}")
+    public ResponseEntity<StockReservationDTO> getReservation(@PathVariable String reference) {
+        return ResponseEntity.ok(stockReservationService.get(reference));
+    }
+
+    @PostMapping("/inventory/reservations/{reference}/commit")
+    public ResponseEntity<StockReservationDTO> commitReservation(@PathVariable String reference) {
+        return ResponseEntity.ok(stockReservationService.commit(reference));
+    }
+
+    /**
+     * Body (tuỳ chọn): danh sách item để hoàn kho cho đơn cũ chưa có reservation
+     */
+    @PostMapping("/inventory/reservations/{reference}/release")
+    public ResponseEntity<StockReservationDTO> releaseReservation(
+            @PathVariable String reference,
+            @RequestBody(required = false) List<InventoryCheckRequest> fallbackItems) {
+        return ResponseEntity.ok(stockReservationService.release(reference, fallbackItems));
+    }
+
     @PostMapping("/products/{productId}/increase-sold")
     public ResponseEntity<Void> increaseQuantitySold(@RequestBody InventoryCheckRequest request) {
 
@@ -102,6 +174,28 @@ public class InternalProductController {
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * ✅ Cộng số lượng đã bán cho cả đơn, idempotent theo operationKey
+     */
+    @PostMapping("/products/batch-increase-sold")
+    public ResponseEntity<BatchOperationResultDTO> batchIncreaseQuantitySold(
+            @RequestBody InventoryBatchOperationRequest request) {
+        return ResponseEntity.ok(productService.increaseQuantitySold(request));
+    }
+
+    /**
+     * ✅ Change feed: các product thay đổi sau offset "after" (đã nén theo product).
+     * waitMs > 0 → long-poll tối đa waitMs (≤ 25s) nếu chưa có gì mới.
+     * Lưu nextOffset để đọc tiếp sau khi restart; reset = true → đã lỡ event, cần đồng bộ lại toàn bộ.
+     */
+    @GetMapping("/products/changes")
+    public ResponseEntity<ProductChangeFeedDTO> getProductChanges(
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam(defaultValue = "500") int limit,
+            @RequestParam(defaultValue = "0") long waitMs) {
+        return ResponseEntity.ok(changeFeedService.read(after, limit, waitMs));
+    }
+
     @GetMapping("/products/stats") // ✅ FIX: Sửa path cho đúng
     public ResponseEntity<ApiResponse<ProductStatsDTO>> getProductStats() {
         ProductStatsDTO stats = new ProductStatsDTO();
@@ -7,8 +7,8 @@ import com.smartvn.product_service.dto.admin.CreateProductRequest;
 import com.smartvn.product_service.dto.ai.HomepageRecommendDTO;
 import com.smartvn.product_service.dto.ai.SimilarRecommendDTO;
 import com.smartvn.product_service.dto.response.ApiResponse;
+import com.smartvn.product_service.dto.response.CursorSlice;
 import com.smartvn.product_service.model.Image;
-import com.smartvn.product_service.model.Product;
 import com.smartvn.product_service.service.ImageService;
 import com.smartvn.product_service.service.ProductService;
 import lombok.RequiredArgsConstructor;
@@ -48,6 +48,7 @@ public class ProductController {
      * @param minPrice            Giá tối thiểu
      * @param maxPrice            Giá tối đa
      * @param pageable            Thông tin phân trang
+     * @param facets              true → trả thêm facet counts (brand, category, giá, RAM/ROM, còn hàng)
      *                            <p>
      *                            Example: GET /api/v1/products?topLevelCategory=Laptop&secondLevelCategory=MacBook&minPrice=20000000
      */
@@ -58,6 +59,7 @@ public class ProductController {
             @RequestParam(required = false) String secondLevelCategory,
             @RequestParam(required = false) BigDecimal minPrice,
             @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam(defaultValue = "false") boolean facets,
             Pageable pageable) {
 
         log.info("🔍 Search request - keyword: {}, topLevel: {}, secondLevel: {}, price: {}-{}",
@@ -70,10 +72,42 @@ public class ProductController {
         ApiResponse<Page<ProductListingDTO>> response = ApiResponse.<Page<ProductListingDTO>>builder()
                 .message("Products fetched successfully.")
                 .data(productPage)
+                .facets(facets
+                        ? productService.computeFacets(keyword, topLevelCategory, secondLevelCategory, minPrice, maxPrice)
+                        : null)
                 .build();
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * API danh sách sản phẩm ở chế độ cursor (keyset): không trả totalElements, trang sâu vẫn nhanh.
+     *
+     * @param sortBy    createdAt | quantitySold | averageRating | price
+     * @param direction asc | desc (mặc định desc)
+     * @param cursor    nextCursor của response trước (bỏ trống cho lát đầu)
+     *                  <p>
+     *                  Example: GET /api/v1/products/scroll?sortBy=price&direction=asc&size=20
+     */
+    @GetMapping("/scroll")
+    public ResponseEntity<ApiResponse<CursorSlice<ProductListingDTO>>> scrollProducts(
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) String topLevelCategory,
+            @RequestParam(required = false) String secondLevelCategory,
+            @RequestParam(required = false) BigDecimal minPrice,
+            @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam(required = false) String sortBy,
+            @RequestParam(required = false) String direction,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+
+        CursorSlice<ProductListingDTO> slice = productService.scrollProducts(
+                keyword, topLevelCategory, secondLevelCategory, minPrice, maxPrice,
+                sortBy, direction, cursor, size
+        );
+
+        return ResponseEntity.ok(ApiResponse.success(slice, "Products fetched successfully."));
+    }
+
     private Long toLongOrNull(Long value) {
         return value;
     }
@@ -113,19 +147,19 @@ public class ProductController {
             log.info("✅ Similar products: strategy={}, count={}",
                     aiResponse.getStrategy(), aiResponse.getCount());
 
-            // ✅ CONVERT IDs → FULL ProductListingDTO
-            List<ProductListingDTO> similarProducts = aiResponse.getProduct_ids().stream()
+            // ✅ CONVERT IDs → ProductListingDTO (1 query cho cả danh sách)
+            List<Long> similarIds = aiResponse.getProduct_ids().stream()
                     .map(productId -> {
                         try {
-                            Product p = productService.findById(Long.parseLong(productId));
-                            return productService.toListingDTO(p);
-                        } catch (Exception e) {
-                            log.warn("⚠️ Similar product {} not found", productId);
+                            return Long.parseLong(productId);
+                        } catch (NumberFormatException e) {
+                            log.warn("⚠️ Invalid similar product ID: {}", productId);
                             return null;
                         }
                     })
                     .filter(java.util.Objects::nonNull)
                     .collect(Collectors.toList());
+            List<ProductListingDTO> similarProducts = productService.getListingsByIds(similarIds);
 
             // ✅ CHECK NẾU SAU KHI FILTER MÀ EMPTY → FALLBACK
             if (similarProducts.isEmpty()) {
@@ -218,8 +252,8 @@ public class ProductController {
                     aiResponse.getCount(),
                     aiResponse.getProduct_ids());
 
-            // ✅ CONVERT PRODUCT IDs → FULL ProductListingDTO
-            List<ProductListingDTO> products = aiResponse.getProduct_ids().stream()
+            // ✅ CONVERT PRODUCT IDs → ProductListingDTO (1 query cho cả danh sách)
+            List<Long> productIds = aiResponse.getProduct_ids().stream()
                     .map(id -> {
                         try {
                             return Long.parseLong(id);
@@ -229,17 +263,8 @@ public class ProductController {
                         }
                     })
                     .filter(java.util.Objects::nonNull)  // Remove nulls
-                    .map(productId -> {
-                        try {
-                            Product product = productService.findById(productId);
-                            return productService.toListingDTO(product);
-                        } catch (Exception e) {
-                            log.warn("⚠️ Product {} not found", productId);
-                            return null;
-                        }
-                    })
-                    .filter(java.util.Objects::nonNull)  // Remove nulls
                     .collect(Collectors.toList());
+            List<ProductListingDTO> products = productService.getListingsByIds(productIds);
 
             log.info("✅ Returning {} products to FE", products.size());
 
@@ -0,0 +1,19 @@
+package com.smartvn.product_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchOperationResultDTO {
+    private String operationKey;
+
+    /**
+     * false = key đã được áp dụng trước đó, lần gọi này không thay đổi gì
+     */
+    private Boolean applied;
+
+    private Integer lines;
+}
@@ -9,9 +9,19 @@ public class CategoryDTO {
     private Long categoryId;
     private String name;
     private int level;
+    private long activeProductCount;
 
     private List<CategoryDTO> subCategories;
 
+    public CategoryDTO(Long categoryId, String name, int level, long activeProductCount,
+                       List<CategoryDTO> subCategories) {
+        this.categoryId = categoryId;
+        this.name = name;
+        this.level = level;
+        this.activeProductCount = activeProductCount;
+        this.subCategories = subCategories;
+    }
+
     public CategoryDTO(Category category) {
         this.categoryId = category.getId();
         this.name = category.getName();
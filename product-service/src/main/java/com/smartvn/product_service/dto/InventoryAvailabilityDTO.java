@@ -0,0 +1,34 @@
+package com.smartvn.product_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Kết quả kiểm tra tồn kho của một dòng (productId, size) kèm giá hiện tại,
+ * để bên gọi phát hiện giá đã đổi so với giỏ hàng trong cùng 1 request.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryAvailabilityDTO {
+    private Long productId;
+    private String size;
+    private Integer requested;
+
+    /**
+     * Số lượng còn bán được (0 nếu variant không tồn tại)
+     */
+    private Integer available;
+
+    /**
+     * false nếu không có variant (productId, size)
+     */
+    private Boolean found;
+
+    private Boolean sufficient;
+    private BigDecimal price;
+    private BigDecimal discountedPrice;
+}
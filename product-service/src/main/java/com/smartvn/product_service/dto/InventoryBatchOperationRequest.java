@@ -0,0 +1,20 @@
+package com.smartvn.product_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryBatchOperationRequest {
+
+    /**
+     * Khoá idempotency, VD: "order-123:restore"; gọi lại với cùng key sẽ không áp dụng lần nữa
+     */
+    private String operationKey;
+
+    private List<InventoryCheckRequest> items;
+}
@@ -16,9 +16,11 @@ public class InventoryDTO {
     private Long productId;
     private String size;
     private Integer quantity;
+    private Integer reservedQuantity;
     private BigDecimal price;
     private BigDecimal discountedPrice;
     private Integer discountPercent;
+    private Integer reorderPoint;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
@@ -27,9 +29,11 @@ public class InventoryDTO {
         this.productId = inv.getProduct().getId();
         this.size = inv.getSize();
         this.quantity = inv.getQuantity();
+        this.reservedQuantity = inv.getReservedQuantity();
         this.price = inv.getPrice();
         this.discountPercent = inv.getDiscountPercent();
         this.discountedPrice = inv.getDiscountedPrice();
+        this.reorderPoint = inv.getReorderPoint();
         this.createdAt = inv.getCreatedAt();
         this.updatedAt = inv.getUpdatedAt();
     }
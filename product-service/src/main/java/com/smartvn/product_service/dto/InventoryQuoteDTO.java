@@ -0,0 +1,37 @@
+package com.smartvn.product_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Báo giá một variant cho add-to-cart: trạng thái product, giá, tồn kho còn bán được, title/ảnh đại diện
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryQuoteDTO {
+    private Long productId;
+    private String size;
+    private Integer requested;
+
+    /**
+     * false nếu product không tồn tại (các field còn lại null)
+     */
+    private Boolean productFound;
+    private Boolean active;
+
+    /**
+     * false nếu product không có variant size này
+     */
+    private Boolean variantFound;
+
+    private Integer available;
+    private Boolean sufficient;
+    private BigDecimal price;
+    private BigDecimal discountedPrice;
+    private String title;
+    private String thumbnailUrl;
+}
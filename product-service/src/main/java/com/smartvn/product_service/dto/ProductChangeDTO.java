@@ -0,0 +1,21 @@
+package com.smartvn.product_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Một thay đổi trên change feed. Consumer tự lấy dữ liệu mới (VD: /internal/products/batch)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductChangeDTO {
+    private Long offset;
+    private Long productId;
+    private List<String> changeTypes;
+    private LocalDateTime changedAt;
+}
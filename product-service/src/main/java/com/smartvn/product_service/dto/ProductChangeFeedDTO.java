@@ -0,0 +1,24 @@
+package com.smartvn.product_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductChangeFeedDTO {
+    private List<ProductChangeDTO> changes;
+
+    /**
+     * Truyền lại làm "after" ở lần đọc sau (lưu lại để tiếp tục sau khi restart)
+     */
+    private Long nextOffset;
+
+    /**
+     * true = các event sau offset consumer gửi lên đã bị xoá (quá retention) → consumer phải đồng bộ lại toàn bộ
+     */
+    private Boolean reset;
+}
@@ -6,6 +6,7 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -89,6 +90,34 @@ public class ProductDetailDTO {
         private String createdAt;
     }
 
+    /**
+     * Copy để trả ra ngoài từ cache (list và variant được copy, các phần tử khác là immutable)
+     */
+    public ProductDetailDTO copy() {
+        ProductDetailDTO copy = new ProductDetailDTO(
+                id, title, brand, description, detailedReview, powerfulPerformance,
+                similarProductIds != null ? new ArrayList<>(similarProductIds) : null,
+                similarProducts != null ? new ArrayList<>(similarProducts) : null,
+                color, weight, dimension, batteryType, batteryCapacity,
+                ramCapacity, romCapacity, screenSize, connectionPort,
+                imageUrls != null ? new ArrayList<>(imageUrls) : null,
+                categoryId, categoryName,
+                null,
+                averageRating, numRatings,
+                recentReviews != null ? new ArrayList<>(recentReviews) : null,
+                quantitySold, isActive
+        );
+        if (priceVariants != null) {
+            List<PriceVariantDTO> variants = new ArrayList<>(priceVariants.size());
+            for (PriceVariantDTO v : priceVariants) {
+                variants.add(new PriceVariantDTO(v.getInventoryId(), v.getSize(), v.getPrice(),
+                        v.getDiscountPercent(), v.getDiscountedPrice(), v.getQuantity(), v.getInStock()));
+            }
+            copy.setPriceVariants(variants);
+        }
+        return copy;
+    }
+
     public ProductDTO toSimpleDTO() {
         ProductDTO dto = new ProductDTO();
         dto.setId(this.id);
@@ -0,0 +1,43 @@
+package com.smartvn.product_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Số lượng sản phẩm theo từng giá trị facet, tính trên toàn bộ tập kết quả đã lọc.
+ */
+@Data
+public class ProductFacetsDTO {
+    private long totalCandidates;
+    private long inStockCount;
+    private List<FacetValue> brands = new ArrayList<>();
+    private List<FacetValue> categories = new ArrayList<>();
+    private List<FacetValue> ramCapacities = new ArrayList<>();
+    private List<FacetValue> romCapacities = new ArrayList<>();
+    private List<FacetValue> screenSizes = new ArrayList<>();
+    private List<PriceBucket> priceBuckets = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FacetValue {
+        private Long id;          // chỉ có với category
+        private String value;
+        private long count;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PriceBucket {
+        private String label;
+        private BigDecimal min;   // null = không giới hạn dưới
+        private BigDecimal max;   // null = không giới hạn trên
+        private long count;
+    }
+}
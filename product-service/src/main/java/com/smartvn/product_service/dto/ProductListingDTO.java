@@ -10,7 +10,7 @@ import java.util.List;
 
 /**
  * DTO cho DANH SÁCH sản phẩm (Product Listing Page)
- * Dữ liệu được tính toán real-time từ bảng Inventory.
+ * Dữ liệu được đọc từ bảng product_listing_summary (tính sẵn từ Inventory).
  */
 @Getter
 @Setter
@@ -23,7 +23,7 @@ public class ProductListingDTO {
     private String brand;
     private String thumbnailUrl;
 
-    // GIÁ - Tính toán động từ Inventory
+    // GIÁ - Tính sẵn từ Inventory
     private String priceRange;
     private String discountedPriceRange;
     private boolean hasDiscount;
@@ -0,0 +1,26 @@
+package com.smartvn.product_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Trạng thái giữ hàng của một reference
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReservationDTO {
+    private String reference;
+
+    /**
+     * ACTIVE | COMMITTED | RELEASED | EXPIRED | NONE (không có dòng giữ hàng nào)
+     */
+    private String status;
+
+    private LocalDateTime expiresAt;
+    private List<InventoryCheckRequest> items;
+}
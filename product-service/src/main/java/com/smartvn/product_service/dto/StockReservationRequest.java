@@ -0,0 +1,25 @@
+package com.smartvn.product_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReservationRequest {
+
+    /**
+     * Mã của bên giữ hàng (VD: "order-123"); gọi lại với cùng reference sẽ không giữ thêm
+     */
+    private String reference;
+
+    /**
+     * Thời gian giữ hàng; null → dùng mặc định của product-service
+     */
+    private Long ttlSeconds;
+
+    private List<InventoryCheckRequest> items;
+}
@@ -0,0 +1,22 @@
+package com.smartvn.product_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Một dòng không đủ hàng khi trừ kho theo batch
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockShortfall {
+    private Long productId;
+    private String size;
+    private Integer requested;
+
+    /**
+     * Tồn kho hiện tại (0 nếu variant không tồn tại)
+     */
+    private Integer available;
+}
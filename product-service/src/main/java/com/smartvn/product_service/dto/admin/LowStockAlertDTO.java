@@ -0,0 +1,22 @@
+package com.smartvn.product_service.dto.admin;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Một product có SKU vừa vào / ra khỏi watchlist.
+ * entries = các SKU của product hiện đang trong watchlist (rỗng = đã đủ hàng trở lại hoặc product bị xoá)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LowStockAlertDTO {
+    private Long offset;
+    private Long productId;
+    private List<LowStockEntryDTO> entries;
+    private LocalDateTime changedAt;
+}
@@ -0,0 +1,24 @@
+package com.smartvn.product_service.dto.admin;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LowStockAlertFeedDTO {
+    private List<LowStockAlertDTO> alerts;
+
+    /**
+     * Truyền lại làm "after" ở lần đọc sau (có thể tăng kể cả khi alerts rỗng)
+     */
+    private Long nextOffset;
+
+    /**
+     * true = đã lỡ alert do quá retention của change feed → tải lại toàn bộ watchlist
+     */
+    private Boolean reset;
+}
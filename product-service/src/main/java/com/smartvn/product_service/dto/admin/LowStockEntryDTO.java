@@ -0,0 +1,33 @@
+package com.smartvn.product_service.dto.admin;
+
+import com.smartvn.product_service.model.LowStockEntry;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LowStockEntryDTO {
+    private Long inventoryId;
+    private Long productId;
+    private String productTitle;
+    private String size;
+    private Integer available;
+    private Integer reorderPoint;
+    private LowStockEntry.Level level;
+    private LocalDateTime since;
+
+    public LowStockEntryDTO(LowStockEntry entry, String productTitle) {
+        this.inventoryId = entry.getInventoryId();
+        this.productId = entry.getProductId();
+        this.productTitle = productTitle;
+        this.size = entry.getSize();
+        this.available = entry.getAvailable();
+        this.reorderPoint = entry.getReorderPoint();
+        this.level = entry.getLevel();
+        this.since = entry.getSince();
+    }
+}
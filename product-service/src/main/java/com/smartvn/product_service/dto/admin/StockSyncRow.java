@@ -0,0 +1,28 @@
+package com.smartvn.product_service.dto.admin;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * Một dòng snapshot tồn kho từ hệ thống kho (CSV: productId,size,quantity,price)
+ */
+@Data
+public class StockSyncRow {
+    @NotNull(message = "productId không được để trống")
+    private Long productId;
+
+    @Size(max = 50, message = "Size tối đa 50 ký tự")
+    private String size; // null / rỗng = variant không có size
+
+    @NotNull(message = "Số lượng không được để trống")
+    @Min(value = 0, message = "Số lượng phải lớn hơn hoặc bằng 0")
+    private Integer quantity;
+
+    @NotNull(message = "Giá không được để trống")
+    @Min(value = 0, message = "Giá phải lớn hơn hoặc bằng 0")
+    private BigDecimal price;
+}
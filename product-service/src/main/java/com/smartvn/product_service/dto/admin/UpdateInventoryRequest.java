@@ -25,4 +25,7 @@ public class UpdateInventoryRequest {
     @Min(value = 0, message = "Giảm giá phải từ 0")
     @Max(value = 100, message = "Giảm giá tối đa 100")
     private Integer discountPercent = 0; // Mặc định là 0
+
+    @Min(value = 0, message = "Ngưỡng cảnh báo phải lớn hơn hoặc bằng 0")
+    private Integer reorderPoint; // null = giữ nguyên (update) / dùng ngưỡng mặc định (add)
 }
\ No newline at end of file
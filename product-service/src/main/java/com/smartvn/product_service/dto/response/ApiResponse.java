@@ -1,5 +1,6 @@
 package com.smartvn.product_service.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -26,6 +27,9 @@ public class ApiResponse<T> {
     private String error;        // Mã lỗi hoặc loại lỗi (cho trường hợp lỗi)
     private Integer status;      // Mã trạng thái HTTP (thường dùng cho lỗi)
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Object facets;       // Facet counts (chỉ có khi client yêu cầu, VD: GET /products?facets=true)
+
     /**
      * Tạo response thành công với dữ liệu và thông báo.
      */
@@ -1,5 +1,6 @@
 package com.smartvn.product_service.exceptions;
 
+import com.smartvn.product_service.dto.StockShortfall;
 import com.smartvn.product_service.dto.response.ApiResponse;
 import jakarta.persistence.EntityExistsException;
 import jakarta.persistence.EntityNotFoundException;
@@ -18,11 +19,21 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 
 import javax.naming.AuthenticationException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @ControllerAdvice
 public class GlobalExceptionHandler {
 
+    @ExceptionHandler(InsufficientStockException.class)
+    public ResponseEntity<ApiResponse<List<StockShortfall>>> handleInsufficientStockException(InsufficientStockException ex) {
+        ApiResponse<List<StockShortfall>> body = ApiResponse.error(ex.getMessage(), HttpStatus.CONFLICT, "INSUFFICIENT_STOCK");
+        body.setData(ex.getShortfalls());
+        return ResponseEntity
+                .status(HttpStatus.CONFLICT)
+                .body(body);
+    }
+
     @ExceptionHandler(EntityNotFoundException.class)
     public ResponseEntity<ApiResponse> handleEntityNotFoundException(EntityNotFoundException ex){
         return ResponseEntity
@@ -0,0 +1,21 @@
+package com.smartvn.product_service.exceptions;
+
+import com.smartvn.product_service.dto.StockShortfall;
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+import java.util.List;
+
+/**
+ * Trừ kho batch thất bại: không dòng nào bị trừ, kèm danh sách dòng thiếu hàng.
+ */
+@Getter
+public class InsufficientStockException extends AppException {
+
+    private final List<StockShortfall> shortfalls;
+
+    public InsufficientStockException(List<StockShortfall> shortfalls) {
+        super("Insufficient stock for " + shortfalls.size() + " item(s)", HttpStatus.CONFLICT);
+        this.shortfalls = shortfalls;
+    }
+}
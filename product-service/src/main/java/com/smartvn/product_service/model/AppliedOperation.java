@@ -0,0 +1,38 @@
+package com.smartvn.product_service.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Khoá idempotency của các thao tác kho / số lượng đã bán đã được áp dụng
+ * (VD: "order-123:restore", "order-123:sold").
+ * Được ghi trong cùng transaction với thao tác → gọi lại (retry) với cùng key là no-op.
+ */
+@Entity
+@Table(name = "applied_operations",
+        indexes = {
+                @Index(name = "idx_applied_operation_created", columnList = "created_at")
+        },
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_applied_operation_key", columnNames = {"operation_key"})
+        }
+)
+@Getter
+@Setter
+@NoArgsConstructor
+public class AppliedOperation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "operation_key", nullable = false, length = 100)
+    private String operationKey;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
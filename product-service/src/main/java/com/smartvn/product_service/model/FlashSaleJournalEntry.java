@@ -0,0 +1,46 @@
+package com.smartvn.product_service.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lượng đã trừ trên bộ đếm flash-sale nhưng chưa ghi vào inventory.quantity.
+ * Ghi trong transaction của đơn (commit cùng đơn, rollback cùng đơn); hoàn kho qua bộ đếm ghi số âm.
+ * FlashSaleStockService gom các dòng, trừ vào inventory rồi xoá trong cùng 1 transaction
+ * → process chết giữa 2 lần flush không mất lượng đã bán, instance nhận lease sau đó ghi tiếp.
+ */
+@Entity
+@Table(name = "flash_sale_journal",
+        indexes = {
+                // Đường trừ kho DB từ chối product còn dòng chưa flush (xem FlashSaleStockService.DB_PATH_GUARD)
+                @Index(name = "idx_flash_sale_journal_product", columnList = "product_id")
+        }
+)
+@Getter
+@Setter
+@NoArgsConstructor
+public class FlashSaleJournalEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(length = 50)
+    private String size;
+
+    /**
+     * > 0: đã bán, < 0: hoàn kho
+     */
+    @Column(nullable = false)
+    private Integer quantity;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -1,6 +1,7 @@
 package com.smartvn.product_service.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.smartvn.product_service.search.TextNormalizer;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -32,6 +33,9 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 public class Inventory {
 
+    /** Kiểu cột size dùng chung với các bảng khoá theo (product, size), VD stock_reservations */
+    public static final String SIZE_COLUMN = "VARCHAR(50) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -45,8 +49,10 @@ public class Inventory {
      * Size/Variant của sản phẩm
      * VD: "128GB", "256GB", "512GB" cho điện thoại
      *     "S", "M", "L" cho quần áo
+     * Collation khai báo tường minh (không phụ thuộc mặc định của server/schema): uk_product_size và
+     * {@link #sizeKey(String)} đều coi "m" / "M" là 1 variant. DB tạo trước đó cần ALTER cột này cho khớp.
      */
-    @Column(length = 50)
+    @Column(length = 50, columnDefinition = SIZE_COLUMN)
     private String size;
 
     /**
@@ -55,6 +61,15 @@ public class Inventory {
     @Column(nullable = false)
     private Integer quantity = 0;
 
+    /**
+     * Số lượng đang được giữ cho các đơn chưa thanh toán (xem StockReservation).
+     * Chỉ được ghi bằng câu UPDATE có điều kiện trong StockReservationService,
+     * JPA không bao giờ ghi đè cột này khi save entity.
+     */
+    @Column(name = "reserved_quantity", insertable = false, updatable = false,
+            columnDefinition = "INT NOT NULL DEFAULT 0")
+    private Integer reservedQuantity = 0;
+
     /**
      * Giá gốc
      */
@@ -73,6 +88,13 @@ public class Inventory {
     @Column(name = "discounted_price", precision = 19, scale = 2)
     private BigDecimal discountedPrice;
 
+    /**
+     * Ngưỡng cảnh báo sắp hết hàng của SKU (xem LowStockWatchlistService).
+     * null = dùng ngưỡng mặc định inventory.low-stock.default-reorder-point
+     */
+    @Column(name = "reorder_point")
+    private Integer reorderPoint;
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -95,10 +117,28 @@ public class Inventory {
         }
     }
 
+    /**
+     * Số lượng còn bán được = tồn kho - đang giữ
+     */
+    public int getAvailableQuantity() {
+        int onHand = quantity != null ? quantity : 0;
+        int reserved = reservedQuantity != null ? reservedQuantity : 0;
+        return Math.max(onHand - reserved, 0);
+    }
+
     /**
      * Kiểm tra còn hàng
      */
     public boolean isInStock() {
-        return quantity != null && quantity > 0;
+        return getAvailableQuantity() > 0;
+    }
+
+    /**
+     * Key so sánh size trong bộ nhớ theo đúng cách MySQL so sánh cột size ({@link #SIZE_COLUMN}, collation
+     * utf8mb4_0900_ai_ci của uk_product_size: không phân biệt hoa/thường, dấu) → "m" và "M" là cùng 1 variant.
+     * Dùng khi khớp dòng DB trả về với request, không dùng để ghi.
+     */
+    public static String sizeKey(String size) {
+        return size != null ? TextNormalizer.normalize(size) : null;
     }
 }
\ No newline at end of file
@@ -0,0 +1,72 @@
+package com.smartvn.product_service.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Một SKU đang sắp hết (còn bán được ≤ reorder point) hoặc đã hết hàng.
+ * Bảng chỉ chứa SKU đang cần chú ý; được LowStockWatchlistService cập nhật trong cùng transaction
+ * với mọi thay đổi kho (qua ProductListingSummaryService) → màn hình tồn kho đọc theo index, không quét catalog.
+ */
+@Entity
+@Table(name = "low_stock_watchlist",
+        indexes = {
+                @Index(name = "idx_low_stock_level_available", columnList = "level, available, inventory_id"),
+                @Index(name = "idx_low_stock_available", columnList = "available, inventory_id"),
+                @Index(name = "idx_low_stock_product", columnList = "product_id")
+        }
+)
+@Getter
+@Setter
+@NoArgsConstructor
+public class LowStockEntry {
+
+    public enum Level {
+        /** 0 < còn bán được ≤ reorder point */
+        LOW,
+        /** Còn bán được = 0 */
+        OUT
+    }
+
+    /**
+     * ID của Inventory (SKU), không tự sinh
+     */
+    @Id
+    @Column(name = "inventory_id")
+    private Long inventoryId;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(length = 50)
+    private String size;
+
+    /**
+     * quantity - reserved_quantity tại lần cập nhật gần nhất
+     */
+    @Column(nullable = false)
+    private Integer available;
+
+    /**
+     * Ngưỡng đã áp dụng (của SKU hoặc mặc định)
+     */
+    @Column(name = "reorder_point", nullable = false)
+    private Integer reorderPoint;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private Level level;
+
+    /**
+     * Thời điểm SKU vào level hiện tại
+     */
+    @Column(nullable = false)
+    private LocalDateTime since;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
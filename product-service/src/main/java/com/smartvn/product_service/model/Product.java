@@ -8,15 +8,23 @@ import lombok.Setter;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
 
 @Entity
-@Table(name = "products", indexes = {
+@Table(name = "products", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_product_dedup_key", columnNames = "dedup_key")
+}, indexes = {
         @Index(name = "idx_category", columnList = "category_id"),
         @Index(name = "idx_is_active", columnList = "is_active"),
-        @Index(name = "idx_title", columnList = "title")
+        @Index(name = "idx_title", columnList = "title"),
+        @Index(name = "idx_created_at_id", columnList = "created_at, id"),
+        // Admin scroll sort theo giá (keyset: min_discounted_price, id)
+        @Index(name = "idx_min_price_id", columnList = "min_discounted_price, id")
 })
 @Getter
 @Setter
@@ -70,6 +78,15 @@ public class Product {
     @Column(columnDefinition = "TEXT")
     private String description;
 
+    /**
+     * Key chống trùng: lower(trim(title)) + "|" + lower(trim(brand)), có unique index.
+     * Tính khi persist; sau đó chỉ đổi qua rename() khi key chuẩn hoá thực sự đổi.
+     * Null với product cũ trùng (title, brand) có từ trước (xem ProductDuplicateChecker.backfillMissingKeys):
+     * không được tự tính lại lúc update, nếu không sẽ vi phạm unique index.
+     */
+    @Column(name = "dedup_key", length = 160)
+    private String dedupKey;
+
     // ============================================
     // THỐNG KÊ
     // ============================================
@@ -89,6 +106,25 @@ public class Product {
     @Column(name = "warning_count", nullable = false)
     private Integer warningCount = 0;
 
+    /**
+     * Bật chế độ flash-sale: tồn kho của các variant được trừ trên bộ đếm trong RAM
+     * (FlashSaleStockService) và ghi xuống DB theo lô, thay vì mỗi đơn 1 câu UPDATE vào dòng nóng.
+     */
+    @Column(name = "flash_sale", nullable = false, columnDefinition = "BIT(1) NOT NULL DEFAULT 0")
+    private Boolean flashSale = false;
+
+    // ============================================
+    // KHOẢNG GIÁ TỪ INVENTORY (denormalized)
+    // Cập nhật bởi ProductListingSummaryService khi giá variant đổi (không đổi khi chỉ đổi tồn kho),
+    // để admin scroll sort theo giá không phải JOIN bảng inventories. Null = chưa tính (backfill lúc khởi động).
+    // ============================================
+
+    @Column(name = "min_discounted_price", precision = 19, scale = 2)
+    private BigDecimal minDiscountedPrice;
+
+    @Column(name = "max_discounted_price", precision = 19, scale = 2)
+    private BigDecimal maxDiscountedPrice;
+
     // ============================================
     // QUAN HỆ
     // ============================================
@@ -118,11 +154,58 @@ public class Product {
     // HELPER METHODS
     // ============================================
 
+    @PrePersist
+    protected void computeDedupKey() {
+        this.dedupKey = dedupKeyOf(title, brand);
+    }
+
+    /**
+     * Đổi title / brand. Dedup key chỉ được ghi lại khi key chuẩn hoá đổi
+     * (VD chỉ đổi hoa/thường thì giữ nguyên, kể cả key null của product cũ trùng).
+     */
+    public void rename(String newTitle, String newBrand) {
+        String newKey = dedupKeyOf(newTitle, newBrand);
+        if (!Objects.equals(newKey, dedupKeyOf(title, brand))) {
+            this.dedupKey = newKey;
+        }
+        this.title = newTitle;
+        this.brand = newBrand;
+    }
+
+    /**
+     * Chuẩn hoá (title, brand) thành key so sánh không phân biệt hoa thường.
+     *
+     * @return null nếu thiếu title hoặc brand.
+     */
+    public static String dedupKeyOf(String title, String brand) {
+        if (title == null || brand == null) {
+            return null;
+        }
+        return title.trim().toLowerCase(Locale.ROOT) + "|" + brand.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Ghi khoảng giá từ inventory; chỉ set khi giá trị thực sự đổi → thay đổi chỉ về tồn kho
+     * (mọi lần checkout) không làm dirty dòng products.
+     */
+    public void applyInventoryPrices(BigDecimal minDiscounted, BigDecimal maxDiscounted) {
+        if (!sameAmount(minDiscountedPrice, minDiscounted)) {
+            this.minDiscountedPrice = minDiscounted;
+        }
+        if (!sameAmount(maxDiscountedPrice, maxDiscounted)) {
+            this.maxDiscountedPrice = maxDiscounted;
+        }
+    }
+
+    private static boolean sameAmount(BigDecimal a, BigDecimal b) {
+        return a == null ? b == null : b != null && a.compareTo(b) == 0;
+    }
+
     /**
      * Kiểm tra sản phẩm có còn hàng không (bất kỳ size nào)
      */
     public boolean hasStock() {
-        return inventories.stream().anyMatch(inv -> inv.getQuantity() > 0);
+        return inventories.stream().anyMatch(Inventory::isInStock);
     }
 
     /**
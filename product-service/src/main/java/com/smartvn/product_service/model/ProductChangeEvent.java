@@ -0,0 +1,68 @@
+package com.smartvn.product_service.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Transactional outbox: một thay đổi của product (giá, kho, trạng thái...) được ghi
+ * trong cùng transaction với thay đổi đó (từ ProductListingSummaryService).
+ * feedOffset = null cho đến khi relay công bố; relay gán offset tăng dần theo thứ tự commit
+ * nên consumer đọc theo offset không bao giờ bỏ sót event của transaction commit muộn.
+ */
+@Entity
+@Table(name = "product_change_events",
+        indexes = {
+                @Index(name = "idx_change_event_created", columnList = "created_at")
+        },
+        uniqueConstraints = {
+                // NULL (chưa công bố) không vi phạm unique → index dùng cho cả relay lẫn consumer
+                @UniqueConstraint(name = "uk_change_event_offset", columnNames = {"feed_offset"})
+        }
+)
+@Getter
+@Setter
+@NoArgsConstructor
+public class ProductChangeEvent {
+
+    public enum ChangeType {
+        /** Product mới */
+        CREATED,
+        /** Tiêu đề, brand, ảnh, danh mục... */
+        DETAILS,
+        /** Giá / giảm giá của ít nhất 1 variant */
+        PRICE,
+        /** Tồn kho còn bán được */
+        STOCK,
+        /** Bật / tắt product */
+        STATUS,
+        /** Ít nhất 1 SKU vào / ra khỏi danh sách sắp hết / hết hàng */
+        STOCK_ALERT,
+        DELETED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    /**
+     * Các ChangeType, phân tách bằng dấu phẩy (VD: "PRICE,STOCK")
+     */
+    @Column(name = "change_types", nullable = false, length = 64)
+    private String changeTypes;
+
+    @Column(name = "feed_offset")
+    private Long feedOffset;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "published_at")
+    private LocalDateTime publishedAt;
+}
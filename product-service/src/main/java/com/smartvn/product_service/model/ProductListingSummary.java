@@ -0,0 +1,118 @@
+package com.smartvn.product_service.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Read model cho trang danh sách sản phẩm.
+ * Mỗi product có đúng 1 dòng, được tính sẵn từ Product + Inventory + Image
+ * mỗi khi các bảng đó thay đổi (xem ProductListingSummaryService).
+ * Nhờ vậy GET /products chỉ cần 1 query phẳng cho mỗi trang.
+ */
+@Entity
+@Table(name = "product_listing_summary", indexes = {
+        @Index(name = "idx_summary_active_category", columnList = "is_active, category_id"),
+        @Index(name = "idx_summary_title", columnList = "title"),
+        // Index cho phân trang keyset: (is_active, cột sort, product_id)
+        @Index(name = "idx_summary_active_created", columnList = "is_active, created_at, product_id"),
+        @Index(name = "idx_summary_active_sold", columnList = "is_active, quantity_sold, product_id"),
+        @Index(name = "idx_summary_active_rating", columnList = "is_active, average_rating, product_id"),
+        @Index(name = "idx_summary_active_price", columnList = "is_active, min_discounted_price, product_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductListingSummary {
+
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(length = 100, nullable = false)
+    private String title;
+
+    @Column(length = 50, nullable = false)
+    private String brand;
+
+    @Column(name = "category_id")
+    private Long categoryId;
+
+    @Column(name = "is_active", nullable = false)
+    private Boolean isActive = true;
+
+    @Column(name = "thumbnail_url", length = 500)
+    private String thumbnailUrl;
+
+    // ============================================
+    // GIÁ & KHO (tính từ Inventory)
+    // ============================================
+
+    @Column(name = "min_price", precision = 19, scale = 2)
+    private BigDecimal minPrice;
+
+    @Column(name = "max_price", precision = 19, scale = 2)
+    private BigDecimal maxPrice;
+
+    @Column(name = "min_discounted_price", precision = 19, scale = 2)
+    private BigDecimal minDiscountedPrice;
+
+    @Column(name = "max_discounted_price", precision = 19, scale = 2)
+    private BigDecimal maxDiscountedPrice;
+
+    /**
+     * Chuỗi giá đã format sẵn để không phải gọi String.format cho mỗi card
+     */
+    @Column(name = "price_range", length = 64)
+    private String priceRange;
+
+    @Column(name = "discounted_price_range", length = 64)
+    private String discountedPriceRange;
+
+    @Column(name = "has_discount", nullable = false)
+    private Boolean hasDiscount = false;
+
+    @Column(name = "total_stock", nullable = false)
+    private Integer totalStock = 0;
+
+    @Column(name = "variant_count", nullable = false)
+    private Integer variantCount = 0;
+
+    /**
+     * Hash của (size, giá, giá sau giảm) mọi variant — để phát hiện đổi giá từng variant
+     * khi min/max không đổi (xem ProductChangeFeedService)
+     */
+    @Column(name = "variant_price_hash")
+    private Integer variantPriceHash;
+
+    /**
+     * Danh sách badge, phân tách bằng dấu phẩy (VD: "Bán chạy,Giảm giá")
+     */
+    @Column(length = 255)
+    private String badges;
+
+    // ============================================
+    // THỐNG KÊ (copy từ Product để sort)
+    // ============================================
+
+    @Column(name = "average_rating", nullable = false)
+    private Double averageRating = 0.0;
+
+    @Column(name = "num_ratings", nullable = false)
+    private Integer numRatings = 0;
+
+    @Column(name = "quantity_sold", nullable = false)
+    private Long quantitySold = 0L;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "refreshed_at", nullable = false)
+    private LocalDateTime refreshedAt;
+}
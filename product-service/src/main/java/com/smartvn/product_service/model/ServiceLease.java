@@ -0,0 +1,31 @@
+package com.smartvn.product_service.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lease "chỉ 1 instance được làm việc X" (VD: giữ bộ đếm flash-sale trong RAM).
+ * Instance giữ lease gia hạn định kỳ; hết hạn (instance chết / mất kết nối DB) → instance khác nhận.
+ * Hạn tính theo đồng hồ DB (NOW(3)) để không phụ thuộc lệch giờ giữa các máy.
+ */
+@Entity
+@Table(name = "service_leases")
+@Getter
+@Setter
+@NoArgsConstructor
+public class ServiceLease {
+
+    @Id
+    @Column(name = "lease_name", length = 64)
+    private String leaseName;
+
+    @Column(name = "owner_id", nullable = false, length = 64)
+    private String ownerId;
+
+    @Column(name = "expires_at", nullable = false, columnDefinition = "DATETIME(3)")
+    private LocalDateTime expiresAt;
+}
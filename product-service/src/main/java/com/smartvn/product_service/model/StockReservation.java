@@ -0,0 +1,85 @@
+package com.smartvn.product_service.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Một dòng giữ hàng (product, size, quantity) của một đơn chưa thanh toán.
+ * Khi ACTIVE, số lượng được cộng vào inventory.reserved_quantity nên không bán được cho người khác;
+ * hết hạn (expires_at) mà chưa commit thì sweeper sẽ trả lại.
+ */
+@Entity
+@Table(name = "stock_reservations",
+        indexes = {
+                // Sweeper quét theo (status, expires_at) → index range scan
+                @Index(name = "idx_reservation_status_expires", columnList = "status, expires_at")
+        },
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_reservation_ref_product_size",
+                        columnNames = {"reference", "product_id", "size"})
+        }
+)
+@Getter
+@Setter
+@NoArgsConstructor
+public class StockReservation {
+
+    public enum Status {
+        /** Đang giữ hàng */
+        ACTIVE,
+        /** Đã thanh toán, hàng đã trừ khỏi quantity */
+        COMMITTED,
+        /** Huỷ chủ động (huỷ đơn) */
+        RELEASED,
+        /** Hết hạn, sweeper đã trả hàng */
+        EXPIRED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * Mã nghiệp vụ của bên giữ hàng, VD: "order-123"
+     */
+    @Column(nullable = false, length = 64)
+    private String reference;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    /** Cùng collation với inventory.size → uk_reservation_ref_product_size khớp với Inventory.sizeKey */
+    @Column(length = 50, columnDefinition = Inventory.SIZE_COLUMN)
+    private String size;
+
+    @Column(nullable = false)
+    private Integer quantity;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status = Status.ACTIVE;
+
+    /**
+     * true = hàng đã bị trừ thẳng khỏi quantity lúc giữ (SKU flash-sale, trừ qua FlashSaleStockService)
+     * thay vì cộng vào reserved_quantity → commit không trừ thêm, release/hết hạn phải hoàn kho.
+     */
+    @Column(nullable = false, columnDefinition = "BIT(1) NOT NULL DEFAULT 0")
+    private Boolean deducted = false;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,51 @@
+package com.smartvn.product_service.pagination;
+
+import com.smartvn.product_service.exceptions.AppException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Cursor "mờ" cho phân trang keyset: lưu kiểu sort, chiều sort, giá trị sort và id của dòng cuối trang trước.
+ * Client chỉ cần gửi lại chuỗi nextCursor, không cần hiểu nội dung.
+ */
+@Getter
+@AllArgsConstructor
+public class KeysetCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private final ProductSortKey sortKey;
+    private final Sort.Direction direction;
+    private final Comparable<?> lastValue;
+    private final Long lastId;
+
+    public String encode() {
+        String raw = sortKey.name() + SEPARATOR + direction.name() + SEPARATOR
+                + lastId + SEPARATOR + sortKey.format(lastValue);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static KeysetCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 4);
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            ProductSortKey sortKey = ProductSortKey.valueOf(parts[0]);
+            return new KeysetCursor(
+                    sortKey,
+                    Sort.Direction.valueOf(parts[1]),
+                    sortKey.parse(parts[3]),
+                    Long.valueOf(parts[2])
+            );
+        } catch (IllegalArgumentException e) {
+            throw new AppException("Invalid cursor", HttpStatus.BAD_REQUEST);
+        }
+    }
+}
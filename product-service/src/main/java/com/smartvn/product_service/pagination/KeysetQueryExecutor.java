@@ -0,0 +1,69 @@
+package com.smartvn.product_service.pagination;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.*;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chạy query keyset: WHERE (sortKey, id) đứng sau cursor ORDER BY sortKey, id LIMIT n.
+ * Không có OFFSET và không có COUNT, nên trang sâu cũng nhanh như trang đầu.
+ */
+@Component
+public class KeysetQueryExecutor {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public <T> List<T> fetch(Class<T> entityType,
+                             Specification<T> spec,
+                             String sortAttribute,
+                             String idAttribute,
+                             Sort.Direction direction,
+                             KeysetCursor after,
+                             int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(entityType);
+        Root<T> root = query.from(entityType);
+
+        Path<Comparable> key = root.get(sortAttribute);
+        Path<Long> id = root.get(idAttribute);
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (spec != null) {
+            Predicate base = spec.toPredicate(root, query, cb);
+            if (base != null) {
+                predicates.add(base);
+            }
+        }
+        // Dòng không có giá trị sort (VD: product chưa có variant khi sort theo giá) không nằm trong thứ tự keyset
+        predicates.add(cb.isNotNull(key));
+
+        boolean descending = direction.isDescending();
+        if (after != null) {
+            Comparable lastValue = after.getLastValue();
+            Predicate strictlyAfter = descending ? cb.lessThan(key, lastValue) : cb.greaterThan(key, lastValue);
+            Predicate tieBreak = cb.and(
+                    cb.equal(key, lastValue),
+                    descending ? cb.lessThan(id, after.getLastId()) : cb.greaterThan(id, after.getLastId())
+            );
+            predicates.add(cb.or(strictlyAfter, tieBreak));
+        }
+
+        query.select(root)
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(descending
+                        ? List.of(cb.desc(key), cb.desc(id))
+                        : List.of(cb.asc(key), cb.asc(id)));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
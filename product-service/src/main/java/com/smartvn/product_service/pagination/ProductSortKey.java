@@ -0,0 +1,84 @@
+package com.smartvn.product_service.pagination;
+
+import com.smartvn.product_service.exceptions.AppException;
+import com.smartvn.product_service.model.Product;
+import com.smartvn.product_service.model.ProductListingSummary;
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.function.Function;
+
+/**
+ * Các kiểu sort được hỗ trợ ở chế độ phân trang cursor (keyset).
+ * Mỗi kiểu biết cột sort trên bảng summary / bảng products và cách đọc/ghi giá trị vào cursor.
+ */
+@Getter
+public enum ProductSortKey {
+
+    CREATED_AT("createdAt", "createdAt", "createdAt",
+            LocalDateTime::parse,
+            ProductListingSummary::getCreatedAt, Product::getCreatedAt),
+
+    QUANTITY_SOLD("quantitySold", "quantitySold", "quantitySold",
+            Long::valueOf,
+            ProductListingSummary::getQuantitySold, Product::getQuantitySold),
+
+    AVERAGE_RATING("averageRating", "averageRating", "averageRating",
+            Double::valueOf,
+            ProductListingSummary::getAverageRating, Product::getAverageRating),
+
+    // Giá sau giảm thấp nhất (cột denormalized trên cả 2 bảng)
+    PRICE("price", "minDiscountedPrice", "minDiscountedPrice",
+            BigDecimal::new,
+            ProductListingSummary::getMinDiscountedPrice, Product::getMinDiscountedPrice);
+
+    private final String paramName;
+    private final String listingAttribute;
+    private final String productAttribute;
+    private final Function<String, Comparable<?>> parser;
+    private final Function<ProductListingSummary, Comparable<?>> listingValue;
+    private final Function<Product, Comparable<?>> productValue;
+
+    ProductSortKey(String paramName,
+                   String listingAttribute,
+                   String productAttribute,
+                   Function<String, Comparable<?>> parser,
+                   Function<ProductListingSummary, Comparable<?>> listingValue,
+                   Function<Product, Comparable<?>> productValue) {
+        this.paramName = paramName;
+        this.listingAttribute = listingAttribute;
+        this.productAttribute = productAttribute;
+        this.parser = parser;
+        this.listingValue = listingValue;
+        this.productValue = productValue;
+    }
+
+    public static ProductSortKey fromParam(String paramName) {
+        if (paramName == null || paramName.isBlank()) {
+            return CREATED_AT;
+        }
+        for (ProductSortKey key : values()) {
+            if (key.paramName.equalsIgnoreCase(paramName.trim())) {
+                return key;
+            }
+        }
+        throw new AppException("Unsupported sort: " + paramName, HttpStatus.BAD_REQUEST);
+    }
+
+    public Comparable<?> parse(String value) {
+        try {
+            return parser.apply(value);
+        } catch (RuntimeException e) {
+            throw new AppException("Invalid cursor", HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    public String format(Comparable<?> value) {
+        if (value instanceof BigDecimal decimal) {
+            return decimal.toPlainString();
+        }
+        return String.valueOf(value);
+    }
+}
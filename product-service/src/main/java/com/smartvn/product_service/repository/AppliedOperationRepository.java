@@ -0,0 +1,18 @@
+package com.smartvn.product_service.repository;
+
+import com.smartvn.product_service.model.AppliedOperation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface AppliedOperationRepository extends JpaRepository<AppliedOperation, Long> {
+
+    @Modifying
+    @Query("DELETE FROM AppliedOperation o WHERE o.createdAt < :cutoff")
+    int deleteOlderThan(@Param("cutoff") LocalDateTime cutoff);
+}
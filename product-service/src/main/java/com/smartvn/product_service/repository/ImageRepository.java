@@ -4,7 +4,9 @@ import com.smartvn.product_service.model.Image;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ImageRepository extends JpaRepository<Image, Long> {
@@ -16,4 +18,20 @@ public interface ImageRepository extends JpaRepository<Image, Long> {
      * @return List các Image.
      */
     List<Image> findByProductId(Long productId);
+
+    /**
+     * Lấy ảnh đầu tiên (thumbnail) của một sản phẩm.
+     *
+     * @param productId ID của sản phẩm.
+     * @return Optional chứa Image nếu có.
+     */
+    Optional<Image> findFirstByProductIdOrderByIdAsc(Long productId);
+
+    /**
+     * Lấy ảnh của nhiều sản phẩm, theo thứ tự id (ảnh đầu tiên của mỗi product là thumbnail).
+     *
+     * @param productIds ID các sản phẩm.
+     * @return List các Image.
+     */
+    List<Image> findAllByProductIdInOrderByIdAsc(Collection<Long> productIds);
 }
\ No newline at end of file
@@ -15,6 +15,12 @@ public interface InventoryRepository extends JpaRepository<Inventory, Long> {
     @Query("SELECT i FROM Inventory i WHERE i.product.id = :productId")
     List<Inventory> findAllByProductId(@Param("productId") Long productId);
 
+    /**
+     * Chỉ lấy số lượng còn bán được của các variant: [inventoryId, quantity - reservedQuantity]
+     */
+    @Query("SELECT i.id, i.quantity - i.reservedQuantity FROM Inventory i WHERE i.product.id = :productId")
+    List<Object[]> findStockByProductId(@Param("productId") Long productId);
+
     List<Inventory> findByProductId(Long productId);
 
     Optional<Inventory> findByProductIdAndSize(Long productId, String size);
@@ -23,8 +29,15 @@ public interface InventoryRepository extends JpaRepository<Inventory, Long> {
      * Kiểm tra sản phẩm có còn hàng không (bất kỳ size nào)
      */
     @Query("SELECT CASE WHEN COUNT(i) > 0 THEN true ELSE false END " +
-            "FROM Inventory i WHERE i.product.id = :productId AND i.quantity > 0")
+            "FROM Inventory i WHERE i.product.id = :productId AND i.quantity > i.reservedQuantity")
     boolean hasStock(@Param("productId") Long productId);
 
     long countByProductId(Long productId);
+
+    /**
+     * SKU có số còn bán được ≤ ngưỡng (của SKU hoặc mặc định) — dùng để dựng lại watchlist lúc khởi động
+     */
+    @Query("SELECT i FROM Inventory i " +
+            "WHERE i.quantity - i.reservedQuantity <= COALESCE(i.reorderPoint, :defaultReorderPoint)")
+    List<Inventory> findAtOrBelowReorderPoint(@Param("defaultReorderPoint") int defaultReorderPoint);
 }
\ No newline at end of file
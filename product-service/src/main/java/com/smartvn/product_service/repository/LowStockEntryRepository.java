@@ -0,0 +1,36 @@
+package com.smartvn.product_service.repository;
+
+import com.smartvn.product_service.model.LowStockEntry;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface LowStockEntryRepository extends JpaRepository<LowStockEntry, Long> {
+
+    List<LowStockEntry> findAllByProductIdIn(Collection<Long> productIds);
+
+    List<LowStockEntry> findAllByProductIdInOrderByAvailableAscInventoryIdAsc(Collection<Long> productIds);
+
+    /**
+     * Ít hàng nhất lên trước; đọc theo idx_low_stock_level_available
+     */
+    @Query(value = "SELECT e FROM LowStockEntry e WHERE e.level = :level ORDER BY e.available, e.inventoryId",
+            countQuery = "SELECT COUNT(e) FROM LowStockEntry e WHERE e.level = :level")
+    Page<LowStockEntry> findPageByLevel(@Param("level") LowStockEntry.Level level, Pageable pageable);
+
+    @Query(value = "SELECT e FROM LowStockEntry e ORDER BY e.available, e.inventoryId",
+            countQuery = "SELECT COUNT(e) FROM LowStockEntry e")
+    Page<LowStockEntry> findPage(Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM LowStockEntry e WHERE e.productId = :productId")
+    int deleteByProductId(@Param("productId") Long productId);
+}
@@ -0,0 +1,47 @@
+package com.smartvn.product_service.repository;
+
+import com.smartvn.product_service.model.ProductChangeEvent;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ProductChangeEventRepository extends JpaRepository<ProductChangeEvent, Long> {
+
+    /**
+     * Event chưa công bố, theo thứ tự ghi.
+     * SKIP LOCKED: dòng của transaction chưa commit thì bỏ qua (lượt sau sẽ lấy, với offset lớn hơn);
+     * relay ở instance khác gán offset trùng sẽ vi phạm uk_change_event_offset và thử lại lượt sau.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT e FROM ProductChangeEvent e WHERE e.feedOffset IS NULL ORDER BY e.id")
+    List<ProductChangeEvent> findUnpublishedForUpdate(Pageable pageable);
+
+    @Query("SELECT COALESCE(MAX(e.feedOffset), 0) FROM ProductChangeEvent e")
+    long findMaxFeedOffset();
+
+    @Query("SELECT MIN(e.feedOffset) FROM ProductChangeEvent e")
+    Long findMinFeedOffset();
+
+    @Query("SELECT e FROM ProductChangeEvent e WHERE e.feedOffset > :after ORDER BY e.feedOffset")
+    List<ProductChangeEvent> findPublishedAfter(@Param("after") long after, Pageable pageable);
+
+    /**
+     * Luôn giữ lại event có offset lớn nhất để relay tiếp tục đánh số từ đó
+     */
+    @Modifying
+    @Query("DELETE FROM ProductChangeEvent e " +
+            "WHERE e.feedOffset IS NOT NULL AND e.feedOffset < :maxOffset AND e.createdAt < :cutoff")
+    int deletePublishedBefore(@Param("cutoff") LocalDateTime cutoff, @Param("maxOffset") long maxOffset);
+}
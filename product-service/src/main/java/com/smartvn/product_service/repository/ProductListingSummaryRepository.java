@@ -0,0 +1,21 @@
+package com.smartvn.product_service.repository;
+
+import com.smartvn.product_service.model.ProductListingSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ProductListingSummaryRepository extends JpaRepository<ProductListingSummary, Long>,
+        JpaSpecificationExecutor<ProductListingSummary> {
+
+    /**
+     * Lấy ID các product chưa có dòng summary (dùng để backfill khi khởi động).
+     */
+    @Query("SELECT p.id FROM Product p WHERE NOT EXISTS " +
+            "(SELECT s.productId FROM ProductListingSummary s WHERE s.productId = p.id)")
+    List<Long> findProductIdsWithoutSummary();
+}
@@ -5,10 +5,12 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -30,11 +32,77 @@ public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpec
     @Query("SELECT p FROM Product p WHERE p.isActive = true ORDER BY p.quantitySold DESC")
     List<Product> findTopSellingProducts(Pageable pageable);
 
+    /**
+     * Lấy text dùng cho search index: [id, description, categoryName]
+     */
+    @Query("SELECT p.id, p.description, c.name FROM Product p LEFT JOIN p.category c")
+    List<Object[]> findSearchableText();
+
+    /**
+     * Lấy thuộc tính dùng cho facet index: [id, ramCapacity, romCapacity, screenSize]
+     */
+    @Query("SELECT p.id, p.ramCapacity, p.romCapacity, p.screenSize FROM Product p")
+    List<Object[]> findFacetAttributes();
+
+    /**
+     * Đếm product active theo category: [categoryId, count]
+     */
+    @Query("SELECT p.category.id, COUNT(p) FROM Product p WHERE p.isActive = true GROUP BY p.category.id")
+    List<Object[]> countActiveByCategory();
+
     /**
      * Kiểm tra product có tồn tại không
      */
     boolean existsById(Long id);
 
     boolean existsByTitleAndBrand(String title, String brand);
+
+    boolean existsByDedupKey(String dedupKey);
+
+    /**
+     * Map dedup key → id cho các product vừa insert bằng JDBC: [dedupKey, id]
+     */
+    @Query("SELECT p.dedupKey, p.id FROM Product p WHERE p.dedupKey IN :keys")
+    List<Object[]> findIdsByDedupKeys(@Param("keys") Collection<String> keys);
+
+    /**
+     * Load product kèm inventories + category trong 1 query
+     */
+    @Query("SELECT DISTINCT p FROM Product p LEFT JOIN FETCH p.inventories LEFT JOIN FETCH p.category " +
+            "WHERE p.id IN :ids")
+    List<Product> findAllWithInventoriesByIdIn(@Param("ids") Collection<Long> ids);
+
+    boolean existsByDedupKeyAndIdNot(String dedupKey, Long id);
+
+    /**
+     * Trong các key truyền vào, lấy ra những key đã tồn tại (1 query IN cho cả batch)
+     */
+    @Query("SELECT p.dedupKey FROM Product p WHERE p.dedupKey IN :keys")
+    List<String> findExistingDedupKeys(@Param("keys") Collection<String> keys);
+
+    /**
+     * Product cũ chưa có dedup key: [id, title, brand]
+     */
+    @Query("SELECT p.id, p.title, p.brand FROM Product p WHERE p.dedupKey IS NULL ORDER BY p.id")
+    List<Object[]> findMissingDedupKeys();
+
+    @Modifying
+    @Query("UPDATE Product p SET p.dedupKey = :dedupKey WHERE p.id = :id")
+    int updateDedupKey(@Param("id") Long id, @Param("dedupKey") String dedupKey);
+
+    /**
+     * Tính min/max giá sau giảm cho product cũ (chưa có các cột này) trong 1 câu UPDATE
+     */
+    @Modifying
+    @Query("UPDATE Product p SET " +
+            "p.minDiscountedPrice = (SELECT MIN(COALESCE(i.discountedPrice, i.price)) FROM Inventory i WHERE i.product.id = p.id), " +
+            "p.maxDiscountedPrice = (SELECT MAX(COALESCE(i.discountedPrice, i.price)) FROM Inventory i WHERE i.product.id = p.id) " +
+            "WHERE p.minDiscountedPrice IS NULL " +
+            "AND EXISTS (SELECT 1 FROM Inventory i WHERE i.product.id = p.id)")
+    int backfillInventoryPrices();
+
+    @Query("SELECT p.id FROM Product p WHERE p.flashSale = true")
+    List<Long> findFlashSaleProductIds();
+
     long countByIsActive(boolean isActive);
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+package com.smartvn.product_service.repository;
+
+import com.smartvn.product_service.model.StockReservation;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+
+    List<StockReservation> findAllByReference(String reference);
+
+    /**
+     * Khoá các dòng của một reference (commit / release chạy tuần tự với sweeper)
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM StockReservation r WHERE r.reference = :reference ORDER BY r.id")
+    List<StockReservation> findAllByReferenceForUpdate(@Param("reference") String reference);
+
+    /**
+     * Các reservation ACTIVE đã quá hạn, cũ nhất trước.
+     * SKIP LOCKED (lock timeout = -2): dòng đang được commit/release thì bỏ qua, lượt sau quét lại.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT r FROM StockReservation r " +
+            "WHERE r.status = :status AND r.expiresAt <= :now ORDER BY r.expiresAt")
+    List<StockReservation> findDueForUpdate(@Param("status") StockReservation.Status status,
+                                            @Param("now") LocalDateTime now,
+                                            Pageable pageable);
+}
@@ -0,0 +1,455 @@
+package com.smartvn.product_service.search;
+
+import com.smartvn.product_service.dto.ProductFacetsDTO;
+import com.smartvn.product_service.model.Product;
+import com.smartvn.product_service.model.ProductListingSummary;
+import com.smartvn.product_service.repository.ProductListingSummaryRepository;
+import com.smartvn.product_service.repository.ProductRepository;
+import com.smartvn.product_service.service.CategoryTreeService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Index cột (column store) trong bộ nhớ để đếm facet.
+ * - Mỗi product có một ordinal; mỗi thuộc tính (brand, category, RAM, ROM, màn hình)
+ *   được mã hoá thành int qua dictionary riêng → mảng int[] theo ordinal
+ * - BitSet cho active / còn hàng / từng category để lọc nhanh
+ * - Đếm tất cả facet trong MỘT vòng lặp qua tập ứng viên
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductFacetIndex {
+
+    private static final int NO_VALUE = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Mốc giá (VNĐ) cho các bucket: [0, 5tr), [5tr, 10tr), [10tr, 20tr), [20tr, 30tr), [30tr, ∞)
+     */
+    private static final long[] PRICE_BOUNDARIES = {5_000_000L, 10_000_000L, 20_000_000L, 30_000_000L};
+
+    private final ProductListingSummaryRepository summaryRepository;
+    private final ProductRepository productRepository;
+    private final CategoryTreeService categoryTreeService;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, Integer> ordinalByProduct = new HashMap<>();
+    private int size = 0;
+
+    private final ValueDictionary brands = new ValueDictionary();
+    private final ValueDictionary ramCapacities = new ValueDictionary();
+    private final ValueDictionary romCapacities = new ValueDictionary();
+    private final ValueDictionary screenSizes = new ValueDictionary();
+    private final Map<Long, Integer> categoryCodes = new HashMap<>();
+    private final List<Long> categoryValues = new ArrayList<>();
+
+    private int[] brandCode = newCodeArray(INITIAL_CAPACITY);
+    private int[] ramCode = newCodeArray(INITIAL_CAPACITY);
+    private int[] romCode = newCodeArray(INITIAL_CAPACITY);
+    private int[] screenCode = newCodeArray(INITIAL_CAPACITY);
+    private int[] categoryCode = newCodeArray(INITIAL_CAPACITY);
+    private double[] minPrice = new double[INITIAL_CAPACITY];
+    private double[] maxPrice = new double[INITIAL_CAPACITY];
+
+    private final BitSet active = new BitSet();
+    private final BitSet inStock = new BitSet();
+    private final List<BitSet> categoryBits = new ArrayList<>();
+
+    // Thay đổi commit trong lúc rebuild đang đọc DB: productId → doc mới (null = đã xoá).
+    // Được áp lại sau dữ liệu rebuild (vốn có thể cũ hơn). Chỉ truy cập khi giữ write lock.
+    private Map<Long, FacetDocument> rebuildDeltas = null;
+
+    private volatile boolean ready = false;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * ✅ Build index khi khởi động (sau khi summary đã được backfill)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+
+        lock.writeLock().lock();
+        try {
+            rebuildDeltas = new LinkedHashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Map<Long, String[]> specsById = new HashMap<>();
+        for (Object[] row : productRepository.findFacetAttributes()) {
+            specsById.put((Long) row[0], new String[]{(String) row[1], (String) row[2], (String) row[3]});
+        }
+        List<ProductListingSummary> summaries = summaryRepository.findAll();
+
+        lock.writeLock().lock();
+        try {
+            for (ProductListingSummary summary : summaries) {
+                String[] specs = specsById.getOrDefault(summary.getProductId(), new String[3]);
+                upsertLocked(new FacetDocument(summary, specs[0], specs[1], specs[2]));
+            }
+            // Thay đổi commit sau khi bắt đầu đọc DB → áp lại lên dữ liệu vừa nạp
+            rebuildDeltas.forEach((productId, doc) -> {
+                if (doc != null) {
+                    upsertLocked(doc);
+                } else {
+                    deactivateLocked(productId);
+                }
+            });
+            rebuildDeltas = null;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        log.info("✅ Product facet index built: {} products in {} ms",
+                summaries.size(), System.currentTimeMillis() - start);
+    }
+
+    public void indexAfterCommit(ProductListingSummary summary, Product product) {
+        FacetDocument doc = new FacetDocument(summary,
+                product.getRamCapacity(), product.getRomCapacity(), product.getScreenSize());
+        runAfterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                upsertLocked(doc);
+                if (rebuildDeltas != null) {
+                    rebuildDeltas.put(doc.productId, doc);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    public void removeAfterCommit(Long productId) {
+        runAfterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                deactivateLocked(productId);
+                if (rebuildDeltas != null) {
+                    rebuildDeltas.put(productId, null);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Facet cho tập product đã biết trước (VD: kết quả của search index theo keyword)
+     */
+    public ProductFacetsDTO facetsFor(Collection<Long> candidateIds) {
+        lock.readLock().lock();
+        try {
+            BitSet candidates = new BitSet(size);
+            for (Long productId : candidateIds) {
+                Integer ordinal = ordinalByProduct.get(productId);
+                if (ordinal != null) {
+                    candidates.set(ordinal);
+                }
+            }
+            candidates.and(active);
+            return countLocked(candidates);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Facet cho bộ lọc category + giá (không keyword), lọc hoàn toàn trên bitset trong bộ nhớ
+     */
+    public ProductFacetsDTO facetsFor(List<Long> categoryIds, BigDecimal minPriceFilter, BigDecimal maxPriceFilter) {
+        lock.readLock().lock();
+        try {
+            BitSet candidates = (BitSet) active.clone();
+
+            if (categoryIds != null && !categoryIds.isEmpty()) {
+                BitSet inCategories = new BitSet(size);
+                for (Long categoryId : categoryIds) {
+                    Integer code = categoryCodes.get(categoryId);
+                    if (code != null) {
+                        inCategories.or(categoryBits.get(code));
+                    }
+                }
+                candidates.and(inCategories);
+            }
+
+            if (minPriceFilter != null || maxPriceFilter != null) {
+                double min = minPriceFilter != null ? minPriceFilter.doubleValue() : Double.NEGATIVE_INFINITY;
+                double max = maxPriceFilter != null ? maxPriceFilter.doubleValue() : Double.POSITIVE_INFINITY;
+                for (int ord = candidates.nextSetBit(0); ord >= 0; ord = candidates.nextSetBit(ord + 1)) {
+                    // Giống ProductSpecification.searchListings: khoảng giá của product giao với khoảng lọc
+                    if (Double.isNaN(minPrice[ord]) || maxPrice[ord] < min || minPrice[ord] > max) {
+                        candidates.clear(ord);
+                    }
+                }
+            }
+
+            return countLocked(candidates);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ============================================
+    // COUNTING
+    // ============================================
+
+    private ProductFacetsDTO countLocked(BitSet candidates) {
+        long[] brandCounts = new long[brands.size()];
+        long[] ramCounts = new long[ramCapacities.size()];
+        long[] romCounts = new long[romCapacities.size()];
+        long[] screenCounts = new long[screenSizes.size()];
+        long[] categoryCounts = new long[categoryValues.size()];
+        long[] priceCounts = new long[PRICE_BOUNDARIES.length + 1];
+
+        long total = 0;
+        for (int ord = candidates.nextSetBit(0); ord >= 0; ord = candidates.nextSetBit(ord + 1)) {
+            total++;
+            increment(brandCounts, brandCode[ord]);
+            increment(ramCounts, ramCode[ord]);
+            increment(romCounts, romCode[ord]);
+            increment(screenCounts, screenCode[ord]);
+            increment(categoryCounts, categoryCode[ord]);
+            if (!Double.isNaN(minPrice[ord])) {
+                priceCounts[priceBucket(minPrice[ord])]++;
+            }
+        }
+
+        BitSet available = (BitSet) candidates.clone();
+        available.and(inStock);
+
+        ProductFacetsDTO dto = new ProductFacetsDTO();
+        dto.setTotalCandidates(total);
+        dto.setInStockCount(available.cardinality());
+        dto.setBrands(brands.toFacetValues(brandCounts));
+        dto.setRamCapacities(ramCapacities.toFacetValues(ramCounts));
+        dto.setRomCapacities(romCapacities.toFacetValues(romCounts));
+        dto.setScreenSizes(screenSizes.toFacetValues(screenCounts));
+        dto.setCategories(toCategoryFacets(categoryCounts));
+        dto.setPriceBuckets(toPriceBuckets(priceCounts));
+        return dto;
+    }
+
+    private static void increment(long[] counts, int code) {
+        if (code != NO_VALUE) {
+            counts[code]++;
+        }
+    }
+
+    private static int priceBucket(double price) {
+        for (int i = 0; i < PRICE_BOUNDARIES.length; i++) {
+            if (price < PRICE_BOUNDARIES[i]) {
+                return i;
+            }
+        }
+        return PRICE_BOUNDARIES.length;
+    }
+
+    private List<ProductFacetsDTO.FacetValue> toCategoryFacets(long[] counts) {
+        CategoryTreeService.CategoryTree tree = categoryTreeService.current();
+        List<ProductFacetsDTO.FacetValue> result = new ArrayList<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0) {
+                Long categoryId = categoryValues.get(code);
+                String name = tree.findById(categoryId)
+                        .map(CategoryTreeService.CategoryNode::getName)
+                        .orElse(null);
+                result.add(new ProductFacetsDTO.FacetValue(categoryId, name, counts[code]));
+            }
+        }
+        result.sort(Comparator.comparingLong(ProductFacetsDTO.FacetValue::getCount).reversed());
+        return result;
+    }
+
+    private List<ProductFacetsDTO.PriceBucket> toPriceBuckets(long[] counts) {
+        List<ProductFacetsDTO.PriceBucket> result = new ArrayList<>(counts.length);
+        for (int i = 0; i < counts.length; i++) {
+            BigDecimal lower = i == 0 ? null : BigDecimal.valueOf(PRICE_BOUNDARIES[i - 1]);
+            BigDecimal upper = i == PRICE_BOUNDARIES.length ? null : BigDecimal.valueOf(PRICE_BOUNDARIES[i]);
+            result.add(new ProductFacetsDTO.PriceBucket(bucketLabel(lower, upper), lower, upper, counts[i]));
+        }
+        return result;
+    }
+
+    private static String bucketLabel(BigDecimal lower, BigDecimal upper) {
+        if (lower == null) {
+            return String.format("Dưới %,.0fđ", upper);
+        }
+        if (upper == null) {
+            return String.format("Trên %,.0fđ", lower);
+        }
+        return String.format("%,.0fđ - %,.0fđ", lower, upper);
+    }
+
+    // ============================================
+    // INDEXING
+    // ============================================
+
+    private void deactivateLocked(Long productId) {
+        Integer ordinal = ordinalByProduct.get(productId);
+        if (ordinal != null) {
+            active.clear(ordinal);
+            inStock.clear(ordinal);
+        }
+    }
+
+    private void upsertLocked(FacetDocument doc) {
+        Integer existing = ordinalByProduct.get(doc.productId);
+        int ordinal;
+        if (existing != null) {
+            ordinal = existing;
+            if (categoryCode[ordinal] != NO_VALUE) {
+                categoryBits.get(categoryCode[ordinal]).clear(ordinal);
+            }
+        } else {
+            ensureCapacity(size + 1);
+            ordinal = size++;
+            ordinalByProduct.put(doc.productId, ordinal);
+        }
+
+        brandCode[ordinal] = brands.codeOf(doc.brand);
+        ramCode[ordinal] = ramCapacities.codeOf(doc.ramCapacity);
+        romCode[ordinal] = romCapacities.codeOf(doc.romCapacity);
+        screenCode[ordinal] = screenSizes.codeOf(doc.screenSize);
+        categoryCode[ordinal] = categoryCodeOf(doc.categoryId);
+        if (categoryCode[ordinal] != NO_VALUE) {
+            categoryBits.get(categoryCode[ordinal]).set(ordinal);
+        }
+        minPrice[ordinal] = doc.minPrice;
+        maxPrice[ordinal] = doc.maxPrice;
+        active.set(ordinal, doc.active);
+        inStock.set(ordinal, doc.inStock);
+    }
+
+    private int categoryCodeOf(Long categoryId) {
+        if (categoryId == null) {
+            return NO_VALUE;
+        }
+        return categoryCodes.computeIfAbsent(categoryId, id -> {
+            categoryValues.add(id);
+            categoryBits.add(new BitSet());
+            return categoryValues.size() - 1;
+        });
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= brandCode.length) {
+            return;
+        }
+        int capacity = Math.max(required, brandCode.length * 2);
+        brandCode = growCodes(brandCode, capacity);
+        ramCode = growCodes(ramCode, capacity);
+        romCode = growCodes(romCode, capacity);
+        screenCode = growCodes(screenCode, capacity);
+        categoryCode = growCodes(categoryCode, capacity);
+        minPrice = Arrays.copyOf(minPrice, capacity);
+        maxPrice = Arrays.copyOf(maxPrice, capacity);
+    }
+
+    private static int[] growCodes(int[] codes, int capacity) {
+        int oldLength = codes.length;
+        int[] grown = Arrays.copyOf(codes, capacity);
+        Arrays.fill(grown, oldLength, capacity, NO_VALUE);
+        return grown;
+    }
+
+    private static int[] newCodeArray(int capacity) {
+        int[] codes = new int[capacity];
+        Arrays.fill(codes, NO_VALUE);
+        return codes;
+    }
+
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Dictionary giá trị → mã int. So khớp không phân biệt hoa thường, hiển thị theo lần gặp đầu tiên.
+     */
+    private static class ValueDictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int codeOf(String raw) {
+            if (raw == null || raw.isBlank()) {
+                return NO_VALUE;
+            }
+            String display = raw.trim();
+            return codes.computeIfAbsent(display.toLowerCase(Locale.ROOT), key -> {
+                values.add(display);
+                return values.size() - 1;
+            });
+        }
+
+        int size() {
+            return values.size();
+        }
+
+        List<ProductFacetsDTO.FacetValue> toFacetValues(long[] counts) {
+            List<ProductFacetsDTO.FacetValue> result = new ArrayList<>();
+            for (int code = 0; code < counts.length; code++) {
+                if (counts[code] > 0) {
+                    result.add(new ProductFacetsDTO.FacetValue(null, values.get(code), counts[code]));
+                }
+            }
+            result.sort(Comparator.comparingLong(ProductFacetsDTO.FacetValue::getCount).reversed());
+            return result;
+        }
+    }
+
+    private static class FacetDocument {
+        private final Long productId;
+        private final String brand;
+        private final String ramCapacity;
+        private final String romCapacity;
+        private final String screenSize;
+        private final Long categoryId;
+        private final double minPrice;
+        private final double maxPrice;
+        private final boolean active;
+        private final boolean inStock;
+
+        FacetDocument(ProductListingSummary summary, String ramCapacity, String romCapacity, String screenSize) {
+            this.productId = summary.getProductId();
+            this.brand = summary.getBrand();
+            this.ramCapacity = ramCapacity;
+            this.romCapacity = romCapacity;
+            this.screenSize = screenSize;
+            this.categoryId = summary.getCategoryId();
+            this.minPrice = summary.getMinDiscountedPrice() != null
+                    ? summary.getMinDiscountedPrice().doubleValue() : Double.NaN;
+            this.maxPrice = summary.getMaxDiscountedPrice() != null
+                    ? summary.getMaxDiscountedPrice().doubleValue() : Double.NaN;
+            this.active = Boolean.TRUE.equals(summary.getIsActive());
+            this.inStock = summary.getTotalStock() != null && summary.getTotalStock() > 0;
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package com.smartvn.product_service.search;
+
+import com.smartvn.product_service.model.ProductListingSummary;
+import com.smartvn.product_service.repository.ProductListingSummaryRepository;
+import com.smartvn.product_service.repository.ProductRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index trong bộ nhớ cho tìm kiếm sản phẩm theo từ khoá.
+ * - Index title, brand, tên category và description (đã bỏ dấu, xem TextNormalizer)
+ * - Xếp hạng bằng BM25, mỗi field có trọng số riêng (title > brand/category > description)
+ * - Token cuối của query được match theo prefix để hỗ trợ gõ dở ("iph" → "iphone")
+ * - Lọc category / giá / isActive ngay trên index, DB chỉ cần load đúng trang kết quả
+ * Index được cập nhật qua ProductListingSummaryService.refresh() sau khi transaction commit.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductSearchIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double PREFIX_MATCH_FACTOR = 0.8;
+
+    private static final int TITLE_WEIGHT = 3;
+    private static final int BRAND_WEIGHT = 2;
+    private static final int CATEGORY_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    private final ProductListingSummaryRepository summaryRepository;
+    private final ProductRepository productRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // term → (productId → term frequency đã nhân trọng số field)
+    private final TreeMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    private final Map<Long, IndexedProduct> documents = new HashMap<>();
+    private long totalLength = 0;
+
+    // Thay đổi commit trong lúc rebuild đang đọc DB: productId → doc mới (null = đã xoá).
+    // Được replay sau khi nạp dữ liệu rebuild, để không bị clear() xoá mất. Chỉ truy cập khi giữ write lock.
+    private Map<Long, IndexedProduct> rebuildDeltas = null;
+
+    private volatile boolean ready = false;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * ✅ Build toàn bộ index khi khởi động (chạy sau khi summary đã được backfill)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+
+        lock.writeLock().lock();
+        try {
+            rebuildDeltas = new LinkedHashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Map<Long, Object[]> textById = new HashMap<>();
+        for (Object[] row : productRepository.findSearchableText()) {
+            textById.put((Long) row[0], row);
+        }
+
+        List<IndexedProduct> docs = new ArrayList<>();
+        for (ProductListingSummary summary : summaryRepository.findAll()) {
+            Object[] text = textById.get(summary.getProductId());
+            docs.add(toIndexedProduct(
+                    summary,
+                    text != null ? (String) text[1] : null,
+                    text != null ? (String) text[2] : null));
+        }
+
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documents.clear();
+            totalLength = 0;
+            docs.forEach(this::upsertLocked);
+            // Thay đổi commit sau khi bắt đầu đọc DB → áp lại lên dữ liệu vừa nạp
+            rebuildDeltas.forEach((productId, doc) -> {
+                if (doc != null) {
+                    upsertLocked(doc);
+                } else {
+                    removeLocked(productId);
+                }
+            });
+            rebuildDeltas = null;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        log.info("✅ Product search index built: {} products, {} terms in {} ms",
+                docs.size(), postings.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Cập nhật index cho một product sau khi transaction hiện tại commit
+     * (nếu rollback thì index không bị đổi).
+     */
+    public void indexAfterCommit(ProductListingSummary summary, String description, String categoryName) {
+        IndexedProduct doc = toIndexedProduct(summary, description, categoryName);
+        runAfterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                upsertLocked(doc);
+                recordDeltaLocked(doc.getProductId(), doc);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    public void removeAfterCommit(Long productId) {
+        runAfterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                removeLocked(productId);
+                recordDeltaLocked(productId, null);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Tìm kiếm theo từ khoá + bộ lọc.
+     *
+     * @return Danh sách productId đã xếp hạng (theo BM25, hoặc theo sort nếu client truyền sort).
+     */
+    public List<Long> search(String keyword,
+                             List<Long> categoryIds,
+                             BigDecimal minPrice,
+                             BigDecimal maxPrice,
+                             Sort sort) {
+        List<String> terms = TextNormalizer.tokenize(keyword);
+        if (terms.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<Long> categoryFilter = categoryIds == null || categoryIds.isEmpty()
+                ? null
+                : new HashSet<>(categoryIds);
+
+        lock.readLock().lock();
+        try {
+            if (documents.isEmpty()) {
+                return Collections.emptyList();
+            }
+            double avgLength = (double) totalLength / documents.size();
+
+            // Tất cả các token đều phải match (AND), điểm = tổng BM25 của từng token
+            Map<Long, Double> scores = null;
+            for (int i = 0; i < terms.size(); i++) {
+                boolean isLastTerm = i == terms.size() - 1;
+                Map<Long, Double> termScores = scoreTerm(terms.get(i), isLastTerm, avgLength);
+                scores = scores == null ? termScores : intersect(scores, termScores);
+                if (scores.isEmpty()) {
+                    return Collections.emptyList();
+                }
+            }
+
+            List<ScoredProduct> matches = new ArrayList<>();
+            for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                IndexedProduct doc = documents.get(entry.getKey());
+                if (matchesFilters(doc, categoryFilter, minPrice, maxPrice)) {
+                    matches.add(new ScoredProduct(doc, entry.getValue()));
+                }
+            }
+
+            matches.sort(buildComparator(sort));
+            List<Long> ids = new ArrayList<>(matches.size());
+            for (ScoredProduct match : matches) {
+                ids.add(match.getDoc().getProductId());
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ============================================
+    // INDEXING
+    // ============================================
+
+    private IndexedProduct toIndexedProduct(ProductListingSummary summary, String description, String categoryName) {
+        Map<String, Integer> termFrequencies = new HashMap<>();
+        addField(termFrequencies, summary.getTitle(), TITLE_WEIGHT);
+        addField(termFrequencies, summary.getBrand(), BRAND_WEIGHT);
+        addField(termFrequencies, categoryName, CATEGORY_WEIGHT);
+        addField(termFrequencies, description, DESCRIPTION_WEIGHT);
+
+        int length = 0;
+        for (int tf : termFrequencies.values()) {
+            length += tf;
+        }
+
+        return new IndexedProduct(
+                summary.getProductId(),
+                termFrequencies,
+                length,
+                summary.getCategoryId(),
+                summary.getMinDiscountedPrice(),
+                summary.getMaxDiscountedPrice(),
+                Boolean.TRUE.equals(summary.getIsActive()),
+                summary.getCreatedAt(),
+                summary.getQuantitySold(),
+                summary.getAverageRating(),
+                summary.getNumRatings()
+        );
+    }
+
+    private void addField(Map<String, Integer> termFrequencies, String text, int weight) {
+        for (String token : TextNormalizer.tokenize(text)) {
+            termFrequencies.merge(token, weight, Integer::sum);
+        }
+    }
+
+    private void upsertLocked(IndexedProduct doc) {
+        removeLocked(doc.getProductId());
+        for (Map.Entry<String, Integer> entry : doc.getTermFrequencies().entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), k -> new HashMap<>())
+                    .put(doc.getProductId(), entry.getValue());
+        }
+        documents.put(doc.getProductId(), doc);
+        totalLength += doc.getLength();
+    }
+
+    private void recordDeltaLocked(Long productId, IndexedProduct doc) {
+        if (rebuildDeltas != null) {
+            rebuildDeltas.put(productId, doc);
+        }
+    }
+
+    private void removeLocked(Long productId) {
+        IndexedProduct existing = documents.remove(productId);
+        if (existing == null) {
+            return;
+        }
+        for (String term : existing.getTermFrequencies().keySet()) {
+            Map<Long, Integer> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(productId);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        totalLength -= existing.getLength();
+    }
+
+    // ============================================
+    // SCORING
+    // ============================================
+
+    private Map<Long, Double> scoreTerm(String term, boolean allowPrefix, double avgLength) {
+        Map<String, Map<Long, Integer>> candidates = allowPrefix
+                ? postings.subMap(term, true, term + Character.MAX_VALUE, true)
+                : singletonPosting(term);
+
+        Map<Long, Double> scores = new HashMap<>();
+        int totalDocs = documents.size();
+        for (Map.Entry<String, Map<Long, Integer>> candidate : candidates.entrySet()) {
+            Map<Long, Integer> posting = candidate.getValue();
+            double factor = candidate.getKey().equals(term) ? 1.0 : PREFIX_MATCH_FACTOR;
+            double idf = Math.log(1 + (totalDocs - posting.size() + 0.5) / (posting.size() + 0.5));
+
+            for (Map.Entry<Long, Integer> entry : posting.entrySet()) {
+                int tf = entry.getValue();
+                int docLength = documents.get(entry.getKey()).getLength();
+                double norm = tf + K1 * (1 - B + B * docLength / avgLength);
+                double score = factor * idf * (tf * (K1 + 1)) / norm;
+                // Một product match nhiều term mở rộng từ cùng prefix → lấy điểm cao nhất
+                scores.merge(entry.getKey(), score, Math::max);
+            }
+        }
+        return scores;
+    }
+
+    private Map<String, Map<Long, Integer>> singletonPosting(String term) {
+        Map<Long, Integer> posting = postings.get(term);
+        return posting == null ? Collections.emptyMap() : Collections.singletonMap(term, posting);
+    }
+
+    private Map<Long, Double> intersect(Map<Long, Double> left, Map<Long, Double> right) {
+        Map<Long, Double> smaller = left.size() <= right.size() ? left : right;
+        Map<Long, Double> larger = smaller == left ? right : left;
+        Map<Long, Double> result = new HashMap<>();
+        for (Map.Entry<Long, Double> entry : smaller.entrySet()) {
+            Double other = larger.get(entry.getKey());
+            if (other != null) {
+                result.put(entry.getKey(), entry.getValue() + other);
+            }
+        }
+        return result;
+    }
+
+    private boolean matchesFilters(IndexedProduct doc,
+                                   Set<Long> categoryFilter,
+                                   BigDecimal minPrice,
+                                   BigDecimal maxPrice) {
+        if (!doc.isActive()) {
+            return false;
+        }
+        if (categoryFilter != null && !categoryFilter.contains(doc.getCategoryId())) {
+            return false;
+        }
+        if (minPrice != null && (doc.getMaxPrice() == null || doc.getMaxPrice().compareTo(minPrice) < 0)) {
+            return false;
+        }
+        if (maxPrice != null && (doc.getMinPrice() == null || doc.getMinPrice().compareTo(maxPrice) > 0)) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Không có sort → xếp theo điểm BM25.
+     * Có sort (createdAt, quantitySold, averageRating, numRatings) → xếp theo sort, điểm làm tie-break.
+     */
+    private Comparator<ScoredProduct> buildComparator(Sort sort) {
+        Comparator<ScoredProduct> byScore = Comparator.comparingDouble(ScoredProduct::getScore).reversed();
+        if (sort == null || sort.isUnsorted()) {
+            return byScore.thenComparing(sp -> sp.getDoc().getProductId());
+        }
+
+        Comparator<ScoredProduct> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<ScoredProduct> next = comparatorFor(order.getProperty());
+            if (next == null) {
+                continue;
+            }
+            if (order.isDescending()) {
+                next = next.reversed();
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        return comparator == null
+                ? byScore.thenComparing(sp -> sp.getDoc().getProductId())
+                : comparator.thenComparing(byScore);
+    }
+
+    private Comparator<ScoredProduct> comparatorFor(String property) {
+        return switch (property) {
+            case "createdAt" -> Comparator.comparing(sp -> sp.getDoc().getCreatedAt(),
+                    Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder()));
+            case "quantitySold" -> Comparator.comparing(sp -> sp.getDoc().getQuantitySold(),
+                    Comparator.nullsFirst(Comparator.<Long>naturalOrder()));
+            case "averageRating" -> Comparator.comparing(sp -> sp.getDoc().getAverageRating(),
+                    Comparator.nullsFirst(Comparator.<Double>naturalOrder()));
+            case "numRatings" -> Comparator.comparing(sp -> sp.getDoc().getNumRatings(),
+                    Comparator.nullsFirst(Comparator.<Integer>naturalOrder()));
+            default -> null;
+        };
+    }
+
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class IndexedProduct {
+        private final Long productId;
+        private final Map<String, Integer> termFrequencies;
+        private final int length;
+
+        // Thuộc tính dùng để lọc / sort
+        private final Long categoryId;
+        private final BigDecimal minPrice;
+        private final BigDecimal maxPrice;
+        private final boolean active;
+        private final LocalDateTime createdAt;
+        private final Long quantitySold;
+        private final Double averageRating;
+        private final Integer numRatings;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class ScoredProduct {
+        private final IndexedProduct doc;
+        private final double score;
+    }
+}
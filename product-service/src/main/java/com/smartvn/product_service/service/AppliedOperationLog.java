@@ -0,0 +1,67 @@
+package com.smartvn.product_service.service;
+
+import com.smartvn.product_service.exceptions.AppException;
+import com.smartvn.product_service.repository.AppliedOperationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Sổ các thao tác idempotent đã áp dụng (bảng applied_operations).
+ * claim() phải chạy trong transaction của thao tác: INSERT IGNORE trên unique key nên
+ * - key mới → ghi lại, thao tác được áp dụng; rollback thì key cũng biến mất
+ * - key đã có (retry) → 0 dòng, bỏ qua
+ * - 2 request cùng key chạy song song → request sau chờ unique lock đến khi request trước commit
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AppliedOperationLog {
+
+    private static final String CLAIM_SQL =
+            "INSERT IGNORE INTO applied_operations (operation_key, created_at) VALUES (?, ?)";
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AppliedOperationRepository appliedOperationRepository;
+
+    @Value("${inventory.idempotency.retention:P30D}")
+    private Duration retention;
+
+    /**
+     * @return true nếu key chưa từng được áp dụng (caller thực hiện thao tác), false nếu là lần gọi lại
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean claim(String operationKey) {
+        if (operationKey == null || operationKey.isBlank() || operationKey.length() > MAX_KEY_LENGTH) {
+            throw new AppException("Invalid operation key", HttpStatus.BAD_REQUEST);
+        }
+        int inserted = jdbcTemplate.update(CLAIM_SQL, operationKey.trim(), Timestamp.valueOf(LocalDateTime.now()));
+        if (inserted == 0) {
+            log.info("🔁 Operation {} already applied, skipping", operationKey);
+        }
+        return inserted > 0;
+    }
+
+    /**
+     * Xoá key cũ hơn retention (retry chỉ xảy ra trong vài phút / vài giờ)
+     */
+    @Scheduled(cron = "${inventory.idempotency.purge-cron:0 30 3 * * *}")
+    @Transactional
+    public void purgeExpired() {
+        int deleted = appliedOperationRepository.deleteOlderThan(LocalDateTime.now().minus(retention));
+        if (deleted > 0) {
+            log.info("🧹 Purged {} applied operation keys", deleted);
+        }
+    }
+}
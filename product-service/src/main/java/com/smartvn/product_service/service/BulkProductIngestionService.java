@@ -0,0 +1,365 @@
+package com.smartvn.product_service.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartvn.product_service.dto.admin.CreateProductRequest;
+import com.smartvn.product_service.exceptions.AppException;
+import com.smartvn.product_service.model.Inventory;
+import com.smartvn.product_service.model.Product;
+import com.smartvn.product_service.repository.ProductRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * ✅ Bulk import dạng stream (NDJSON: mỗi dòng là một CreateProductRequest).
+ * - Đọc từng dòng, gom thành chunk, mỗi chunk commit trong transaction riêng
+ * - Insert products / inventory / images bằng JDBC batch (IDENTITY không cho Hibernate batch)
+ * - Bộ nhớ chỉ giữ 1 chunk + tập dedup key đã nhận trong request
+ * - Báo tiến độ và lỗi theo từng chunk qua callback
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BulkProductIngestionService {
+
+    private static final int MAX_CHUNK_SIZE = 5000;
+
+    private static final String INSERT_PRODUCT_SQL =
+            "INSERT INTO products (title, brand, color, weight, dimension, battery_type, battery_capacity, " +
+                    "ram_capacity, rom_capacity, screen_size, detailed_review, powerful_performance, " +
+                    "connection_port, description, dedup_key, category_id, num_ratings, average_rating, " +
+                    "quantity_sold, is_active, warning_count, created_at, updated_at) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0, 0, 0, true, 0, ?, ?)";
+
+    private static final int[] PRODUCT_ARG_TYPES = {
+            Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
+            Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
+            Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.BIGINT, Types.TIMESTAMP, Types.TIMESTAMP
+    };
+
+    private static final String INSERT_INVENTORY_SQL =
+            "INSERT INTO inventory (product_id, size, quantity, price, discount_percent, discounted_price, " +
+                    "created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final int[] INVENTORY_ARG_TYPES = {
+            Types.BIGINT, Types.VARCHAR, Types.INTEGER, Types.DECIMAL, Types.INTEGER, Types.DECIMAL,
+            Types.TIMESTAMP, Types.TIMESTAMP
+    };
+
+    private static final String INSERT_IMAGE_SQL =
+            "INSERT INTO images (product_id, download_url, file_name, file_type, created_at) " +
+                    "VALUES (?, ?, ?, ?, ?)";
+
+    private static final int[] IMAGE_ARG_TYPES = {
+            Types.BIGINT, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.TIMESTAMP
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final ProductRepository productRepository;
+    private final ProductDuplicateChecker duplicateChecker;
+    private final CategoryService categoryService;
+    private final CategoryTreeService categoryTreeService;
+    private final ProductListingSummaryService listingSummaryService;
+
+    @Value("${product.bulk.chunk-size:500}")
+    private int defaultChunkSize;
+
+    /**
+     * Đọc NDJSON từ stream và import theo chunk.
+     *
+     * @param input     Body của request (NDJSON, UTF-8).
+     * @param chunkSize Số dòng mỗi chunk (null → mặc định cấu hình).
+     * @param progress  Được gọi sau mỗi chunk (đã commit hoặc đã rollback).
+     * @return Tổng kết toàn bộ lần import.
+     */
+    public IngestionSummary ingestNdjson(InputStream input, Integer chunkSize, Consumer<ChunkReport> progress) {
+        int size = chunkSize != null ? Math.max(1, Math.min(chunkSize, MAX_CHUNK_SIZE)) : defaultChunkSize;
+        long start = System.currentTimeMillis();
+        IngestionSummary summary = new IngestionSummary();
+
+        // Key đã nhận trong request này (kể cả các chunk trước) để bắt trùng trong cùng payload
+        Set<String> seenKeys = new HashSet<>();
+        List<ParsedLine> chunk = new ArrayList<>(size);
+        List<LineFailure> parseFailures = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                summary.totalLines++;
+
+                try {
+                    CreateProductRequest request = objectMapper.readValue(line, CreateProductRequest.class);
+                    String violation = validate(request);
+                    if (violation != null) {
+                        parseFailures.add(new LineFailure(lineNumber, request.getTitle(), violation));
+                    } else {
+                        chunk.add(new ParsedLine(lineNumber, request));
+                    }
+                } catch (JsonProcessingException e) {
+                    parseFailures.add(new LineFailure(lineNumber, null, "Invalid JSON: " + e.getOriginalMessage()));
+                }
+
+                if (chunk.size() + parseFailures.size() >= size) {
+                    flushChunk(summary, chunk, parseFailures, seenKeys, progress);
+                }
+            }
+        } catch (IOException e) {
+            throw new AppException("Failed to read import stream: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+
+        if (!chunk.isEmpty() || !parseFailures.isEmpty()) {
+            flushChunk(summary, chunk, parseFailures, seenKeys, progress);
+        }
+
+        summary.elapsedMs = System.currentTimeMillis() - start;
+        summary.rowsPerSecond = summary.elapsedMs > 0
+                ? summary.inserted * 1000.0 / summary.elapsedMs
+                : summary.inserted;
+        log.info("✅ Bulk stream import done: {} lines, {} inserted, {} failed in {} ms ({} rows/s)",
+                summary.totalLines, summary.inserted, summary.failed, summary.elapsedMs,
+                String.format("%.1f", summary.rowsPerSecond));
+        return summary;
+    }
+
+    private void flushChunk(IngestionSummary summary,
+                            List<ParsedLine> chunk,
+                            List<LineFailure> parseFailures,
+                            Set<String> seenKeys,
+                            Consumer<ChunkReport> progress) {
+        long chunkStart = System.currentTimeMillis();
+        ChunkReport report = new ChunkReport();
+        report.chunk = ++summary.chunks;
+        report.received = chunk.size() + parseFailures.size();
+        report.failures.addAll(parseFailures);
+
+        try {
+            TransactionTemplate tx = new TransactionTemplate(transactionManager);
+            tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            ChunkResult result = tx.execute(status -> writeChunk(chunk, seenKeys));
+
+            report.inserted = result.insertedKeys.size();
+            report.failures.addAll(result.failures);
+            seenKeys.addAll(result.insertedKeys);
+        } catch (Exception e) {
+            // Cả chunk đã rollback → báo lỗi cho từng dòng hợp lệ trong chunk
+            log.error("❌ Bulk stream chunk {} rolled back: {}", report.chunk, e.getMessage());
+            for (ParsedLine parsed : chunk) {
+                report.failures.add(new LineFailure(parsed.lineNumber, parsed.request.getTitle(),
+                        "Chunk rolled back: " + e.getMessage()));
+            }
+        }
+
+        report.elapsedMs = System.currentTimeMillis() - chunkStart;
+        summary.inserted += report.inserted;
+        summary.failed += report.failures.size();
+
+        log.info("📦 Bulk stream chunk {}: {} received, {} inserted, {} failed in {} ms",
+                report.chunk, report.received, report.inserted, report.failures.size(), report.elapsedMs);
+        progress.accept(report);
+
+        chunk.clear();
+        parseFailures.clear();
+    }
+
+    /**
+     * Ghi một chunk (chạy trong transaction của chunk).
+     */
+    private ChunkResult writeChunk(List<ParsedLine> chunk, Set<String> seenKeys) {
+        ChunkResult result = new ChunkResult();
+        if (chunk.isEmpty()) {
+            return result;
+        }
+
+        // 1. Check trùng: 1 query IN cho cả chunk + các key đã nhận trước đó
+        List<String> keys = chunk.stream()
+                .map(p -> Product.dedupKeyOf(p.request.getTitle(), p.request.getBrand()))
+                .toList();
+        Set<String> existingKeys = duplicateChecker.findExistingKeys(keys);
+        Set<String> chunkKeys = new LinkedHashSet<>();
+
+        List<ParsedLine> accepted = new ArrayList<>();
+        List<Long> categoryIds = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            ParsedLine parsed = chunk.get(i);
+            String key = keys.get(i);
+            if (existingKeys.contains(key)) {
+                result.failures.add(new LineFailure(parsed.lineNumber, parsed.request.getTitle(),
+                        "Product already exists"));
+                continue;
+            }
+            if (seenKeys.contains(key) || !chunkKeys.add(key)) {
+                result.failures.add(new LineFailure(parsed.lineNumber, parsed.request.getTitle(),
+                        "Duplicate product in request"));
+                continue;
+            }
+            try {
+                categoryIds.add(resolveCategoryId(parsed.request));
+                accepted.add(parsed);
+            } catch (AppException e) {
+                chunkKeys.remove(key);
+                result.failures.add(new LineFailure(parsed.lineNumber, parsed.request.getTitle(), e.getMessage()));
+            }
+        }
+        if (accepted.isEmpty()) {
+            return result;
+        }
+
+        // 2. Batch insert products
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> productArgs = new ArrayList<>(accepted.size());
+        for (int i = 0; i < accepted.size(); i++) {
+            CreateProductRequest req = accepted.get(i).request;
+            productArgs.add(new Object[]{
+                    req.getTitle(), req.getBrand(), req.getColor(), req.getWeight(), req.getDimension(),
+                    req.getBatteryType(), req.getBatteryCapacity(), req.getRamCapacity(), req.getRomCapacity(),
+                    req.getScreenSize(), req.getDetailedReview(), req.getPowerfulPerformance(),
+                    req.getConnectionPort(), req.getDescription(),
+                    Product.dedupKeyOf(req.getTitle(), req.getBrand()), categoryIds.get(i), now, now
+            });
+        }
+        jdbcTemplate.batchUpdate(INSERT_PRODUCT_SQL, productArgs, PRODUCT_ARG_TYPES);
+
+        // 3. Lấy lại id theo dedup key (1 query) thay vì dựa vào generated keys của driver
+        Map<String, Long> idByKey = productRepository.findIdsByDedupKeys(chunkKeys).stream()
+                .collect(Collectors.toMap(row -> (String) row[0], row -> (Long) row[1]));
+
+        // 4. Batch insert inventory + images
+        List<Object[]> inventoryArgs = new ArrayList<>();
+        List<Object[]> imageArgs = new ArrayList<>();
+        for (ParsedLine parsed : accepted) {
+            CreateProductRequest req = parsed.request;
+            Long productId = idByKey.get(Product.dedupKeyOf(req.getTitle(), req.getBrand()));
+
+            for (CreateProductRequest.CreateInventoryDTO variant : req.getVariants()) {
+                Inventory inventory = new Inventory();
+                inventory.setPrice(variant.getPrice());
+                inventory.setDiscountPercent(variant.getDiscountPercent() != null ? variant.getDiscountPercent() : 0);
+                inventory.calculateDiscountedPrice();
+
+                inventoryArgs.add(new Object[]{
+                        productId, variant.getSize(), variant.getQuantity(), variant.getPrice(),
+                        inventory.getDiscountPercent(), inventory.getDiscountedPrice(), now, now
+                });
+            }
+
+            if (req.getImageUrls() != null) {
+                for (CreateProductRequest.ImageUrlDTO image : req.getImageUrls()) {
+                    imageArgs.add(new Object[]{
+                            productId, image.getDownloadUrl(), image.getFileName(), image.getFileType(), now
+                    });
+                }
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT_INVENTORY_SQL, inventoryArgs, INVENTORY_ARG_TYPES);
+        if (!imageArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_IMAGE_SQL, imageArgs, IMAGE_ARG_TYPES);
+        }
+
+        // 5. Summary + search index cho cả chunk với số query cố định
+        listingSummaryService.refreshAll(idByKey.values());
+
+        result.insertedKeys.addAll(chunkKeys);
+        return result;
+    }
+
+    private Long resolveCategoryId(CreateProductRequest request) {
+        if (request.getCategoryId() != null) {
+            return categoryTreeService.current().findById(request.getCategoryId())
+                    .map(CategoryTreeService.CategoryNode::getId)
+                    .orElseThrow(() -> new AppException(
+                            "Category not found with id: " + request.getCategoryId(),
+                            HttpStatus.NOT_FOUND
+                    ));
+        }
+        if (request.getTopLevelCategory() != null && request.getSecondLevelCategory() != null) {
+            return categoryService.getOrCreateCategoryIgnoreCase(
+                    request.getTopLevelCategory().trim(),
+                    request.getSecondLevelCategory().trim()
+            );
+        }
+        throw new AppException(
+                "Either categoryId or (topLevelCategory + secondLevelCategory) must be provided",
+                HttpStatus.BAD_REQUEST
+        );
+    }
+
+    private String validate(CreateProductRequest request) {
+        Set<ConstraintViolation<CreateProductRequest>> violations = validator.validate(request);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    @AllArgsConstructor
+    private static class ParsedLine {
+        private final int lineNumber;
+        private final CreateProductRequest request;
+    }
+
+    private static class ChunkResult {
+        private final List<String> insertedKeys = new ArrayList<>();
+        private final List<LineFailure> failures = new ArrayList<>();
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class LineFailure {
+        private int line;
+        private String title;
+        private String error;
+    }
+
+    @Data
+    public static class ChunkReport {
+        private int chunk;
+        private int received;
+        private int inserted;
+        private long elapsedMs;
+        private List<LineFailure> failures = new ArrayList<>();
+    }
+
+    @Data
+    public static class IngestionSummary {
+        private int totalLines;
+        private int inserted;
+        private int failed;
+        private int chunks;
+        private long elapsedMs;
+        private double rowsPerSecond;
+    }
+}
@@ -7,16 +7,32 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class CategoryService {
 
+    private static final int NAME_LOCK_STRIPES = 64;
+
     private final CategoryRepository categoryRepository;
+    private final CategoryTreeService categoryTreeService;
+    private final PlatformTransactionManager transactionManager;
+
+    // Striped lock theo tên category: chỉ các lần tạo cùng tên mới phải chờ nhau
+    private final Lock[] nameLocks = createNameLocks();
 
     /**
      * Tạo một danh mục mới.
@@ -54,7 +70,9 @@ public class CategoryService {
         }
 
         log.info("Creating new category: {}", newCategory.getName());
-        return categoryRepository.save(newCategory);
+        Category saved = categoryRepository.save(newCategory);
+        categoryTreeService.rebuildAfterCommit();
+        return saved;
     }
 
     /**
@@ -110,5 +128,85 @@ public class CategoryService {
 
         log.warn("Deleting category: {}", category.getName());
         categoryRepository.delete(category);
+        categoryTreeService.rebuildAfterCommit();
+    }
+
+    /**
+     * Lấy hoặc tạo category cấp 2 (kèm category cha cấp 1) theo tên, không phân biệt hoa thường.
+     * Fast path đọc từ snapshot. Khi phải tạo mới thì lock theo tên (striped lock),
+     * insert trong transaction riêng và commit trước khi nhả lock để thread sau thấy ngay.
+     *
+     * @param topLevelName    Tên danh mục cấp 1.
+     * @param secondLevelName Tên danh mục cấp 2.
+     * @return ID của danh mục cấp 2.
+     */
+    public Long getOrCreateCategoryIgnoreCase(String topLevelName, String secondLevelName) {
+        Long parentId = getOrCreate(topLevelName, 1, null);
+        return getOrCreate(secondLevelName, 2, parentId);
+    }
+
+    private Long getOrCreate(String name, int level, Long parentId) {
+        Optional<Long> existing = findInSnapshot(name, level, parentId);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+
+        Lock lock = nameLocks[Math.floorMod(name.trim().toLowerCase(Locale.ROOT).hashCode(), NAME_LOCK_STRIPES)];
+        lock.lock();
+        try {
+            // Thread khác có thể vừa tạo xong trong lúc chờ lock
+            existing = findInSnapshot(name, level, parentId);
+            if (existing.isPresent()) {
+                return existing.get();
+            }
+
+            TransactionTemplate tx = new TransactionTemplate(transactionManager);
+            tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            Long id = tx.execute(status -> categoryRepository.findByNameAndLevelIgnoreCase(name, level)
+                    .filter(c -> parentId == null || (c.getParentCategory() != null
+                            && c.getParentCategory().getId().equals(parentId)))
+                    .map(Category::getId)
+                    .orElseGet(() -> {
+                        Category category = new Category();
+                        category.setName(capitalize(name));
+                        category.setLevel(level);
+                        category.setIsParent(parentId == null);
+                        if (parentId != null) {
+                            category.setParentCategory(categoryRepository.getReferenceById(parentId));
+                        }
+                        log.info("Creating new category: {}", category.getName());
+                        return categoryRepository.save(category).getId();
+                    }));
+
+            categoryTreeService.rebuild();
+            return id;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Optional<Long> findInSnapshot(String name, int level, Long parentId) {
+        return categoryTreeService.current()
+                .findByNameAndLevel(name, level)
+                .filter(node -> parentId == null || parentId.equals(node.getParentId()))
+                .map(CategoryTreeService.CategoryNode::getId);
+    }
+
+    /**
+     * ✅ CAPITALIZE tên category (google pixel → Google Pixel)
+     */
+    private String capitalize(String str) {
+        if (str == null || str.isEmpty()) return str;
+        return Arrays.stream(str.trim().split("\\s+"))
+                .map(word -> word.substring(0, 1).toUpperCase() + word.substring(1).toLowerCase())
+                .collect(Collectors.joining(" "));
+    }
+
+    private static Lock[] createNameLocks() {
+        Lock[] locks = new Lock[NAME_LOCK_STRIPES];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        return locks;
     }
 }
\ No newline at end of file
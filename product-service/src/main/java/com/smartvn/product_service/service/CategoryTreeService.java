@@ -0,0 +1,226 @@
+package com.smartvn.product_service.service;
+
+import com.smartvn.product_service.dto.CategoryDTO;
+import com.smartvn.product_service.model.Category;
+import com.smartvn.product_service.repository.CategoryRepository;
+import com.smartvn.product_service.repository.ProductRepository;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Giữ snapshot bất biến của cây category (name → id, parent → children, số product active).
+ * - Đọc: O(1), không chạm DB (resolve category khi search, GET /categories)
+ * - Ghi: mỗi lần category thay đổi sẽ build snapshot mới rồi swap nguyên khối
+ * - Số product active được làm mới định kỳ (mặc định 60s)
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CategoryTreeService {
+
+    private final CategoryRepository categoryRepository;
+    private final ProductRepository productRepository;
+
+    private final AtomicLong versionCounter = new AtomicLong();
+    private volatile CategoryTree snapshot;
+
+    /**
+     * Snapshot hiện tại (build lần đầu nếu chưa có)
+     */
+    public CategoryTree current() {
+        CategoryTree tree = snapshot;
+        return tree != null ? tree : rebuild();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    /**
+     * ✅ Làm mới định kỳ để cập nhật số product active của từng category
+     */
+    @Scheduled(
+            fixedDelayString = "${category.tree.refresh-interval-ms:60000}",
+            initialDelayString = "${category.tree.refresh-interval-ms:60000}"
+    )
+    public void refreshCounts() {
+        rebuild();
+    }
+
+    /**
+     * Build snapshot mới từ DB rồi swap.
+     * synchronized để snapshot build sau luôn là snapshot được publish sau.
+     */
+    public synchronized CategoryTree rebuild() {
+        List<Category> categories = categoryRepository.findAll();
+
+        Map<Long, Long> activeCountByCategory = new HashMap<>();
+        for (Object[] row : productRepository.countActiveByCategory()) {
+            activeCountByCategory.put((Long) row[0], (Long) row[1]);
+        }
+
+        CategoryTree tree = CategoryTree.build(versionCounter.incrementAndGet(), categories, activeCountByCategory);
+        snapshot = tree;
+        log.debug("🌲 Category tree v{} built: {} categories", tree.getVersion(), categories.size());
+        return tree;
+    }
+
+    /**
+     * Build lại snapshot sau khi transaction hiện tại commit (dùng cho create/delete category)
+     */
+    public void rebuildAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    rebuild();
+                }
+            });
+        } else {
+            rebuild();
+        }
+    }
+
+    // ============================================
+    // SNAPSHOT
+    // ============================================
+
+    @Getter
+    public static final class CategoryNode {
+        private final Long id;
+        private final String name;
+        private final int level;
+        private final Long parentId;
+        private final List<Long> childIds;
+
+        /**
+         * Số product active thuộc category này (category cấp 1 gồm cả các category con)
+         */
+        private final long activeProductCount;
+
+        private CategoryNode(Long id, String name, int level, Long parentId,
+                             List<Long> childIds, long activeProductCount) {
+            this.id = id;
+            this.name = name;
+            this.level = level;
+            this.parentId = parentId;
+            this.childIds = childIds;
+            this.activeProductCount = activeProductCount;
+        }
+    }
+
+    @Getter
+    public static final class CategoryTree {
+        private final long version;
+        private final Map<Long, CategoryNode> nodesById;
+        private final Map<String, Long> idByName;
+        private final List<Long> topLevelIds;
+
+        private CategoryTree(long version,
+                             Map<Long, CategoryNode> nodesById,
+                             Map<String, Long> idByName,
+                             List<Long> topLevelIds) {
+            this.version = version;
+            this.nodesById = nodesById;
+            this.idByName = idByName;
+            this.topLevelIds = topLevelIds;
+        }
+
+        static CategoryTree build(long version, List<Category> categories, Map<Long, Long> activeCountByCategory) {
+            Map<Long, Long> parentById = new HashMap<>();
+            Map<Long, List<Long>> childrenById = new HashMap<>();
+            List<Long> topLevelIds = new ArrayList<>();
+
+            for (Category category : categories) {
+                // getParentCategory().getId() không trigger lazy load
+                Long parentId = category.getParentCategory() != null ? category.getParentCategory().getId() : null;
+                parentById.put(category.getId(), parentId);
+                if (parentId != null) {
+                    childrenById.computeIfAbsent(parentId, k -> new ArrayList<>()).add(category.getId());
+                }
+                if (category.getLevel() != null && category.getLevel() == 1) {
+                    topLevelIds.add(category.getId());
+                }
+            }
+
+            Map<Long, CategoryNode> nodesById = new HashMap<>();
+            Map<String, Long> idByName = new HashMap<>();
+            for (Category category : categories) {
+                List<Long> childIds = List.copyOf(childrenById.getOrDefault(category.getId(), Collections.emptyList()));
+
+                long activeCount = activeCountByCategory.getOrDefault(category.getId(), 0L);
+                for (Long childId : childIds) {
+                    activeCount += activeCountByCategory.getOrDefault(childId, 0L);
+                }
+
+                nodesById.put(category.getId(), new CategoryNode(
+                        category.getId(),
+                        category.getName(),
+                        category.getLevel() != null ? category.getLevel() : 0,
+                        parentById.get(category.getId()),
+                        childIds,
+                        activeCount
+                ));
+                idByName.put(nameKey(category.getName()), category.getId());
+            }
+
+            return new CategoryTree(
+                    version,
+                    Collections.unmodifiableMap(nodesById),
+                    Collections.unmodifiableMap(idByName),
+                    List.copyOf(topLevelIds)
+            );
+        }
+
+        public Optional<CategoryNode> findById(Long id) {
+            return Optional.ofNullable(nodesById.get(id));
+        }
+
+        /**
+         * Tìm theo tên (không phân biệt hoa thường, giống collation của DB)
+         */
+        public Optional<CategoryNode> findByName(String name) {
+            if (name == null) {
+                return Optional.empty();
+            }
+            Long id = idByName.get(nameKey(name));
+            return id == null ? Optional.empty() : Optional.of(nodesById.get(id));
+        }
+
+        public Optional<CategoryNode> findByNameAndLevel(String name, int level) {
+            return findByName(name).filter(node -> node.getLevel() == level);
+        }
+
+        public List<CategoryDTO> toTopLevelDTOs() {
+            List<CategoryDTO> result = new ArrayList<>(topLevelIds.size());
+            for (Long id : topLevelIds) {
+                result.add(toDTO(nodesById.get(id)));
+            }
+            return result;
+        }
+
+        private CategoryDTO toDTO(CategoryNode node) {
+            List<CategoryDTO> subCategories = new ArrayList<>(node.getChildIds().size());
+            for (Long childId : node.getChildIds()) {
+                subCategories.add(toDTO(nodesById.get(childId)));
+            }
+            return new CategoryDTO(node.getId(), node.getName(), node.getLevel(),
+                    node.getActiveProductCount(), subCategories);
+        }
+
+        private static String nameKey(String name) {
+            return name.trim().toLowerCase(Locale.ROOT);
+        }
+    }
+}
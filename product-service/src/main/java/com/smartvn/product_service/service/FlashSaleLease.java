@@ -0,0 +1,99 @@
+package com.smartvn.product_service.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lease cho bộ đếm flash-sale (bảng service_leases): tại mỗi thời điểm chỉ 1 instance được nạp bộ đếm.
+ * - tryAcquire() vừa nhận vừa gia hạn: thành công khi lease đang thuộc instance này hoặc đã hết hạn
+ * - isHeld() kiểm tra theo đồng hồ local, hết hạn sớm hơn DB 1 khoảng an toàn
+ *   → instance cũ ngừng nhận đơn mới trước khi instance khác có thể nhận lease
+ * - fence() chốt lease trong transaction ghi journal: đơn đã nhận trước khi hết hạn nhưng commit muộn
+ *   vẫn được instance nhận lease sau đó nhìn thấy (xem fence())
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FlashSaleLease {
+
+    static final String LEASE_NAME = "flash-sale-counters";
+
+    private static final String CREATE_SQL =
+            "INSERT IGNORE INTO service_leases (lease_name, owner_id, expires_at) VALUES (?, ?, NOW(3))";
+    private static final String ACQUIRE_SQL =
+            "UPDATE service_leases SET owner_id = ?, expires_at = NOW(3) + INTERVAL ? MICROSECOND " +
+            "WHERE lease_name = ? AND (owner_id = ? OR expires_at < NOW(3))";
+    /** LOCK IN SHARE MODE: các đơn cùng giữ được, chỉ chặn UPDATE nhận / gia hạn lease */
+    private static final String FENCE_SQL =
+            "SELECT COUNT(*) FROM service_leases " +
+            "WHERE lease_name = ? AND owner_id = ? AND expires_at > NOW(3) LOCK IN SHARE MODE";
+    private static final String RELEASE_SQL =
+            "UPDATE service_leases SET expires_at = NOW(3) WHERE lease_name = ? AND owner_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final String ownerId = UUID.randomUUID().toString();
+
+    /** System.nanoTime() mà sau đó instance này coi như đã mất lease, 0 = không giữ */
+    private volatile long validUntilNanos;
+
+    @Value("${inventory.flash-sale.lease-ttl-ms:10000}")
+    private long leaseTtlMs;
+
+    /**
+     * Nhận hoặc gia hạn lease (autocommit, không chạy trong transaction của caller)
+     *
+     * @return true nếu instance này đang giữ lease
+     */
+    public boolean tryAcquire() {
+        long start = System.nanoTime();
+        try {
+            jdbcTemplate.update(CREATE_SQL, LEASE_NAME, ownerId);
+            boolean held = jdbcTemplate.update(ACQUIRE_SQL,
+                    ownerId, TimeUnit.MILLISECONDS.toMicros(leaseTtlMs), LEASE_NAME, ownerId) == 1;
+            // Tính từ lúc gửi lệnh (DB đặt hạn muộn hơn), trừ 1/5 TTL cho lệch tốc độ đồng hồ / GC pause
+            validUntilNanos = held ? start + TimeUnit.MILLISECONDS.toNanos(leaseTtlMs - leaseTtlMs / 5) : 0;
+            return held;
+        } catch (RuntimeException e) {
+            // Không gia hạn được: vẫn giữ đến hạn cũ, sau đó isHeld() tự trả false
+            log.warn("⚠️ Could not renew flash-sale lease: {}", e.getMessage());
+            return isHeld();
+        }
+    }
+
+    /**
+     * ✅ Kiểm tra lại lease trên DB và khoá chia sẻ dòng lease đến hết transaction hiện tại (phải gọi trong transaction).
+     * UPDATE của instance khác muốn nhận lease phải chờ transaction này kết thúc → journal của nó đã commit
+     * (hoặc rollback) trước khi instance mới flush journal và nạp bộ đếm.
+     * Đổi lại: gia hạn lease cũng chờ các đơn đang mở → transaction của đơn phải ngắn hơn nhiều so với TTL.
+     *
+     * @return false nếu lease trên DB đã hết hạn hoặc thuộc instance khác
+     */
+    public boolean fence() {
+        Integer held = jdbcTemplate.queryForObject(FENCE_SQL, Integer.class, LEASE_NAME, ownerId);
+        return held != null && held > 0;
+    }
+
+    public boolean isHeld() {
+        long until = validUntilNanos;
+        return until != 0 && System.nanoTime() - until < 0;
+    }
+
+    /**
+     * Trả lease khi tắt service → instance khác nhận ngay, không chờ hết hạn
+     */
+    public void release() {
+        validUntilNanos = 0;
+        try {
+            jdbcTemplate.update(RELEASE_SQL, LEASE_NAME, ownerId);
+        } catch (RuntimeException e) {
+            log.warn("⚠️ Could not release flash-sale lease, it will expire on its own: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,641 @@
+package com.smartvn.product_service.service;
+
+import com.smartvn.product_service.dto.InventoryCheckRequest;
+import com.smartvn.product_service.dto.StockShortfall;
+import com.smartvn.product_service.exceptions.AppException;
+import com.smartvn.product_service.model.Inventory;
+import com.smartvn.product_service.model.Product;
+import com.smartvn.product_service.repository.ProductRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chế độ flash-sale cho SKU "nóng".
+ * Tồn kho còn bán được của product bật flashSale được nạp vào bộ đếm trong RAM ({@link HotSkuCounter}):
+ * mỗi đơn trừ bằng CAS trên 1 stripe còn đủ hàng nên không còn hàng nghìn transaction cùng chờ row lock
+ * của một dòng inventory.
+ *
+ * Chạy nhiều instance:
+ * - Chỉ instance giữ lease ({@link FlashSaleLease}) được nạp bộ đếm. Instance khác nhận đơn có SKU flash-sale
+ *   → 503 (gateway / client thử lại); đường trừ kho DB từ chối product flash-sale ({@link #DB_PATH_GUARD})
+ *   nên không instance nào bán vượt bộ đếm.
+ * - Lượng đã trừ trên bộ đếm được ghi 1 dòng flash_sale_journal trong transaction của đơn: đơn commit thì
+ *   dòng journal commit cùng, đơn rollback thì mất cùng. Flush định kỳ gom journal trừ vào inventory.quantity.
+ * - Ghi journal kèm {@link FlashSaleLease#fence()}: khoá chia sẻ dòng lease đến hết transaction của đơn.
+ *   Instance mới chỉ nhận được lease sau khi mọi đơn đang mở của instance cũ kết thúc, nên lúc nó flush
+ *   journal rồi nạp bộ đếm thì phần đã bán đều đã nằm trong journal. Đơn của instance cũ ghi journal sau khi
+ *   lease đã đổi chủ / hết hạn bị từ chối (503, trả lại bộ đếm).
+ * - Process chết / mất lease → instance nhận lease flush hết journal còn lại rồi mới nạp bộ đếm từ DB.
+ *
+ * Giới hạn (cần biết trước khi bật):
+ * - Cột quantity trên DB (và listing summary) trễ hơn bộ đếm tối đa 1 flush interval / summary-refresh-ms.
+ * - Gia hạn / chuyển lease chờ các transaction đang mở có dòng flash-sale: transaction của đơn phải ngắn
+ *   hơn nhiều so với lease-ttl-ms, nếu không instance giữ lease tự hết hạn local và trả 503 tới khi gia hạn xong.
+ * - Bật flash-sale trên instance không giữ lease → bộ đếm nạp ở lần gia hạn lease kế tiếp; trong khoảng đó
+ *   SKU báo hết hàng.
+ * - Bật/tắt hoặc admin sửa tồn kho → bộ đếm cũ được đóng, flush, rồi nạp lại từ DB sau commit
+ *   (trừ phần đang giữ bởi đơn chưa commit). Sửa tồn kho product đang flash-sale chỉ làm được trên
+ *   instance giữ lease.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FlashSaleStockService {
+
+    /**
+     * Gắn vào các câu trừ kho / giữ hàng trên DB: product đang flash-sale hoặc còn journal chưa flush
+     * chỉ được bán qua bộ đếm → 0 dòng bị ảnh hưởng, caller báo thiếu hàng.
+     */
+    public static final String DB_PATH_GUARD =
+            " AND NOT EXISTS (SELECT 1 FROM products p WHERE p.id = inventory.product_id AND p.flash_sale = 1)" +
+            " AND NOT EXISTS (SELECT 1 FROM flash_sale_journal j WHERE j.product_id = inventory.product_id)";
+
+    private static final String JOURNAL_INSERT_SQL =
+            "INSERT INTO flash_sale_journal (product_id, size, quantity, created_at) VALUES (?, ?, ?, ?)";
+    private static final int[] JOURNAL_INSERT_TYPES = {Types.BIGINT, Types.VARCHAR, Types.INTEGER, Types.TIMESTAMP};
+    private static final String JOURNAL_SELECT_SQL =
+            "SELECT id, product_id, size, quantity FROM flash_sale_journal ORDER BY id LIMIT ? FOR UPDATE";
+    private static final String JOURNAL_DELETE_SQL = "DELETE FROM flash_sale_journal WHERE id = ?";
+    private static final int[] JOURNAL_DELETE_TYPES = {Types.BIGINT};
+    private static final String FLUSH_SQL =
+            "UPDATE inventory SET quantity = quantity - ?, updated_at = ? WHERE product_id = ? AND size <=> ?";
+    private static final int[] FLUSH_TYPES = {Types.INTEGER, Types.TIMESTAMP, Types.BIGINT, Types.VARCHAR};
+    /** FOR UPDATE: chờ các transaction trừ kho DB đang chạy trên product này kết thúc rồi mới đọc */
+    private static final String SELLABLE_SQL =
+            "SELECT size, quantity - reserved_quantity FROM inventory WHERE product_id = ? FOR UPDATE";
+    private static final int JOURNAL_BATCH_SIZE = 5000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductRepository productRepository;
+    private final ProductListingSummaryService listingSummaryService;
+    private final PlatformTransactionManager transactionManager;
+    private final FlashSaleLease lease;
+
+    private final Map<SkuKey, HotSkuCounter> counters = new ConcurrentHashMap<>();
+    /** Product đã nạp bộ đếm (chỉ trên instance giữ lease) */
+    private final Set<Long> hotProducts = ConcurrentHashMap.newKeySet();
+    /** Product đang bật flashSale trên DB (mọi instance), làm mới mỗi lần gia hạn lease */
+    private final Set<Long> flashSaleProducts = ConcurrentHashMap.newKeySet();
+    /** Product đã flush xuống DB nhưng listing summary chưa tính lại */
+    private final Set<Long> staleSummaries = ConcurrentHashMap.newKeySet();
+    /** Flush, nạp lại bộ đếm và nhận / mất lease chạy tuần tự */
+    private final Object flushLock = new Object();
+    /** Trạng thái lease lần gia hạn trước (đọc / ghi trong flushLock) */
+    private boolean leading;
+    private volatile long lastSummaryRefresh;
+
+    /** 0 = theo số CPU */
+    @Value("${inventory.flash-sale.stripes:0}")
+    private int configuredStripes;
+
+    @Value("${inventory.flash-sale.summary-refresh-ms:2000}")
+    private long summaryRefreshMs;
+
+    // ============================================
+    // ADMISSION
+    // ============================================
+
+    public boolean isHot(Long productId) {
+        return hotProducts.contains(productId);
+    }
+
+    /**
+     * ✅ Trừ các dòng thuộc SKU flash-sale trên bộ đếm: tất cả hoặc không dòng nào.
+     * Dòng không thuộc product flash-sale trả về trong {@link Admission#getCold()} để đi đường DB.
+     * Phần đã trừ được ghi journal trong transaction hiện tại và tự trả lại bộ đếm khi transaction rollback.
+     *
+     * @throws AppException 503 nếu có dòng flash-sale mà instance này không giữ bộ đếm
+     */
+    public Admission acquire(List<InventoryCheckRequest> lines) {
+        Admission admission = new Admission();
+        List<Hold> holds = new ArrayList<>();
+        boolean held = lease.isHeld();
+
+        for (InventoryCheckRequest line : lines) {
+            Long productId = line.getProductId();
+            if (!flashSaleProducts.contains(productId) && !hotProducts.contains(productId)) {
+                admission.cold.add(line);
+                continue;
+            }
+            SkuKey key = SkuKey.of(productId, line.getSize());
+            boolean waited = false;
+            while (true) {
+                HotSkuCounter counter = held ? counters.get(key) : null;
+                if (counter == null) {
+                    if (held && !waited) {
+                        // Có thể đang nạp lại → chờ xong rồi tra lại
+                        waited = true;
+                        synchronized (flushLock) {
+                            held = lease.isHeld();
+                        }
+                        continue;
+                    }
+                    if (held && hotProducts.contains(productId)) {
+                        // Product đã nạp nhưng không có size này
+                        admission.shortfalls.add(new StockShortfall(
+                                productId, line.getSize(), line.getQuantity(), 0));
+                        break;
+                    }
+                    holds.forEach(Hold::giveBack);
+                    throw new AppException("Flash-sale stock of product " + productId +
+                            " is not served by this instance, please retry", HttpStatus.SERVICE_UNAVAILABLE);
+                }
+                HotSkuCounter.Result result = counter.tryAcquire(line.getQuantity());
+                if (result == HotSkuCounter.Result.ACQUIRED) {
+                    holds.add(new Hold(counter, line.getQuantity()));
+                    admission.acquired.add(line);
+                    break;
+                }
+                if (result == HotSkuCounter.Result.INSUFFICIENT) {
+                    admission.shortfalls.add(new StockShortfall(
+                            productId, line.getSize(), line.getQuantity(), counter.available()));
+                    break;
+                }
+                // CLOSED: bộ đếm đang được nạp lại → chờ xong rồi thử lại với bộ đếm mới
+                synchronized (flushLock) {
+                    held = lease.isHeld();
+                }
+            }
+        }
+
+        if (!admission.shortfalls.isEmpty()) {
+            holds.forEach(Hold::giveBack);
+            admission.acquired.clear();
+            return admission;
+        }
+        if (!holds.isEmpty()) {
+            journalHolds(admission.acquired, holds);
+        }
+        return admission;
+    }
+
+    /**
+     * Ghi journal cho phần đã trừ. Trong transaction: hold được tính là "in-flight" đến khi transaction kết thúc
+     * để nạp lại bộ đếm giữa chừng không cấp lại phần đó.
+     */
+    private void journalHolds(List<InventoryCheckRequest> acquired, List<Hold> holds) {
+        boolean inTransaction = TransactionSynchronizationManager.isSynchronizationActive();
+        if (inTransaction) {
+            holds.forEach(Hold::start);
+        }
+        try {
+            boolean fenced = Boolean.TRUE.equals(requiredTransaction().execute(status -> writeJournal(acquired, 1)));
+            if (!fenced) {
+                throw new AppException("Flash-sale lease moved to another instance, please retry",
+                        HttpStatus.SERVICE_UNAVAILABLE);
+            }
+        } catch (RuntimeException e) {
+            holds.forEach(hold -> {
+                if (inTransaction) {
+                    hold.end();
+                }
+                hold.giveBack();
+            });
+            throw e;
+        }
+        if (inTransaction) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    holds.forEach(hold -> {
+                        hold.end();
+                        if (status != STATUS_COMMITTED) {
+                            hold.giveBack();
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    /**
+     * Hoàn kho cho 1 dòng qua bộ đếm (huỷ đơn, hết hạn giữ hàng): ghi journal âm trong transaction hiện tại,
+     * trả vào bộ đếm sau khi commit.
+     *
+     * @return false nếu instance này không giữ bộ đếm của SKU → caller tự hoàn trên DB
+     * (bộ đếm không biết phần đó → chỉ có thể bán thiếu)
+     */
+    public boolean restore(InventoryCheckRequest line) {
+        if (!lease.isHeld()) {
+            return false;
+        }
+        HotSkuCounter counter = counters.get(SkuKey.of(line.getProductId(), line.getSize()));
+        if (counter == null) {
+            return false;
+        }
+        if (!Boolean.TRUE.equals(requiredTransaction().execute(status -> writeJournal(List.of(line), -1)))) {
+            return false;
+        }
+        runAfterCommit(() -> counter.release(line.getQuantity()));
+        return true;
+    }
+
+    /**
+     * Số lượng còn bán được theo bộ đếm, null nếu SKU không có bộ đếm trên instance này
+     */
+    public Integer available(Long productId, String size) {
+        if (!lease.isHeld()) {
+            return null;
+        }
+        HotSkuCounter counter = counters.get(SkuKey.of(productId, size));
+        return counter != null ? counter.available() : null;
+    }
+
+    /**
+     * Chốt lease rồi ghi journal, trong transaction của caller (không có thì transaction riêng)
+     *
+     * @return false nếu lease trên DB không còn thuộc instance này → không ghi gì
+     */
+    private boolean writeJournal(List<InventoryCheckRequest> lines, int sign) {
+        if (!lease.fence()) {
+            log.warn("⚠️ Flash-sale lease no longer held in DB, refusing journal write");
+            return false;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> args = new ArrayList<>(lines.size());
+        for (InventoryCheckRequest line : lines) {
+            args.add(new Object[]{line.getProductId(), line.getSize(), sign * line.getQuantity(), now});
+        }
+        jdbcTemplate.batchUpdate(JOURNAL_INSERT_SQL, args, JOURNAL_INSERT_TYPES);
+        return true;
+    }
+
+    // ============================================
+    // BẬT / TẮT + NẠP LẠI
+    // ============================================
+
+    /**
+     * ✅ Bật/tắt flash-sale cho product. Bộ đếm được nạp / gỡ sau khi transaction commit
+     * (trên instance giữ lease; instance khác để lần gia hạn lease kế tiếp của instance giữ lease xử lý).
+     */
+    @Transactional
+    public void setFlashSale(Long productId, boolean enabled) {
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new AppException("Product not found", HttpStatus.NOT_FOUND));
+        product.setFlashSale(enabled);
+        runAfterCommit(() -> {
+            if (enabled) {
+                flashSaleProducts.add(productId);
+                if (lease.isHeld()) {
+                    load(productId);
+                }
+            } else {
+                if (lease.isHeld()) {
+                    unload(productId);
+                }
+                flashSaleProducts.remove(productId);
+            }
+        });
+        log.info("⚡ Flash sale {} for product {}", enabled ? "enabled" : "disabled", productId);
+    }
+
+    /**
+     * Admin sửa tồn kho của product đang flash-sale → nạp lại bộ đếm từ DB sau commit.
+     * Instance không giữ lease không nạp lại được bộ đếm → từ chối thay vì để bộ đếm lệch với DB.
+     */
+    public void reloadAfterCommit(Long productId) {
+        if (!flashSaleProducts.contains(productId) && !hotProducts.contains(productId)) {
+            return;
+        }
+        if (!lease.isHeld()) {
+            throw new AppException("Product " + productId + " is in flash sale: edit its stock on the instance " +
+                    "holding the flash-sale lease or disable flash sale first", HttpStatus.CONFLICT);
+        }
+        runAfterCommit(() -> load(productId));
+    }
+
+    /**
+     * Trạng thái bộ đếm theo size (cho admin theo dõi)
+     */
+    public Map<String, Integer> snapshot(Long productId) {
+        Map<String, Integer> result = new TreeMap<>();
+        counters.values().forEach(counter -> {
+            if (counter.productId().equals(productId)) {
+                // variant không có size → key rỗng (JSON không cho key null)
+                result.put(counter.size() != null ? counter.size() : "", counter.available());
+            }
+        });
+        return result;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void loadFlashSaleProducts() {
+        maintainLease();
+    }
+
+    /**
+     * ✅ Gia hạn lease và đồng bộ bộ đếm với danh sách product flash-sale trên DB.
+     * - Vừa nhận lease: flush journal còn lại của instance trước rồi nạp bộ đếm
+     * - Vừa mất lease: đóng hết bộ đếm (không bán tiếp), flush phần journal còn ghi được
+     */
+    @Scheduled(fixedDelayString = "${inventory.flash-sale.lease-renew-ms:3000}",
+            initialDelayString = "${inventory.flash-sale.lease-renew-ms:3000}")
+    public void maintainLease() {
+        refreshFlashSaleProducts();
+        boolean held = lease.tryAcquire();
+        synchronized (flushLock) {
+            if (held && !leading) {
+                log.info("⚡ Acquired flash-sale lease, reconciling journal and loading counters");
+                leading = true;
+            } else if (!held && leading) {
+                log.warn("⚠️ Lost flash-sale lease, closing counters");
+                leading = false;
+                closeAll();
+                return;
+            }
+            if (held) {
+                syncCounters();
+            }
+        }
+    }
+
+    private void refreshFlashSaleProducts() {
+        try {
+            Set<Long> flagged = new HashSet<>(productRepository.findFlashSaleProductIds());
+            flashSaleProducts.retainAll(flagged);
+            flashSaleProducts.addAll(flagged);
+        } catch (RuntimeException e) {
+            log.warn("⚠️ Could not refresh flash-sale products: {}", e.getMessage());
+        }
+    }
+
+    private void syncCounters() {
+        for (Long productId : new ArrayList<>(hotProducts)) {
+            if (!flashSaleProducts.contains(productId)) {
+                unload(productId);
+            }
+        }
+        int loaded = 0;
+        for (Long productId : flashSaleProducts) {
+            if (hotProducts.contains(productId)) {
+                continue;
+            }
+            try {
+                load(productId);
+                loaded++;
+            } catch (RuntimeException e) {
+                // Chưa nạp được → SKU trả 503, lần gia hạn sau thử lại
+                log.error("❌ Could not load flash-sale counters for product {}", productId, e);
+            }
+        }
+        if (loaded > 0) {
+            log.info("⚡ Loaded flash-sale counters for {} products", loaded);
+        }
+    }
+
+    /**
+     * Nạp (lại) bộ đếm từ DB. Thứ tự: đóng bộ đếm cũ → flush hết journal → đọc DB (chờ row lock đang giữ)
+     * → trừ phần in-flight của bộ đếm cũ (journal chưa commit). Flush lỗi → không nạp, SKU trả 503.
+     */
+    private void load(Long productId) {
+        synchronized (flushLock) {
+            Map<SkuKey, Long> inFlight = new HashMap<>();
+            for (HotSkuCounter old : closeCounters(productId)) {
+                inFlight.merge(SkuKey.of(old.productId(), old.size()), old.inFlight(), Long::sum);
+            }
+            hotProducts.remove(productId);
+            flushJournal();
+            List<Object[]> rows = newTransaction().execute(status -> jdbcTemplate.query(SELLABLE_SQL,
+                    (rs, i) -> new Object[]{rs.getString(1), rs.getInt(2)}, productId));
+            int stripes = stripeCount();
+            for (Object[] row : rows) {
+                String size = (String) row[0];
+                SkuKey key = SkuKey.of(productId, size);
+                long stock = (Integer) row[1] - inFlight.getOrDefault(key, 0L);
+                counters.put(key, new HotSkuCounter(productId, size, (int) Math.max(stock, 0), stripes));
+            }
+            hotProducts.add(productId);
+        }
+    }
+
+    private void unload(Long productId) {
+        synchronized (flushLock) {
+            hotProducts.remove(productId);
+            closeCounters(productId);
+            flushQuietly();
+        }
+    }
+
+    private void closeAll() {
+        hotProducts.clear();
+        counters.values().forEach(HotSkuCounter::close);
+        counters.clear();
+        flushQuietly();
+    }
+
+    private List<HotSkuCounter> closeCounters(Long productId) {
+        List<HotSkuCounter> closed = new ArrayList<>();
+        Iterator<HotSkuCounter> it = counters.values().iterator();
+        while (it.hasNext()) {
+            HotSkuCounter counter = it.next();
+            if (counter.productId().equals(productId)) {
+                counter.close();
+                closed.add(counter);
+                it.remove();
+            }
+        }
+        return closed;
+    }
+
+    // ============================================
+    // WRITE-BEHIND
+    // ============================================
+
+    @Scheduled(fixedDelayString = "${inventory.flash-sale.flush-interval-ms:200}")
+    public void flush() {
+        if (!lease.isHeld()) {
+            return;
+        }
+        synchronized (flushLock) {
+            flushQuietly();
+            if (System.currentTimeMillis() - lastSummaryRefresh >= summaryRefreshMs) {
+                refreshSummaries();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        synchronized (flushLock) {
+            if (leading) {
+                leading = false;
+                closeAll();
+            }
+        }
+        refreshSummaries();
+        lease.release();
+    }
+
+    private void flushQuietly() {
+        try {
+            flushJournal();
+        } catch (RuntimeException e) {
+            // Journal vẫn còn trên DB, lần flush sau (hoặc instance nhận lease) ghi tiếp
+            log.error("❌ Flash-sale journal flush failed, will retry", e);
+        }
+    }
+
+    /**
+     * Gom journal đã commit, trừ vào inventory và xoá trong cùng 1 transaction cho đến khi hết
+     */
+    private void flushJournal() {
+        while (flushJournalBatch() == JOURNAL_BATCH_SIZE) {
+            // còn journal → batch tiếp
+        }
+    }
+
+    private int flushJournalBatch() {
+        Set<Long> productIds = new HashSet<>();
+        Integer flushed = journalTransaction().execute(status -> {
+            List<Object[]> rows = jdbcTemplate.query(JOURNAL_SELECT_SQL, (rs, i) -> new Object[]{
+                    rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getInt(4)}, JOURNAL_BATCH_SIZE);
+            if (rows.isEmpty()) {
+                return 0;
+            }
+            // Cộng theo (product, size) đúng như đã ghi; thứ tự cố định để các flush không khoá chéo
+            Map<List<Object>, Integer> deltas = new TreeMap<>(
+                    Comparator.comparing((List<Object> k) -> (Long) k.get(0))
+                            .thenComparing(k -> (String) k.get(1), Comparator.nullsFirst(Comparator.naturalOrder())));
+            List<Object[]> deleteArgs = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                deltas.merge(Arrays.asList(row[1], row[2]), (Integer) row[3], Integer::sum);
+                deleteArgs.add(new Object[]{row[0]});
+                productIds.add((Long) row[1]);
+            }
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            List<Object[]> updateArgs = new ArrayList<>(deltas.size());
+            deltas.forEach((key, delta) -> {
+                if (delta != 0) {
+                    updateArgs.add(new Object[]{delta, now, key.get(0), key.get(1)});
+                }
+            });
+            jdbcTemplate.batchUpdate(FLUSH_SQL, updateArgs, FLUSH_TYPES);
+            jdbcTemplate.batchUpdate(JOURNAL_DELETE_SQL, deleteArgs, JOURNAL_DELETE_TYPES);
+            return rows.size();
+        });
+        staleSummaries.addAll(productIds);
+        return flushed != null ? flushed : 0;
+    }
+
+    private void refreshSummaries() {
+        lastSummaryRefresh = System.currentTimeMillis();
+        if (staleSummaries.isEmpty()) {
+            return;
+        }
+        List<Long> productIds = new ArrayList<>(staleSummaries);
+        staleSummaries.removeAll(productIds);
+        try {
+            newTransaction().executeWithoutResult(status ->
+                    listingSummaryService.refreshAll(productIds));
+        } catch (RuntimeException e) {
+            staleSummaries.addAll(productIds);
+            log.warn("⚠️ Could not refresh listing summary for flash-sale products {}", productIds, e);
+        }
+    }
+
+    private int stripeCount() {
+        return configuredStripes > 0 ? configuredStripes : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * REQUIRED: ghi journal cùng transaction của đơn (khoá lease giữ tới khi đơn commit)
+     */
+    private TransactionTemplate requiredTransaction() {
+        return new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * REQUIRES_NEW: flush / nạp lại có thể chạy trong afterCommit của transaction admin
+     */
+    private TransactionTemplate newTransaction() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return tx;
+    }
+
+    /**
+     * READ_COMMITTED: FOR UPDATE chỉ khoá các dòng journal đọc được, không gap-lock chặn đơn đang ghi journal
+     */
+    private TransactionTemplate journalTransaction() {
+        TransactionTemplate tx = newTransaction();
+        tx.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        return tx;
+    }
+
+    private static void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    // ============================================
+    // BỘ ĐẾM
+    // ============================================
+
+    /**
+     * Kết quả trừ kho trên bộ đếm
+     */
+    @Getter
+    public static class Admission {
+        /** Dòng đã trừ trên bộ đếm */
+        private final List<InventoryCheckRequest> acquired = new ArrayList<>();
+        /** Dòng không thuộc SKU flash-sale */
+        private final List<InventoryCheckRequest> cold = new ArrayList<>();
+        /** Không rỗng → không dòng nào bị trừ */
+        private final List<StockShortfall> shortfalls = new ArrayList<>();
+    }
+
+    /**
+     * Size so khớp không phân biệt hoa thường / dấu như collation của cột inventory.size
+     */
+    private record SkuKey(Long productId, String size) {
+        static SkuKey of(Long productId, String size) {
+            return new SkuKey(productId, Inventory.sizeKey(size));
+        }
+    }
+
+    private record Hold(HotSkuCounter counter, int quantity) {
+        void start() {
+            counter.holdStarted(quantity);
+        }
+
+        void end() {
+            counter.holdEnded(quantity);
+        }
+
+        void giveBack() {
+            counter.release(quantity);
+        }
+    }
+}
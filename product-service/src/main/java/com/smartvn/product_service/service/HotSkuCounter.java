@@ -0,0 +1,127 @@
+package com.smartvn.product_service.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tồn kho của 1 SKU flash-sale chia cho nhiều stripe, mỗi stripe nằm trên 1 cache line riêng (padding)
+ * để các thread trừ song song không tranh nhau cùng 1 biến.
+ * Chỉ giữ số lượng còn bán được; lượng đã bán được ghi vào flash_sale_journal (xem FlashSaleStockService).
+ */
+final class HotSkuCounter {
+
+    enum Result { ACQUIRED, INSUFFICIENT, CLOSED }
+
+    /** 16 int = 64 byte: mỗi stripe 1 cache line */
+    private static final int PAD = 16;
+
+    private final Long productId;
+    private final String size;
+    private final int stripes;
+    private final AtomicIntegerArray cells;
+    /** Đã trừ trên bộ đếm nhưng transaction của đơn chưa kết thúc (journal chưa commit) */
+    private final LongAdder inFlight = new LongAdder();
+    private volatile boolean closed;
+
+    HotSkuCounter(Long productId, String size, int stock, int stripes) {
+        this.productId = productId;
+        this.size = size;
+        this.stripes = stripes;
+        this.cells = new AtomicIntegerArray(stripes * PAD);
+        distribute(stock);
+    }
+
+    Long productId() {
+        return productId;
+    }
+
+    String size() {
+        return size;
+    }
+
+    /**
+     * Fast path: CAS trên stripe bất kỳ còn đủ hàng, bắt đầu từ stripe ngẫu nhiên.
+     * Không stripe nào đủ (hàng bị chia lẻ) → slow path gom hết về rồi chia lại.
+     */
+    Result tryAcquire(int quantity) {
+        int start = ThreadLocalRandom.current().nextInt(stripes);
+        for (int k = 0; k < stripes; k++) {
+            int idx = ((start + k) % stripes) * PAD;
+            int value = cells.get(idx);
+            while (value >= quantity) {
+                if (cells.compareAndSet(idx, value, value - quantity)) {
+                    return Result.ACQUIRED;
+                }
+                value = cells.get(idx);
+            }
+        }
+        return acquireSlow(quantity);
+    }
+
+    private synchronized Result acquireSlow(int quantity) {
+        if (closed) {
+            return Result.CLOSED;
+        }
+        int total = drainCells();
+        if (total < quantity) {
+            distribute(total);
+            return Result.INSUFFICIENT;
+        }
+        distribute(total - quantity);
+        return Result.ACQUIRED;
+    }
+
+    /**
+     * Trả hàng vào bộ đếm (rollback / hoàn kho); bộ đếm đã đóng thì bỏ qua, DB nhận qua journal
+     */
+    void release(int quantity) {
+        if (!closed) {
+            cells.getAndAdd(ThreadLocalRandom.current().nextInt(stripes) * PAD, quantity);
+        }
+    }
+
+    int available() {
+        int total = 0;
+        for (int i = 0; i < stripes; i++) {
+            total += cells.get(i * PAD);
+        }
+        return total;
+    }
+
+    /**
+     * Đóng bộ đếm: rút hết hàng khỏi các stripe để fast path không trừ được nữa
+     */
+    synchronized void close() {
+        closed = true;
+        drainCells();
+    }
+
+    void holdStarted(int quantity) {
+        inFlight.add(quantity);
+    }
+
+    void holdEnded(int quantity) {
+        inFlight.add(-quantity);
+    }
+
+    long inFlight() {
+        return inFlight.sum();
+    }
+
+    private int drainCells() {
+        int total = 0;
+        for (int i = 0; i < stripes; i++) {
+            total += cells.getAndSet(i * PAD, 0);
+        }
+        return total;
+    }
+
+    private void distribute(int stock) {
+        int share = stock / stripes;
+        int remainder = stock % stripes;
+        for (int i = 0; i < stripes; i++) {
+            cells.getAndAdd(i * PAD, share + (i < remainder ? 1 : 0));
+        }
+    }
+}
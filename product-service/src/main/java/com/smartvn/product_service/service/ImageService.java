@@ -24,6 +24,7 @@ public class ImageService {
     private final ImageRepository imageRepository;
     private final ProductRepository productRepository;
     private final CloudinaryService cloudinaryService;
+    private final ProductListingSummaryService listingSummaryService;
 
     /**
      * Tải lên một hình ảnh mới và liên kết nó với một sản phẩm.
@@ -47,7 +48,9 @@ public class ImageService {
             image.setProduct(product);
 
             log.info("Image uploaded for product {}: {}", productId, image.getDownloadUrl());
-            return imageRepository.save(image);
+            Image saved = imageRepository.save(image);
+            listingSummaryService.refresh(productId);
+            return saved;
 
         } catch (IOException e) {
             log.error("Failed to upload image for product {}: {}", productId, e.getMessage());
@@ -105,6 +108,7 @@ public class ImageService {
         }
 
         // 6. Xóa bản ghi khỏi cơ sở dữ liệu
+        Long productId = image.getProduct().getId();
         try {
             log.info("Attempting to delete image record from database with id: {}", imageId);
             imageRepository.delete(image);
@@ -114,5 +118,8 @@ public class ImageService {
             // Ném lỗi nếu xóa DB thất bại
             throw new AppException("Failed to delete image record from database", HttpStatus.INTERNAL_SERVER_ERROR, e);
         }
+
+        // 7. Cập nhật thumbnail trong listing summary
+        listingSummaryService.refresh(productId);
     }
 }
\ No newline at end of file
@@ -1,8 +1,13 @@
 package com.smartvn.product_service.service;
 
+import com.smartvn.product_service.dto.BatchOperationResultDTO;
+import com.smartvn.product_service.dto.InventoryAvailabilityDTO;
 import com.smartvn.product_service.dto.InventoryCheckRequest;
+import com.smartvn.product_service.dto.InventoryQuoteDTO;
+import com.smartvn.product_service.dto.StockShortfall;
 import com.smartvn.product_service.dto.admin.UpdateInventoryRequest;
 import com.smartvn.product_service.exceptions.AppException;
+import com.smartvn.product_service.exceptions.InsufficientStockException;
 import com.smartvn.product_service.model.Inventory;
 import com.smartvn.product_service.model.Product;
 import com.smartvn.product_service.repository.InventoryRepository;
@@ -10,19 +15,60 @@ import com.smartvn.product_service.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.util.List;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class InventoryService {
 
+    /**
+     * Trừ kho có điều kiện: chỉ trừ khi còn đủ hàng chưa bị giữ, DB tự khoá dòng nên không bị lost update.
+     * size <=> ? (MySQL null-safe equal) để variant không có size vẫn khớp.
+     * Product flash-sale chỉ bán qua bộ đếm (DB_PATH_GUARD) → ở đây báo thiếu hàng
+     */
+    private static final String CONDITIONAL_DECREMENT_SQL =
+            "UPDATE inventory SET quantity = quantity - ?, updated_at = ? " +
+            "WHERE product_id = ? AND size <=> ? AND quantity - reserved_quantity >= ?" +
+            FlashSaleStockService.DB_PATH_GUARD;
+    private static final int[] CONDITIONAL_DECREMENT_TYPES =
+            {Types.INTEGER, Types.TIMESTAMP, Types.BIGINT, Types.VARCHAR, Types.INTEGER};
+
+    private static final String RESTORE_SQL =
+            "UPDATE inventory SET quantity = quantity + ?, updated_at = ? WHERE product_id = ? AND size <=> ?";
+    private static final int[] RESTORE_TYPES =
+            {Types.INTEGER, Types.TIMESTAMP, Types.BIGINT, Types.VARCHAR};
+
+    /**
+     * Product + variant trong 1 lần đọc theo khoá chính của summary và uk_product_size;
+     * LEFT JOIN để phân biệt product không tồn tại / không có size này
+     */
+    private static final String QUOTE_SQL =
+            "SELECT s.title, s.thumbnail_url, s.is_active, i.id, i.quantity - i.reserved_quantity, " +
+            "i.price, i.discounted_price " +
+            "FROM product_listing_summary s " +
+            "LEFT JOIN inventory i ON i.product_id = s.product_id AND i.size <=> ? " +
+            "WHERE s.product_id = ?";
+
+    /** Số cặp (productId, size) tối đa trong 1 câu IN */
+    private static final int AVAILABILITY_CHUNK_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
     private final InventoryRepository inventoryRepository;
     private final ProductRepository productRepository;
+    private final ProductListingSummaryService listingSummaryService;
+    private final FlashSaleStockService flashSaleStock;
+    private final AppliedOperationLog appliedOperationLog;
 
     public List<Inventory> getInventoriesByProduct(Long productId) {
         return inventoryRepository.findAllByProductId(productId);
@@ -32,6 +78,8 @@ public class InventoryService {
         Inventory inventory = inventoryRepository.findById(inventoryId).orElseThrow(() -> new RuntimeException("Inventory not found"));
         inventory.setQuantity(quantity);
         inventoryRepository.save(inventory);
+        listingSummaryService.refresh(inventory.getProduct().getId());
+        flashSaleStock.reloadAfterCommit(inventory.getProduct().getId());
     }
 
     public void updateInventoryPrice(Long inventoryId, BigDecimal price, Integer discount) {
@@ -39,55 +87,290 @@ public class InventoryService {
         inventory.setPrice(price);
         inventory.setDiscountPercent(discount);
         inventoryRepository.save(inventory);
+        listingSummaryService.refresh(inventory.getProduct().getId());
     }
 
+    /**
+     * ✅ Trừ kho cho cả đơn hàng: tất cả hoặc không dòng nào.
+     * Mỗi dòng là 1 câu UPDATE có điều kiện (còn bán được >= số cần trừ), gửi chung 1 JDBC batch.
+     * Dòng nào không update được → rollback toàn bộ và ném InsufficientStockException (409)
+     * kèm số lượng còn bán được của từng dòng thiếu.
+     * SKU đang flash-sale được trừ trên bộ đếm trong RAM (FlashSaleStockService), phần còn lại trừ trên DB.
+     */
     @Transactional
     public void batchReduceInventory(List<InventoryCheckRequest> requests) {
-        for(InventoryCheckRequest rq: requests) {
-            Inventory inv = inventoryRepository.findByProductIdAndSize(rq.getProductId(), rq.getSize())
-                    .orElseThrow(() -> new AppException("Inventory not found", HttpStatus.NOT_FOUND));
+        List<InventoryCheckRequest> lines = reduceHotLines(mergeLines(requests));
+        if (lines.isEmpty()) {
+            return;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<InventoryCheckRequest> failed = executeGuardedBatch(CONDITIONAL_DECREMENT_SQL, lines,
+                line -> new Object[]{line.getQuantity(), now, line.getProductId(), line.getSize(), line.getQuantity()},
+                CONDITIONAL_DECREMENT_TYPES);
+        if (!failed.isEmpty()) {
+            throw insufficientStock(failed, lines.size());
+        }
+
+        refreshProducts(lines);
+    }
+
+    /**
+     * Trừ các dòng flash-sale trên bộ đếm (tự trả lại nếu transaction rollback).
+     *
+     * @return các dòng còn lại phải trừ trên DB
+     */
+    public List<InventoryCheckRequest> reduceHotLines(List<InventoryCheckRequest> lines) {
+        FlashSaleStockService.Admission admission = flashSaleStock.acquire(lines);
+        if (!admission.getShortfalls().isEmpty()) {
+            log.warn("⚠️ Flash-sale stock exhausted: {}", admission.getShortfalls());
+            throw new InsufficientStockException(admission.getShortfalls());
+        }
+        return admission.getCold();
+    }
+
+    /**
+     * ✅ Hoàn kho idempotent: mọi dòng trong 1 transaction, retry với cùng operationKey là no-op
+     */
+    @Transactional
+    public BatchOperationResultDTO restoreInventory(String operationKey, List<InventoryCheckRequest> requests) {
+        List<InventoryCheckRequest> lines = mergeLines(requests);
+        if (!appliedOperationLog.claim(operationKey)) {
+            return new BatchOperationResultDTO(operationKey, false, lines.size());
+        }
+        restoreInventory(lines);
+        log.info("↩️ Restored {} lines for {}", lines.size(), operationKey);
+        return new BatchOperationResultDTO(operationKey, true, lines.size());
+    }
+
+    /**
+     * ✅ Hoàn kho (huỷ đơn / trả hàng): SKU flash-sale hoàn qua bộ đếm, còn lại cộng thẳng vào quantity trên DB
+     */
+    @Transactional
+    public void restoreInventory(List<InventoryCheckRequest> requests) {
+        List<InventoryCheckRequest> cold = new ArrayList<>();
+        for (InventoryCheckRequest line : mergeLines(requests)) {
+            if (!flashSaleStock.restore(line)) {
+                cold.add(line);
+            }
+        }
+        if (cold.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        executeGuardedBatch(RESTORE_SQL, cold,
+                line -> new Object[]{line.getQuantity(), now, line.getProductId(), line.getSize()},
+                RESTORE_TYPES);
+        refreshProducts(cold);
+    }
+
+    /**
+     * Chạy 1 câu UPDATE có điều kiện cho từng dòng trong 1 JDBC batch.
+     *
+     * @return các dòng không khớp điều kiện (update count = 0)
+     */
+    public List<InventoryCheckRequest> executeGuardedBatch(String sql,
+                                                           List<InventoryCheckRequest> lines,
+                                                           Function<InventoryCheckRequest, Object[]> argsOf,
+                                                           int[] argTypes) {
+        List<Object[]> args = new ArrayList<>(lines.size());
+        for (InventoryCheckRequest line : lines) {
+            args.add(argsOf.apply(line));
+        }
+        int[] updateCounts = jdbcTemplate.batchUpdate(sql, args, argTypes);
+
+        List<InventoryCheckRequest> failed = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (updateCounts[i] == Statement.SUCCESS_NO_INFO) {
+                // Không biết dòng nào thực sự được update → không thể đảm bảo không bán vượt, rollback
+                throw new IllegalStateException("JDBC driver did not report update counts for stock update");
+            }
+            if (updateCounts[i] == 0) {
+                failed.add(lines.get(i));
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Tạo báo cáo thiếu hàng (đọc số lượng còn bán được hiện tại của từng dòng lỗi)
+     */
+    public InsufficientStockException insufficientStock(List<InventoryCheckRequest> failed, int totalLines) {
+        List<StockShortfall> shortfalls = new ArrayList<>(failed.size());
+        for (InventoryCheckRequest line : failed) {
+            int available = inventoryRepository.findByProductIdAndSize(line.getProductId(), line.getSize())
+                    .map(Inventory::getAvailableQuantity)
+                    .orElse(0);
+            shortfalls.add(new StockShortfall(line.getProductId(), line.getSize(), line.getQuantity(), available));
+        }
+        log.warn("⚠️ Stock update rejected, {} of {} lines short: {}", shortfalls.size(), totalLines, shortfalls);
+        return new InsufficientStockException(shortfalls);
+    }
+
+    public void refreshProducts(Collection<InventoryCheckRequest> lines) {
+        Set<Long> productIds = new LinkedHashSet<>();
+        lines.forEach(line -> productIds.add(line.getProductId()));
+        listingSummaryService.refreshAll(productIds);
+    }
+
+    /**
+     * Gộp các dòng trùng (productId, size) và sắp xếp theo (productId, size)
+     * để các đơn chạy song song luôn khoá dòng inventory theo cùng thứ tự (tránh deadlock).
+     * Size so sánh như collation của cột (Inventory.sizeKey): "m" và "M" là 1 dòng, giữ size của lần xuất hiện đầu.
+     */
+    static List<InventoryCheckRequest> mergeLines(Collection<InventoryCheckRequest> requests) {
+        Comparator<InventoryCheckRequest> lockOrder = Comparator
+                .comparing(InventoryCheckRequest::getProductId)
+                .thenComparing(rq -> Inventory.sizeKey(rq.getSize()), Comparator.nullsFirst(Comparator.naturalOrder()));
+        Map<List<Object>, InventoryCheckRequest> byKey = new HashMap<>();
+        for (InventoryCheckRequest rq : requests) {
+            if (rq.getProductId() == null || rq.getQuantity() == null || rq.getQuantity() <= 0) {
+                throw new AppException("Invalid inventory line: " + rq, HttpStatus.BAD_REQUEST);
+            }
+            byKey.merge(Arrays.asList(rq.getProductId(), Inventory.sizeKey(rq.getSize())),
+                    new InventoryCheckRequest(rq.getProductId(), rq.getSize(), rq.getQuantity()),
+                    (a, b) -> new InventoryCheckRequest(a.getProductId(), a.getSize(), a.getQuantity() + b.getQuantity()));
+        }
+        List<InventoryCheckRequest> lines = new ArrayList<>(byKey.values());
+        lines.sort(lockOrder);
+        return lines;
+    }
 
-            if(inv.getQuantity() <rq.getQuantity()) {
-                throw new AppException(
-                        String.format("Insufficient stock for product %d size %s",
-                                rq.getProductId(), rq.getSize()),
-                        HttpStatus.BAD_REQUEST
-                );
+    /**
+     * ✅ Kiểm tra tồn kho + giá hiện tại cho nhiều dòng trong 1 query tuple-IN
+     * ((product_id, size) IN ((?, ?), ...)), so sánh trong bộ nhớ.
+     * Dòng trùng (productId, size) được cộng dồn số lượng (size so sánh như MySQL, xem Inventory.sizeKey);
+     * kết quả giữ thứ tự và size của lần xuất hiện đầu tiên.
+     */
+    @Transactional(readOnly = true)
+    public List<InventoryAvailabilityDTO> checkAvailability(List<InventoryCheckRequest> requests) {
+        Map<List<Object>, InventoryAvailabilityDTO> byKey = new LinkedHashMap<>();
+        for (InventoryCheckRequest rq : requests) {
+            if (rq.getProductId() == null || rq.getQuantity() == null || rq.getQuantity() <= 0) {
+                throw new AppException("Invalid inventory line: " + rq, HttpStatus.BAD_REQUEST);
             }
-            inv.setQuantity(inv.getQuantity() - rq.getQuantity());
-            inventoryRepository.save(inv);
+            List<Object> key = Arrays.asList(rq.getProductId(), Inventory.sizeKey(rq.getSize()));
+            InventoryAvailabilityDTO dto = byKey.computeIfAbsent(key,
+                    k -> new InventoryAvailabilityDTO(rq.getProductId(), rq.getSize(), 0, 0, false, false, null, null));
+            dto.setRequested(dto.getRequested() + rq.getQuantity());
         }
+
+        List<List<Object>> keys = new ArrayList<>(byKey.keySet());
+        for (int from = 0; from < keys.size(); from += AVAILABILITY_CHUNK_SIZE) {
+            loadAvailability(keys.subList(from, Math.min(from + AVAILABILITY_CHUNK_SIZE, keys.size())), byKey);
+        }
+
+        for (InventoryAvailabilityDTO dto : byKey.values()) {
+            Integer hotAvailable = flashSaleStock.available(dto.getProductId(), dto.getSize());
+            if (hotAvailable != null) {
+                dto.setAvailable(hotAvailable);
+            }
+            dto.setSufficient(dto.getFound() && dto.getAvailable() >= dto.getRequested());
+        }
+        return new ArrayList<>(byKey.values());
+    }
+
+    /**
+     * Size null không khớp được trong tuple-IN → tách thành điều kiện size IS NULL riêng
+     */
+    private void loadAvailability(List<List<Object>> keys, Map<List<Object>, InventoryAvailabilityDTO> byKey) {
+        StringBuilder tuples = new StringBuilder();
+        List<Long> nullSizeProducts = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        for (List<Object> key : keys) {
+            if (key.get(1) == null) {
+                nullSizeProducts.add((Long) key.get(0));
+                continue;
+            }
+            tuples.append(tuples.isEmpty() ? "(?, ?)" : ", (?, ?)");
+            args.add(key.get(0));
+            args.add(byKey.get(key).getSize());
+        }
+
+        List<String> conditions = new ArrayList<>(2);
+        if (!tuples.isEmpty()) {
+            conditions.add("(product_id, size) IN (" + tuples + ")");
+        }
+        if (!nullSizeProducts.isEmpty()) {
+            conditions.add("(size IS NULL AND product_id IN (" +
+                    String.join(", ", Collections.nCopies(nullSizeProducts.size(), "?")) + "))");
+            args.addAll(nullSizeProducts);
+        }
+
+        String sql = "SELECT product_id, size, quantity - reserved_quantity, price, discounted_price " +
+                "FROM inventory WHERE " + String.join(" OR ", conditions);
+        jdbcTemplate.query(sql, rs -> {
+            // MySQL khớp size không phân biệt hoa/thường ('m' → dòng 'M') → tra theo key đã chuẩn hoá
+            InventoryAvailabilityDTO dto = byKey.get(Arrays.asList(rs.getLong(1), Inventory.sizeKey(rs.getString(2))));
+            if (dto != null) {
+                BigDecimal price = rs.getBigDecimal(4);
+                BigDecimal discounted = rs.getBigDecimal(5);
+                dto.setFound(true);
+                dto.setAvailable(Math.max(rs.getInt(3), 0));
+                dto.setPrice(price);
+                dto.setDiscountedPrice(discounted != null ? discounted : price);
+            }
+        }, args.toArray());
+    }
+
+    /**
+     * ✅ Báo giá 1 variant cho add-to-cart / cập nhật giỏ: trạng thái, giá, tồn kho, title/ảnh trong 1 query
+     */
+    @Transactional(readOnly = true)
+    public InventoryQuoteDTO quote(InventoryCheckRequest req) {
+        if (req.getProductId() == null || req.getQuantity() == null || req.getQuantity() <= 0) {
+            throw new AppException("Invalid inventory line: " + req, HttpStatus.BAD_REQUEST);
+        }
+        InventoryQuoteDTO quote = new InventoryQuoteDTO(req.getProductId(), req.getSize(), req.getQuantity(),
+                false, false, false, 0, false, null, null, null, null);
+        jdbcTemplate.query(QUOTE_SQL, rs -> {
+            quote.setProductFound(true);
+            quote.setTitle(rs.getString(1));
+            quote.setThumbnailUrl(rs.getString(2));
+            quote.setActive(rs.getBoolean(3));
+            if (rs.getObject(4) != null) {
+                BigDecimal price = rs.getBigDecimal(6);
+                BigDecimal discounted = rs.getBigDecimal(7);
+                quote.setVariantFound(true);
+                quote.setAvailable(Math.max(rs.getInt(5), 0));
+                quote.setPrice(price);
+                quote.setDiscountedPrice(discounted != null ? discounted : price);
+            }
+        }, req.getSize(), req.getProductId());
+
+        if (quote.getVariantFound()) {
+            Integer hotAvailable = flashSaleStock.available(req.getProductId(), req.getSize());
+            if (hotAvailable != null) {
+                quote.setAvailable(hotAvailable);
+            }
+        }
+        quote.setSufficient(quote.getActive() && quote.getVariantFound()
+                && quote.getAvailable() >= req.getQuantity());
+        return quote;
     }
 
     public boolean checkInventoryAvailability(InventoryCheckRequest req) {
+        Integer hotAvailable = flashSaleStock.available(req.getProductId(), req.getSize());
+        if (hotAvailable != null) {
+            return hotAvailable >= req.getQuantity();
+        }
         Inventory inv = inventoryRepository.findByProductIdAndSize(req.getProductId(), req.getSize())
                 .orElse(null);
-        return inv != null && inv.getQuantity() >= req.getQuantity();
+        return inv != null && inv.getAvailableQuantity() >= req.getQuantity();
     }
 
     @Transactional
     public void batchReduceOneInventory(InventoryCheckRequest rq) {
-        Inventory inv = inventoryRepository.findByProductIdAndSize(rq.getProductId(), rq.getSize())
-                .orElseThrow(() -> new AppException("Inventory not found", HttpStatus.NOT_FOUND));
-
-        if(inv.getQuantity() <rq.getQuantity()) {
-            throw new AppException(
-                    String.format("Insufficient stock for product %d size %s",
-                            rq.getProductId(), rq.getSize()),
-                    HttpStatus.BAD_REQUEST
-            );
-        }
-        inv.setQuantity(inv.getQuantity() - rq.getQuantity());
-        inventoryRepository.save(inv);
+        batchReduceInventory(List.of(rq));
     }
 
     @Transactional
     public void batchRetoreOneInventory(InventoryCheckRequest rq) {
-        Inventory inv = inventoryRepository.findByProductIdAndSize(rq.getProductId(), rq.getSize())
-                .orElseThrow(() -> new AppException("Inventory not found", HttpStatus.NOT_FOUND));
-
-        inv.setQuantity(inv.getQuantity() + rq.getQuantity());
-        inventoryRepository.save(inv);
+        if (!flashSaleStock.isHot(rq.getProductId())) {
+            inventoryRepository.findByProductIdAndSize(rq.getProductId(), rq.getSize())
+                    .orElseThrow(() -> new AppException("Inventory not found", HttpStatus.NOT_FOUND));
+        }
+        restoreInventory(List.of(rq));
     }
 
     public Inventory addInventory(Long productId, UpdateInventoryRequest req) {
@@ -100,8 +383,12 @@ public class InventoryService {
         inv.setQuantity(req.getQuantity());
         inv.setPrice(req.getPrice());
         inv.setDiscountPercent(req.getDiscountPercent());
+        inv.setReorderPoint(req.getReorderPoint());
 
-        return inventoryRepository.save(inv);
+        Inventory saved = inventoryRepository.save(inv);
+        listingSummaryService.refresh(productId);
+        flashSaleStock.reloadAfterCommit(productId);
+        return saved;
     }
 
     public Inventory updateInventory(Long inventoryId, UpdateInventoryRequest req) {
@@ -112,8 +399,29 @@ public class InventoryService {
         if (req.getQuantity() != null) inv.setQuantity(req.getQuantity());
         if (req.getPrice() != null) inv.setPrice(req.getPrice());
         if (req.getDiscountPercent() != null) inv.setDiscountPercent(req.getDiscountPercent());
+        if (req.getReorderPoint() != null) inv.setReorderPoint(req.getReorderPoint());
+
+        Inventory saved = inventoryRepository.save(inv);
+        listingSummaryService.refresh(inv.getProduct().getId());
+        flashSaleStock.reloadAfterCommit(inv.getProduct().getId());
+        return saved;
+    }
+
+    /**
+     * ✅ Đặt ngưỡng cảnh báo sắp hết hàng cho 1 SKU (null = quay về ngưỡng mặc định)
+     */
+    @Transactional
+    public Inventory updateReorderPoint(Long inventoryId, Integer reorderPoint) {
+        if (reorderPoint != null && reorderPoint < 0) {
+            throw new AppException("Reorder point must be >= 0", HttpStatus.BAD_REQUEST);
+        }
+        Inventory inv = inventoryRepository.findById(inventoryId)
+                .orElseThrow(() -> new AppException("Inventory not found", HttpStatus.NOT_FOUND));
 
-        return inventoryRepository.save(inv);
+        inv.setReorderPoint(reorderPoint);
+        Inventory saved = inventoryRepository.save(inv);
+        listingSummaryService.refresh(inv.getProduct().getId());
+        return saved;
     }
 
     // ✅ THÊM VÀO InventoryService.java
@@ -138,6 +446,8 @@ public class InventoryService {
         }
 
         inventoryRepository.delete(inventory);
+        listingSummaryService.refresh(productId);
+        flashSaleStock.reloadAfterCommit(productId);
         log.info("✅ Deleted inventory variant: {} - {}",
                 productId, inventory.getSize());
     }
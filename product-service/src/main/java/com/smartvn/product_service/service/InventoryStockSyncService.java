@@ -0,0 +1,403 @@
+package com.smartvn.product_service.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartvn.product_service.dto.admin.StockSyncRow;
+import com.smartvn.product_service.exceptions.AppException;
+import com.smartvn.product_service.model.Inventory;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * ✅ Đồng bộ tồn kho từ snapshot của kho (CSV hoặc NDJSON: productId, size, quantity, price).
+ * - Đọc stream theo chunk, mỗi chunk 1 transaction riêng (giống BulkProductIngestionService)
+ * - Mỗi chunk: 1 query đọc inventory hiện tại của các product trong chunk, so sánh trong bộ nhớ,
+ *   chỉ ghi các dòng thay đổi bằng 1 JDBC batch INSERT ... ON DUPLICATE KEY UPDATE (uk_product_size)
+ * - Product không tồn tại → unknown; dòng không đổi → unchanged (không ghi gì)
+ * - Summary / watchlist / change feed cập nhật qua refreshAll cho các product có thay đổi
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InventoryStockSyncService {
+
+    private static final int MAX_CHUNK_SIZE = 5000;
+    private static final String[] CSV_COLUMNS = {"productId", "size", "quantity", "price"};
+
+    /**
+     * Variant mới: thêm với discount 0; variant có sẵn: giữ discount_percent, tính lại discounted_price
+     * như Inventory.calculateDiscountedPrice()
+     */
+    private static final String UPSERT_SQL =
+            "INSERT INTO inventory (product_id, size, quantity, price, discount_percent, discounted_price, " +
+                    "created_at, updated_at) VALUES (?, ?, ?, ?, 0, ?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE quantity = VALUES(quantity), price = VALUES(price), " +
+                    "discounted_price = CASE WHEN discount_percent > 0 " +
+                    "THEN ROUND(VALUES(price) - VALUES(price) * discount_percent / 100, 0) " +
+                    "ELSE VALUES(price) END, " +
+                    "updated_at = VALUES(updated_at)";
+    private static final int[] UPSERT_TYPES = {
+            Types.BIGINT, Types.VARCHAR, Types.INTEGER, Types.DECIMAL, Types.DECIMAL,
+            Types.TIMESTAMP, Types.TIMESTAMP
+    };
+
+    /**
+     * size = NULL không kích hoạt unique key (MySQL coi NULL khác nhau) → variant không size cập nhật theo id
+     */
+    private static final String UPDATE_BY_ID_SQL =
+            "UPDATE inventory SET quantity = ?, price = ?, " +
+                    "discounted_price = CASE WHEN discount_percent > 0 " +
+                    "THEN ROUND(? - ? * discount_percent / 100, 0) ELSE ? END, " +
+                    "updated_at = ? WHERE id = ?";
+    private static final int[] UPDATE_BY_ID_TYPES = {
+            Types.INTEGER, Types.DECIMAL, Types.DECIMAL, Types.DECIMAL, Types.DECIMAL,
+            Types.TIMESTAMP, Types.BIGINT
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final ProductListingSummaryService listingSummaryService;
+    private final FlashSaleStockService flashSaleStock;
+
+    @Value("${inventory.stock-sync.chunk-size:1000}")
+    private int defaultChunkSize;
+
+    /**
+     * Đọc snapshot từ stream và đồng bộ theo chunk.
+     *
+     * @param input     Body của request (UTF-8).
+     * @param csv       true = CSV (dòng header tuỳ chọn), false = NDJSON (mỗi dòng là một StockSyncRow).
+     * @param chunkSize Số dòng mỗi chunk (null → inventory.stock-sync.chunk-size).
+     * @param progress  Được gọi sau mỗi chunk (đã commit hoặc đã rollback).
+     */
+    public SyncSummary sync(InputStream input, boolean csv, Integer chunkSize, Consumer<ChunkReport> progress) {
+        int size = chunkSize != null ? Math.max(1, Math.min(chunkSize, MAX_CHUNK_SIZE)) : defaultChunkSize;
+        long start = System.currentTimeMillis();
+        SyncSummary summary = new SyncSummary();
+
+        // (productId, size) đã nhận trong request → bắt dòng trùng giữa các chunk
+        Set<SkuKey> seenKeys = new HashSet<>();
+        List<ParsedRow> chunk = new ArrayList<>(size);
+        List<LineFailure> parseFailures = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            boolean firstRow = true;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (csv && firstRow && isCsvHeader(line)) {
+                    firstRow = false;
+                    continue;
+                }
+                firstRow = false;
+                summary.totalLines++;
+
+                try {
+                    StockSyncRow row = csv ? parseCsv(line) : objectMapper.readValue(line, StockSyncRow.class);
+                    String violation = validate(row);
+                    if (violation != null) {
+                        parseFailures.add(new LineFailure(lineNumber, row.getProductId(), row.getSize(), violation));
+                    } else if (!seenKeys.add(SkuKey.of(row.getProductId(), normalizeSize(row.getSize())))) {
+                        parseFailures.add(new LineFailure(lineNumber, row.getProductId(), row.getSize(),
+                                "Duplicate row in request"));
+                    } else {
+                        chunk.add(new ParsedRow(lineNumber, row));
+                    }
+                } catch (JsonProcessingException e) {
+                    parseFailures.add(new LineFailure(lineNumber, null, null, "Invalid JSON: " + e.getOriginalMessage()));
+                } catch (IllegalArgumentException e) {
+                    parseFailures.add(new LineFailure(lineNumber, null, null, "Invalid CSV: " + e.getMessage()));
+                }
+
+                if (chunk.size() + parseFailures.size() >= size) {
+                    flushChunk(summary, chunk, parseFailures, progress);
+                }
+            }
+        } catch (IOException e) {
+            throw new AppException("Failed to read stock sync stream: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+
+        if (!chunk.isEmpty() || !parseFailures.isEmpty()) {
+            flushChunk(summary, chunk, parseFailures, progress);
+        }
+
+        summary.elapsedMs = System.currentTimeMillis() - start;
+        summary.rowsPerSecond = summary.elapsedMs > 0
+                ? summary.totalLines * 1000.0 / summary.elapsedMs
+                : summary.totalLines;
+        log.info("✅ Stock sync done: {} lines, {} updated, {} inserted, {} unchanged, {} unknown, {} failed in {} ms ({} rows/s)",
+                summary.totalLines, summary.updated, summary.inserted, summary.unchanged, summary.unknown,
+                summary.failed, summary.elapsedMs, String.format("%.1f", summary.rowsPerSecond));
+        return summary;
+    }
+
+    private void flushChunk(SyncSummary summary,
+                            List<ParsedRow> chunk,
+                            List<LineFailure> parseFailures,
+                            Consumer<ChunkReport> progress) {
+        long chunkStart = System.currentTimeMillis();
+        ChunkReport report = new ChunkReport();
+        report.chunk = ++summary.chunks;
+        report.received = chunk.size() + parseFailures.size();
+        report.failures.addAll(parseFailures);
+
+        try {
+            TransactionTemplate tx = new TransactionTemplate(transactionManager);
+            tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            tx.executeWithoutResult(status -> writeChunk(chunk, report));
+        } catch (Exception e) {
+            // Cả chunk đã rollback → báo lỗi cho từng dòng hợp lệ trong chunk
+            log.error("❌ Stock sync chunk {} rolled back: {}", report.chunk, e.getMessage());
+            report.updated = 0;
+            report.inserted = 0;
+            report.unchanged = 0;
+            report.unknown.clear();
+            for (ParsedRow parsed : chunk) {
+                report.failures.add(new LineFailure(parsed.lineNumber, parsed.row.getProductId(),
+                        parsed.row.getSize(), "Chunk rolled back: " + e.getMessage()));
+            }
+        }
+
+        report.elapsedMs = System.currentTimeMillis() - chunkStart;
+        summary.updated += report.updated;
+        summary.inserted += report.inserted;
+        summary.unchanged += report.unchanged;
+        summary.unknown += report.unknown.size();
+        summary.failed += report.failures.size();
+
+        log.info("📦 Stock sync chunk {}: {} received, {} updated, {} inserted, {} unchanged, {} unknown, {} failed in {} ms",
+                report.chunk, report.received, report.updated, report.inserted, report.unchanged,
+                report.unknown.size(), report.failures.size(), report.elapsedMs);
+        progress.accept(report);
+
+        chunk.clear();
+        parseFailures.clear();
+    }
+
+    /**
+     * So sánh và ghi một chunk (chạy trong transaction của chunk).
+     */
+    private void writeChunk(List<ParsedRow> chunk, ChunkReport report) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        Set<Long> productIds = chunk.stream().map(p -> p.row.getProductId()).collect(Collectors.toSet());
+        String placeholders = String.join(",", Collections.nCopies(productIds.size(), "?"));
+        Object[] ids = productIds.toArray();
+
+        // 1. Product tồn tại + inventory hiện tại của chúng: 2 query cho cả chunk
+        Set<Long> knownProducts = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT id FROM products WHERE id IN (" + placeholders + ")", Long.class, ids));
+        Map<SkuKey, CurrentStock> current = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT id, product_id, size, quantity, price FROM inventory WHERE product_id IN (" + placeholders + ")",
+                rs -> {
+                    current.put(SkuKey.of(rs.getLong("product_id"), rs.getString("size")),
+                            new CurrentStock(rs.getLong("id"), rs.getInt("quantity"), rs.getBigDecimal("price")));
+                },
+                ids);
+
+        // 2. Diff trong bộ nhớ
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> upsertArgs = new ArrayList<>();
+        List<Object[]> updateByIdArgs = new ArrayList<>();
+        Set<Long> changedProducts = new HashSet<>();
+        for (ParsedRow parsed : chunk) {
+            StockSyncRow row = parsed.row;
+            String size = normalizeSize(row.getSize());
+            if (!knownProducts.contains(row.getProductId())) {
+                report.unknown.add(new LineFailure(parsed.lineNumber, row.getProductId(), size, "Product not found"));
+                continue;
+            }
+            CurrentStock stock = current.get(SkuKey.of(row.getProductId(), size));
+            if (stock != null
+                    && stock.quantity == row.getQuantity()
+                    && stock.price.compareTo(row.getPrice()) == 0) {
+                report.unchanged++;
+                continue;
+            }
+
+            if (stock != null && size == null) {
+                BigDecimal price = row.getPrice();
+                updateByIdArgs.add(new Object[]{row.getQuantity(), price, price, price, price, now, stock.id});
+            } else {
+                upsertArgs.add(new Object[]{row.getProductId(), size, row.getQuantity(), row.getPrice(),
+                        row.getPrice(), now, now});
+            }
+            if (stock != null) {
+                report.updated++;
+            } else {
+                report.inserted++;
+            }
+            changedProducts.add(row.getProductId());
+        }
+
+        // 3. Chỉ ghi dòng thay đổi
+        if (!upsertArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, upsertArgs, UPSERT_TYPES);
+        }
+        if (!updateByIdArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_BY_ID_SQL, updateByIdArgs, UPDATE_BY_ID_TYPES);
+        }
+        if (!changedProducts.isEmpty()) {
+            listingSummaryService.refreshAll(changedProducts);
+            changedProducts.forEach(flashSaleStock::reloadAfterCommit);
+        }
+    }
+
+    private boolean isCsvHeader(String line) {
+        String first = splitCsv(line).get(0).trim();
+        return !first.isEmpty() && !Character.isDigit(first.charAt(0));
+    }
+
+    /**
+     * productId,size,quantity,price — size rỗng = variant không có size; hỗ trợ giá trị trong "..."
+     */
+    private StockSyncRow parseCsv(String line) {
+        List<String> fields = splitCsv(line);
+        if (fields.size() != CSV_COLUMNS.length) {
+            throw new IllegalArgumentException("expected " + String.join(",", CSV_COLUMNS) + " but got "
+                    + fields.size() + " columns");
+        }
+        StockSyncRow row = new StockSyncRow();
+        try {
+            row.setProductId(Long.valueOf(fields.get(0).trim()));
+            row.setSize(fields.get(1));
+            row.setQuantity(Integer.valueOf(fields.get(2).trim()));
+            row.setPrice(new BigDecimal(fields.get(3).trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid number " + e.getMessage());
+        }
+        return row;
+    }
+
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(CSV_COLUMNS.length);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String normalizeSize(String size) {
+        if (size == null) {
+            return null;
+        }
+        String trimmed = size.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private String validate(StockSyncRow row) {
+        Set<ConstraintViolation<StockSyncRow>> violations = validator.validate(row);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    /**
+     * (productId, size) so sánh giống uk_product_size: "m" và dòng "M" hiện có là cùng 1 variant
+     * (upsert sẽ cập nhật dòng "M", không chèn dòng mới)
+     */
+    private record SkuKey(Long productId, String size) {
+        static SkuKey of(Long productId, String size) {
+            return new SkuKey(productId, Inventory.sizeKey(size));
+        }
+    }
+
+    private record CurrentStock(long id, int quantity, BigDecimal price) {
+    }
+
+    @AllArgsConstructor
+    private static class ParsedRow {
+        private final int lineNumber;
+        private final StockSyncRow row;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class LineFailure {
+        private int line;
+        private Long productId;
+        private String size;
+        private String error;
+    }
+
+    @Data
+    public static class ChunkReport {
+        private int chunk;
+        private int received;
+        private int updated;
+        private int inserted;
+        private int unchanged;
+        private long elapsedMs;
+        private List<LineFailure> unknown = new ArrayList<>();
+        private List<LineFailure> failures = new ArrayList<>();
+    }
+
+    @Data
+    public static class SyncSummary {
+        private int totalLines;
+        private int updated;
+        private int inserted;
+        private int unchanged;
+        private int unknown;
+        private int failed;
+        private int chunks;
+        private long elapsedMs;
+        private double rowsPerSecond;
+    }
+}
@@ -0,0 +1,234 @@
+package com.smartvn.product_service.service;
+
+import com.smartvn.product_service.dto.ProductChangeDTO;
+import com.smartvn.product_service.dto.ProductChangeFeedDTO;
+import com.smartvn.product_service.dto.admin.LowStockAlertDTO;
+import com.smartvn.product_service.dto.admin.LowStockAlertFeedDTO;
+import com.smartvn.product_service.dto.admin.LowStockEntryDTO;
+import com.smartvn.product_service.model.Inventory;
+import com.smartvn.product_service.model.LowStockEntry;
+import com.smartvn.product_service.model.ProductChangeEvent;
+import com.smartvn.product_service.model.ProductListingSummary;
+import com.smartvn.product_service.repository.InventoryRepository;
+import com.smartvn.product_service.repository.LowStockEntryRepository;
+import com.smartvn.product_service.repository.ProductListingSummaryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Danh sách SKU sắp hết / hết hàng (bảng low_stock_watchlist), cập nhật tăng dần:
+ * - sync(): gọi từ ProductListingSummaryService trong cùng transaction với mọi thay đổi kho,
+ *   chỉ đụng các SKU của product vừa đổi
+ * - Ngưỡng theo SKU (Inventory.reorderPoint), mặc định inventory.low-stock.default-reorder-point
+ * - SKU đổi level (vào LOW / OUT hoặc đủ hàng trở lại) → event STOCK_ALERT trên change feed;
+ *   readAlerts() là luồng alert cho admin (poll / long-poll theo offset)
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LowStockWatchlistService {
+
+    private final LowStockEntryRepository entryRepository;
+    private final InventoryRepository inventoryRepository;
+    private final ProductListingSummaryRepository summaryRepository;
+    private final ProductChangeFeedService changeFeed;
+
+    @Value("${inventory.low-stock.default-reorder-point:5}")
+    private int defaultReorderPoint;
+
+    /**
+     * Cập nhật watchlist cho các product vừa tính lại kho.
+     *
+     * @param inventoriesByProduct toàn bộ inventory hiện tại của mỗi product
+     * @return các product có ít nhất 1 SKU đổi level
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Set<Long> sync(Map<Long, ? extends Collection<Inventory>> inventoriesByProduct) {
+        if (inventoriesByProduct.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Map<Long, LowStockEntry> existing = new HashMap<>();
+        for (LowStockEntry entry : entryRepository.findAllByProductIdIn(inventoriesByProduct.keySet())) {
+            existing.put(entry.getInventoryId(), entry);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Set<Long> changedProducts = new HashSet<>();
+        List<LowStockEntry> toSave = new ArrayList<>();
+        inventoriesByProduct.forEach((productId, inventories) -> {
+            for (Inventory inv : inventories) {
+                LowStockEntry entry = existing.remove(inv.getId());
+                int reorderPoint = reorderPointOf(inv);
+                LowStockEntry.Level level = levelOf(inv.getAvailableQuantity(), reorderPoint);
+                if (level == null) {
+                    if (entry != null) {
+                        entryRepository.delete(entry);
+                        changedProducts.add(productId);
+                    }
+                    continue;
+                }
+                if (entry == null) {
+                    entry = new LowStockEntry();
+                    entry.setInventoryId(inv.getId());
+                    entry.setProductId(productId);
+                }
+                if (entry.getLevel() != level) {
+                    entry.setLevel(level);
+                    entry.setSince(now);
+                    changedProducts.add(productId);
+                }
+                entry.setSize(inv.getSize());
+                entry.setAvailable(inv.getAvailableQuantity());
+                entry.setReorderPoint(reorderPoint);
+                entry.setUpdatedAt(now);
+                toSave.add(entry);
+            }
+        });
+
+        // Còn lại: SKU đã bị xoá
+        for (LowStockEntry orphan : existing.values()) {
+            entryRepository.delete(orphan);
+            changedProducts.add(orphan.getProductId());
+        }
+        entryRepository.saveAll(toSave);
+        return changedProducts;
+    }
+
+    /**
+     * Product bị xoá → bỏ toàn bộ SKU khỏi watchlist
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void remove(Long productId) {
+        entryRepository.deleteByProductId(productId);
+    }
+
+    /**
+     * ✅ Danh sách SKU cần nhập thêm, ít hàng nhất trước.
+     *
+     * @param level LOW | OUT, null = cả hai
+     */
+    @Transactional(readOnly = true)
+    public Page<LowStockEntryDTO> getWatchlist(LowStockEntry.Level level, int page, int size) {
+        PageRequest pageable = PageRequest.of(page, size);
+        Page<LowStockEntry> entries = level != null
+                ? entryRepository.findPageByLevel(level, pageable)
+                : entryRepository.findPage(pageable);
+
+        Set<Long> productIds = new HashSet<>();
+        entries.forEach(entry -> productIds.add(entry.getProductId()));
+        Map<Long, String> titles = loadTitles(productIds);
+        return entries.map(entry -> new LowStockEntryDTO(entry, titles.get(entry.getProductId())));
+    }
+
+    /**
+     * ✅ Luồng alert: các product có SKU đổi level sau offset "after", kèm trạng thái watchlist hiện tại.
+     * Dùng chung offset với change feed (/products/changes); waitMs > 0 → long-poll.
+     * Không @Transactional: long-poll không được giữ connection DB.
+     */
+    public LowStockAlertFeedDTO readAlerts(long after, int limit, long waitMs) {
+        ProductChangeFeedDTO feed = changeFeed.read(after, limit, waitMs);
+
+        List<ProductChangeDTO> alertChanges = new ArrayList<>();
+        Set<Long> productIds = new HashSet<>();
+        for (ProductChangeDTO change : feed.getChanges()) {
+            // CREATED / DELETED nuốt các loại khác khi relay nén → vẫn coi là alert
+            if (change.getChangeTypes().contains(ProductChangeEvent.ChangeType.STOCK_ALERT.name())
+                    || change.getChangeTypes().contains(ProductChangeEvent.ChangeType.CREATED.name())
+                    || change.getChangeTypes().contains(ProductChangeEvent.ChangeType.DELETED.name())) {
+                alertChanges.add(change);
+                productIds.add(change.getProductId());
+            }
+        }
+        if (alertChanges.isEmpty()) {
+            return new LowStockAlertFeedDTO(Collections.emptyList(), feed.getNextOffset(), feed.getReset());
+        }
+
+        Map<Long, String> titles = loadTitles(productIds);
+        Map<Long, List<LowStockEntryDTO>> entriesByProduct = new HashMap<>();
+        for (LowStockEntry entry : entryRepository.findAllByProductIdInOrderByAvailableAscInventoryIdAsc(productIds)) {
+            entriesByProduct.computeIfAbsent(entry.getProductId(), id -> new ArrayList<>())
+                    .add(new LowStockEntryDTO(entry, titles.get(entry.getProductId())));
+        }
+
+        List<LowStockAlertDTO> alerts = new ArrayList<>(alertChanges.size());
+        for (ProductChangeDTO change : alertChanges) {
+            alerts.add(new LowStockAlertDTO(
+                    change.getOffset(),
+                    change.getProductId(),
+                    entriesByProduct.getOrDefault(change.getProductId(), Collections.emptyList()),
+                    change.getChangedAt()));
+        }
+        return new LowStockAlertFeedDTO(alerts, feed.getNextOffset(), feed.getReset());
+    }
+
+    /**
+     * ✅ Dựng lại watchlist lúc khởi động (dữ liệu cũ, hoặc ngưỡng mặc định vừa đổi).
+     * Chỉ đọc các SKU dưới ngưỡng; không phát alert.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void rebuild() {
+        Map<Long, LowStockEntry> stale = new HashMap<>();
+        for (LowStockEntry entry : entryRepository.findAll()) {
+            stale.put(entry.getInventoryId(), entry);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<LowStockEntry> toSave = new ArrayList<>();
+        for (Inventory inv : inventoryRepository.findAtOrBelowReorderPoint(defaultReorderPoint)) {
+            int reorderPoint = reorderPointOf(inv);
+            LowStockEntry.Level level = levelOf(inv.getAvailableQuantity(), reorderPoint);
+            LowStockEntry entry = stale.remove(inv.getId());
+            if (entry == null) {
+                entry = new LowStockEntry();
+                entry.setInventoryId(inv.getId());
+                entry.setProductId(inv.getProduct().getId());
+            }
+            if (entry.getLevel() != level) {
+                entry.setLevel(level);
+                entry.setSince(now);
+            }
+            entry.setSize(inv.getSize());
+            entry.setAvailable(inv.getAvailableQuantity());
+            entry.setReorderPoint(reorderPoint);
+            entry.setUpdatedAt(now);
+            toSave.add(entry);
+        }
+        entryRepository.deleteAll(stale.values());
+        entryRepository.saveAll(toSave);
+        log.info("📉 Low-stock watchlist rebuilt: {} SKUs (removed {})", toSave.size(), stale.size());
+    }
+
+    private int reorderPointOf(Inventory inv) {
+        return inv.getReorderPoint() != null ? inv.getReorderPoint() : defaultReorderPoint;
+    }
+
+    private static LowStockEntry.Level levelOf(int available, int reorderPoint) {
+        if (available <= 0) {
+            return LowStockEntry.Level.OUT;
+        }
+        return available <= reorderPoint ? LowStockEntry.Level.LOW : null;
+    }
+
+    private Map<Long, String> loadTitles(Collection<Long> productIds) {
+        Map<Long, String> titles = new HashMap<>();
+        if (productIds.isEmpty()) {
+            return titles;
+        }
+        for (ProductListingSummary summary : summaryRepository.findAllById(productIds)) {
+            titles.put(summary.getProductId(), summary.getTitle());
+        }
+        return titles;
+    }
+}
@@ -0,0 +1,238 @@
+package com.smartvn.product_service.service;
+
+import com.smartvn.product_service.dto.ProductChangeDTO;
+import com.smartvn.product_service.dto.ProductChangeFeedDTO;
+import com.smartvn.product_service.model.ProductChangeEvent;
+import com.smartvn.product_service.repository.ProductChangeEventRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Change feed của product (transactional outbox + relay).
+ * - record(): ghi event trong transaction của write path (ProductListingSummaryService) → atomically với thay đổi
+ * - relay: gom event chưa công bố, nén theo product (1 event / product / lượt, gộp change types),
+ *   gán feed offset tăng dần theo thứ tự commit
+ * - read(): consumer đọc theo offset (after), có long-poll; lưu nextOffset để tiếp tục sau khi restart
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductChangeFeedService {
+
+    private static final String TYPE_SEPARATOR = ",";
+    private static final int MAX_READ_LIMIT = 1000;
+    private static final long MAX_WAIT_MS = 25_000;
+
+    private final ProductChangeEventRepository eventRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    /** Long-poll chờ trên monitor này, relay notifyAll sau khi công bố */
+    private final Object published = new Object();
+    private final ExecutorService relayExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean relayQueued = new AtomicBoolean();
+
+    @Value("${product.change-feed.relay-batch-size:500}")
+    private int relayBatchSize;
+
+    @Value("${product.change-feed.retention:P7D}")
+    private Duration retention;
+
+    /**
+     * Ghi event vào outbox trong transaction hiện tại
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(Long productId, Set<ProductChangeEvent.ChangeType> types) {
+        if (types.isEmpty()) {
+            return;
+        }
+        ProductChangeEvent event = new ProductChangeEvent();
+        event.setProductId(productId);
+        event.setChangeTypes(joinTypes(types));
+        event.setCreatedAt(LocalDateTime.now());
+        eventRepository.save(event);
+        relayAfterCommit();
+    }
+
+    /**
+     * ✅ Đọc các thay đổi sau offset "after".
+     * Không có gì mới và waitMs > 0 → chờ tối đa waitMs (≤ 25s) đến khi relay công bố event mới.
+     */
+    public ProductChangeFeedDTO read(long after, int limit, long waitMs) {
+        int size = Math.min(Math.max(limit, 1), MAX_READ_LIMIT);
+        long deadline = System.currentTimeMillis() + Math.min(Math.max(waitMs, 0), MAX_WAIT_MS);
+
+        List<ProductChangeEvent> events = eventRepository.findPublishedAfter(after, PageRequest.of(0, size));
+        while (events.isEmpty() && System.currentTimeMillis() < deadline) {
+            synchronized (published) {
+                try {
+                    published.wait(Math.max(deadline - System.currentTimeMillis(), 1));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            events = eventRepository.findPublishedAfter(after, PageRequest.of(0, size));
+        }
+
+        List<ProductChangeDTO> changes = new ArrayList<>(events.size());
+        for (ProductChangeEvent event : events) {
+            changes.add(new ProductChangeDTO(
+                    event.getFeedOffset(),
+                    event.getProductId(),
+                    Arrays.asList(event.getChangeTypes().split(TYPE_SEPARATOR)),
+                    event.getCreatedAt()));
+        }
+        long nextOffset = events.isEmpty() ? after : events.get(events.size() - 1).getFeedOffset();
+        return new ProductChangeFeedDTO(changes, nextOffset, isGap(after, events));
+    }
+
+    /**
+     * Event ngay sau "after" đã bị purge → consumer đã lỡ thay đổi
+     */
+    private boolean isGap(long after, List<ProductChangeEvent> events) {
+        if (after <= 0) {
+            return false;
+        }
+        if (!events.isEmpty()) {
+            // Offset được gán liên tục (nén xảy ra trước khi gán) → hở offset chỉ có thể do purge
+            return events.get(0).getFeedOffset() > after + 1;
+        }
+        // Consumer đứng sau offset lớn nhất hiện có (VD: DB được dựng lại)
+        return eventRepository.findMaxFeedOffset() < after;
+    }
+
+    /**
+     * ✅ Relay: công bố event đã commit. Chạy định kỳ và ngay sau mỗi transaction ghi event.
+     */
+    @Scheduled(fixedDelayString = "${product.change-feed.relay-interval-ms:1000}")
+    public synchronized void relay() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRES_NEW);
+        Integer count;
+        int total = 0;
+        do {
+            count = tx.execute(status -> publishBatch());
+            total += count != null ? count : 0;
+        } while (count != null && count >= relayBatchSize);
+
+        if (total > 0) {
+            synchronized (published) {
+                published.notifyAll();
+            }
+        }
+    }
+
+    private int publishBatch() {
+        List<ProductChangeEvent> pending = eventRepository.findUnpublishedForUpdate(PageRequest.of(0, relayBatchSize));
+        if (pending.isEmpty()) {
+            return 0;
+        }
+
+        // Nén: giữ event cuối của mỗi product, gộp change types, xoá các event còn lại
+        Map<Long, ProductChangeEvent> latest = new LinkedHashMap<>();
+        Map<Long, EnumSet<ProductChangeEvent.ChangeType>> typesByProduct = new HashMap<>();
+        List<ProductChangeEvent> superseded = new ArrayList<>();
+        for (ProductChangeEvent event : pending) {
+            ProductChangeEvent previous = latest.remove(event.getProductId());
+            if (previous != null) {
+                superseded.add(previous);
+            }
+            latest.put(event.getProductId(), event);
+            typesByProduct.computeIfAbsent(event.getProductId(), id -> EnumSet.noneOf(ProductChangeEvent.ChangeType.class))
+                    .addAll(parseTypes(event.getChangeTypes()));
+        }
+
+        long offset = eventRepository.findMaxFeedOffset();
+        LocalDateTime now = LocalDateTime.now();
+        for (ProductChangeEvent event : latest.values()) {
+            event.setFeedOffset(++offset);
+            event.setChangeTypes(joinTypes(compact(typesByProduct.get(event.getProductId()))));
+            event.setPublishedAt(now);
+        }
+        eventRepository.deleteAll(superseded);
+        return pending.size();
+    }
+
+    @Scheduled(cron = "${product.change-feed.purge-cron:0 0 4 * * *}")
+    @Transactional
+    public void purgeExpired() {
+        int deleted = eventRepository.deletePublishedBefore(
+                LocalDateTime.now().minus(retention), eventRepository.findMaxFeedOffset());
+        if (deleted > 0) {
+            log.info("🧹 Purged {} product change events", deleted);
+        }
+    }
+
+    /**
+     * Nhờ relay chạy ngay trên thread riêng (không kéo dài request ghi); nhiều commit liên tiếp gộp thành 1 lượt
+     */
+    private void relayAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    if (relayQueued.compareAndSet(false, true)) {
+                        relayExecutor.execute(() -> {
+                            relayQueued.set(false);
+                            try {
+                                relay();
+                            } catch (RuntimeException e) {
+                                log.warn("⚠️ Change feed relay failed, scheduled relay will retry", e);
+                            }
+                        });
+                    }
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    public void shutdownRelay() {
+        relayExecutor.shutdown();
+    }
+
+    /**
+     * DELETED thay thế mọi loại khác; CREATED rồi sửa trong cùng lượt vẫn là CREATED
+     */
+    private static Set<ProductChangeEvent.ChangeType> compact(EnumSet<ProductChangeEvent.ChangeType> types) {
+        if (types.contains(ProductChangeEvent.ChangeType.DELETED)) {
+            return EnumSet.of(ProductChangeEvent.ChangeType.DELETED);
+        }
+        if (types.contains(ProductChangeEvent.ChangeType.CREATED)) {
+            return EnumSet.of(ProductChangeEvent.ChangeType.CREATED);
+        }
+        return types;
+    }
+
+    private static String joinTypes(Set<ProductChangeEvent.ChangeType> types) {
+        StringJoiner joiner = new StringJoiner(TYPE_SEPARATOR);
+        EnumSet.copyOf(types).forEach(type -> joiner.add(type.name()));
+        return joiner.toString();
+    }
+
+    private static Set<ProductChangeEvent.ChangeType> parseTypes(String value) {
+        Set<ProductChangeEvent.ChangeType> types = EnumSet.noneOf(ProductChangeEvent.ChangeType.class);
+        for (String type : value.split(TYPE_SEPARATOR)) {
+            types.add(ProductChangeEvent.ChangeType.valueOf(type));
+        }
+        return types;
+    }
+}
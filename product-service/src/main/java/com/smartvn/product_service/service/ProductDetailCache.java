@@ -0,0 +1,68 @@
+package com.smartvn.product_service.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.smartvn.product_service.dto.ProductDetailDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Cache read-through cho ProductDetailDTO theo productId.
+ * - Giới hạn theo số phần tử + TTL
+ * - Metrics hit/miss/eviction qua Micrometer (cache.gets, cache.evictions... với tag cache=product-detail)
+ * - Bị xoá chính xác theo productId từ ProductListingSummaryService.refresh(),
+ *   nơi mọi write path của product / inventory / image / review đều đi qua
+ */
+@Component
+@Slf4j
+public class ProductDetailCache {
+
+    private static final String CACHE_NAME = "product-detail";
+
+    private final Cache<Long, ProductDetailDTO> cache;
+
+    public ProductDetailCache(
+            MeterRegistry meterRegistry,
+            @Value("${product.detail-cache.max-size:10000}") long maxSize,
+            @Value("${product.detail-cache.ttl:PT10M}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Lấy từ cache, nếu chưa có thì load bằng loader.
+     *
+     * @return Bản copy — caller có thể sửa (VD: gắn similarProducts) mà không ảnh hưởng cache.
+     */
+    public ProductDetailDTO get(Long productId, Function<Long, ProductDetailDTO> loader) {
+        return cache.get(productId, loader).copy();
+    }
+
+    /**
+     * Xoá ngay và xoá lần nữa sau khi transaction commit
+     * (tránh trường hợp request đọc song song nạp lại dữ liệu cũ trước khi commit).
+     */
+    public void invalidateAfterCommit(Long productId) {
+        cache.invalidate(productId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(productId);
+                }
+            });
+        }
+    }
+}
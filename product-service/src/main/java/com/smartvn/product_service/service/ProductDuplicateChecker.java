@@ -0,0 +1,89 @@
+package com.smartvn.product_service.service;
+
+import com.smartvn.product_service.model.Product;
+import com.smartvn.product_service.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+
+/**
+ * Kiểm tra trùng product theo key chuẩn hoá (title, brand) — xem Product.dedupKeyOf.
+ * Dựa trên cột dedup_key có unique index nên mỗi lần check chỉ là 1 index lookup.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductDuplicateChecker {
+
+    // Giới hạn số phần tử trong mệnh đề IN
+    private static final int IN_CLAUSE_CHUNK = 1000;
+
+    private final ProductRepository productRepository;
+
+    public boolean exists(String title, String brand) {
+        String key = Product.dedupKeyOf(title, brand);
+        return key != null && productRepository.existsByDedupKey(key);
+    }
+
+    /**
+     * Có product KHÁC (ngoài productId) trùng (title, brand) không — dùng khi update
+     */
+    public boolean existsOther(Long productId, String title, String brand) {
+        String key = Product.dedupKeyOf(title, brand);
+        return key != null && productRepository.existsByDedupKeyAndIdNot(key, productId);
+    }
+
+    /**
+     * Lấy các key đã tồn tại trong DB cho cả batch.
+     *
+     * @param keys Key của các product trong request (có thể trùng, có thể null).
+     * @return HashSet các key đã có trong DB.
+     */
+    public Set<String> findExistingKeys(Collection<String> keys) {
+        List<String> distinctKeys = keys.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+
+        Set<String> existing = new HashSet<>();
+        for (int from = 0; from < distinctKeys.size(); from += IN_CLAUSE_CHUNK) {
+            List<String> chunk = distinctKeys.subList(from, Math.min(from + IN_CLAUSE_CHUNK, distinctKeys.size()));
+            existing.addAll(productRepository.findExistingDedupKeys(chunk));
+        }
+        return existing;
+    }
+
+    /**
+     * ✅ Điền dedup_key cho product cũ (trước khi có cột này).
+     * Nếu dữ liệu cũ đã trùng thì chỉ product đầu tiên được gán key, các product sau giữ null và được log ra.
+     * Key null an toàn khi update vì key chỉ được tính lại khi title/brand đổi (Product.rename).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillMissingKeys() {
+        List<Object[]> rows = productRepository.findMissingDedupKeys();
+        if (rows.isEmpty()) {
+            return;
+        }
+        log.info("🔄 Backfilling dedup key for {} products", rows.size());
+
+        Set<String> assigned = findExistingKeys(rows.stream()
+                .map(row -> Product.dedupKeyOf((String) row[1], (String) row[2]))
+                .toList());
+
+        for (Object[] row : rows) {
+            Long id = (Long) row[0];
+            String key = Product.dedupKeyOf((String) row[1], (String) row[2]);
+            if (key == null || !assigned.add(key)) {
+                log.warn("⚠️ Product {} duplicates an existing (title, brand), dedup key left empty", id);
+                continue;
+            }
+            productRepository.updateDedupKey(id, key);
+        }
+    }
+}
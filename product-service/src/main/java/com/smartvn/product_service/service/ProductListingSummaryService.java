@@ -0,0 +1,328 @@
+package com.smartvn.product_service.service;
+
+import com.smartvn.product_service.dto.ProductListingDTO;
+import com.smartvn.product_service.model.Image;
+import com.smartvn.product_service.model.Inventory;
+import com.smartvn.product_service.model.Product;
+import com.smartvn.product_service.model.ProductChangeEvent;
+import com.smartvn.product_service.model.ProductListingSummary;
+import com.smartvn.product_service.repository.ImageRepository;
+import com.smartvn.product_service.repository.InventoryRepository;
+import com.smartvn.product_service.repository.ProductListingSummaryRepository;
+import com.smartvn.product_service.repository.ProductRepository;
+import com.smartvn.product_service.search.ProductFacetIndex;
+import com.smartvn.product_service.search.ProductSearchIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Duy trì bảng product_listing_summary (và xoá cache ProductDetailDTO tương ứng),
+ * đồng thời ghi change feed (outbox) khi giá / kho / trạng thái / thông tin hiển thị thay đổi
+ * và cập nhật watchlist sắp hết hàng (LowStockWatchlistService).
+ * Được gọi từ các write path của ProductService, InventoryService, ImageService và ReviewService
+ * trong cùng transaction để summary luôn khớp với dữ liệu gốc.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductListingSummaryService {
+
+    private static final String BADGE_SEPARATOR = ",";
+
+    private final ProductListingSummaryRepository summaryRepository;
+    private final ProductRepository productRepository;
+    private final InventoryRepository inventoryRepository;
+    private final ImageRepository imageRepository;
+    private final ProductSearchIndex searchIndex;
+    private final ProductFacetIndex facetIndex;
+    private final ProductDetailCache detailCache;
+    private final ProductChangeFeedService changeFeed;
+    private final LowStockWatchlistService lowStockWatchlist;
+
+    /**
+     * Tính lại summary của một product từ Product + Inventory + Image.
+     *
+     * @param productId ID của sản phẩm.
+     */
+    @Transactional
+    public void refresh(Long productId) {
+        detailCache.invalidateAfterCommit(productId);
+
+        // Query inventory trước để Hibernate flush các thay đổi đang chờ
+        List<Inventory> inventories = inventoryRepository.findAllByProductId(productId);
+        Product product = productRepository.findById(productId).orElse(null);
+        if (product == null) {
+            summaryRepository.deleteById(productId);
+            searchIndex.removeAfterCommit(productId);
+            facetIndex.removeAfterCommit(productId);
+            lowStockWatchlist.remove(productId);
+            changeFeed.record(productId, EnumSet.of(ProductChangeEvent.ChangeType.DELETED));
+            return;
+        }
+
+        ProductListingSummary summary = summaryRepository.findById(productId)
+                .orElseGet(ProductListingSummary::new);
+        String thumbnailUrl = imageRepository.findFirstByProductIdOrderByIdAsc(productId)
+                .map(Image::getDownloadUrl)
+                .orElse(null);
+        ChangeSnapshot before = ChangeSnapshot.of(summary);
+        applyProduct(summary, product, inventories, thumbnailUrl);
+        Set<ProductChangeEvent.ChangeType> changes = before.diff(summary);
+        if (!lowStockWatchlist.sync(Map.of(productId, inventories)).isEmpty()) {
+            changes.add(ProductChangeEvent.ChangeType.STOCK_ALERT);
+        }
+        changeFeed.record(productId, changes);
+
+        summaryRepository.save(summary);
+        searchIndex.indexAfterCommit(
+                summary,
+                product.getDescription(),
+                product.getCategory() != null ? product.getCategory().getName() : null);
+        facetIndex.indexAfterCommit(summary, product);
+    }
+
+    /**
+     * ✅ Tính lại summary cho nhiều product với số query cố định (dùng cho bulk import).
+     * Product + inventories + category: 1 query, images: 1 query, summary cũ: 1 query.
+     *
+     * @param productIds ID các sản phẩm.
+     */
+    @Transactional
+    public void refreshAll(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        productIds.forEach(detailCache::invalidateAfterCommit);
+
+        Map<Long, String> thumbnailByProduct = new HashMap<>();
+        for (Image image : imageRepository.findAllByProductIdInOrderByIdAsc(productIds)) {
+            thumbnailByProduct.putIfAbsent(image.getProduct().getId(), image.getDownloadUrl());
+        }
+
+        Map<Long, ProductListingSummary> existing = new HashMap<>();
+        for (ProductListingSummary summary : summaryRepository.findAllById(productIds)) {
+            existing.put(summary.getProductId(), summary);
+        }
+
+        List<Product> products = productRepository.findAllWithInventoriesByIdIn(productIds);
+        Map<Long, List<Inventory>> inventoriesByProduct = new HashMap<>();
+        for (Product product : products) {
+            inventoriesByProduct.put(product.getId(), product.getInventories());
+        }
+        Set<Long> stockAlerts = lowStockWatchlist.sync(inventoriesByProduct);
+
+        List<ProductListingSummary> toSave = new ArrayList<>();
+        for (Product product : products) {
+            ProductListingSummary summary = existing.getOrDefault(product.getId(), new ProductListingSummary());
+            ChangeSnapshot before = ChangeSnapshot.of(summary);
+            applyProduct(summary, product, product.getInventories(), thumbnailByProduct.get(product.getId()));
+            Set<ProductChangeEvent.ChangeType> changes = before.diff(summary);
+            if (stockAlerts.contains(product.getId())) {
+                changes.add(ProductChangeEvent.ChangeType.STOCK_ALERT);
+            }
+            changeFeed.record(product.getId(), changes);
+            toSave.add(summary);
+            searchIndex.indexAfterCommit(
+                    summary,
+                    product.getDescription(),
+                    product.getCategory() != null ? product.getCategory().getName() : null);
+            facetIndex.indexAfterCommit(summary, product);
+        }
+        summaryRepository.saveAll(toSave);
+    }
+
+    private void applyProduct(ProductListingSummary summary,
+                              Product product,
+                              List<Inventory> inventories,
+                              String thumbnailUrl) {
+        summary.setProductId(product.getId());
+        summary.setTitle(product.getTitle());
+        summary.setBrand(product.getBrand());
+        summary.setCategoryId(product.getCategory() != null ? product.getCategory().getId() : null);
+        summary.setIsActive(product.getIsActive());
+        summary.setAverageRating(product.getAverageRating());
+        summary.setNumRatings(product.getNumRatings());
+        summary.setQuantitySold(product.getQuantitySold());
+        summary.setCreatedAt(product.getCreatedAt());
+        summary.setThumbnailUrl(thumbnailUrl);
+
+        applyInventoryStats(summary, inventories);
+        // Product đang managed trong transaction hiện tại → dirty checking chỉ ghi khi khoảng giá đổi
+        product.applyInventoryPrices(summary.getMinDiscountedPrice(), summary.getMaxDiscountedPrice());
+        summary.setBadges(String.join(BADGE_SEPARATOR, computeBadges(summary)));
+        summary.setRefreshedAt(LocalDateTime.now());
+    }
+
+    /**
+     * ✅ Backfill summary cho các product chưa có (dữ liệu cũ trước khi có bảng này)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @Transactional
+    public void backfillMissingSummaries() {
+        List<Long> missingIds = summaryRepository.findProductIdsWithoutSummary();
+        if (missingIds.isEmpty()) {
+            return;
+        }
+        log.info("🔄 Backfilling listing summary for {} products", missingIds.size());
+        missingIds.forEach(this::refresh);
+    }
+
+    /**
+     * ✅ Điền min/max giá sau giảm trên bảng products cho dữ liệu cũ
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @Transactional
+    public void backfillInventoryPrices() {
+        int updated = productRepository.backfillInventoryPrices();
+        if (updated > 0) {
+            log.info("🔄 Backfilled price range for {} products", updated);
+        }
+    }
+
+    public ProductListingDTO toListingDTO(ProductListingSummary summary) {
+        ProductListingDTO dto = new ProductListingDTO();
+        dto.setId(summary.getProductId());
+        dto.setTitle(summary.getTitle());
+        dto.setBrand(summary.getBrand());
+        dto.setThumbnailUrl(summary.getThumbnailUrl());
+        dto.setPriceRange(summary.getPriceRange());
+        dto.setDiscountedPriceRange(summary.getDiscountedPriceRange());
+        dto.setHasDiscount(Boolean.TRUE.equals(summary.getHasDiscount()));
+        dto.setInStock(summary.getTotalStock() != null && summary.getTotalStock() > 0);
+        dto.setVariantCount(summary.getVariantCount());
+        dto.setAverageRating(summary.getAverageRating());
+        dto.setNumRatings(summary.getNumRatings());
+        dto.setQuantitySold(summary.getQuantitySold());
+        dto.setBadges(summary.getBadges() == null || summary.getBadges().isEmpty()
+                ? Collections.emptyList()
+                : Arrays.asList(summary.getBadges().split(BADGE_SEPARATOR)));
+        return dto;
+    }
+
+    /**
+     * Tính min/max giá, tổng kho, số variant trong MỘT vòng lặp
+     */
+    private void applyInventoryStats(ProductListingSummary summary, List<Inventory> inventories) {
+        if (inventories.isEmpty()) {
+            summary.setMinPrice(null);
+            summary.setMaxPrice(null);
+            summary.setMinDiscountedPrice(null);
+            summary.setMaxDiscountedPrice(null);
+            summary.setPriceRange("N/A");
+            summary.setDiscountedPriceRange("N/A");
+            summary.setHasDiscount(false);
+            summary.setTotalStock(0);
+            summary.setVariantCount(0);
+            summary.setVariantPriceHash(0);
+            return;
+        }
+
+        BigDecimal minPrice = null, maxPrice = null, minDiscounted = null, maxDiscounted = null;
+        int totalStock = 0;
+        int variantPriceHash = 0;
+        boolean hasDiscount = false;
+
+        for (Inventory inv : inventories) {
+            BigDecimal price = inv.getPrice();
+            BigDecimal discounted = inv.getDiscountedPrice() != null ? inv.getDiscountedPrice() : price;
+
+            if (minPrice == null || price.compareTo(minPrice) < 0) minPrice = price;
+            if (maxPrice == null || price.compareTo(maxPrice) > 0) maxPrice = price;
+            if (minDiscounted == null || discounted.compareTo(minDiscounted) < 0) minDiscounted = discounted;
+            if (maxDiscounted == null || discounted.compareTo(maxDiscounted) > 0) maxDiscounted = discounted;
+
+            totalStock += inv.getAvailableQuantity();
+            // Cộng dồn → không phụ thuộc thứ tự variant; stripTrailingZeros để 100 và 100.00 cùng hash
+            variantPriceHash += Objects.hash(inv.getSize(), price.stripTrailingZeros(), discounted.stripTrailingZeros());
+            if (inv.getDiscountPercent() != null && inv.getDiscountPercent() > 0) {
+                hasDiscount = true;
+            }
+        }
+
+        summary.setMinPrice(minPrice);
+        summary.setMaxPrice(maxPrice);
+        summary.setMinDiscountedPrice(minDiscounted);
+        summary.setMaxDiscountedPrice(maxDiscounted);
+        summary.setPriceRange(formatPriceRange(minPrice, maxPrice));
+        summary.setDiscountedPriceRange(formatPriceRange(minDiscounted, maxDiscounted));
+        summary.setHasDiscount(hasDiscount);
+        summary.setTotalStock(totalStock);
+        summary.setVariantCount(inventories.size());
+        summary.setVariantPriceHash(variantPriceHash);
+    }
+
+    /**
+     * Các cột của summary mà consumer của change feed quan tâm, chụp lại trước khi tính lại
+     */
+    private record ChangeSnapshot(boolean isNew, Boolean isActive, Integer totalStock, Integer variantPriceHash,
+                                  String title, String brand, Long categoryId, String thumbnailUrl) {
+
+        static ChangeSnapshot of(ProductListingSummary summary) {
+            return new ChangeSnapshot(summary.getProductId() == null, summary.getIsActive(),
+                    summary.getTotalStock(), summary.getVariantPriceHash(),
+                    summary.getTitle(), summary.getBrand(), summary.getCategoryId(), summary.getThumbnailUrl());
+        }
+
+        Set<ProductChangeEvent.ChangeType> diff(ProductListingSummary after) {
+            if (isNew) {
+                return EnumSet.of(ProductChangeEvent.ChangeType.CREATED);
+            }
+            Set<ProductChangeEvent.ChangeType> types = EnumSet.noneOf(ProductChangeEvent.ChangeType.class);
+            if (!Objects.equals(isActive, after.getIsActive())) {
+                types.add(ProductChangeEvent.ChangeType.STATUS);
+            }
+            if (!Objects.equals(totalStock, after.getTotalStock())) {
+                types.add(ProductChangeEvent.ChangeType.STOCK);
+            }
+            if (!Objects.equals(variantPriceHash, after.getVariantPriceHash())) {
+                types.add(ProductChangeEvent.ChangeType.PRICE);
+            }
+            if (!Objects.equals(title, after.getTitle())
+                    || !Objects.equals(brand, after.getBrand())
+                    || !Objects.equals(categoryId, after.getCategoryId())
+                    || !Objects.equals(thumbnailUrl, after.getThumbnailUrl())) {
+                types.add(ProductChangeEvent.ChangeType.DETAILS);
+            }
+            return types;
+        }
+    }
+
+    private List<String> computeBadges(ProductListingSummary summary) {
+        List<String> badges = new ArrayList<>();
+        if (summary.getVariantCount() == 0) {
+            return badges;
+        }
+        if (summary.getQuantitySold() != null && summary.getQuantitySold() > 50) {
+            badges.add("Bán chạy");
+        }
+        if (Boolean.TRUE.equals(summary.getHasDiscount())) {
+            badges.add("Giảm giá");
+        }
+        if (summary.getAverageRating() != null && summary.getAverageRating() >= 4.5) {
+            badges.add("Đánh giá cao");
+        }
+        return badges;
+    }
+
+    private String formatPriceRange(BigDecimal min, BigDecimal max) {
+        if (min == null || max == null) {
+            return "";
+        }
+        if (min.compareTo(max) == 0) {
+            return String.format("%,.0fđ", min);
+        }
+        return String.format("%,.0fđ - %,.0fđ", min, max);
+    }
+}
@@ -1,24 +1,37 @@
 package com.smartvn.product_service.service;
 
 import com.smartvn.product_service.client.OrderServiceClient;
+import com.smartvn.product_service.dto.BatchOperationResultDTO;
+import com.smartvn.product_service.dto.InventoryBatchOperationRequest;
 import com.smartvn.product_service.dto.InventoryCheckRequest;
+import com.smartvn.product_service.dto.ProductDTO;
 import com.smartvn.product_service.dto.ProductDetailDTO;
+import com.smartvn.product_service.dto.ProductFacetsDTO;
 import com.smartvn.product_service.dto.ProductListingDTO;
 import com.smartvn.product_service.dto.admin.CreateProductRequest;
 import com.smartvn.product_service.dto.admin.UpdateProductRequest;
 import com.smartvn.product_service.exceptions.AppException;
+import com.smartvn.product_service.dto.response.CursorSlice;
 import com.smartvn.product_service.model.*;
+import com.smartvn.product_service.pagination.KeysetCursor;
+import com.smartvn.product_service.pagination.KeysetQueryExecutor;
+import com.smartvn.product_service.pagination.ProductSortKey;
 import com.smartvn.product_service.repository.CategoryRepository;
 import com.smartvn.product_service.repository.ImageRepository;
 import com.smartvn.product_service.repository.InventoryRepository;
+import com.smartvn.product_service.repository.ProductListingSummaryRepository;
 import com.smartvn.product_service.repository.ProductRepository;
+import com.smartvn.product_service.search.ProductFacetIndex;
+import com.smartvn.product_service.search.ProductSearchIndex;
 import com.smartvn.product_service.specification.ProductSpecification;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
@@ -36,12 +49,27 @@ import java.util.stream.Collectors;
 @Transactional(readOnly = true)
 public class ProductService {
 
+    private static final int MAX_SCROLL_SIZE = 100;
+    private static final int MAX_BATCH_IDS = 200;
+
     private final ProductRepository productRepository;
     private final InventoryService inventoryService;
     private final CategoryRepository categoryRepository;
     private final InventoryRepository inventoryRepository;
     private final ImageRepository imageRepository;
     private final OrderServiceClient orderServiceClient;
+    private final ProductListingSummaryRepository listingSummaryRepository;
+    private final ProductListingSummaryService listingSummaryService;
+    private final ProductSearchIndex searchIndex;
+    private final CategoryService categoryService;
+    private final CategoryTreeService categoryTreeService;
+    private final KeysetQueryExecutor keysetQueryExecutor;
+    private final ProductDuplicateChecker duplicateChecker;
+    private final ProductFacetIndex facetIndex;
+    private final ProductDetailCache productDetailCache;
+    private final FlashSaleStockService flashSaleStock;
+    private final AppliedOperationLog appliedOperationLog;
+    private final QuantitySoldAccumulator quantitySoldAccumulator;
 
     /**
      * Tìm kiếm sản phẩm với khả năng lọc theo tên category (level 1 hoặc level 2)
@@ -69,18 +97,164 @@ public class ProductService {
             return Page.empty(pageable);
         }
 
-        // 3. ✅ SỬ DỤNG SPECIFICATION để query (bao gồm cả price filter)
-        Specification<Product> spec = ProductSpecification.searchProducts(
+        // 3. ✅ Có keyword → xếp hạng bằng search index (BM25, không dấu), chỉ load đúng trang từ DB
+        if (keyword != null && !keyword.trim().isEmpty() && searchIndex.isReady()) {
+            List<Long> rankedIds = searchIndex.search(
+                    keyword,
+                    categoryIds.isEmpty() ? null : categoryIds,
+                    minPrice,
+                    maxPrice,
+                    pageable.getSort()
+            );
+            return loadRankedPage(rankedIds, pageable);
+        }
+
+        // 4. ✅ Query trên bảng summary (đã tính sẵn giá, kho, thumbnail, badges)
+        Specification<ProductListingSummary> spec = ProductSpecification.searchListings(
+                keyword,
+                categoryIds.isEmpty() ? null : categoryIds,
+                minPrice,
+                maxPrice
+        );
+
+        Page<ProductListingSummary> summaryPage = listingSummaryRepository.findAll(spec, pageable);
+
+        // 5. ✅ Map thẳng sang DTO, không chạm tới inventories/images
+        return summaryPage.map(listingSummaryService::toListingDTO);
+    }
+
+    /**
+     * ✅ Đếm facet (brand, category cấp 2, khoảng giá, RAM/ROM, màn hình, còn hàng) cho cùng bộ lọc
+     * với searchProducts, tính một lượt trên index trong bộ nhớ, không query DB.
+     *
+     * @return null nếu index chưa sẵn sàng.
+     */
+    public ProductFacetsDTO computeFacets(
+            String keyword,
+            String topLevelCategory,
+            String secondLevelCategory,
+            BigDecimal minPrice,
+            BigDecimal maxPrice
+    ) {
+        if (!facetIndex.isReady()) {
+            return null;
+        }
+
+        List<Long> categoryIds = resolveCategoryIds(topLevelCategory, secondLevelCategory);
+        boolean hasCategoryFilter = (topLevelCategory != null && !topLevelCategory.trim().isEmpty())
+                || (secondLevelCategory != null && !secondLevelCategory.trim().isEmpty());
+        if (hasCategoryFilter && categoryIds.isEmpty()) {
+            return new ProductFacetsDTO();
+        }
+
+        if (keyword != null && !keyword.trim().isEmpty()) {
+            if (!searchIndex.isReady()) {
+                return null;
+            }
+            List<Long> matchedIds = searchIndex.search(
+                    keyword,
+                    categoryIds.isEmpty() ? null : categoryIds,
+                    minPrice,
+                    maxPrice,
+                    Sort.unsorted()
+            );
+            return facetIndex.facetsFor(matchedIds);
+        }
+
+        return facetIndex.facetsFor(categoryIds, minPrice, maxPrice);
+    }
+
+    /**
+     * ✅ Phân trang cursor (keyset) cho danh sách sản phẩm: không OFFSET, không COUNT.
+     *
+     * @param sortBy    createdAt | quantitySold | averageRating | price (bị bỏ qua nếu có cursor)
+     * @param direction asc | desc (bị bỏ qua nếu có cursor)
+     * @param cursor    nextCursor của lát trước, null cho lát đầu tiên
+     */
+    public CursorSlice<ProductListingDTO> scrollProducts(
+            String keyword,
+            String topLevelCategory,
+            String secondLevelCategory,
+            BigDecimal minPrice,
+            BigDecimal maxPrice,
+            String sortBy,
+            String direction,
+            String cursor,
+            int size
+    ) {
+        KeysetCursor after = cursor != null && !cursor.isBlank() ? KeysetCursor.decode(cursor) : null;
+        ProductSortKey sortKey = after != null ? after.getSortKey() : ProductSortKey.fromParam(sortBy);
+        Sort.Direction sortDirection = after != null ? after.getDirection() : parseDirection(direction);
+        int limit = Math.max(1, Math.min(size, MAX_SCROLL_SIZE));
+
+        List<Long> categoryIds = resolveCategoryIds(topLevelCategory, secondLevelCategory);
+        boolean hasCategoryFilter = (topLevelCategory != null && !topLevelCategory.trim().isEmpty())
+                || (secondLevelCategory != null && !secondLevelCategory.trim().isEmpty());
+        if (hasCategoryFilter && categoryIds.isEmpty()) {
+            return new CursorSlice<>(Collections.emptyList(), limit, false, null,
+                    sortKey.getParamName(), sortDirection.name().toLowerCase());
+        }
+
+        Specification<ProductListingSummary> spec = ProductSpecification.searchListings(
                 keyword,
                 categoryIds.isEmpty() ? null : categoryIds,
                 minPrice,
                 maxPrice
         );
 
-        Page<Product> productPage = productRepository.findAll(spec, pageable);
+        // Lấy dư 1 dòng để biết còn lát sau hay không
+        List<ProductListingSummary> rows = keysetQueryExecutor.fetch(
+                ProductListingSummary.class, spec,
+                sortKey.getListingAttribute(), "productId",
+                sortDirection, after, limit + 1);
+
+        boolean hasNext = rows.size() > limit;
+        List<ProductListingSummary> content = hasNext ? rows.subList(0, limit) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            ProductListingSummary last = content.get(content.size() - 1);
+            nextCursor = new KeysetCursor(sortKey, sortDirection,
+                    sortKey.getListingValue().apply(last), last.getProductId()).encode();
+        }
+
+        return new CursorSlice<>(
+                content.stream().map(listingSummaryService::toListingDTO).collect(Collectors.toList()),
+                limit, hasNext, nextCursor,
+                sortKey.getParamName(), sortDirection.name().toLowerCase());
+    }
+
+    private Sort.Direction parseDirection(String direction) {
+        if (direction == null || direction.isBlank()) {
+            return Sort.Direction.DESC;
+        }
+        return Sort.Direction.fromOptionalString(direction.trim())
+                .orElseThrow(() -> new AppException("Invalid sort direction: " + direction, HttpStatus.BAD_REQUEST));
+    }
+
+    /**
+     * Cắt trang từ danh sách ID đã xếp hạng và load summary tương ứng, giữ nguyên thứ tự
+     */
+    private Page<ProductListingDTO> loadRankedPage(List<Long> rankedIds, Pageable pageable) {
+        List<Long> pageIds = rankedIds;
+        if (pageable.isPaged()) {
+            int from = (int) Math.min(pageable.getOffset(), rankedIds.size());
+            int to = Math.min(from + pageable.getPageSize(), rankedIds.size());
+            pageIds = rankedIds.subList(from, to);
+        }
+        if (pageIds.isEmpty()) {
+            return new PageImpl<>(Collections.emptyList(), pageable, rankedIds.size());
+        }
 
-        // 4. ✅ Chỉ cần map sang DTO, không cần filter nữa
-        return productPage.map(this::toListingDTO);
+        Map<Long, ProductListingSummary> summaryById = listingSummaryRepository.findAllById(pageIds).stream()
+                .collect(Collectors.toMap(ProductListingSummary::getProductId, s -> s));
+
+        List<ProductListingDTO> content = pageIds.stream()
+                .map(summaryById::get)
+                .filter(Objects::nonNull)
+                .map(listingSummaryService::toListingDTO)
+                .collect(Collectors.toList());
+
+        return new PageImpl<>(content, pageable, rankedIds.size());
     }
     /**
      * Resolve categoryId từ tên category
@@ -90,12 +264,13 @@ public class ProductService {
      * 3. Nếu không có cả hai -> return null (không filter theo category)
      */
     private List<Long> resolveCategoryIds(String topLevelCategory, String secondLevelCategory) {
+        // ✅ Đọc từ snapshot cây category trong bộ nhớ, không query DB
+        CategoryTreeService.CategoryTree tree = categoryTreeService.current();
 
         // Case 1: Có secondLevel → chỉ lấy category cấp 2 đó
         if (secondLevelCategory != null && !secondLevelCategory.trim().isEmpty()) {
             log.debug("🔎 Looking for second level category: {}", secondLevelCategory);
-            return categoryRepository.findByName(secondLevelCategory.trim())
-                    .filter(cat -> cat.getLevel() == 2)
+            return tree.findByNameAndLevel(secondLevelCategory, 2)
                     .map(cat -> {
                         log.info("✅ Found category ID: {} ({})", cat.getId(), cat.getName());
                         return Collections.singletonList(cat.getId());
@@ -109,26 +284,18 @@ public class ProductService {
         // Case 2: Chỉ có topLevel → lấy TẤT CẢ category cấp 2 là con của nó
         if (topLevelCategory != null && !topLevelCategory.trim().isEmpty()) {
             log.debug("🔎 Looking for top level category: {}", topLevelCategory);
-            return categoryRepository.findByName(topLevelCategory.trim())
-                    .filter(cat -> cat.getLevel() == 1)
+            return tree.findByNameAndLevel(topLevelCategory, 1)
                     .map(parent -> {
-                        // ✅ BỎ KIỂM TRA EMPTY - NẾU KHÔNG CÓ CHILDREN THÌ TÌM TRONG CHÍNH PARENT
-                        List<Long> childIds = parent.getSubCategories() != null && !parent.getSubCategories().isEmpty()
-                                ? parent.getSubCategories().stream()
-                                .map(Category::getId)
-                                .collect(Collectors.toList())
-                                : Collections.emptyList();
-
                         // ✅ NẾU KHÔNG CÓ CHILDREN, DÙNG CHÍNH PARENT ID
-                        if (childIds.isEmpty()) {
+                        if (parent.getChildIds().isEmpty()) {
                             log.info("ℹ️ No sub-categories for '{}', using parent ID: {}",
                                     topLevelCategory, parent.getId());
                             return Collections.singletonList(parent.getId());
                         }
 
                         log.info("✅ Found {} sub-categories for '{}': {}",
-                                childIds.size(), topLevelCategory, childIds);
-                        return childIds;
+                                parent.getChildIds().size(), topLevelCategory, parent.getChildIds());
+                        return parent.getChildIds();
                     })
                     .orElseGet(() -> {
                         log.warn("⚠️ Top level category '{}' not found", topLevelCategory);
@@ -141,7 +308,106 @@ public class ProductService {
         return Collections.emptyList();
     }
 
+    /**
+     * ✅ Lấy nhiều product trong 1 query (bảng summary) cho các service nội bộ.
+     * Giá là giá thấp nhất trong các variant, images chỉ gồm thumbnail.
+     *
+     * @param productIds Tối đa MAX_BATCH_IDS id, giữ nguyên thứ tự; id không tồn tại bị bỏ qua.
+     */
+    public List<ProductDTO> getProductsByIds(List<Long> productIds) {
+        return findSummariesInOrder(productIds).stream()
+                .map(this::toLightweightDTO)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * ✅ Lấy ProductListingDTO cho danh sách id (recommendation, similar products) trong 1 query.
+     * Chỉ trả về product đang active, giữ nguyên thứ tự.
+     */
+    public List<ProductListingDTO> getListingsByIds(List<Long> productIds) {
+        return findSummariesInOrder(productIds).stream()
+                .filter(s -> Boolean.TRUE.equals(s.getIsActive()))
+                .map(listingSummaryService::toListingDTO)
+                .collect(Collectors.toList());
+    }
+
+    private List<ProductListingSummary> findSummariesInOrder(List<Long> productIds) {
+        if (productIds == null || productIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> distinctIds = productIds.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        if (distinctIds.size() > MAX_BATCH_IDS) {
+            throw new AppException("Too many product ids (max " + MAX_BATCH_IDS + ")", HttpStatus.BAD_REQUEST);
+        }
+
+        Map<Long, ProductListingSummary> byId = listingSummaryRepository.findAllById(distinctIds).stream()
+                .collect(Collectors.toMap(ProductListingSummary::getProductId, s -> s));
+
+        return distinctIds.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private ProductDTO toLightweightDTO(ProductListingSummary summary) {
+        ProductDTO dto = new ProductDTO();
+        dto.setId(summary.getProductId());
+        dto.setTitle(summary.getTitle());
+        dto.setBrand(summary.getBrand());
+        dto.setIsActive(summary.getIsActive());
+        dto.setPrice(summary.getMinPrice());
+        dto.setDiscountedPrice(summary.getMinDiscountedPrice());
+        dto.setImages(summary.getThumbnailUrl() != null
+                ? List.of(summary.getThumbnailUrl())
+                : Collections.emptyList());
+        dto.setTotalStock(summary.getTotalStock());
+        dto.setHasStock(summary.getTotalStock() != null && summary.getTotalStock() > 0);
+        return dto;
+    }
+
+    /**
+     * ✅ Chi tiết sản phẩm, đọc qua ProductDetailCache (bị xoá khi product/inventory/image/review thay đổi)
+     */
     public ProductDetailDTO getProductDetail(Long productId) {
+        return productDetailCache.get(productId, this::loadProductDetail);
+    }
+
+    /**
+     * ✅ Chi tiết sản phẩm với tồn kho đọc trực tiếp từ DB (1 query nhẹ) — dùng cho luồng checkout
+     * để không bao giờ dựa vào số tồn đã cache.
+     */
+    public ProductDetailDTO getProductDetailWithFreshStock(Long productId) {
+        ProductDetailDTO dto = getProductDetail(productId);
+
+        Map<Long, Integer> stockByInventory = new HashMap<>();
+        for (Object[] row : inventoryRepository.findStockByProductId(productId)) {
+            // quantity - reservedQuantity có thể âm nếu admin giảm tồn kho dưới số đang giữ
+            stockByInventory.put((Long) row[0], Math.max(((Number) row[1]).intValue(), 0));
+        }
+
+        List<ProductDetailDTO.PriceVariantDTO> variants = new ArrayList<>();
+        for (ProductDetailDTO.PriceVariantDTO variant : dto.getPriceVariants()) {
+            Integer quantity = stockByInventory.get(variant.getInventoryId());
+            if (quantity == null) {
+                continue; // variant đã bị xoá
+            }
+            // SKU flash-sale: bộ đếm trong RAM mới là số chính xác, DB trễ tối đa 1 lần flush
+            Integer hotQuantity = flashSaleStock.available(productId, variant.getSize());
+            if (hotQuantity != null) {
+                quantity = hotQuantity;
+            }
+            variant.setQuantity(quantity);
+            variant.setInStock(quantity > 0);
+            variants.add(variant);
+        }
+        dto.setPriceVariants(variants);
+        return dto;
+    }
+
+    private ProductDetailDTO loadProductDetail(Long productId) {
         log.info("Fetching detail for product ID: {}", productId);
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new ResolutionException("Product not found with id: " + productId));
@@ -184,7 +450,7 @@ public class ProductService {
                         inv.getPrice(),
                         inv.getDiscountPercent(),
                         inv.getDiscountedPrice(),
-                        inv.getQuantity(),
+                        inv.getAvailableQuantity(),
                         inv.isInStock()
                 ))
                 .collect(Collectors.toList()));
@@ -208,28 +474,38 @@ public class ProductService {
 //                .stream()
 //                .collect(Collectors.toMap(Category::getId, c -> c));
 
-        // 2. Prepare products to save
-        List<Product> productsToSave = new ArrayList<>();
+        // 1. ✅ Check trùng cho cả batch: 1 query IN + HashSet trong request
+        List<String> keys = requests.stream()
+                .map(req -> Product.dedupKeyOf(req.getTitle(), req.getBrand()))
+                .toList();
+        Set<String> existingKeys = duplicateChecker.findExistingKeys(keys);
+        Set<String> batchKeys = new HashSet<>();
+
+        // 2. Prepare products to save (giữ request song song để không phải tìm lại)
+        List<CreateProductRequest> acceptedRequests = new ArrayList<>();
 
         for (int i = 0; i < requests.size(); i++) {
             CreateProductRequest req = requests.get(i);
+            String key = keys.get(i);
 
             try {
-                Category category = resolveCategoryFromRequest(req);
-                // Validate
-                boolean exists = productRepository.findAll().stream()
-                        .anyMatch(p ->
-                                p.getTitle().equalsIgnoreCase(req.getTitle()) &&
-                                        p.getBrand().equalsIgnoreCase(req.getBrand())
-                        );
-
-                if (exists) {
+                if (key == null) {
+                    result.addFailure(i, req.getTitle(), "Title and brand are required");
+                    continue;
+                }
+                if (existingKeys.contains(key)) {
                     result.addFailure(i, req.getTitle(), "Product already exists");
                     continue;
                 }
+                if (!batchKeys.add(key)) {
+                    result.addFailure(i, req.getTitle(), "Duplicate product in request");
+                    continue;
+                }
 
+                Category category = resolveCategoryFromRequest(req);
                 Product product = buildProductFromRequest(req, category);
                 result.getSuccessProducts().add(product);
+                acceptedRequests.add(req);
 
             } catch (Exception e) {
                 result.addFailure(i, req.getTitle(), e.getMessage());
@@ -241,11 +517,13 @@ public class ProductService {
         result.getSuccessProducts().clear();
         result.getSuccessProducts().addAll(saved);
 
-        // Create inventories & images
-        for (Product product : saved) {
-            CreateProductRequest req = findRequestForProduct(requests, product);
+        // Create inventories & images (saveAll giữ nguyên thứ tự)
+        for (int i = 0; i < saved.size(); i++) {
+            Product product = saved.get(i);
+            CreateProductRequest req = acceptedRequests.get(i);
             createInventoriesForProduct(product, req.getVariants());
             createImagesForProduct(product, req.getImageUrls());
+            listingSummaryService.refresh(product.getId());
         }
 
         return result;
@@ -270,113 +548,14 @@ public class ProductService {
         }
     }
 
-    public ProductListingDTO toListingDTO(Product product) {
-        ProductListingDTO dto = new ProductListingDTO();
-        dto.setId(product.getId());
-        dto.setTitle(product.getTitle());
-        dto.setBrand(product.getBrand());
-        dto.setAverageRating(product.getAverageRating());
-        dto.setNumRatings(product.getNumRatings());
-        dto.setQuantitySold(product.getQuantitySold());
-
-        if (product.getImages() != null && !product.getImages().isEmpty()) {
-            dto.setThumbnailUrl(product.getImages().get(0).getDownloadUrl());
-        }
-
-        // Tính toán giá và tình trạng kho từ inventory
-        List<Inventory> inventories = product.getInventories();
-        if (!inventories.isEmpty()) {
-            BigDecimal minPrice = inventories.stream().map(Inventory::getPrice).min(BigDecimal::compareTo).orElse(BigDecimal.ZERO);
-            BigDecimal maxPrice = inventories.stream().map(Inventory::getPrice).max(BigDecimal::compareTo).orElse(BigDecimal.ZERO);
-            BigDecimal minDiscountedPrice = inventories.stream().map(Inventory::getDiscountedPrice).min(BigDecimal::compareTo).orElse(BigDecimal.ZERO);
-            BigDecimal maxDiscountedPrice = inventories.stream().map(Inventory::getDiscountedPrice).max(BigDecimal::compareTo).orElse(BigDecimal.ZERO);
-            int totalStock = inventories.stream().mapToInt(Inventory::getQuantity).sum();
-
-            dto.setPriceRange(formatPriceRange(minPrice, maxPrice));
-            dto.setDiscountedPriceRange(formatPriceRange(minDiscountedPrice, maxDiscountedPrice));
-            dto.setInStock(totalStock > 0);
-
-            boolean hasAnyDiscount = inventories.stream()
-                    .anyMatch(inv -> inv.getDiscountPercent() != null && inv.getDiscountPercent() > 0);
-            dto.setHasDiscount(hasAnyDiscount);
-
-            dto.setVariantCount(inventories.size());
-
-            List<String> badges = new ArrayList<>();
-            if (product.getQuantitySold() != null && product.getQuantitySold() > 50) {
-                badges.add("Bán chạy");
-            }
-            if (hasAnyDiscount) {
-                badges.add("Giảm giá");
-            }
-            if (product.getAverageRating() != null && product.getAverageRating() >= 4.5) {
-                badges.add("Đánh giá cao");
-            }
-            dto.setBadges(badges);
-        } else {
-            dto.setInStock(false);
-            dto.setPriceRange("N/A");
-            dto.setDiscountedPriceRange("N/A");
-        }
-
-        return dto;
-    }
-
-    private ProductDetailDTO mapProductToDetailDTO(Product product) {
-        ProductDetailDTO dto = new ProductDetailDTO();
-        dto.setId(product.getId());
-        dto.setTitle(product.getTitle());
-        dto.setBrand(product.getBrand());
-        dto.setDescription(product.getDescription());
-        dto.setDetailedReview(product.getDetailedReview());
-        dto.setPowerfulPerformance(product.getPowerfulPerformance());
-        dto.setColor(product.getColor());
-        dto.setWeight(product.getWeight());
-        dto.setDimension(product.getDimension());
-        dto.setBatteryType(product.getBatteryType());
-        dto.setBatteryCapacity(product.getBatteryCapacity());
-        dto.setRamCapacity(product.getRamCapacity());
-        dto.setRomCapacity(product.getRomCapacity());
-        dto.setScreenSize(product.getScreenSize());
-        dto.setConnectionPort(product.getConnectionPort());
-        if (product.getImages() != null) {
-            dto.setImageUrls(product.getImages().stream().map(Image::getDownloadUrl).collect(Collectors.toList()));
-        }
-        if (product.getCategory() != null) {
-            dto.setCategoryId(product.getCategory().getId());
-            dto.setCategoryName(product.getCategory().getName());
-        }
-        dto.setAverageRating(product.getAverageRating());
-        dto.setNumRatings(product.getNumRatings());
-        dto.setQuantitySold(product.getQuantitySold());
-        dto.setIsActive(product.getIsActive());
-        return dto;
-    }
-
-    private String formatPriceRange(BigDecimal min, BigDecimal max) {
-        if (min == null || max == null) {
-            return "";
-        }
-        if (min.compareTo(max) == 0) {
-            return String.format("%,.0fđ", min);
-        }
-        return String.format("%,.0fđ - %,.0fđ", min, max);
-    }
-
     @Transactional
     public Product createSingleProduct(CreateProductRequest request) {
         log.info("📦 Creating single product: {}", request.getTitle());
 
         Category category = resolveCategoryFromRequest(request);
 
-        // ✅ 2. CHECK DUPLICATE (case-insensitive)
-        boolean exists = productRepository.findAll().stream()
-                .anyMatch(p ->
-                        p.getTitle().equalsIgnoreCase(request.getTitle()) &&
-                                p.getBrand().equalsIgnoreCase(request.getBrand())
-                );
-
-        if (exists) {
+        // ✅ 2. CHECK DUPLICATE (case-insensitive, 1 index lookup)
+        if (duplicateChecker.exists(request.getTitle(), request.getBrand())) {
             throw new AppException(
                     "Product with same title and brand already exists",
                     HttpStatus.CONFLICT
@@ -442,6 +621,8 @@ public class ProductService {
             createImagesForProduct(savedProduct, request.getImageUrls());
         }
 
+        listingSummaryService.refresh(savedProduct.getId());
+
         return savedProduct;
     }
 
@@ -511,12 +692,19 @@ public class ProductService {
                 ));
 
         // Update basic info
-        if (request.getTitle() != null) {
-            product.setTitle(request.getTitle());
-        }
-        if (request.getBrand() != null) {
-            product.setBrand(request.getBrand());
+        String newTitle = request.getTitle() != null ? request.getTitle() : product.getTitle();
+        String newBrand = request.getBrand() != null ? request.getBrand() : product.getBrand();
+        // Chỉ kiểm tra trùng khi key đổi: product cũ trùng sẵn (key null) vẫn sửa được các field khác
+        boolean keyChanged = !Objects.equals(
+                Product.dedupKeyOf(newTitle, newBrand),
+                Product.dedupKeyOf(product.getTitle(), product.getBrand()));
+        if (keyChanged && duplicateChecker.existsOther(productId, newTitle, newBrand)) {
+            throw new AppException(
+                    "Product with same title and brand already exists",
+                    HttpStatus.CONFLICT
+            );
         }
+        product.rename(newTitle, newBrand);
         if (request.getDescription() != null) {
             product.setDescription(request.getDescription());
         }
@@ -536,6 +724,7 @@ public class ProductService {
         product.setUpdatedAt(LocalDateTime.now());
 
         Product updated = productRepository.save(product);
+        listingSummaryService.refresh(productId);
         log.info("✅ Product updated: {}", updated.getTitle());
 
         return updated;
@@ -574,6 +763,7 @@ public class ProductService {
                 .orElseThrow(() -> new AppException("Product not found", HttpStatus.NOT_FOUND));
         product.setIsActive(!product.getIsActive());
         productRepository.save(product);
+        listingSummaryService.refresh(productId);
     }
 
     @Transactional
@@ -582,6 +772,7 @@ public class ProductService {
                 .orElseThrow(() -> new AppException("Product not found", HttpStatus.NOT_FOUND));
         product.setIsActive(false);
         productRepository.save(product);
+        listingSummaryService.refresh(productId);
     }
 
     public Page<Product> searchProductsForAdmin(
@@ -590,6 +781,50 @@ public class ProductService {
             Boolean isActive,
             Pageable pageable) {
 
+        return productRepository.findAll(buildAdminSpec(search, categoryId, isActive), pageable);
+    }
+
+    /**
+     * ✅ Phân trang cursor (keyset) cho admin search, sort theo createdAt | quantitySold | averageRating | price.
+     */
+    public CursorSlice<Product> scrollProductsForAdmin(
+            String search,
+            Long categoryId,
+            Boolean isActive,
+            String sortBy,
+            String direction,
+            String cursor,
+            int size) {
+
+        KeysetCursor after = cursor != null && !cursor.isBlank() ? KeysetCursor.decode(cursor) : null;
+        ProductSortKey sortKey = after != null ? after.getSortKey() : ProductSortKey.fromParam(sortBy);
+        Sort.Direction sortDirection = after != null ? after.getDirection() : parseDirection(direction);
+        int limit = Math.max(1, Math.min(size, MAX_SCROLL_SIZE));
+
+        if (sortKey.getProductAttribute() == null) {
+            throw new AppException("Unsupported sort for admin search: " + sortKey.getParamName(),
+                    HttpStatus.BAD_REQUEST);
+        }
+
+        List<Product> rows = keysetQueryExecutor.fetch(
+                Product.class, buildAdminSpec(search, categoryId, isActive),
+                sortKey.getProductAttribute(), "id",
+                sortDirection, after, limit + 1);
+
+        boolean hasNext = rows.size() > limit;
+        List<Product> content = hasNext ? new ArrayList<>(rows.subList(0, limit)) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            Product last = content.get(content.size() - 1);
+            nextCursor = new KeysetCursor(sortKey, sortDirection,
+                    sortKey.getProductValue().apply(last), last.getId()).encode();
+        }
+
+        return new CursorSlice<>(content, limit, hasNext, nextCursor,
+                sortKey.getParamName(), sortDirection.name().toLowerCase());
+    }
+
+    private Specification<Product> buildAdminSpec(String search, Long categoryId, Boolean isActive) {
         Specification<Product> spec = Specification.where(null);
 
         if (search != null) {
@@ -622,16 +857,47 @@ public class ProductService {
                     cb.equal(root.get("isActive"), isActive));
         }
 
-        return productRepository.findAll(spec, pageable);
+        return spec;
     }
 
+    /**
+     * Số lượng đã bán được gom trong QuantitySoldAccumulator và ghi xuống DB theo lô
+     */
     @Transactional
     public void increaseQuantitySold(InventoryCheckRequest request) {
-        Product product = productRepository.findById(request.getProductId())
-                .orElseThrow(() -> new AppException("Product not found", HttpStatus.NOT_FOUND));
+        if (!productRepository.existsById(request.getProductId())) {
+            throw new AppException("Product not found", HttpStatus.NOT_FOUND);
+        }
+        quantitySoldAccumulator.addAfterCommit(
+                Map.of(request.getProductId(), request.getQuantity().longValue()));
+    }
 
-        product.setQuantitySold(product.getQuantitySold() + request.getQuantity());
-        productRepository.save(product);
+    /**
+     * ✅ Cộng số lượng đã bán cho cả đơn: gộp theo product rồi ghi bằng 1 JDBC batch, không load entity.
+     * Ghi cùng transaction với claim operationKey → đúng 1 lần: retry với cùng operationKey
+     * (VD: "order-123:sold") là no-op, rollback thì cả claim lẫn số cộng đều không còn.
+     */
+    @Transactional
+    public BatchOperationResultDTO increaseQuantitySold(InventoryBatchOperationRequest request) {
+        Map<Long, Long> soldByProduct = new HashMap<>();
+        for (InventoryCheckRequest line : Optional.ofNullable(request.getItems()).orElse(List.of())) {
+            if (line.getProductId() == null || line.getQuantity() == null || line.getQuantity() <= 0) {
+                throw new AppException("Invalid sold line: " + line, HttpStatus.BAD_REQUEST);
+            }
+            soldByProduct.merge(line.getProductId(), line.getQuantity().longValue(), Long::sum);
+        }
+        if (soldByProduct.isEmpty()) {
+            throw new AppException("Items are required", HttpStatus.BAD_REQUEST);
+        }
+        if (!appliedOperationLog.claim(request.getOperationKey())) {
+            return new BatchOperationResultDTO(request.getOperationKey(), false, soldByProduct.size());
+        }
+
+        // Không gom trong RAM như đường không có key: claim đã commit thì số cộng cũng phải đã commit
+        quantitySoldAccumulator.applyInCurrentTransaction(soldByProduct);
+
+        log.info("📈 Increased quantity sold for {} products ({})", soldByProduct.size(), request.getOperationKey());
+        return new BatchOperationResultDTO(request.getOperationKey(), true, soldByProduct.size());
     }
 
     public Product findById(Long id) {
@@ -642,18 +908,6 @@ public class ProductService {
                 ));
     }
 
-    private CreateProductRequest findRequestForProduct(
-            List<CreateProductRequest> requests,
-            Product product) {
-
-        return requests.stream()
-                .filter(req -> req.getTitle().equals(product.getTitle())
-                        && req.getBrand().equals(product.getBrand()))
-                .findFirst()
-                .orElse(null);
-    }
-
-
     private Product buildProductFromRequest(
             CreateProductRequest req,
             Category category) {
@@ -695,48 +949,9 @@ public class ProductService {
     }
 
     private Category getOrCreateCategoryIgnoreCase(String topLevelName, String secondLevelName) {
-        // ✅ THÊM synchronized hoặc dùng findOrCreate atomic
-        Category parentCategory;
-
-        synchronized (this) {  // Simple lock
-            parentCategory = categoryRepository
-                    .findByNameAndLevelIgnoreCase(topLevelName, 1)
-                    .orElseGet(() -> {
-                        Category newParent = new Category();
-                        newParent.setName(capitalize(topLevelName));
-                        newParent.setLevel(1);
-                        newParent.setIsParent(true);
-                        return categoryRepository.save(newParent);
-                    });
-        }
-
-        Category childCategory;
-        synchronized (this) {
-            childCategory = categoryRepository
-                    .findByNameAndLevelIgnoreCase(secondLevelName, 2)
-                    .filter(c -> c.getParentCategory() != null &&
-                            c.getParentCategory().getId().equals(parentCategory.getId()))
-                    .orElseGet(() -> {
-                        Category newChild = new Category();
-                        newChild.setName(capitalize(secondLevelName));
-                        newChild.setLevel(2);
-                        newChild.setIsParent(false);
-                        newChild.setParentCategory(parentCategory);
-                        return categoryRepository.save(newChild);
-                    });
-        }
-
-        return childCategory;
-    }
-
-    /**
-     * ✅ CAPITALIZE tên category (Google Pixel → Google Pixel)
-     */
-    private String capitalize(String str) {
-        if (str == null || str.isEmpty()) return str;
-        return Arrays.stream(str.trim().split("\\s+"))
-                .map(word -> word.substring(0, 1).toUpperCase() + word.substring(1).toLowerCase())
-                .collect(Collectors.joining(" "));
+        // ✅ Striped lock theo tên trong CategoryService thay cho synchronized (this)
+        Long categoryId = categoryService.getOrCreateCategoryIgnoreCase(topLevelName, secondLevelName);
+        return categoryRepository.getReferenceById(categoryId);
     }
 
     private Category resolveCategoryFromRequest(CreateProductRequest request) {
@@ -0,0 +1,168 @@
+package com.smartvn.product_service.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gom số lượng đã bán trong RAM (LongAdder theo productId) và ghi xuống DB theo lô:
+ * 1 câu UPDATE products SET quantity_sold = quantity_sold + ? cho mỗi product có thay đổi, chung 1 JDBC batch,
+ * thay vì mỗi dòng đơn hàng 1 lần UPDATE vào dòng product bán chạy.
+ * - Chỉ cộng sau khi transaction của request commit (rollback không làm lệch số)
+ * - Flush định kỳ (product.quantity-sold.flush-interval-ms) và khi tắt service
+ * - Process chết trước khi flush → mất phần chưa ghi (tối đa 1 flush interval); quantity_sold chỉ là số thống kê
+ * - Đường có operationKey (cộng theo đơn, idempotent) không được gom: dùng applyInCurrentTransaction để cộng
+ *   cùng transaction với AppliedOperationLog.claim, nếu không claim đã commit mà số cộng còn trong RAM
+ * - Metrics: product.quantity_sold.pending (đơn vị chưa ghi), product.quantity_sold.lag (giây từ lần cộng
+ *   chưa ghi cũ nhất), product.quantity_sold.flush (timer), product.quantity_sold.flushed.rows,
+ *   product.quantity_sold.flush.failures
+ */
+@Component
+@Slf4j
+public class QuantitySoldAccumulator {
+
+    private static final String FLUSH_SQL = "UPDATE products SET quantity_sold = quantity_sold + ? WHERE id = ?";
+    private static final int[] FLUSH_TYPES = {Types.BIGINT, Types.BIGINT};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductListingSummaryService listingSummaryService;
+    private final TransactionTemplate transactionTemplate;
+
+    /** Không xoá entry sau khi flush: số entry bị chặn bởi số product, tránh race mất số khi xoá */
+    private final Map<Long, LongAdder> pending = new ConcurrentHashMap<>();
+    /** System.nanoTime() của lần cộng chưa flush cũ nhất, 0 = không có gì chờ */
+    private final AtomicLong oldestPendingNanos = new AtomicLong();
+
+    private final Timer flushTimer;
+    private final Counter flushedRows;
+    private final Counter flushFailures;
+
+    public QuantitySoldAccumulator(JdbcTemplate jdbcTemplate,
+                                   ProductListingSummaryService listingSummaryService,
+                                   PlatformTransactionManager transactionManager,
+                                   MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.listingSummaryService = listingSummaryService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Flush có thể chạy trong @PreDestroy / afterCommit → luôn mở transaction riêng
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        Gauge.builder("product.quantity_sold.pending", this, QuantitySoldAccumulator::pendingUnits)
+                .description("Units sold but not yet written to products.quantity_sold")
+                .register(meterRegistry);
+        Gauge.builder("product.quantity_sold.lag", this, QuantitySoldAccumulator::lagSeconds)
+                .description("Age of the oldest unflushed increment")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("product.quantity_sold.flush").register(meterRegistry);
+        this.flushedRows = Counter.builder("product.quantity_sold.flushed.rows").register(meterRegistry);
+        this.flushFailures = Counter.builder("product.quantity_sold.flush.failures").register(meterRegistry);
+    }
+
+    /**
+     * Cộng số lượng đã bán; nếu đang trong transaction thì chỉ cộng khi transaction commit
+     */
+    public void addAfterCommit(Map<Long, Long> soldByProduct) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            Map<Long, Long> snapshot = Map.copyOf(soldByProduct);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    snapshot.forEach(QuantitySoldAccumulator.this::add);
+                }
+            });
+        } else {
+            soldByProduct.forEach(this::add);
+        }
+    }
+
+    /**
+     * Ghi thẳng xuống DB trong transaction hiện tại (1 JDBC batch, khoá dòng theo thứ tự id):
+     * commit/rollback cùng với thao tác gọi nó. Dùng khi việc cộng phải đúng 1 lần.
+     */
+    public void applyInCurrentTransaction(Map<Long, Long> soldByProduct) {
+        Map<Long, Long> deltas = new TreeMap<>(soldByProduct);
+        List<Object[]> args = new ArrayList<>(deltas.size());
+        deltas.forEach((productId, delta) -> args.add(new Object[]{delta, productId}));
+        jdbcTemplate.batchUpdate(FLUSH_SQL, args, FLUSH_TYPES);
+        listingSummaryService.refreshAll(deltas.keySet());
+    }
+
+    private void add(Long productId, long quantity) {
+        pending.computeIfAbsent(productId, id -> new LongAdder()).add(quantity);
+        oldestPendingNanos.compareAndSet(0, System.nanoTime());
+    }
+
+    @Scheduled(
+            fixedDelayString = "${product.quantity-sold.flush-interval-ms:2000}",
+            initialDelayString = "${product.quantity-sold.flush-interval-ms:2000}"
+    )
+    public synchronized void flush() {
+        // Reset trước khi rút: phần cộng trong lúc đang flush sẽ đặt lại mốc lag
+        oldestPendingNanos.set(0);
+        Map<Long, Long> deltas = new TreeMap<>(); // theo thứ tự id → khoá dòng cùng thứ tự
+        pending.forEach((productId, adder) -> {
+            long delta = adder.sumThenReset();
+            if (delta != 0) {
+                deltas.put(productId, delta);
+            }
+        });
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> args = new ArrayList<>(deltas.size());
+        deltas.forEach((productId, delta) -> args.add(new Object[]{delta, productId}));
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(FLUSH_SQL, args, FLUSH_TYPES);
+                listingSummaryService.refreshAll(deltas.keySet());
+            });
+            flushedRows.increment(deltas.size());
+            log.debug("📈 Flushed quantity sold for {} products", deltas.size());
+        } catch (RuntimeException e) {
+            // Cộng lại để lần sau ghi tiếp
+            deltas.forEach(this::add);
+            flushFailures.increment();
+            log.error("❌ Failed to flush quantity sold for {} products, will retry", deltas.size(), e);
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private double pendingUnits() {
+        return pending.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    private double lagSeconds() {
+        long oldest = oldestPendingNanos.get();
+        return oldest == 0 ? 0 : (System.nanoTime() - oldest) / 1_000_000_000.0;
+    }
+}
@@ -31,6 +31,7 @@ public class ReviewService {
     private final ProductRepository productRepository;
     private final UserServiceClient userServiceClient;
     private final OrderServiceClient  orderServiceClient;
+    private final ProductListingSummaryService listingSummaryService;
 
     @Transactional
     public Review createReview(Long userId, Long productId, ReviewRequest reviewRequest) {
@@ -128,6 +129,7 @@ public class ReviewService {
         }
 
         productRepository.save(product);
+        listingSummaryService.refresh(productId);
         log.info("Updated product {} rating: {} stars from {} reviews.",
                 productId, product.getAverageRating(), product.getNumRatings());
     }
@@ -0,0 +1,340 @@
+package com.smartvn.product_service.service;
+
+import com.smartvn.product_service.dto.InventoryCheckRequest;
+import com.smartvn.product_service.dto.StockReservationDTO;
+import com.smartvn.product_service.dto.StockReservationRequest;
+import com.smartvn.product_service.exceptions.AppException;
+import com.smartvn.product_service.model.StockReservation;
+import com.smartvn.product_service.repository.StockReservationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Giữ hàng có thời hạn giữa lúc đặt đơn và lúc thanh toán.
+ * - reserve: cộng vào inventory.reserved_quantity (chỉ khi còn đủ hàng chưa bị giữ) + ghi ledger
+ * - commit: thanh toán xong → trừ quantity và reserved_quantity
+ * - release: huỷ đơn → trả phần đang giữ (hoặc hoàn kho nếu đã commit)
+ * - sweeper: quét reservation ACTIVE quá hạn theo index (status, expires_at) và trả hàng
+ * Số lượng còn bán được = quantity - reserved_quantity.
+ * SKU flash-sale không dùng reserved_quantity: hàng bị trừ thẳng trên bộ đếm lúc giữ (deducted = true),
+ * commit không trừ thêm, release / hết hạn thì hoàn kho.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockReservationService {
+
+    private static final String RESERVE_SQL =
+            "UPDATE inventory SET reserved_quantity = reserved_quantity + ?, updated_at = ? " +
+            "WHERE product_id = ? AND size <=> ? AND quantity - reserved_quantity >= ?" +
+            FlashSaleStockService.DB_PATH_GUARD;
+    private static final int[] RESERVE_TYPES =
+            {Types.INTEGER, Types.TIMESTAMP, Types.BIGINT, Types.VARCHAR, Types.INTEGER};
+
+    private static final String COMMIT_SQL =
+            "UPDATE inventory SET quantity = quantity - ?, reserved_quantity = reserved_quantity - ?, updated_at = ? " +
+            "WHERE product_id = ? AND size <=> ? AND reserved_quantity >= ?";
+    private static final int[] COMMIT_TYPES =
+            {Types.INTEGER, Types.INTEGER, Types.TIMESTAMP, Types.BIGINT, Types.VARCHAR, Types.INTEGER};
+
+    private static final String RELEASE_SQL =
+            "UPDATE inventory SET reserved_quantity = GREATEST(reserved_quantity - ?, 0), updated_at = ? " +
+            "WHERE product_id = ? AND size <=> ?";
+    private static final int[] RELEASE_TYPES =
+            {Types.INTEGER, Types.TIMESTAMP, Types.BIGINT, Types.VARCHAR};
+
+    private static final int MAX_REFERENCE_LENGTH = 64;
+
+    private final StockReservationRepository reservationRepository;
+    private final InventoryService inventoryService;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${inventory.reservation.default-ttl:PT20M}")
+    private Duration defaultTtl;
+
+    @Value("${inventory.reservation.max-ttl:PT2H}")
+    private Duration maxTtl;
+
+    @Value("${inventory.reservation.sweep-batch-size:200}")
+    private int sweepBatchSize;
+
+    /**
+     * ✅ Giữ hàng cho cả đơn: tất cả hoặc không dòng nào (409 + danh sách thiếu nếu không đủ).
+     * Gọi lại với cùng reference trả về reservation hiện có, không giữ thêm.
+     */
+    @Transactional
+    public StockReservationDTO reserve(StockReservationRequest request) {
+        String reference = validateReference(request.getReference());
+        if (request.getItems() == null || request.getItems().isEmpty()) {
+            throw new AppException("Reservation items are required", HttpStatus.BAD_REQUEST);
+        }
+
+        List<StockReservation> existing = reservationRepository.findAllByReference(reference);
+        if (!existing.isEmpty()) {
+            return toDTO(reference, existing);
+        }
+
+        List<InventoryCheckRequest> lines = InventoryService.mergeLines(request.getItems());
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plus(resolveTtl(request.getTtlSeconds()));
+        Timestamp ts = Timestamp.valueOf(now);
+
+        List<InventoryCheckRequest> cold = inventoryService.reduceHotLines(lines);
+        if (!cold.isEmpty()) {
+            List<InventoryCheckRequest> failed = inventoryService.executeGuardedBatch(RESERVE_SQL, cold,
+                    line -> new Object[]{line.getQuantity(), ts, line.getProductId(), line.getSize(), line.getQuantity()},
+                    RESERVE_TYPES);
+            if (!failed.isEmpty()) {
+                throw inventoryService.insufficientStock(failed, lines.size());
+            }
+        }
+
+        List<StockReservation> reservations = new ArrayList<>(lines.size());
+        for (InventoryCheckRequest line : lines) {
+            StockReservation reservation = new StockReservation();
+            reservation.setReference(reference);
+            reservation.setProductId(line.getProductId());
+            reservation.setSize(line.getSize());
+            reservation.setQuantity(line.getQuantity());
+            reservation.setStatus(StockReservation.Status.ACTIVE);
+            reservation.setDeducted(!cold.contains(line));
+            reservation.setExpiresAt(expiresAt);
+            reservations.add(reservation);
+        }
+        reservationRepository.saveAll(reservations);
+        inventoryService.refreshProducts(cold);
+
+        log.info("🔒 Reserved {} lines for {} until {}", lines.size(), reference, expiresAt);
+        return toDTO(reference, reservations);
+    }
+
+    /**
+     * ✅ Thanh toán thành công → chuyển phần đang giữ thành đã bán.
+     * Dòng đã hết hạn trước khi thanh toán về: thử trừ kho trực tiếp (409 nếu không còn đủ hàng).
+     * Reference không có reservation nào → trả về status NONE.
+     */
+    @Transactional
+    public StockReservationDTO commit(String reference) {
+        List<StockReservation> reservations = lockReservations(reference);
+        if (reservations.isEmpty()) {
+            // Đơn không giữ hàng (VD: COD đã trừ kho lúc đặt) → không có gì để commit
+            return new StockReservationDTO(reference, "NONE", null, Collections.emptyList());
+        }
+
+        List<StockReservation> active = new ArrayList<>();
+        List<StockReservation> deducted = new ArrayList<>();
+        List<StockReservation> lapsed = new ArrayList<>();
+        for (StockReservation reservation : reservations) {
+            switch (reservation.getStatus()) {
+                case ACTIVE -> (isDeducted(reservation) ? deducted : active).add(reservation);
+                case EXPIRED -> lapsed.add(reservation);
+                case COMMITTED -> { /* idempotent */ }
+                case RELEASED -> throw new AppException(
+                        "Reservation " + reference + " was released", HttpStatus.CONFLICT);
+            }
+        }
+
+        if (!lapsed.isEmpty()) {
+            log.warn("⚠️ Committing {} lapsed reservation lines for {}, reducing stock directly",
+                    lapsed.size(), reference);
+            inventoryService.batchReduceInventory(toLines(lapsed));
+        }
+
+        if (!active.isEmpty()) {
+            Timestamp ts = Timestamp.valueOf(LocalDateTime.now());
+            List<InventoryCheckRequest> lines = toLines(active);
+            List<InventoryCheckRequest> failed = inventoryService.executeGuardedBatch(COMMIT_SQL, lines,
+                    line -> new Object[]{line.getQuantity(), line.getQuantity(), ts,
+                            line.getProductId(), line.getSize(), line.getQuantity()},
+                    COMMIT_TYPES);
+            if (!failed.isEmpty()) {
+                // reserved_quantity nhỏ hơn ledger → dữ liệu lệch, không commit nửa vời
+                throw new IllegalStateException("Reserved quantity out of sync for " + reference + ": " + failed);
+            }
+            inventoryService.refreshProducts(lines);
+        }
+
+        // Dòng flash-sale đã trừ kho lúc giữ → chỉ đổi trạng thái
+        active.forEach(r -> r.setStatus(StockReservation.Status.COMMITTED));
+        deducted.forEach(r -> r.setStatus(StockReservation.Status.COMMITTED));
+        lapsed.forEach(r -> r.setStatus(StockReservation.Status.COMMITTED));
+        log.info("✅ Committed reservation {}", reference);
+        return toDTO(reference, reservations);
+    }
+
+    /**
+     * ✅ Huỷ đơn: trả phần đang giữ; nếu đã commit thì hoàn lại kho.
+     *
+     * @param fallbackItems Dùng cho đơn cũ (đặt trước khi có ledger): không có reservation nào → hoàn kho theo danh sách này.
+     */
+    @Transactional
+    public StockReservationDTO release(String reference, List<InventoryCheckRequest> fallbackItems) {
+        List<StockReservation> reservations = lockReservations(reference);
+        Timestamp ts = Timestamp.valueOf(LocalDateTime.now());
+
+        if (reservations.isEmpty()) {
+            if (fallbackItems != null && !fallbackItems.isEmpty()) {
+                // Không có ledger để biết đã hoàn chưa → dùng khoá idempotency, huỷ lại lần 2 không hoàn thêm
+                inventoryService.restoreInventory(reference + ":restore", fallbackItems);
+            }
+            return new StockReservationDTO(reference, "NONE", null, Collections.emptyList());
+        }
+
+        List<StockReservation> active = new ArrayList<>();
+        List<StockReservation> committed = new ArrayList<>();
+        for (StockReservation reservation : reservations) {
+            if (reservation.getStatus() == StockReservation.Status.ACTIVE && !isDeducted(reservation)) {
+                active.add(reservation);
+            } else if (reservation.getStatus() == StockReservation.Status.ACTIVE) {
+                // Flash-sale: đã trừ thẳng lúc giữ → hoàn kho như đơn đã commit
+                committed.add(reservation);
+            } else if (reservation.getStatus() == StockReservation.Status.COMMITTED) {
+                committed.add(reservation);
+            }
+        }
+
+        if (!active.isEmpty()) {
+            inventoryService.executeGuardedBatch(RELEASE_SQL, toLines(active),
+                    line -> new Object[]{line.getQuantity(), ts, line.getProductId(), line.getSize()},
+                    RELEASE_TYPES);
+        }
+        if (!committed.isEmpty()) {
+            inventoryService.restoreInventory(toLines(committed));
+        }
+
+        active.forEach(r -> r.setStatus(StockReservation.Status.RELEASED));
+        committed.forEach(r -> r.setStatus(StockReservation.Status.RELEASED));
+        if (!active.isEmpty() || !committed.isEmpty()) {
+            inventoryService.refreshProducts(toLines(reservations));
+            log.info("↩️ Released reservation {} ({} held, {} committed lines)",
+                    reference, active.size(), committed.size());
+        }
+        return toDTO(reference, reservations);
+    }
+
+    @Transactional(readOnly = true)
+    public StockReservationDTO get(String reference) {
+        List<StockReservation> reservations = reservationRepository.findAllByReference(validateReference(reference));
+        if (reservations.isEmpty()) {
+            throw new AppException("Reservation not found: " + reference, HttpStatus.NOT_FOUND);
+        }
+        return toDTO(reference, reservations);
+    }
+
+    /**
+     * ✅ Trả hàng cho các reservation quá hạn.
+     * Mỗi lượt lấy tối đa sweepBatchSize dòng cũ nhất (SKIP LOCKED) trong 1 transaction,
+     * lặp đến khi hết dòng quá hạn.
+     */
+    @Scheduled(
+            fixedDelayString = "${inventory.reservation.sweep-interval-ms:5000}",
+            initialDelayString = "${inventory.reservation.sweep-interval-ms:5000}"
+    )
+    public void sweepExpired() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        int total = 0;
+        Integer swept;
+        do {
+            swept = tx.execute(status -> expireBatch());
+            total += swept != null ? swept : 0;
+        } while (swept != null && swept >= sweepBatchSize);
+
+        if (total > 0) {
+            log.info("⏰ Expired {} stock reservation lines", total);
+        }
+    }
+
+    private int expireBatch() {
+        List<StockReservation> due = reservationRepository.findDueForUpdate(
+                StockReservation.Status.ACTIVE, LocalDateTime.now(), PageRequest.of(0, sweepBatchSize));
+        if (due.isEmpty()) {
+            return 0;
+        }
+
+        List<StockReservation> held = new ArrayList<>();
+        List<StockReservation> deducted = new ArrayList<>();
+        for (StockReservation reservation : due) {
+            (isDeducted(reservation) ? deducted : held).add(reservation);
+        }
+
+        if (!held.isEmpty()) {
+            List<InventoryCheckRequest> lines = InventoryService.mergeLines(toLines(held));
+            Timestamp ts = Timestamp.valueOf(LocalDateTime.now());
+            inventoryService.executeGuardedBatch(RELEASE_SQL, lines,
+                    line -> new Object[]{line.getQuantity(), ts, line.getProductId(), line.getSize()},
+                    RELEASE_TYPES);
+            inventoryService.refreshProducts(lines);
+        }
+        if (!deducted.isEmpty()) {
+            inventoryService.restoreInventory(toLines(deducted));
+        }
+
+        due.forEach(r -> r.setStatus(StockReservation.Status.EXPIRED));
+        return due.size();
+    }
+
+    private static boolean isDeducted(StockReservation reservation) {
+        return Boolean.TRUE.equals(reservation.getDeducted());
+    }
+
+    private List<StockReservation> lockReservations(String reference) {
+        return reservationRepository.findAllByReferenceForUpdate(validateReference(reference));
+    }
+
+    private Duration resolveTtl(Long ttlSeconds) {
+        if (ttlSeconds == null) {
+            return defaultTtl;
+        }
+        if (ttlSeconds <= 0) {
+            throw new AppException("ttlSeconds must be positive", HttpStatus.BAD_REQUEST);
+        }
+        Duration ttl = Duration.ofSeconds(ttlSeconds);
+        return ttl.compareTo(maxTtl) > 0 ? maxTtl : ttl;
+    }
+
+    private String validateReference(String reference) {
+        if (reference == null || reference.isBlank() || reference.length() > MAX_REFERENCE_LENGTH) {
+            throw new AppException("Invalid reservation reference", HttpStatus.BAD_REQUEST);
+        }
+        return reference.trim();
+    }
+
+    private List<InventoryCheckRequest> toLines(List<StockReservation> reservations) {
+        List<InventoryCheckRequest> lines = new ArrayList<>(reservations.size());
+        for (StockReservation reservation : reservations) {
+            lines.add(new InventoryCheckRequest(
+                    reservation.getProductId(), reservation.getSize(), reservation.getQuantity()));
+        }
+        return lines;
+    }
+
+    /**
+     * Trạng thái chung của reference: ACTIVE nếu còn dòng đang giữ, ngược lại lấy trạng thái của dòng đầu
+     */
+    private StockReservationDTO toDTO(String reference, List<StockReservation> reservations) {
+        StockReservation.Status status = reservations.stream()
+                .map(StockReservation::getStatus)
+                .filter(s -> s == StockReservation.Status.ACTIVE)
+                .findFirst()
+                .orElse(reservations.get(0).getStatus());
+        LocalDateTime expiresAt = reservations.stream()
+                .map(StockReservation::getExpiresAt)
+                .min(Comparator.naturalOrder())
+                .orElse(null);
+        return new StockReservationDTO(reference, status.name(), expiresAt, toLines(reservations));
+    }
+}
@@ -1,9 +1,6 @@
 package com.smartvn.product_service.specification;
 
-import com.smartvn.product_service.model.Inventory;
-import com.smartvn.product_service.model.Product;
-import jakarta.persistence.criteria.Join;
-import jakarta.persistence.criteria.JoinType;
+import com.smartvn.product_service.model.ProductListingSummary;
 import jakarta.persistence.criteria.Predicate;
 import org.springframework.data.jpa.domain.Specification;
 
@@ -13,7 +10,12 @@ import java.util.List;
 
 public class ProductSpecification {
 
-    public static Specification<Product> searchProducts(
+    /**
+     * ✅ Bộ lọc danh sách sản phẩm, chạy trên bảng product_listing_summary
+     * (1 bảng phẳng, không JOIN inventory, không DISTINCT).
+     * Lọc giá: sản phẩm có khoảng giá sau giảm giao với [minPrice, maxPrice].
+     */
+    public static Specification<ProductListingSummary> searchListings(
             String keyword,
             List<Long> categoryIds,
             BigDecimal minPrice,
@@ -22,10 +24,8 @@ public class ProductSpecification {
         return (root, query, cb) -> {
             List<Predicate> predicates = new ArrayList<>();
 
-            // Base condition: isActive = true
             predicates.add(cb.isTrue(root.get("isActive")));
 
-            // Keyword search
             if (keyword != null && !keyword.trim().isEmpty()) {
                 predicates.add(cb.like(
                         cb.lower(root.get("title")),
@@ -33,32 +33,19 @@ public class ProductSpecification {
                 ));
             }
 
-            // Category filter
             if (categoryIds != null && !categoryIds.isEmpty()) {
-                predicates.add(root.get("category").get("id").in(categoryIds));
+                predicates.add(root.get("categoryId").in(categoryIds));
             }
 
-            // Price filter - JOIN với Inventory
-            if (minPrice != null || maxPrice != null) {
-                Join<Product, Inventory> inventoryJoin = root.join("inventories", JoinType.INNER);
-
-                if (minPrice != null) {
-                    predicates.add(cb.greaterThanOrEqualTo(
-                            inventoryJoin.get("discountedPrice"), minPrice
-                    ));
-                }
-
-                if (maxPrice != null) {
-                    predicates.add(cb.lessThanOrEqualTo(
-                            inventoryJoin.get("discountedPrice"), maxPrice
-                    ));
-                }
+            if (minPrice != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("maxDiscountedPrice"), minPrice));
             }
 
-            // DISTINCT để tránh duplicate khi JOIN
-            query.distinct(true);
+            if (maxPrice != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("minDiscountedPrice"), maxPrice));
+            }
 
             return cb.and(predicates.toArray(new Predicate[0]));
         };
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,86 @@
+package com.smartvn.product_service.model;
+
+import com.smartvn.product_service.repository.ProductRepository;
+import com.smartvn.product_service.support.MySqlContainerTest;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class ProductDedupKeyTest extends MySqlContainerTest {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void legacyDuplicateWithNullKeyCanStillBeUpdated() {
+        productRepository.saveAndFlush(product("Galaxy S24", "Samsung"));
+        Long legacyId = legacyDuplicateOf("galaxy s24", "SAMSUNG");
+
+        Product legacy = productRepository.findById(legacyId).orElseThrow();
+        legacy.setIsActive(false);
+        legacy.setDescription("updated");
+        legacy.rename("Galaxy S24", "Samsung"); // chỉ đổi hoa/thường → key chuẩn hoá không đổi
+
+        assertThatCode(() -> productRepository.saveAndFlush(legacy)).doesNotThrowAnyException();
+        assertThat(dedupKeyOf(legacyId)).isNull();
+    }
+
+    @Test
+    void renamingLegacyDuplicateToUniqueTitleAssignsKey() {
+        productRepository.saveAndFlush(product("Galaxy S24", "Samsung"));
+        Long legacyId = legacyDuplicateOf("Galaxy S24", "Samsung");
+
+        Product legacy = productRepository.findById(legacyId).orElseThrow();
+        legacy.rename("Galaxy S24 Ultra", "Samsung");
+        productRepository.saveAndFlush(legacy);
+
+        assertThat(dedupKeyOf(legacyId)).isEqualTo("galaxy s24 ultra|samsung");
+    }
+
+    @Test
+    void updateWithoutRenameKeepsExistingKey() {
+        Product saved = productRepository.saveAndFlush(product("Pixel 9", "Google"));
+        entityManager.clear();
+
+        Product reloaded = productRepository.findById(saved.getId()).orElseThrow();
+        reloaded.setColor("Obsidian");
+        productRepository.saveAndFlush(reloaded);
+
+        assertThat(dedupKeyOf(saved.getId())).isEqualTo("pixel 9|google");
+    }
+
+    /**
+     * Dữ liệu trước khi có dedup_key: bản trùng (title, brand) được backfill để key null
+     */
+    private Long legacyDuplicateOf(String title, String brand) {
+        Product duplicate = productRepository.saveAndFlush(product(title + " (legacy)", brand));
+        jdbcTemplate.update("UPDATE products SET title = ?, dedup_key = NULL WHERE id = ?", title, duplicate.getId());
+        entityManager.clear();
+        return duplicate.getId();
+    }
+
+    private String dedupKeyOf(Long productId) {
+        return jdbcTemplate.queryForObject("SELECT dedup_key FROM products WHERE id = ?", String.class, productId);
+    }
+
+    private static Product product(String title, String brand) {
+        Product product = new Product();
+        product.setTitle(title);
+        product.setBrand(brand);
+        return product;
+    }
+}
@@ -0,0 +1,241 @@
+package com.smartvn.product_service.service;
+
+import com.smartvn.product_service.dto.InventoryCheckRequest;
+import com.smartvn.product_service.exceptions.AppException;
+import com.smartvn.product_service.model.Inventory;
+import com.smartvn.product_service.model.Product;
+import com.smartvn.product_service.repository.InventoryRepository;
+import com.smartvn.product_service.repository.ProductRepository;
+import com.smartvn.product_service.support.MySqlContainerTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Chuyển lease flash-sale giữa 2 instance trên MySQL thật: instance nhận lease phải thấy mọi đơn
+ * instance cũ đã nhận (kể cả đơn commit muộn), đơn của instance cũ sau khi mất lease bị từ chối.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // mỗi đơn tự commit như production
+class FlashSaleStockServiceTest extends MySqlContainerTest {
+
+    private static final int STOCK = 100;
+    private static final long LONG_TTL_MS = 60_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private InventoryRepository inventoryRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate tx;
+    private Long productId;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        jdbcTemplate.update("DELETE FROM service_leases");
+        jdbcTemplate.update("DELETE FROM flash_sale_journal");
+        inventoryRepository.deleteAll();
+        productRepository.deleteAll();
+
+        Product product = new Product();
+        product.setTitle("Flash Tee");
+        product.setBrand("SmartVN");
+        product.setFlashSale(true);
+        productId = productRepository.save(product).getId();
+
+        Inventory inventory = new Inventory();
+        inventory.setProduct(product);
+        inventory.setSize("M");
+        inventory.setQuantity(STOCK);
+        inventory.setPrice(new BigDecimal("100000"));
+        inventoryRepository.save(inventory);
+    }
+
+    @Test
+    void newLeaderFlushesJournalOfCrashedLeaderBeforeLoading() {
+        FlashSaleStockService a = newInstance(LONG_TTL_MS);
+        a.maintainLease();
+        for (int i = 0; i < 3; i++) {
+            tx.executeWithoutResult(status -> a.acquire(order(1)));
+        }
+        // A chết trước khi flush: journal còn trên DB, lease tự hết hạn
+        assertThat(journalRows()).isEqualTo(3);
+        expireLease();
+
+        FlashSaleStockService b = newInstance(LONG_TTL_MS);
+        b.maintainLease();
+
+        assertThat(journalRows()).isZero();
+        assertThat(quantity()).isEqualTo(STOCK - 3);
+        assertThat(b.available(productId, "m")).isEqualTo(STOCK - 3);
+    }
+
+    @Test
+    void handoverWaitsForOrderAdmittedByOldLeader() throws Exception {
+        FlashSaleStockService a = newInstance(1_000);
+        a.maintainLease();
+        CountDownLatch admitted = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        // Đơn nhận trên A khi còn lease nhưng commit sau khi lease đã hết hạn trên DB
+        Future<?> slowOrder = pool.submit(() -> tx.executeWithoutResult(status -> {
+            a.acquire(order(2));
+            admitted.countDown();
+            await(commit);
+        }));
+        assertThat(admitted.await(10, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(1_200);
+
+        FlashSaleStockService b = newInstance(LONG_TTL_MS);
+        Future<?> takeover = pool.submit(b::maintainLease);
+        assertThatThrownBy(() -> takeover.get(500, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+
+        commit.countDown();
+        slowOrder.get(10, TimeUnit.SECONDS);
+        takeover.get(10, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        assertThat(b.available(productId, "M")).isEqualTo(STOCK - 2);
+        sellOut(b, STOCK - 2);
+        b.flush();
+        assertThat(quantity()).isZero();
+    }
+
+    @Test
+    void oldLeaderRejectsOrdersAfterLeaseMoved() {
+        FlashSaleStockService a = newInstance(LONG_TTL_MS);
+        a.maintainLease();
+        // Lease hết hạn trên DB nhưng đồng hồ local của A chưa biết (VD GC pause dài)
+        expireLease();
+        FlashSaleStockService b = newInstance(LONG_TTL_MS);
+        b.maintainLease();
+
+        assertThatThrownBy(() -> tx.executeWithoutResult(status -> a.acquire(order(1))))
+                .isInstanceOf(AppException.class)
+                .extracting(e -> ((AppException) e).getStatus())
+                .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+
+        assertThat(journalRows()).isZero();
+        assertThat(b.available(productId, "M")).isEqualTo(STOCK);
+    }
+
+    @Test
+    void parallelOrdersSellExactlyTheStock() throws Exception {
+        int stock = 2_000;
+        int threads = 32;
+        jdbcTemplate.update("UPDATE inventory SET quantity = ? WHERE product_id = ?", stock, productId);
+        FlashSaleStockService leader = newInstance(LONG_TTL_MS);
+        leader.maintainLease();
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                // Mỗi thread thử nhiều hơn phần chia đều → tổng số lần thử vượt tồn kho
+                for (int i = 0; i < stock / threads * 2; i++) {
+                    boolean admitted = Boolean.TRUE.equals(tx.execute(status ->
+                            leader.acquire(order(1)).getShortfalls().isEmpty()));
+                    (admitted ? sold : rejected).incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(120, TimeUnit.SECONDS);
+        }
+        long elapsedNanos = System.nanoTime() - begin;
+        pool.shutdown();
+        leader.flush();
+
+        assertThat(sold.get()).isEqualTo(stock);
+        assertThat(quantity()).isZero();
+        assertThat(journalRows()).isZero();
+
+        long orders = sold.get() + rejected.get();
+        System.out.printf("FlashSaleStockService: %d threads, %d orders in %d ms (%.0f orders/s)%n",
+                threads, orders, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), orders * 1e9 / elapsedNanos);
+    }
+
+    /**
+     * 1 instance product-service: lease + bộ đếm riêng, dùng chung DB
+     */
+    private FlashSaleStockService newInstance(long leaseTtlMs) {
+        FlashSaleLease lease = new FlashSaleLease(jdbcTemplate);
+        ReflectionTestUtils.setField(lease, "leaseTtlMs", leaseTtlMs);
+        FlashSaleStockService service = new FlashSaleStockService(jdbcTemplate, productRepository,
+                mock(ProductListingSummaryService.class), transactionManager, lease);
+        ReflectionTestUtils.setField(service, "configuredStripes", 4);
+        ReflectionTestUtils.setField(service, "summaryRefreshMs", LONG_TTL_MS);
+        return service;
+    }
+
+    private void sellOut(FlashSaleStockService service, int units) {
+        for (int i = 0; i < units; i++) {
+            assertThat(tx.execute(status -> service.acquire(order(1))).getShortfalls()).isEmpty();
+        }
+        assertThat(tx.execute(status -> service.acquire(order(1))).getShortfalls()).hasSize(1);
+    }
+
+    private List<InventoryCheckRequest> order(int quantity) {
+        return List.of(new InventoryCheckRequest(productId, "M", quantity));
+    }
+
+    private void expireLease() {
+        jdbcTemplate.update("UPDATE service_leases SET expires_at = NOW(3) - INTERVAL 1 SECOND");
+    }
+
+    private int quantity() {
+        return jdbcTemplate.queryForObject(
+                "SELECT quantity FROM inventory WHERE product_id = ?", Integer.class, productId);
+    }
+
+    private int journalRows() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM flash_sale_journal", Integer.class);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
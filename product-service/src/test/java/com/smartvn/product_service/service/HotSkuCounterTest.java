@@ -0,0 +1,123 @@
+package com.smartvn.product_service.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Bộ đếm flash-sale dưới nhiều thread: đúng số lượng bán ra, không bán vượt, đo throughput.
+ */
+class HotSkuCounterTest {
+
+    private static final int THREADS = 32;
+    private static final int STOCK = 200_000;
+    private static final int STRIPES = 8;
+
+    @Test
+    void parallelAcquiresSellExactlyTheStock() throws Exception {
+        HotSkuCounter counter = new HotSkuCounter(1L, "M", STOCK, STRIPES);
+        AtomicInteger acquired = new AtomicInteger();
+        AtomicInteger insufficient = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                // Mỗi thread thử nhiều hơn phần chia đều → tổng số lần thử vượt tồn kho
+                for (int i = 0; i < STOCK / THREADS * 2; i++) {
+                    HotSkuCounter.Result result = counter.tryAcquire(1);
+                    if (result == HotSkuCounter.Result.ACQUIRED) {
+                        acquired.incrementAndGet();
+                    } else {
+                        assertThat(result).isEqualTo(HotSkuCounter.Result.INSUFFICIENT);
+                        insufficient.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        long elapsedNanos = System.nanoTime() - begin;
+        pool.shutdown();
+
+        assertThat(acquired.get()).isEqualTo(STOCK);
+        assertThat(counter.available()).isZero();
+        assertThat(acquired.get() + insufficient.get()).isEqualTo(STOCK / THREADS * 2 * THREADS);
+
+        long ops = acquired.get() + insufficient.get();
+        System.out.printf("HotSkuCounter: %d threads, %d ops in %d ms (%.0f ops/s)%n",
+                THREADS, ops, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), ops * 1e9 / elapsedNanos);
+    }
+
+    @Test
+    void acquireAndReleaseInterleavedNeverGoesNegative() throws Exception {
+        HotSkuCounter counter = new HotSkuCounter(1L, "M", 10, STRIPES);
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < 10_000; i++) {
+                    if (counter.tryAcquire(3) == HotSkuCounter.Result.ACQUIRED) {
+                        assertThat(counter.available()).isGreaterThanOrEqualTo(0);
+                        counter.release(3);
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertThat(counter.available()).isEqualTo(10);
+    }
+
+    @Test
+    void stockSplitAcrossStripesCanStillBeBoughtInOnePiece() {
+        HotSkuCounter counter = new HotSkuCounter(1L, null, 7, STRIPES);
+
+        assertThat(counter.tryAcquire(7)).isEqualTo(HotSkuCounter.Result.ACQUIRED);
+        assertThat(counter.tryAcquire(1)).isEqualTo(HotSkuCounter.Result.INSUFFICIENT);
+    }
+
+    @Test
+    void closedCounterRefusesAcquireAndIgnoresRelease() {
+        HotSkuCounter counter = new HotSkuCounter(1L, "M", 5, STRIPES);
+        counter.close();
+
+        assertThat(counter.tryAcquire(1)).isEqualTo(HotSkuCounter.Result.CLOSED);
+        counter.release(2);
+        assertThat(counter.available()).isZero();
+    }
+
+    @Test
+    void inFlightTracksOpenHolds() {
+        HotSkuCounter counter = new HotSkuCounter(1L, "M", 5, STRIPES);
+        counter.holdStarted(2);
+        counter.holdStarted(1);
+        counter.holdEnded(2);
+
+        assertThat(counter.inFlight()).isEqualTo(1);
+    }
+}
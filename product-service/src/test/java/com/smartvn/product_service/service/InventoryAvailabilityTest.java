@@ -0,0 +1,95 @@
+package com.smartvn.product_service.service;
+
+import com.smartvn.product_service.dto.InventoryAvailabilityDTO;
+import com.smartvn.product_service.dto.InventoryCheckRequest;
+import com.smartvn.product_service.model.Inventory;
+import com.smartvn.product_service.model.Product;
+import com.smartvn.product_service.repository.InventoryRepository;
+import com.smartvn.product_service.repository.ProductRepository;
+import com.smartvn.product_service.support.MySqlContainerTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(InventoryService.class)
+class InventoryAvailabilityTest extends MySqlContainerTest {
+
+    @Autowired
+    private InventoryService inventoryService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    @MockBean
+    private ProductListingSummaryService listingSummaryService;
+    @MockBean
+    private FlashSaleStockService flashSaleStock;
+    @MockBean
+    private AppliedOperationLog appliedOperationLog;
+
+    @BeforeEach
+    void setUp() {
+        // Mock mặc định trả 0 (không phải null) → mọi SKU trông như flash-sale đã bán hết
+        when(flashSaleStock.available(any(), any())).thenReturn(null);
+    }
+
+    @Test
+    void sizeIsMatchedLikeTheColumnCollation() {
+        Product product = product();
+        inventory(product, "M", 7);
+
+        List<InventoryAvailabilityDTO> result = inventoryService.checkAvailability(List.of(
+                new InventoryCheckRequest(product.getId(), "m", 2),
+                new InventoryCheckRequest(product.getId(), "M", 3)));
+
+        assertThat(result).hasSize(1);
+        InventoryAvailabilityDTO dto = result.get(0);
+        assertThat(dto.getSize()).isEqualTo("m");
+        assertThat(dto.getFound()).isTrue();
+        assertThat(dto.getRequested()).isEqualTo(5);
+        assertThat(dto.getAvailable()).isEqualTo(7);
+        assertThat(dto.getSufficient()).isTrue();
+    }
+
+    @Test
+    void unknownSizeIsReportedNotFound() {
+        Product product = product();
+        inventory(product, "M", 7);
+
+        List<InventoryAvailabilityDTO> result = inventoryService.checkAvailability(List.of(
+                new InventoryCheckRequest(product.getId(), "XL", 1)));
+
+        assertThat(result.get(0).getFound()).isFalse();
+        assertThat(result.get(0).getSufficient()).isFalse();
+    }
+
+    private Product product() {
+        Product product = new Product();
+        product.setTitle("Oxford Shirt");
+        product.setBrand("SmartVN");
+        return productRepository.saveAndFlush(product);
+    }
+
+    private void inventory(Product product, String size, int quantity) {
+        Inventory inventory = new Inventory();
+        inventory.setProduct(product);
+        inventory.setSize(size);
+        inventory.setQuantity(quantity);
+        inventory.setPrice(new BigDecimal("250000"));
+        inventoryRepository.saveAndFlush(inventory);
+    }
+}
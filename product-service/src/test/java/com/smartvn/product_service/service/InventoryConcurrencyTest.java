@@ -0,0 +1,150 @@
+package com.smartvn.product_service.service;
+
+import com.smartvn.product_service.dto.InventoryCheckRequest;
+import com.smartvn.product_service.exceptions.InsufficientStockException;
+import com.smartvn.product_service.model.Inventory;
+import com.smartvn.product_service.model.Product;
+import com.smartvn.product_service.repository.InventoryRepository;
+import com.smartvn.product_service.repository.ProductRepository;
+import com.smartvn.product_service.support.MySqlContainerTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+/**
+ * 500 checkout song song trên 1 SKU, MySQL thật: UPDATE có điều kiện phải đảm bảo không bán vượt tồn kho.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(InventoryService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // mỗi checkout tự commit như production
+class InventoryConcurrencyTest extends MySqlContainerTest {
+
+    private static final int STOCK = 120;
+    private static final int BUYERS = 500;
+
+    @Autowired
+    private InventoryService inventoryService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private InventoryRepository inventoryRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private ProductListingSummaryService listingSummaryService;
+    @MockBean
+    private FlashSaleStockService flashSaleStock;
+    @MockBean
+    private AppliedOperationLog appliedOperationLog;
+
+    private Long productId;
+
+    @BeforeEach
+    void setUp() {
+        // Không SKU nào đang flash-sale → mọi dòng trừ trên DB
+        when(flashSaleStock.acquire(anyList())).thenAnswer(inv -> {
+            FlashSaleStockService.Admission admission = new FlashSaleStockService.Admission();
+            admission.getCold().addAll(inv.getArgument(0));
+            return admission;
+        });
+
+        inventoryRepository.deleteAll();
+        productRepository.deleteAll();
+        Product product = new Product();
+        product.setTitle("Flash Tee");
+        product.setBrand("SmartVN");
+        productId = productRepository.save(product).getId();
+
+        Inventory inventory = new Inventory();
+        inventory.setProduct(product);
+        inventory.setSize("M");
+        inventory.setQuantity(STOCK);
+        inventory.setPrice(new BigDecimal("100000"));
+        inventoryRepository.save(inventory);
+    }
+
+    @Test
+    void parallelCheckoutsNeverOversell() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(64);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        List<Future<?>> futures = new ArrayList<>(BUYERS);
+        for (int i = 0; i < BUYERS; i++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                try {
+                    inventoryService.batchReduceInventory(List.of(new InventoryCheckRequest(productId, "M", 1)));
+                    sold.incrementAndGet();
+                } catch (InsufficientStockException e) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS); // lỗi khác (deadlock, timeout...) → test fail
+        }
+        pool.shutdown();
+
+        assertThat(sold.get()).isEqualTo(STOCK);
+        assertThat(rejected.get()).isEqualTo(BUYERS - STOCK);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT quantity FROM inventory WHERE product_id = ? AND size = 'M'", Integer.class, productId))
+                .isZero();
+    }
+
+    @Test
+    void multiLineCheckoutIsAllOrNothing() {
+        Product other = new Product();
+        other.setTitle("Basic Polo");
+        other.setBrand("SmartVN");
+        Long otherId = productRepository.save(other).getId();
+        Inventory single = new Inventory();
+        single.setProduct(other);
+        single.setSize("L");
+        single.setQuantity(1);
+        single.setPrice(new BigDecimal("50000"));
+        inventoryRepository.save(single);
+
+        List<InventoryCheckRequest> order = List.of(
+                new InventoryCheckRequest(productId, "M", 2),
+                new InventoryCheckRequest(otherId, "L", 2));
+
+        assertThatThrownBy(() -> inventoryService.batchReduceInventory(order))
+                .isInstanceOf(InsufficientStockException.class)
+                .extracting("shortfalls").asList().hasSize(1);
+
+        // Dòng đủ hàng cũng không bị trừ vì cả transaction rollback
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT quantity FROM inventory WHERE product_id = ?", Integer.class, productId)).isEqualTo(STOCK);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT quantity FROM inventory WHERE product_id = ?", Integer.class, otherId)).isEqualTo(1);
+    }
+}
@@ -0,0 +1,202 @@
+package com.smartvn.product_service.service;
+
+import com.smartvn.product_service.dto.InventoryCheckRequest;
+import com.smartvn.product_service.dto.StockShortfall;
+import com.smartvn.product_service.exceptions.AppException;
+import com.smartvn.product_service.exceptions.InsufficientStockException;
+import com.smartvn.product_service.model.Inventory;
+import com.smartvn.product_service.repository.InventoryRepository;
+import com.smartvn.product_service.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private InventoryRepository inventoryRepository;
+    @Mock
+    private ProductRepository productRepository;
+    @Mock
+    private ProductListingSummaryService listingSummaryService;
+    @Mock
+    private FlashSaleStockService flashSaleStock;
+    @Mock
+    private AppliedOperationLog appliedOperationLog;
+
+    private InventoryService inventoryService;
+
+    @BeforeEach
+    void setUp() {
+        inventoryService = new InventoryService(jdbcTemplate, inventoryRepository, productRepository,
+                listingSummaryService, flashSaleStock, appliedOperationLog);
+    }
+
+    // ---------------------------------------------------------------- mergeLines
+
+    @Test
+    void mergeLinesSumsDuplicateSkus() {
+        List<InventoryCheckRequest> merged = InventoryService.mergeLines(List.of(
+                line(1L, "M", 2),
+                line(1L, "M", 3),
+                line(1L, "L", 1)));
+
+        assertThat(merged).containsExactly(
+                line(1L, "L", 1),
+                line(1L, "M", 5));
+    }
+
+    @Test
+    void mergeLinesSortsByProductThenSizeWithNullSizeFirst() {
+        List<InventoryCheckRequest> merged = InventoryService.mergeLines(List.of(
+                line(2L, "S", 1),
+                line(1L, "XL", 1),
+                line(2L, null, 1),
+                line(1L, "L", 1)));
+
+        assertThat(merged).containsExactly(
+                line(1L, "L", 1),
+                line(1L, "XL", 1),
+                line(2L, null, 1),
+                line(2L, "S", 1));
+    }
+
+    @Test
+    void mergeLinesTreatsSizesLikeTheColumnCollation() {
+        // uk_reservation_ref_product_size không phân biệt hoa/thường → 2 dòng riêng sẽ đụng unique key
+        List<InventoryCheckRequest> merged = InventoryService.mergeLines(List.of(
+                line(1L, "M", 2),
+                line(1L, "m", 3),
+                line(1L, "L", 1)));
+
+        assertThat(merged).containsExactly(
+                line(1L, "L", 1),
+                line(1L, "M", 5));
+    }
+
+    @Test
+    void mergeLinesDoesNotMutateCallerLines() {
+        InventoryCheckRequest first = line(1L, "M", 2);
+        InventoryService.mergeLines(List.of(first, line(1L, "M", 3)));
+
+        assertThat(first.getQuantity()).isEqualTo(2);
+    }
+
+    @Test
+    void mergeLinesRejectsInvalidLines() {
+        assertThatThrownBy(() -> InventoryService.mergeLines(List.of(line(null, "M", 1))))
+                .isInstanceOf(AppException.class)
+                .extracting("status").isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThatThrownBy(() -> InventoryService.mergeLines(List.of(line(1L, "M", 0))))
+                .isInstanceOf(AppException.class);
+        assertThatThrownBy(() -> InventoryService.mergeLines(List.of(line(1L, "M", null))))
+                .isInstanceOf(AppException.class);
+    }
+
+    // ---------------------------------------------------------------- executeGuardedBatch
+
+    @Test
+    void guardedBatchReturnsLinesThatMatchedNoRow() {
+        List<InventoryCheckRequest> lines = List.of(line(1L, "M", 1), line(2L, "L", 1), line(3L, null, 1));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), any(int[].class))).thenReturn(new int[]{1, 0, 1});
+
+        List<InventoryCheckRequest> failed = inventoryService.executeGuardedBatch("UPDATE ...", lines,
+                l -> new Object[]{l.getQuantity()}, new int[]{0});
+
+        assertThat(failed).containsExactly(line(2L, "L", 1));
+    }
+
+    @Test
+    void guardedBatchFailsWhenDriverDoesNotReportUpdateCounts() {
+        List<InventoryCheckRequest> lines = List.of(line(1L, "M", 1), line(2L, "L", 1));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), any(int[].class)))
+                .thenReturn(new int[]{1, Statement.SUCCESS_NO_INFO});
+
+        assertThatThrownBy(() -> inventoryService.executeGuardedBatch("UPDATE ...", lines,
+                l -> new Object[]{l.getQuantity()}, new int[]{0}))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void reduceRollsBackAndSkipsRefreshWhenUpdateCountsAreUnknown() {
+        List<InventoryCheckRequest> lines = List.of(line(1L, "M", 1));
+        when(flashSaleStock.acquire(anyList())).thenAnswer(inv -> coldAdmission(inv.getArgument(0)));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), any(int[].class)))
+                .thenReturn(new int[]{Statement.SUCCESS_NO_INFO});
+
+        // RuntimeException → @Transactional rollback toàn bộ batch
+        assertThatThrownBy(() -> inventoryService.batchReduceInventory(lines))
+                .isInstanceOf(IllegalStateException.class);
+        verify(listingSummaryService, never()).refreshAll(any());
+    }
+
+    // ---------------------------------------------------------------- shortfall report
+
+    @Test
+    void shortfallReportsCurrentAvailableQuantity() {
+        when(inventoryRepository.findByProductIdAndSize(1L, "M")).thenReturn(Optional.of(inventory(5, 3)));
+        when(inventoryRepository.findByProductIdAndSize(eq(2L), eq(null))).thenReturn(Optional.empty());
+
+        InsufficientStockException ex = inventoryService.insufficientStock(
+                List.of(line(1L, "M", 4), line(2L, null, 1)), 3);
+
+        assertThat(ex.getStatus()).isEqualTo(HttpStatus.CONFLICT);
+        assertThat(ex.getShortfalls()).containsExactly(
+                new StockShortfall(1L, "M", 4, 2),
+                new StockShortfall(2L, null, 1, 0));
+    }
+
+    @Test
+    void reduceThrowsShortfallAndSkipsRefreshWhenAnyLineIsShort() {
+        List<InventoryCheckRequest> lines = List.of(line(1L, "M", 1), line(2L, "L", 9));
+        when(flashSaleStock.acquire(anyList())).thenAnswer(inv -> coldAdmission(inv.getArgument(0)));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), any(int[].class))).thenReturn(new int[]{1, 0});
+        when(inventoryRepository.findByProductIdAndSize(2L, "L")).thenReturn(Optional.of(inventory(4, 0)));
+
+        assertThatThrownBy(() -> inventoryService.batchReduceInventory(lines))
+                .isInstanceOf(InsufficientStockException.class)
+                .extracting("shortfalls")
+                .isEqualTo(List.of(new StockShortfall(2L, "L", 9, 4)));
+        verify(listingSummaryService, never()).refreshAll(any());
+    }
+
+    private static FlashSaleStockService.Admission coldAdmission(List<InventoryCheckRequest> lines) {
+        FlashSaleStockService.Admission admission = new FlashSaleStockService.Admission();
+        admission.getCold().addAll(lines);
+        return admission;
+    }
+
+    private static InventoryCheckRequest line(Long productId, String size, Integer quantity) {
+        return new InventoryCheckRequest(productId, size, quantity);
+    }
+
+    private static Inventory inventory(int quantity, int reserved) {
+        Inventory inventory = new Inventory();
+        inventory.setQuantity(quantity);
+        inventory.setReservedQuantity(reserved);
+        inventory.setPrice(BigDecimal.TEN);
+        return inventory;
+    }
+}
@@ -0,0 +1,106 @@
+package com.smartvn.product_service.service;
+
+import com.smartvn.product_service.model.Inventory;
+import com.smartvn.product_service.model.Product;
+import com.smartvn.product_service.repository.InventoryRepository;
+import com.smartvn.product_service.repository.ProductRepository;
+import com.smartvn.product_service.support.MySqlContainerTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(InventoryStockSyncService.class)
+@ImportAutoConfiguration({JacksonAutoConfiguration.class, ValidationAutoConfiguration.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // mỗi chunk chạy trong transaction riêng
+class InventoryStockSyncServiceTest extends MySqlContainerTest {
+
+    @Autowired
+    private InventoryStockSyncService stockSyncService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private InventoryRepository inventoryRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private ProductListingSummaryService listingSummaryService;
+    @MockBean
+    private FlashSaleStockService flashSaleStock;
+
+    private Long productId;
+
+    @BeforeEach
+    void setUp() {
+        inventoryRepository.deleteAll();
+        productRepository.deleteAll();
+        Product product = new Product();
+        product.setTitle("Linen Shorts");
+        product.setBrand("SmartVN");
+        productId = productRepository.save(product).getId();
+
+        Inventory inventory = new Inventory();
+        inventory.setProduct(product);
+        inventory.setSize("M");
+        inventory.setQuantity(5);
+        inventory.setPrice(new BigDecimal("199000"));
+        inventoryRepository.save(inventory);
+    }
+
+    @Test
+    void sizeDifferingOnlyInCaseUpdatesExistingVariant() {
+        InventoryStockSyncService.SyncSummary summary = sync(productId + ",m,9,199000\n");
+
+        assertThat(summary.getUpdated()).isEqualTo(1);
+        assertThat(summary.getInserted()).isZero();
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM inventory WHERE product_id = ?", Integer.class, productId)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT quantity FROM inventory WHERE product_id = ?", Integer.class, productId)).isEqualTo(9);
+    }
+
+    @Test
+    void sizeDifferingOnlyInCaseIsUnchangedWhenValuesMatch() {
+        InventoryStockSyncService.SyncSummary summary = sync(productId + ",m,5,199000\n");
+
+        assertThat(summary.getUnchanged()).isEqualTo(1);
+        assertThat(summary.getUpdated()).isZero();
+        assertThat(summary.getInserted()).isZero();
+    }
+
+    @Test
+    void rowsDifferingOnlyInCaseAreDuplicates() {
+        InventoryStockSyncService.SyncSummary summary = sync(
+                productId + ",M,7,199000\n" +
+                productId + ",m,8,199000\n");
+
+        assertThat(summary.getUpdated()).isEqualTo(1);
+        assertThat(summary.getFailed()).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT quantity FROM inventory WHERE product_id = ?", Integer.class, productId)).isEqualTo(7);
+    }
+
+    private InventoryStockSyncService.SyncSummary sync(String csv) {
+        return stockSyncService.sync(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+                true, null, report -> {
+                });
+    }
+}
@@ -0,0 +1,116 @@
+package com.smartvn.product_service.service;
+
+import com.smartvn.product_service.model.Product;
+import com.smartvn.product_service.repository.ProductRepository;
+import com.smartvn.product_service.support.MySqlContainerTest;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Đường cộng theo operationKey: claim và số cộng commit / rollback cùng nhau (đúng 1 lần)
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({QuantitySoldAccumulator.class, AppliedOperationLog.class, QuantitySoldAccumulatorTest.Metrics.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class QuantitySoldAccumulatorTest extends MySqlContainerTest {
+
+    @TestConfiguration
+    static class Metrics {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private QuantitySoldAccumulator accumulator;
+    @Autowired
+    private AppliedOperationLog appliedOperationLog;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockBean
+    private ProductListingSummaryService listingSummaryService;
+
+    private Long productId;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM applied_operations");
+        productRepository.deleteAll();
+        Product product = new Product();
+        product.setTitle("Canvas Tote");
+        product.setBrand("SmartVN");
+        productId = productRepository.save(product).getId();
+    }
+
+    @Test
+    void keyedIncrementIsDurableOnCommitWithoutFlush() {
+        assertThat(applyOnce("order-1:sold", 3)).isTrue();
+
+        // Không cần flush: đã nằm trong DB ngay khi claim commit
+        assertThat(quantitySold()).isEqualTo(3);
+    }
+
+    @Test
+    void retryWithSameKeyIsNoOp() {
+        applyOnce("order-1:sold", 3);
+
+        assertThat(applyOnce("order-1:sold", 3)).isFalse();
+        assertThat(quantitySold()).isEqualTo(3);
+    }
+
+    @Test
+    void rollbackDropsBothClaimAndIncrement() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        assertThatThrownBy(() -> tx.executeWithoutResult(status -> {
+            appliedOperationLog.claim("order-2:sold");
+            accumulator.applyInCurrentTransaction(Map.of(productId, 4L));
+            throw new IllegalStateException("boom");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(quantitySold()).isZero();
+        // Key không còn → retry được áp dụng
+        assertThat(applyOnce("order-2:sold", 4)).isTrue();
+        assertThat(quantitySold()).isEqualTo(4);
+    }
+
+    private boolean applyOnce(String operationKey, long quantity) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        return Boolean.TRUE.equals(tx.execute(status -> {
+            if (!appliedOperationLog.claim(operationKey)) {
+                return false;
+            }
+            accumulator.applyInCurrentTransaction(Map.of(productId, quantity));
+            return true;
+        }));
+    }
+
+    private long quantitySold() {
+        return jdbcTemplate.queryForObject("SELECT quantity_sold FROM products WHERE id = ?", Long.class, productId);
+    }
+}
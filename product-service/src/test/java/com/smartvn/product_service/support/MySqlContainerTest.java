@@ -0,0 +1,26 @@
+package com.smartvn.product_service.support;
+
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.TestPropertySource;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Base cho test cần MySQL thật (unique index, row lock, collation...): dùng chung 1 container.
+ * Không có Docker → test được bỏ qua thay vì fail.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@TestPropertySource(properties = {
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.cloud.bootstrap.enabled=false",
+        "spring.cloud.config.enabled=false",
+        "eureka.client.enabled=false",
+        "api.prefix=/api/v1"
+})
+public abstract class MySqlContainerTest {
+
+    @Container
+    @ServiceConnection
+    protected static final MySQLContainer<?> MYSQL = new MySQLContainer<>("mysql:8.0");
+}
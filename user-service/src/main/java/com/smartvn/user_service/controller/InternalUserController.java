@@ -74,6 +74,24 @@ public class InternalUserController {
         return ResponseEntity.ok(new AddressDTO(address));
     }
 
+    /**
+     * ✅ Lấy nhiều địa chỉ trong 1 request (admin order listing), id không tồn tại bị bỏ qua
+     */
+    @PostMapping("/addresses/batch")
+    public ResponseEntity<List<AddressDTO>> getAddressesByIds(
+            @RequestBody List<Long> addressIds) {
+
+        if (addressIds == null || addressIds.isEmpty()) {
+            return ResponseEntity.ok(Collections.emptyList());
+        }
+
+        List<AddressDTO> dtos = addressRepository.findAllById(addressIds).stream()
+                .map(AddressDTO::new)
+                .collect(Collectors.toList());
+
+        return ResponseEntity.ok(dtos);
+    }
+
     @GetMapping("/search")
     public ResponseEntity<ApiResponse<Page<UserDTO>>> searchUsers(
             @RequestParam("page") int page,
@@ -12,6 +12,7 @@ public class AddressDTO {
     private String ward;
     private String street;
     private String note;
+    private Long userId;
 
     public AddressDTO(Address address) {
         if (address != null) {
@@ -22,6 +23,7 @@ public class AddressDTO {
             this.ward = address.getWard();
             this.street = address.getStreet();
             this.note = address.getNote();
+            this.userId = address.getUser() != null ? address.getUser().getId() : null;
         }
     }
 }